@@ -0,0 +1,127 @@
+package com.example.esautocomplete.service.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.suggest.response.CompletionSuggestion;
+import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
+
+import com.example.esautocomplete.model.Token;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.search.FieldSuggester;
+
+/**
+ * 用 {@link SyntheticCorpus} 确定性地回答查询的ElasticsearchOperations替身，
+ * 只实现补全、纠错和短语纠错用到的 search(Query, Class)，其余方法抛出UnsupportedOperationException。
+ * <p>
+ * 返回的SearchHits与Spring Data从真实响应转换出来的对象结构相同，
+ * 基准测试测到的是查询构建、结果后处理和服务层本身的开销，不包含网络和ES执行时间。
+ */
+final class StubElasticsearchOperations implements InvocationHandler {
+
+    private static final String INDEX = "token";
+
+    private static final int DEFAULT_HITS = 10;
+
+    private final SyntheticCorpus corpus;
+
+    StubElasticsearchOperations(SyntheticCorpus corpus) {
+        this.corpus = corpus;
+    }
+
+    static ElasticsearchOperations create(SyntheticCorpus corpus) {
+        return (ElasticsearchOperations) Proxy.newProxyInstance(
+                StubElasticsearchOperations.class.getClassLoader(),
+                new Class<?>[]{ElasticsearchOperations.class},
+                new StubElasticsearchOperations(corpus));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> "StubElasticsearchOperations(" + corpus.size() + ")";
+            };
+        }
+        if ("search".equals(method.getName()) && args.length == 2 && args[0] instanceof NativeQuery query) {
+            return search(query);
+        }
+        throw new UnsupportedOperationException(method.getName());
+    }
+
+    SearchHits<Token> search(NativeQuery query) {
+        if (query.getSuggester() != null && query.getQuery() == null) {
+            return completion(query.getSuggester().suggesters());
+        }
+
+        Query root = query.getQuery();
+        Query first = root.isBool() ? root.bool().should().get(0) : root;
+        int maxResults = query.getMaxResults() != null ? query.getMaxResults() : DEFAULT_HITS;
+        if (first.isWildcard()) {
+            // 通配符前缀查询："bac*"
+            String value = first.wildcard().value();
+            return hits(corpus.prefixRange(value.substring(0, value.length() - 1)), maxResults);
+        }
+        // 精确匹配与fuzzy查询：按最长能匹配的前缀返回
+        return hits(corpus.longestMatchingRange(first.match().query().stringValue()), maxResults);
+    }
+
+    private SearchHits<Token> completion(Map<String, FieldSuggester> suggesters) {
+        FieldSuggester name = suggesters.get(TokenQueries.NAME_SUGGESTER);
+        int[] range = corpus.prefixRange(name.prefix());
+        int to = Math.min(range[1], range[0] + name.completion().size());
+
+        List<CompletionSuggestion.Entry.Option<Token>> options = new ArrayList<>(to - range[0]);
+        for (int i = range[0]; i < to; i++) {
+            Token token = corpus.token(i);
+            double weight = weight(i);
+            CompletionSuggestion.Entry.Option<Token> option = new CompletionSuggestion.Entry.Option<>(
+                    token.getName().toLowerCase(), null, weight, false, Map.of(), null, null, token);
+            option.updateSearchHit((document, entity) -> searchHit(entity, weight));
+            options.add(option);
+        }
+
+        List<Suggest.Suggestion<? extends Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option>>>
+                suggestions = new ArrayList<>();
+        suggestions.add(new CompletionSuggestion<>(TokenQueries.NAME_SUGGESTER, options.size(),
+                List.of(new CompletionSuggestion.Entry<>(name.prefix(), 0, name.prefix().length(), options))));
+        suggestions.add(new CompletionSuggestion<Token>(TokenQueries.SYMBOL_SUGGESTER, 0, List.of()));
+        return new SearchHitsImpl<>(0, TotalHitsRelation.EQUAL_TO, 0, null, null, List.of(), null,
+                new Suggest(suggestions, true));
+    }
+
+    private SearchHits<Token> hits(int[] range, int maxResults) {
+        int to = Math.min(range[1], range[0] + maxResults);
+        List<SearchHit<Token>> hits = new ArrayList<>(to - range[0]);
+        for (int i = range[0]; i < to; i++) {
+            hits.add(searchHit(corpus.token(i), 1.0f));
+        }
+        return new SearchHitsImpl<>(range[1] - range[0], TotalHitsRelation.EQUAL_TO, 1.0f, null, null, hits,
+                null, null);
+    }
+
+    private static SearchHit<Token> searchHit(Token token, double score) {
+        return new SearchHit<>(INDEX, token.getId(), null, (float) score, null, null, null, null,
+                null, null, token);
+    }
+
+    /**
+     * completion权重，由编号确定，使合并排序有实际工作量
+     */
+    private static double weight(int i) {
+        return (i * 2654435761L) % 1000;
+    }
+}
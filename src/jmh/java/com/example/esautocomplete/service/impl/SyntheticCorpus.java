@@ -0,0 +1,156 @@
+package com.example.esautocomplete.service.impl;
+
+import java.util.Random;
+
+import com.example.esautocomplete.model.Token;
+
+/**
+ * 确定性的合成Token语料，不在内存中保存任何数据。
+ * <p>
+ * 第i个Token的名称是i的16进制各位依次映射成的定长音节串（如 "Bacedi"），
+ * 16个音节的首字母互不相同且按字母序排列，因此名称的字典序与编号顺序一致，
+ * 任意小写前缀对应的Token恰好是一段连续编号，可以直接算出，
+ * 千万级语料也只占用常数内存。
+ */
+final class SyntheticCorpus {
+
+    private static final String[] SYLLABLES = {
+            "ba", "ce", "di", "fo", "gu", "ha", "je", "ki",
+            "lo", "mu", "na", "pe", "ri", "so", "tu", "va"};
+
+    private static final int BASE = SYLLABLES.length;
+
+    private final int size;
+
+    /** 名称的音节数 */
+    private final int width;
+
+    SyntheticCorpus(int size) {
+        this.size = size;
+        int width = 1;
+        for (long capacity = BASE; capacity < size; capacity *= BASE) {
+            width++;
+        }
+        this.width = width;
+    }
+
+    int size() {
+        return size;
+    }
+
+    String name(int i) {
+        StringBuilder name = new StringBuilder(width * 2);
+        for (int position = width - 1; position >= 0; position--) {
+            name.append(SYLLABLES[digit(i, position)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    /**
+     * 符号取名称末尾四个音节的首字母大写，与名称前缀无关，模拟符号与名称不同源的情况
+     */
+    String symbol(int i) {
+        int letters = Math.min(width, 4);
+        StringBuilder symbol = new StringBuilder(letters);
+        for (int position = letters - 1; position >= 0; position--) {
+            symbol.append(Character.toUpperCase(SYLLABLES[digit(i, position)].charAt(0)));
+        }
+        return symbol.toString();
+    }
+
+    Token token(int i) {
+        return Token.builder().id("token-" + i).name(name(i)).symbol(symbol(i)).build();
+    }
+
+    /**
+     * 名称以小写前缀开头的Token编号区间 [from, to)，没有匹配时 from == to
+     */
+    int[] prefixRange(String lowerPrefix) {
+        int syllables = (lowerPrefix.length() + 1) / 2;
+        if (syllables > width) {
+            return new int[]{0, 0};
+        }
+        long value = 0;
+        for (int s = 0; s < syllables; s++) {
+            int digit = syllable(lowerPrefix, s * 2);
+            if (digit < 0) {
+                return new int[]{0, 0};
+            }
+            value = value * BASE + digit;
+        }
+        long span = 1;
+        for (int s = syllables; s < width; s++) {
+            span *= BASE;
+        }
+        long from = Math.min(value * span, size);
+        long to = Math.min((value + 1) * span, size);
+        return new int[]{(int) from, (int) to};
+    }
+
+    /**
+     * 去掉末尾字符直到前缀有匹配，用来模拟fuzzy查询：拼写错误之前的部分仍能命中
+     */
+    int[] longestMatchingRange(String lowerText) {
+        for (int length = lowerText.length(); length > 0; length--) {
+            int[] range = prefixRange(lowerText.substring(0, length));
+            if (range[0] < range[1]) {
+                return range;
+            }
+        }
+        return new int[]{0, Math.min(size, 10)};
+    }
+
+    /**
+     * 随机Token名称的小写前缀，长度2到6
+     */
+    String[] prefixes(int count, long seed) {
+        Random random = new Random(seed);
+        String[] prefixes = new String[count];
+        for (int n = 0; n < count; n++) {
+            String name = name(random.nextInt(size)).toLowerCase();
+            prefixes[n] = name.substring(0, Math.min(name.length(), 2 + random.nextInt(5)));
+        }
+        return prefixes;
+    }
+
+    /**
+     * 随机Token名称中替换一个字符（首字母除外）得到的拼写错误
+     */
+    String[] typos(int count, long seed) {
+        Random random = new Random(seed);
+        String[] typos = new String[count];
+        for (int n = 0; n < count; n++) {
+            char[] name = name(random.nextInt(size)).toLowerCase().toCharArray();
+            int position = 1 + random.nextInt(name.length - 1);
+            name[position] = (char) ('a' + (name[position] - 'a' + 1 + random.nextInt(25)) % 26);
+            typos[n] = new String(name);
+        }
+        return typos;
+    }
+
+    private int digit(int i, int position) {
+        int value = i;
+        for (int p = 0; p < position; p++) {
+            value /= BASE;
+        }
+        return value % BASE;
+    }
+
+    /**
+     * 解析offset处的音节，前缀末尾只剩一个字母时按首字母匹配
+     *
+     * @return 音节编号，不是合法音节时为-1
+     */
+    private static int syllable(String text, int offset) {
+        for (int digit = 0; digit < BASE; digit++) {
+            String syllable = SYLLABLES[digit];
+            if (offset + 1 == text.length()
+                    ? syllable.charAt(0) == text.charAt(offset)
+                    : text.startsWith(syllable, offset)) {
+                return digit;
+            }
+        }
+        return -1;
+    }
+}
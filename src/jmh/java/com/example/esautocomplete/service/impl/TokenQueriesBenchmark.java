@@ -0,0 +1,130 @@
+package com.example.esautocomplete.service.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHits;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.model.Token;
+
+/**
+ * 补全/纠错热路径中与ES无关的部分：查询构建、命中后处理
+ * （toLowerCase().contains() 过滤、distinct().limit() 截取、completion按得分合并）以及写入前的prepareToken。
+ * 命中结果在准备阶段由 {@link StubElasticsearchOperations} 预先生成，测量时只包含处理本身。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenQueriesBenchmark {
+
+    private static final int SIZE = 10;
+
+    private static final int QUERIES = 256;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int corpusSize;
+
+    private SyntheticCorpus corpus;
+
+    private AutocompleteProperties.Suggest suggestSettings;
+
+    private TokenServiceImpl tokenService;
+
+    private String[] prefixes;
+
+    private String[] typos;
+
+    private SearchHits<Token>[] wildcardHits;
+
+    private SearchHits<Token>[] completionHits;
+
+    private SearchHits<Token>[] correctionHits;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setUp() {
+        corpus = new SyntheticCorpus(corpusSize);
+        suggestSettings = new AutocompleteProperties().getSuggest();
+        tokenService = new TokenServiceImpl();
+        prefixes = corpus.prefixes(QUERIES, 42);
+        typos = corpus.typos(QUERIES, 42);
+
+        StubElasticsearchOperations stub = new StubElasticsearchOperations(corpus);
+        wildcardHits = new SearchHits[QUERIES];
+        completionHits = new SearchHits[QUERIES];
+        correctionHits = new SearchHits[QUERIES];
+        for (int n = 0; n < QUERIES; n++) {
+            wildcardHits[n] = stub.search(TokenQueries.wildcardSuggestQuery(prefixes[n], SIZE));
+            completionHits[n] = stub.search(TokenQueries.completionSuggestQuery(prefixes[n], SIZE, suggestSettings));
+            correctionHits[n] = stub.search(TokenQueries.correctionQuery(typos[n]));
+        }
+    }
+
+    @Benchmark
+    public NativeQuery wildcardSuggestQuery(QueryCursor cursor) {
+        return TokenQueries.wildcardSuggestQuery(prefixes[cursor.next()], SIZE);
+    }
+
+    @Benchmark
+    public NativeQuery completionSuggestQuery(QueryCursor cursor) {
+        return TokenQueries.completionSuggestQuery(prefixes[cursor.next()], SIZE, suggestSettings);
+    }
+
+    @Benchmark
+    public NativeQuery correctionQuery(QueryCursor cursor) {
+        return TokenQueries.correctionQuery(typos[cursor.next()]);
+    }
+
+    @Benchmark
+    public List<String> extractWildcardSuggestions(QueryCursor cursor) {
+        int n = cursor.next();
+        return TokenQueries.extractWildcardSuggestions(wildcardHits[n], prefixes[n], SIZE);
+    }
+
+    @Benchmark
+    public List<String> extractCompletionSuggestions(QueryCursor cursor) {
+        return TokenQueries.extractCompletionSuggestions(completionHits[cursor.next()], SIZE);
+    }
+
+    @Benchmark
+    public List<String> extractNamesAndSymbols(QueryCursor cursor) {
+        return TokenQueries.extractNamesAndSymbols(correctionHits[cursor.next()].getSearchHits(), SIZE);
+    }
+
+    @Benchmark
+    public Token prepareToken(QueryCursor cursor) {
+        // 不带ID的新Token，与导入接口收到的数据一致，包含UUID生成
+        Token token = corpus.token(cursor.next() * (corpusSize / QUERIES));
+        token.setId(null);
+        tokenService.prepareToken(token);
+        return token;
+    }
+
+    @State(Scope.Thread)
+    public static class QueryCursor {
+
+        private int position;
+
+        int next() {
+            position = (position + 1) & (QUERIES - 1);
+            return position;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.esautocomplete.service.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.esautocomplete.cache.QueryCoalescer;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.engine.SymSpellCorrectionEngine;
+import com.example.esautocomplete.engine.TriePrefixEngine;
+import com.example.esautocomplete.metrics.SearchMetrics;
+import com.example.esautocomplete.resilience.ResilientSearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * TokenServiceImpl 补全、纠错、短语纠错在Elasticsearch路径上的开销。
+ * <p>
+ * 本地引擎不加载、缓存关闭，每次调用都完整走一遍查询构建、search和命中后处理，
+ * search由 {@link StubElasticsearchOperations} 在合成语料上确定性地回答。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenServiceBenchmark {
+
+    private static final int SIZE = 10;
+
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "1000000", "10000000"})
+    private int corpusSize;
+
+    @Param({"COMPLETION", "WILDCARD"})
+    private AutocompleteProperties.SuggestMode suggestMode;
+
+    private TokenServiceImpl tokenService;
+
+    private String[] prefixes;
+
+    private String[] typos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(corpusSize);
+        prefixes = corpus.prefixes(QUERIES, 42);
+        typos = corpus.typos(QUERIES, 42);
+
+        AutocompleteProperties properties = new AutocompleteProperties();
+        properties.getSuggest().setMode(suggestMode);
+        properties.getCache().setEnabled(false);
+        properties.getCorrection().setEngine(AutocompleteProperties.CorrectionEngineType.ELASTICSEARCH);
+        // 只测量查询构建和命中处理，ES查询直接在调用线程上执行
+        properties.getResilience().setEnabled(false);
+
+        tokenService = new TokenServiceImpl();
+        ReflectionTestUtils.setField(tokenService, "elasticsearchOperations",
+                StubElasticsearchOperations.create(corpus));
+        ReflectionTestUtils.setField(tokenService, "prefixEngine", new TriePrefixEngine());
+        ReflectionTestUtils.setField(tokenService, "correctionEngine", new SymSpellCorrectionEngine());
+        ReflectionTestUtils.setField(tokenService, "properties", properties);
+        ReflectionTestUtils.setField(tokenService, "suggestionCache", new SuggestionCache(properties));
+        ReflectionTestUtils.setField(tokenService, "queryCoalescer",
+                new QueryCoalescer(properties, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(tokenService, "searchMetrics", new SearchMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(tokenService, "resilientSearch",
+                new ResilientSearch(properties, Schedulers.immediate(), new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public List<String> getSuggestions(QueryCursor cursor) {
+        return tokenService.getSuggestions(cursor.next(prefixes), SIZE);
+    }
+
+    @Benchmark
+    public List<String> getCorrections(QueryCursor cursor) {
+        return tokenService.getCorrections(cursor.next(typos), SIZE);
+    }
+
+    @Benchmark
+    public List<String> getPhraseCorrections(QueryCursor cursor) {
+        return tokenService.getPhraseCorrections(cursor.next(typos), SIZE);
+    }
+
+    /**
+     * 每个线程按顺序轮换查询，避免反复命中同一个前缀
+     */
+    @State(Scope.Thread)
+    public static class QueryCursor {
+
+        private int position;
+
+        String next(String[] queries) {
+            position = (position + 1) & (queries.length - 1);
+            return queries[position];
+        }
+    }
+}
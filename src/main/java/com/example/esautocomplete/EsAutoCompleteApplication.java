@@ -2,8 +2,14 @@ package com.example.esautocomplete;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.elasticsearch.ElasticsearchRestClientAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+@EnableScheduling
+@ConfigurationPropertiesScan
+// RestClient及嗅探由ElasticsearchConfig按autocomplete.client创建，不使用spring.elasticsearch.*的自动配置
+@SpringBootApplication(exclude = ElasticsearchRestClientAutoConfiguration.class)
 public class EsAutoCompleteApplication {
 
     public static void main(String[] args) {
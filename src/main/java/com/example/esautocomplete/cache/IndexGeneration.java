@@ -0,0 +1,51 @@
+package com.example.esautocomplete.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 索引代数：补全结果可能发生变化时加1，相同代数下同一（查询, size, 链）的响应不变，HTTP的ETag由它派生。
+ * <p>
+ * 经 TokenService 的写入、重建索引、变更订阅应用其他实例的写入以及本地引擎全量加载后都会推进代数；
+ * 变更订阅在 settle-lag 之后再推进一次，覆盖写入返回时ES尚未refresh、期间读到的旧结果。
+ * 代数只在进程内有意义，{@link #tag()} 带上进程启动时随机生成的纪元，重启后或另一个实例上的ETag不会与之前发出的重合。
+ */
+@Component
+public class IndexGeneration {
+
+    private final String epoch;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public IndexGeneration() {
+        this(Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, Character.MAX_RADIX));
+    }
+
+    IndexGeneration(String epoch) {
+        this.epoch = epoch;
+    }
+
+    public long current() {
+        return generation.get();
+    }
+
+    /**
+     * 结果可能已经变化，之后发出的ETag与之前的都不相同
+     */
+    public long advance() {
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * 纪元加代数，如 "3k9z0d1q7x.42"，用作ETag的一部分
+     */
+    public String tag() {
+        return tag(current());
+    }
+
+    public String tag(long generation) {
+        return epoch + "." + Long.toString(generation, Character.MAX_RADIX);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.esautocomplete.cache;
+
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.engine.TokenText;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 补全/纠错查询的请求合并，位于结果缓存和Elasticsearch之间。
+ * <p>
+ * 热门代币被大量用户同时输入时，缓存尚未写入前的并发未命中会各自发送一次ES查询；
+ * 这里按（操作, 归一化查询, size）合并同时进行的查询，只有一个请求访问ES，结果分发给所有等待者，
+ * 出错时所有等待者收到同一个异常；leader的调用方被取消时例外，等待者改由其中一个重新查询。
+ * <p>
+ * 指标：
+ * <ul>
+ *     <li>autocomplete.coalescing.calls{role}：leader为实际发送的查询，follower为被合并的查询</li>
+ *     <li>autocomplete.coalescing.ratio：被合并的查询占比</li>
+ *     <li>autocomplete.coalescing.timeouts、autocomplete.coalescing.in.flight：等待超时次数和进行中的查询数</li>
+ *     <li>autocomplete.coalescing.abandoned：leader的调用方被取消（如客户端断开）后，等待者重新发起查询的次数</li>
+ * </ul>
+ */
+@Component
+public class QueryCoalescer {
+
+    private final AutocompleteProperties properties;
+
+    private final SingleFlight<QueryKey, Object> flights = new SingleFlight<>();
+
+    public QueryCoalescer(AutocompleteProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        FunctionCounter.builder("autocomplete.coalescing.calls", flights, SingleFlight::leaderCount)
+                .description("实际发送到Elasticsearch的查询")
+                .tag("role", "leader")
+                .register(registry);
+        FunctionCounter.builder("autocomplete.coalescing.calls", flights, SingleFlight::followerCount)
+                .description("合并到进行中相同查询上的查询")
+                .tag("role", "follower")
+                .register(registry);
+        FunctionCounter.builder("autocomplete.coalescing.timeouts", flights, SingleFlight::timeoutCount)
+                .register(registry);
+        FunctionCounter.builder("autocomplete.coalescing.abandoned", flights, SingleFlight::abandonedCount)
+                .description("leader的调用方被取消、等待者重新发起查询的次数")
+                .register(registry);
+        Gauge.builder("autocomplete.coalescing.ratio", flights, SingleFlight::coalescedRatio)
+                .description("被合并的查询占全部查询的比例")
+                .register(registry);
+        Gauge.builder("autocomplete.coalescing.in.flight", flights, SingleFlight::inFlightCount)
+                .register(registry);
+    }
+
+    /**
+     * @param operation 操作名，不同操作的结果类型不同，不会互相合并
+     * @param query 原始查询文本，按 {@link TokenText#normalize(String)} 归一化后作为key
+     */
+    public <V> V execute(String operation, String query, int size, Supplier<V> loader) {
+        return execute(operation, query, size, "", loader);
+    }
+
+    /**
+     * @param scope 查询范围，如按链过滤时的链列表，范围不同的查询不会互相合并
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String operation, String query, int size, String scope, Supplier<V> loader) {
+        AutocompleteProperties.Coalescing settings = properties.getCoalescing();
+        if (!settings.isEnabled()) {
+            return loader.get();
+        }
+        QueryKey key = new QueryKey(operation, TokenText.normalize(query), size, scope);
+        return (V) flights.execute(key, loader::get, settings.getMaxWait());
+    }
+
+    private record QueryKey(String operation, String query, int size, String scope) {
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.esautocomplete.cache;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 合并同一个key上同时进行的调用：第一个到达的调用者（leader）执行loader，
+ * 执行期间到达的调用者（follower）不再执行，等待并共享leader的结果或异常。
+ * <p>
+ * 只合并时间上重叠的调用，leader完成后key立即移除，下一次调用重新执行，不起缓存作用。
+ * follower最多等待maxWait，超时抛出以 {@link TimeoutException} 为cause的 {@link CompletionException}，
+ * leader本身不受影响，仍把结果交给其他未超时的follower。
+ * <p>
+ * leader因调用方被取消而失败时（如虚拟线程模式下客户端断开、执行查询的线程被中断），这个异常只属于它自己：
+ * 调用从key上移除，正在等待的follower在剩余的等待时间内重新竞争leader，不会因为一个用户放弃了按键而一起失败。
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+
+    private final LongAdder followers = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder abandoned = new LongAdder();
+
+    public V execute(K key, Supplier<V> loader, Duration maxWait) {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        boolean joined = false;
+        while (true) {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                return lead(key, created, loader);
+            }
+            if (!joined) {
+                followers.increment();
+                joined = true;
+            }
+            try {
+                return await(existing, maxWait, deadline - System.nanoTime());
+            } catch (LeaderAbandonedException e) {
+                // leader被取消，重新竞争
+            }
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> created, Supplier<V> loader) {
+        leaders.increment();
+        try {
+            V value = loader.get();
+            inFlight.remove(key, created);
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            // 先移除再通知，被唤醒的follower重新竞争时不会再看到这次调用
+            inFlight.remove(key, created);
+            if (isCancellation(e)) {
+                abandoned.increment();
+                created.completeExceptionally(LeaderAbandonedException.INSTANCE);
+            } else {
+                created.completeExceptionally(e);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isCancellation(Throwable e) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private V await(CompletableFuture<V> future, Duration maxWait, long remainingNanos) {
+        try {
+            return future.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new CompletionException("等待进行中的相同查询超过 " + maxWait.toMillis() + "ms", e);
+        } catch (ExecutionException e) {
+            // leader的异常原样抛给每个follower
+            Throwable cause = e.getCause();
+            if (cause == LeaderAbandonedException.INSTANCE) {
+                throw LeaderAbandonedException.INSTANCE;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 执行了loader的调用次数
+     */
+    public long leaderCount() {
+        return leaders.sum();
+    }
+
+    /**
+     * 合并到进行中调用上的次数
+     */
+    public long followerCount() {
+        return followers.sum();
+    }
+
+    /**
+     * follower等待超时的次数
+     */
+    public long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * leader被取消、follower重新竞争的次数
+     */
+    public long abandonedCount() {
+        return abandoned.sum();
+    }
+
+    /**
+     * 当前正在执行的调用数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 被合并的调用占全部调用的比例
+     */
+    public double coalescedRatio() {
+        long coalesced = followerCount();
+        long total = leaderCount() + coalesced;
+        return total == 0 ? 0 : (double) coalesced / total;
+    }
+
+    /**
+     * leader被取消时交给follower的信号，不带堆栈，不会抛出到SingleFlight之外
+     */
+    private static final class LeaderAbandonedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        static final LeaderAbandonedException INSTANCE = new LeaderAbandonedException();
+
+        private LeaderAbandonedException() {
+            super("leader已被取消", null, false, false);
+        }
+    }
+}
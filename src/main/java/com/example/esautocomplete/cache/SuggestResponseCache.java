@@ -0,0 +1,242 @@
+package com.example.esautocomplete.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.CacheStatsResponse;
+import com.example.esautocomplete.dto.SuggestResponse;
+import com.example.esautocomplete.engine.TokenText;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 补全接口的HTTP缓存：由 {@link IndexGeneration} 派生的强ETag、Cache-Control，以及序列化好的响应字节。
+ * <p>
+ * 同一代数下（归一化查询, size, 链）的响应对所有用户都相同，ETag在查询之前就能算出，
+ * 条件请求命中时直接返回304，不再访问引擎和ES。
+ * 响应字节缓存保存JSON和超过阈值时的gzip压缩结果，命中时跳过查询、序列化和压缩；
+ * 条目数有上限，Caffeine按访问频率决定准入，只出现一两次的长尾查询不会挤掉热门查询。
+ * 代数推进后旧条目不再命中，由下一次请求覆盖。
+ */
+@Component
+public class SuggestResponseCache {
+
+    private static final String GZIP = "gzip";
+
+    private final AutocompleteProperties properties;
+
+    private final ObjectMapper objectMapper;
+
+    private final IndexGeneration indexGeneration;
+
+    private final Cache<Slot, Encoded> responses;
+
+    /** 旧代数的条目不算命中，因此不用Caffeine自带的命中统计 */
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public SuggestResponseCache(AutocompleteProperties properties, ObjectMapper objectMapper,
+                                IndexGeneration indexGeneration) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.indexGeneration = indexGeneration;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(properties.getHttpCache().getResponseCache().getMaxEntries())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 当前代数下的缓存键；应在查询之前取得，查询期间发生的写入使下一次请求的ETag不同
+     */
+    public Key key(String query, int size, List<String> chains) {
+        String scope = chains == null ? "" : String.join(",", chains).toLowerCase(Locale.ROOT);
+        return new Key(TokenText.normalize(query), size, scope, indexGeneration.current());
+    }
+
+    /**
+     * 未压缩响应的强ETag，gzip响应在引号内加 -gzip 后缀
+     */
+    public String etag(Key key) {
+        int hash = (key.query().hashCode() * 31 + key.size()) * 31 + key.chains().hashCode();
+        return "\"" + indexGeneration.tag(key.generation()) + "-" + Integer.toHexString(hash) + "\"";
+    }
+
+    /**
+     * @return 与key同一代数的响应字节，未命中或关闭时为null
+     */
+    public Encoded lookup(Key key) {
+        if (!responseCacheEnabled()) {
+            return null;
+        }
+        Encoded encoded = responses.asMap().get(key.slot());
+        if (encoded == null || encoded.generation() != key.generation()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return encoded;
+    }
+
+    /**
+     * 序列化响应，达到阈值时同时压缩，并放入响应字节缓存
+     */
+    public Encoded encode(Key key, SuggestResponse response) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("序列化补全响应失败", e);
+        }
+        byte[] gzip = json.length >= properties.getHttpCache().getResponseCache().getCompressMinSize().toBytes()
+                ? gzip(json)
+                : null;
+        Encoded encoded = new Encoded(key.generation(), etag(key), json, gzip, response.getSuggestions().size());
+        // 查询较慢的旧代数响应不覆盖已经写入的新代数响应
+        responses.asMap().merge(key.slot(), encoded,
+                (previous, current) -> current.generation() >= previous.generation() ? current : previous);
+        return encoded;
+    }
+
+    public boolean responseCacheEnabled() {
+        return properties.getHttpCache().getResponseCache().isEnabled();
+    }
+
+    /**
+     * 可缓存响应的Cache-Control：max-age为0时要求每次用ETag重新验证
+     */
+    public CacheControl cacheControl() {
+        AutocompleteProperties.HttpCache settings = properties.getHttpCache();
+        return settings.getMaxAge().isZero()
+                ? CacheControl.noCache()
+                : CacheControl.maxAge(settings.getMaxAge()).cachePublic();
+    }
+
+    public CacheStatsResponse stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        return CacheStatsResponse.builder()
+                .hitCount(hitCount)
+                .missCount(missCount)
+                .hitRate(total == 0 ? 0 : (double) hitCount / total)
+                .missRate(total == 0 ? 0 : (double) missCount / total)
+                .evictionCount(responses.stats().evictionCount())
+                .size(responses.estimatedSize())
+                .build();
+    }
+
+    /**
+     * If-None-Match 是否包含 etag 或其gzip形式；按弱比较，W/ 前缀忽略，* 匹配任意
+     */
+    public static boolean notModified(String ifNoneMatch, String etag) {
+        return validatedEtag(ifNoneMatch, etag, etag) != null;
+    }
+
+    /**
+     * 304响应应回显的ETag：客户端列出的是gzip形式时为gzip形式，列出的是未压缩形式时为 etag，只有 * 时为 current
+     *
+     * @param current 本次会返回的表示对应的ETag
+     * @return 都不匹配时为null
+     */
+    public static String validatedEtag(String ifNoneMatch, String etag, String current) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return null;
+        }
+        String gzipEtag = gzipEtag(etag);
+        String validated = null;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(gzipEtag) || tag.equals(etag)) {
+                return tag;
+            }
+            if (tag.equals("*")) {
+                validated = current;
+            }
+        }
+        return validated;
+    }
+
+    /**
+     * Accept-Encoding 是否接受gzip，q=0 表示拒绝
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            if (!coding.equalsIgnoreCase(GZIP) && !coding.equals("*")) {
+                continue;
+            }
+            boolean rejected = false;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().replace(" ", "");
+                rejected |= param.startsWith("q=") && isZero(param.substring(2));
+            }
+            return !rejected;
+        }
+        return false;
+    }
+
+    public static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-" + GZIP + "\"";
+    }
+
+    private static boolean isZero(String quality) {
+        try {
+            return Double.parseDouble(quality) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 一次补全请求在某一代数下的缓存键
+     */
+    public record Key(String query, int size, String chains, long generation) {
+
+        /** 响应字节缓存按不含代数的请求存放，新代数的响应覆盖旧的 */
+        private Slot slot() {
+            return new Slot(query, size, chains);
+        }
+    }
+
+    private record Slot(String query, int size, String chains) {
+    }
+
+    /**
+     * 序列化好的响应
+     *
+     * @param gzip 压缩后的JSON，小于阈值不压缩时为null
+     * @param results 建议条数，供访问日志和查询日志使用
+     */
+    public record Encoded(long generation, String etag, byte[] json, byte[] gzip, int results) {
+    }
+}
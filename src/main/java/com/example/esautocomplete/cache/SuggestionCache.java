@@ -0,0 +1,307 @@
+package com.example.esautocomplete.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.CacheStatsResponse;
+import com.example.esautocomplete.engine.TokenAddress;
+import com.example.esautocomplete.engine.TokenText;
+import com.example.esautocomplete.model.Token;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * 补全/纠错结果缓存，按（归一化查询, size）缓存，按结果条数加权淘汰并带TTL。
+ * <p>
+ * 补全缓存支持前缀收窄：加载方根据ES返回的原始命中/选项数判断该前缀的全部匹配是否都已经在结果里
+ * （"完整"结果，见 {@link SuggestionResult}），此时更长的前缀只需在这份结果上本地过滤即可得到答案，例如缓存了完整的 "bi"，
+ * 后续的 "bit"、"bitc" 都不再访问Elasticsearch。
+ * 纠错结果不满足这种单调性，只做精确命中。
+ * 合约地址前缀（如 0x5149）返回的是地址匹配的Token名称，不能按名称收窄，也只做精确命中，写入时按地址失效。
+ */
+@Component
+public class SuggestionCache {
+
+    private final AutocompleteProperties properties;
+
+    private final Cache<CacheKey, List<String>> suggestions;
+
+    /** 完整结果，只按归一化前缀索引，任意size都可以直接使用 */
+    private final Cache<String, List<String>> completeSuggestions;
+
+    private final Cache<CacheKey, List<String>> corrections;
+
+    private final LongAdder narrowedCount = new LongAdder();
+
+    public SuggestionCache(AutocompleteProperties properties) {
+        this.properties = properties;
+        AutocompleteProperties.CacheSettings settings = properties.getCache();
+        this.suggestions = newCache(settings);
+        this.completeSuggestions = newCache(settings);
+        this.corrections = newCache(settings);
+    }
+
+    private static <K> Cache<K, List<String>> newCache(AutocompleteProperties.CacheSettings settings) {
+        return Caffeine.newBuilder()
+                .maximumWeight(settings.getMaxWeight())
+                .weigher((K key, List<String> value) -> value.size() + 1)
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取补全建议，依次尝试精确命中、完整结果命中、更短前缀的完整结果收窄，都未命中时调用loader
+     */
+    public SuggestionResult getSuggestions(String prefix, int size, Supplier<SuggestionResult> loader) {
+        if (!properties.getCache().isEnabled()) {
+            return loader.get();
+        }
+
+        SuggestionResult cached = lookupSuggestions(prefix, size);
+        if (cached != null) {
+            return cached;
+        }
+        SuggestionResult loaded = loader.get();
+        putSuggestions(prefix, size, loaded);
+        return loaded;
+    }
+
+    /**
+     * 只查缓存不加载，供异步调用方在发起查询前使用
+     *
+     * @return 缓存的结果，未命中或缓存关闭时为null
+     */
+    public SuggestionResult lookupSuggestions(String prefix, int size) {
+        if (!properties.getCache().isEnabled()) {
+            return null;
+        }
+
+        String normalized = TokenText.normalize(prefix);
+        List<String> cached = suggestions.getIfPresent(new CacheKey(normalized, size));
+        if (cached != null) {
+            return SuggestionResult.partial(cached);
+        }
+
+        List<String> complete = completeSuggestions.getIfPresent(normalized);
+        if (complete != null) {
+            return limit(complete, size);
+        }
+
+        if (narrowingEnabled() && !TokenAddress.isAddressPrefix(normalized)) {
+            List<String> narrowed = narrow(normalized);
+            if (narrowed != null) {
+                narrowedCount.increment();
+                completeSuggestions.put(normalized, narrowed);
+                return limit(narrowed, size);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 缓存查询到的补全结果，加载方确认完整的结果作为完整结果保存
+     */
+    public void putSuggestions(String prefix, int size, SuggestionResult loaded) {
+        if (!properties.getCache().isEnabled()) {
+            return;
+        }
+        String normalized = TokenText.normalize(prefix);
+        if (loaded.complete() && !TokenAddress.isAddressPrefix(normalized)) {
+            completeSuggestions.put(normalized, List.copyOf(loaded.suggestions()));
+        } else {
+            suggestions.put(new CacheKey(normalized, size), List.copyOf(loaded.suggestions()));
+        }
+    }
+
+    /**
+     * 获取纠错建议，只做精确命中
+     */
+    public List<String> getCorrections(String text, int size, Supplier<List<String>> loader) {
+        if (!properties.getCache().isEnabled()) {
+            return loader.get();
+        }
+        return corrections.get(new CacheKey(TokenText.normalize(text), size), key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * @return 缓存的纠错结果，未命中或缓存关闭时为null
+     */
+    public List<String> lookupCorrections(String text, int size) {
+        if (!properties.getCache().isEnabled()) {
+            return null;
+        }
+        return corrections.getIfPresent(new CacheKey(TokenText.normalize(text), size));
+    }
+
+    public void putCorrections(String text, int size, List<String> loaded) {
+        if (properties.getCache().isEnabled()) {
+            corrections.put(new CacheKey(TokenText.normalize(text), size), List.copyOf(loaded));
+        }
+    }
+
+    /**
+     * 写入Token后失效受影响的缓存：补全缓存只失效能被新名称/符号命中的前缀，纠错缓存全部失效。
+     * 一次写入的数量超过阈值时直接清空，避免逐条比对的开销。
+     */
+    public void invalidate(Collection<Token> written) {
+        corrections.invalidateAll();
+        if (written.size() > properties.getCache().getMaxSelectiveInvalidation()) {
+            suggestions.invalidateAll();
+            completeSuggestions.invalidateAll();
+            return;
+        }
+
+        List<String> texts = new ArrayList<>(written.size() * 2);
+        List<String> addresses = new ArrayList<>();
+        for (Token token : written) {
+            if (token.getName() != null) {
+                texts.add(token.getName());
+            }
+            if (token.getSymbol() != null) {
+                texts.add(token.getSymbol());
+            }
+            if (token.getAddress() != null) {
+                addresses.add(token.getAddress().toLowerCase(Locale.ROOT));
+            }
+        }
+        suggestions.asMap().keySet().removeIf(key -> affects(texts, addresses, key.query()));
+        completeSuggestions.asMap().keySet().removeIf(prefix -> affects(texts, addresses, prefix));
+    }
+
+    public void invalidateAll() {
+        suggestions.invalidateAll();
+        completeSuggestions.invalidateAll();
+        corrections.invalidateAll();
+    }
+
+    public CacheStatsResponse suggestionStats() {
+        // 精确命中与完整结果命中都算命中；收窄命中单独统计，不计入未命中
+        CacheStats exact = suggestions.stats();
+        CacheStats complete = completeSuggestions.stats();
+        long narrowed = narrowedCount.sum();
+        long hits = exact.hitCount() + complete.hitCount();
+        long misses = complete.missCount() - narrowed;
+        return toResponse(hits, misses, narrowed, exact.evictionCount() + complete.evictionCount(),
+                suggestions.estimatedSize() + completeSuggestions.estimatedSize());
+    }
+
+    public CacheStatsResponse correctionStats() {
+        CacheStats stats = corrections.stats();
+        return toResponse(stats.hitCount(), stats.missCount(), 0, stats.evictionCount(), corrections.estimatedSize());
+    }
+
+    private static CacheStatsResponse toResponse(long hits, long misses, long narrowed, long evictions, long size) {
+        long total = hits + misses + narrowed;
+        return CacheStatsResponse.builder()
+                .hitCount(hits)
+                .missCount(misses)
+                .narrowedCount(narrowed)
+                .hitRate(total == 0 ? 0 : (double) hits / total)
+                .missRate(total == 0 ? 0 : (double) misses / total)
+                .narrowingRate(total == 0 ? 0 : (double) narrowed / total)
+                .evictionCount(evictions)
+                .size(size)
+                .build();
+    }
+
+    /**
+     * 在调用方持有的完整结果上收窄，如输入流会话里上一次按键的结果
+     *
+     * @param completePrefix complete 对应的查询
+     * @param complete {@link SuggestionResult#complete()} 为true的完整结果
+     * @return prefix 延伸了 completePrefix 时本地过滤得到的结果；不是延伸、任一方是合约地址前缀或当前补全方式不支持收窄时返回null
+     */
+    public List<String> narrow(String completePrefix, List<String> complete, String prefix) {
+        if (!narrowingEnabled()) {
+            return null;
+        }
+        String normalizedComplete = TokenText.normalize(completePrefix);
+        String normalized = TokenText.normalize(prefix);
+        if (normalizedComplete.isEmpty() || !normalized.startsWith(normalizedComplete)
+                || TokenAddress.isAddressPrefix(normalizedComplete) || TokenAddress.isAddressPrefix(normalized)) {
+            return null;
+        }
+        List<String> narrowed = new ArrayList<>();
+        for (String candidate : complete) {
+            if (matches(candidate, normalized)) {
+                narrowed.add(candidate);
+            }
+        }
+        return narrowed;
+    }
+
+    private boolean narrowingEnabled() {
+        // 模糊补全的结果对前缀不单调，不能用短前缀的结果推导长前缀
+        return properties.getCache().isNarrowing() && !properties.getSuggest().isFuzzy();
+    }
+
+    private List<String> narrow(String normalized) {
+        for (int length = normalized.length() - 1; length > 0; length--) {
+            // 通过asMap读取，不计入命中/未命中统计
+            List<String> shorter = completeSuggestions.asMap().get(normalized.substring(0, length));
+            if (shorter != null) {
+                List<String> narrowed = new ArrayList<>();
+                for (String candidate : shorter) {
+                    if (matches(candidate, normalized)) {
+                        narrowed.add(candidate);
+                    }
+                }
+                return List.copyOf(narrowed);
+            }
+        }
+        return null;
+    }
+
+    private boolean affects(List<String> texts, List<String> addresses, String prefix) {
+        if (TokenAddress.isAddressPrefix(prefix)) {
+            for (String address : addresses) {
+                if (address.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (String text : texts) {
+            if (matches(text, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 与当前补全方式的ES查询完全一致的命中规则，收窄得到的结果与直接查询ES相同：
+     * 通配符模式保留包含查询的文本，Completion只匹配整串前缀，中缀模式还包括多词和中缀命中
+     */
+    private boolean matches(String candidate, String normalized) {
+        switch (properties.getSuggest().getMode()) {
+            case WILDCARD:
+                return TokenText.contains(candidate, normalized);
+            case COMPLETION:
+                return TokenText.startsWith(candidate, normalized);
+            default:
+                return TokenText.matchesInfix(candidate, normalized);
+        }
+    }
+
+    /**
+     * 完整结果截取前size个，截取后仍完整的条件与加载时相同：条数少于size
+     */
+    private static SuggestionResult limit(List<String> values, int size) {
+        return values.size() < size
+                ? new SuggestionResult(values, true)
+                : SuggestionResult.partial(values.subList(0, size));
+    }
+
+    private record CacheKey(String query, int size) {
+    }
+}
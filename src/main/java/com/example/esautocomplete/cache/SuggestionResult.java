@@ -0,0 +1,23 @@
+package com.example.esautocomplete.cache;
+
+import java.util.List;
+
+/**
+ * 一次补全查询的结果及其是否完整。
+ * <p>
+ * 完整指该前缀的全部匹配都已经在结果里：ES返回的命中数或每个completion建议的选项数少于请求的数量，
+ * 且去重后的结果没有被size截断。去重会让条数变少（同名Token出现在多条链上、名称与符号相同），
+ * 因此不能用去重后的条数少于size来判断，只有完整的结果才能用于前缀收窄。
+ *
+ * @param suggestions 去重并截取前size个后的建议
+ * @param complete 结果是否完整
+ */
+public record SuggestionResult(List<String> suggestions, boolean complete) {
+
+    /**
+     * 可能被截断的结果，如降级快照或只知道条数的结果
+     */
+    public static SuggestionResult partial(List<String> suggestions) {
+        return new SuggestionResult(suggestions, false);
+    }
+}
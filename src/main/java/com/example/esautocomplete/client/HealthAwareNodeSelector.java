@@ -0,0 +1,43 @@
+package com.example.esautocomplete.client;
+
+import java.util.Iterator;
+
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.NodeSelector;
+
+/**
+ * 从候选节点中去掉被 {@link NodeHealthTracker} 判定为慢的节点，RestClient在剩余节点间轮询。
+ * 全部节点都慢时保留全部候选，不会让请求因为没有节点可选而失败。
+ */
+public class HealthAwareNodeSelector implements NodeSelector {
+
+    private final NodeHealthTracker tracker;
+
+    public HealthAwareNodeSelector(NodeHealthTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public void select(Iterable<Node> nodes) {
+        boolean anyHealthy = false;
+        for (Node node : nodes) {
+            if (!tracker.isSlow(node.getHost())) {
+                anyHealthy = true;
+                break;
+            }
+        }
+        if (!anyHealthy) {
+            return;
+        }
+        for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext(); ) {
+            if (tracker.isSlow(iterator.next().getHost())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HEALTH_AWARE";
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.esautocomplete.client;
+
+import org.elasticsearch.client.Node;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.sniff.Sniffer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 节点失败（连接失败或返回502/503/504）时计数，启用嗅探时立即重新发现节点
+ */
+@Slf4j
+public class NodeFailureListener extends RestClient.FailureListener {
+
+    private final NodeHealthTracker tracker;
+
+    private volatile Sniffer sniffer;
+
+    public NodeFailureListener(NodeHealthTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    public void setSniffer(Sniffer sniffer) {
+        this.sniffer = sniffer;
+    }
+
+    @Override
+    public void onFailure(Node node) {
+        log.warn("Elasticsearch节点 {} 请求失败，暂时标记为不可用并在其他节点上重试", node.getHost());
+        tracker.recordFailure(node.getHost());
+        Sniffer current = sniffer;
+        if (current != null) {
+            current.sniffOnFailure();
+        }
+    }
+}
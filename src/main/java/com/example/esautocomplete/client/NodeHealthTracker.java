@@ -0,0 +1,163 @@
+package com.example.esautocomplete.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHost;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * 按节点统计请求延迟和失败次数，供 {@link HealthAwareNodeSelector} 绕开慢节点。
+ * <p>
+ * 延迟取指数移动平均，超过 autocomplete.client.slow-node.threshold 的节点在 backoff 时间内不再接收请求；
+ * 到期后重新接收请求，平均值从下一个样本重新开始计算，恢复正常的节点立即回到轮询中。
+ * 连接失败的节点由RestClient自身按指数退避标记为不可用，并在其他节点上重试，这里只计数。
+ * <p>
+ * 同时把客户端的配置值和每个节点的状态注册为指标。
+ */
+public class NodeHealthTracker implements MeterBinder {
+
+    private final AutocompleteProperties.Client settings;
+
+    private final ConcurrentMap<HttpHost, NodeStats> nodes = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry registry;
+
+    public NodeHealthTracker(AutocompleteProperties.Client settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * 记录一次请求从发出到收到响应头的耗时
+     */
+    public void recordLatency(HttpHost host, long elapsedNanos) {
+        AutocompleteProperties.SlowNode slowNode = settings.getSlowNode();
+        stats(host).record(elapsedNanos, slowNode.getAlpha(), slowNode.getThreshold().toNanos(),
+                slowNode.getBackoff().toNanos(), System.nanoTime());
+    }
+
+    public void recordFailure(HttpHost host) {
+        stats(host).failures.incrementAndGet();
+    }
+
+    /**
+     * 节点当前是否因为延迟过高而被绕开
+     */
+    public boolean isSlow(HttpHost host) {
+        NodeStats stats = nodes.get(host);
+        return stats != null && stats.isSlow(System.nanoTime());
+    }
+
+    /**
+     * 节点延迟的指数移动平均（毫秒），没有样本时为-1
+     */
+    public double latencyMillis(HttpHost host) {
+        NodeStats stats = nodes.get(host);
+        return stats == null ? -1 : stats.ewmaNanos / 1_000_000d;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("autocomplete.es.client.nodes", settings, s -> s.getNodes().size())
+                .description("配置的Elasticsearch节点数")
+                .register(registry);
+        Gauge.builder("autocomplete.es.client.connections.max", settings, AutocompleteProperties.Client::getMaxConnections)
+                .tag("scope", "total")
+                .register(registry);
+        Gauge.builder("autocomplete.es.client.connections.max", settings,
+                        AutocompleteProperties.Client::getMaxConnectionsPerNode)
+                .tag("scope", "node")
+                .register(registry);
+        TimeGauge.builder("autocomplete.es.client.timeout", settings, TimeUnit.MILLISECONDS,
+                        s -> s.getConnectTimeout().toMillis())
+                .tag("type", "connect")
+                .register(registry);
+        TimeGauge.builder("autocomplete.es.client.timeout", settings, TimeUnit.MILLISECONDS,
+                        s -> s.getSocketTimeout().toMillis())
+                .tag("type", "socket")
+                .register(registry);
+        TimeGauge.builder("autocomplete.es.client.keep.alive", settings, TimeUnit.MILLISECONDS,
+                        s -> s.getKeepAlive().toMillis())
+                .register(registry);
+        Gauge.builder("autocomplete.es.client.compression", settings, s -> s.isCompression() ? 1 : 0)
+                .register(registry);
+        TimeGauge.builder("autocomplete.es.client.sniffer.interval", settings, TimeUnit.MILLISECONDS,
+                        s -> s.getSniffer().isEnabled() ? s.getSniffer().getInterval().toMillis() : 0)
+                .description("节点发现的间隔，未启用时为0")
+                .register(registry);
+        TimeGauge.builder("autocomplete.es.client.slow.threshold", settings, TimeUnit.MILLISECONDS,
+                        s -> s.getSlowNode().getThreshold().toMillis())
+                .register(registry);
+
+        this.registry = registry;
+        nodes.forEach((host, stats) -> registerNode(registry, host, stats));
+    }
+
+    private NodeStats stats(HttpHost host) {
+        NodeStats stats = nodes.get(host);
+        if (stats != null) {
+            return stats;
+        }
+        NodeStats created = new NodeStats();
+        stats = nodes.putIfAbsent(host, created);
+        if (stats != null) {
+            return stats;
+        }
+        // 嗅探发现的新节点在第一次出现时注册指标
+        MeterRegistry current = registry;
+        if (current != null) {
+            registerNode(current, host, created);
+        }
+        return created;
+    }
+
+    private static void registerNode(MeterRegistry registry, HttpHost host, NodeStats stats) {
+        String node = host.toHostString();
+        TimeGauge.builder("autocomplete.es.node.latency", stats, TimeUnit.NANOSECONDS, s -> Math.max(0, s.ewmaNanos))
+                .description("节点延迟的指数移动平均")
+                .tag("node", node)
+                .register(registry);
+        Gauge.builder("autocomplete.es.node.slow", stats, s -> s.isSlow(System.nanoTime()) ? 1 : 0)
+                .description("节点是否因延迟过高被绕开")
+                .tag("node", node)
+                .register(registry);
+        FunctionCounter.builder("autocomplete.es.node.failures", stats, s -> s.failures.get())
+                .description("节点连接失败或返回502/503/504的次数")
+                .tag("node", node)
+                .register(registry);
+    }
+
+    private static final class NodeStats {
+
+        private volatile double ewmaNanos = -1;
+
+        /** 被绕开的截止时间（System.nanoTime），0表示未被绕开 */
+        private volatile long slowUntil;
+
+        private final AtomicLong failures = new AtomicLong();
+
+        synchronized void record(long elapsedNanos, double alpha, long thresholdNanos, long backoffNanos, long now) {
+            if (ewmaNanos < 0 || (slowUntil != 0 && now - slowUntil >= 0)) {
+                // 第一个样本，或绕开期已过的探测请求：不再受之前的慢样本影响
+                ewmaNanos = elapsedNanos;
+            } else {
+                ewmaNanos = alpha * elapsedNanos + (1 - alpha) * ewmaNanos;
+            }
+            slowUntil = ewmaNanos > thresholdNanos ? now + backoffNanos : 0;
+        }
+
+        boolean isSlow(long now) {
+            long until = slowUntil;
+            return until != 0 && now - until < 0;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.esautocomplete.client;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * 在HTTP客户端层记录每次查询请求（包括RestClient在其他节点上的重试）发往的节点和收到响应头的耗时。
+ * 只记录 _search 和 _msearch：_bulk、refresh、重建索引等请求本来就慢，计入延迟会让正常节点被当作慢节点绕开
+ */
+public class NodeLatencyInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    private static final String START_ATTRIBUTE = NodeLatencyInterceptor.class.getName() + ".start";
+
+    private final NodeHealthTracker tracker;
+
+    public NodeLatencyInterceptor(NodeHealthTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        if (isSearch(request.getRequestLine().getUri())) {
+            context.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        } else {
+            context.removeAttribute(START_ATTRIBUTE);
+        }
+    }
+
+    @Override
+    public void process(HttpResponse response, HttpContext context) {
+        Object start = context.removeAttribute(START_ATTRIBUTE);
+        HttpHost target = HttpClientContext.adapt(context).getTargetHost();
+        if (start instanceof Long startNanos && target != null) {
+            tracker.recordLatency(target, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * 请求路径的最后一段是否为 _search 或 _msearch，如 /token/_search、/_msearch?typed_keys=true
+     */
+    static boolean isSearch(String uri) {
+        int end = uri.indexOf('?');
+        String path = end < 0 ? uri : uri.substring(0, end);
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String endpoint = path.substring(path.lastIndexOf('/') + 1);
+        return endpoint.equals("_search") || endpoint.equals("_msearch");
+    }
+}
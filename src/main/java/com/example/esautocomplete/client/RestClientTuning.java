@@ -0,0 +1,46 @@
+package com.example.esautocomplete.client;
+
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.RestClientBuilder;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+/**
+ * 把 autocomplete.client 的配置应用到RestClient及其底层的异步HTTP客户端，
+ * Spring配置和使用本地替身节点的测试共用同一套设置
+ */
+public final class RestClientTuning {
+
+    private RestClientTuning() {
+    }
+
+    /**
+     * 请求压缩、按节点健康状态选择节点、节点失败回调
+     */
+    public static RestClientBuilder configure(RestClientBuilder builder, AutocompleteProperties.Client settings,
+                                              NodeHealthTracker tracker, NodeFailureListener failureListener) {
+        return builder
+                .setCompressionEnabled(settings.isCompression())
+                .setNodeSelector(new HealthAwareNodeSelector(tracker))
+                .setFailureListener(failureListener);
+    }
+
+    /**
+     * 连接池大小、连接保持时间、TCP keep-alive和按节点的延迟统计
+     */
+    public static HttpAsyncClientBuilder configure(HttpAsyncClientBuilder builder,
+                                                   AutocompleteProperties.Client settings, NodeHealthTracker tracker) {
+        long keepAliveMillis = settings.getKeepAlive().toMillis();
+        NodeLatencyInterceptor latencyInterceptor = new NodeLatencyInterceptor(tracker);
+        return builder
+                .setMaxConnTotal(settings.getMaxConnections())
+                .setMaxConnPerRoute(settings.getMaxConnectionsPerNode())
+                .setKeepAliveStrategy((response, context) -> keepAliveMillis)
+                .setDefaultIOReactorConfig(IOReactorConfig.custom().setSoKeepAlive(true).build())
+                .addInterceptorLast((HttpRequestInterceptor) latencyInterceptor)
+                .addInterceptorFirst((HttpResponseInterceptor) latencyInterceptor);
+    }
+}
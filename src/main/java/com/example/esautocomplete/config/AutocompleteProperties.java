@@ -0,0 +1,653 @@
+package com.example.esautocomplete.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+/**
+ * 自动补全相关配置，对应 application.yml 中的 autocomplete.* 配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "autocomplete")
+public class AutocompleteProperties {
+
+    private Client client = new Client();
+
+    private LocalEngine localEngine = new LocalEngine();
+
+    private ChangeFeed changeFeed = new ChangeFeed();
+
+    private Snapshot snapshot = new Snapshot();
+
+    private Suggest suggest = new Suggest();
+
+    private CacheSettings cache = new CacheSettings();
+
+    private Coalescing coalescing = new Coalescing();
+
+    private Resilience resilience = new Resilience();
+
+    private Correction correction = new Correction();
+
+    private Ingest ingest = new Ingest();
+
+    private Reindex reindex = new Reindex();
+
+    private Execution execution = new Execution();
+
+    private Batch batch = new Batch();
+
+    private Typeahead typeahead = new Typeahead();
+
+    private AccessLogSettings accessLog = new AccessLogSettings();
+
+    private QueryLog queryLog = new QueryLog();
+
+    private Prewarm prewarm = new Prewarm();
+
+    private HttpCache httpCache = new HttpCache();
+
+    /**
+     * 本地引擎不可用时，补全请求在Elasticsearch上使用的查询方式
+     */
+    public enum SuggestMode {
+        /** name/symbol字段上的通配符前缀查询 */
+        WILDCARD,
+        /** nameSuggest/symbolSuggest字段上的Completion Suggester */
+        COMPLETION,
+        /** name/symbol的边缘n-gram和三元组子字段上的词首、多词和中缀匹配，代价在写入时支付 */
+        INFIX
+    }
+
+    /**
+     * 纠错请求使用的引擎
+     */
+    public enum CorrectionEngineType {
+        /** 进程内SymSpell索引，未加载完成时回退到Elasticsearch */
+        LOCAL,
+        /** Elasticsearch上的match + fuzzy查询 */
+        ELASTICSEARCH
+    }
+
+    /**
+     * 补全/纠错接口的执行方式
+     */
+    public enum ExecutionMode {
+        /** 在Tomcat请求线程上同步查询 */
+        BLOCKING,
+        /** 同步查询放到虚拟线程上执行，运行时不支持虚拟线程时使用有界的平台线程池 */
+        VIRTUAL_THREADS,
+        /** 使用响应式Elasticsearch客户端，全程不阻塞线程 */
+        REACTIVE
+    }
+
+    @Data
+    public static class Client {
+        /**
+         * Elasticsearch节点列表（host:port，或带 https:// 前缀），请求在可用节点间轮询，
+         * 连接失败或返回502/503/504时自动在其他节点上重试
+         */
+        private List<String> nodes = new ArrayList<>(List.of("localhost:9200"));
+
+        private Duration connectTimeout = Duration.ofSeconds(1);
+
+        /**
+         * 读取响应的超时时间，同时作为从连接池获取连接的最长等待时间
+         */
+        private Duration socketTimeout = Duration.ofSeconds(30);
+
+        /**
+         * 连接池的总连接数上限
+         */
+        private int maxConnections = 100;
+
+        /**
+         * 每个节点的连接数上限
+         */
+        private int maxConnectionsPerNode = 50;
+
+        /**
+         * 空闲连接的保持时间，超过后不再复用；同时开启TCP keep-alive
+         */
+        private Duration keepAlive = Duration.ofMinutes(1);
+
+        /**
+         * 是否gzip压缩请求体并接受压缩的响应
+         */
+        private boolean compression = true;
+
+        private Sniffer sniffer = new Sniffer();
+
+        private SlowNode slowNode = new SlowNode();
+    }
+
+    @Data
+    public static class Sniffer {
+        /**
+         * 是否定期从集群发现节点，发现的节点替换配置的节点列表
+         */
+        private boolean enabled = false;
+
+        private Duration interval = Duration.ofMinutes(5);
+
+        /**
+         * 节点失败后立即重新发现一次，之后按该间隔再发现一次
+         */
+        private Duration delayAfterFailure = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class SlowNode {
+        /**
+         * 节点上 _search、_msearch 请求延迟的指数移动平均超过该值时视为慢节点，在还有其他可用节点时不再向其路由
+         */
+        private Duration threshold = Duration.ofMillis(500);
+
+        /**
+         * 慢节点被绕开的时间，之后重新接收请求以便探测是否恢复
+         */
+        private Duration backoff = Duration.ofSeconds(30);
+
+        /**
+         * 指数移动平均中新样本的权重，0到1之间
+         */
+        private double alpha = 0.2;
+    }
+
+    @Data
+    public static class LocalEngine {
+        /**
+         * 是否启用进程内前缀引擎，关闭后所有补全请求直接查询Elasticsearch
+         */
+        private boolean enabled = true;
+
+        /**
+         * 从token索引全量重建本地引擎的间隔
+         */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+
+        /**
+         * 从Elasticsearch拉取Token时每批的数量
+         */
+        private int fetchSize = 1000;
+    }
+
+    @Data
+    public static class ChangeFeed {
+        /**
+         * 是否定时拉取Token变更并增量更新本地引擎和缓存；关闭后只依靠定时全量加载
+         */
+        private boolean enabled = true;
+
+        /**
+         * 两次拉取之间的间隔
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * 只拉取这段时间之前写入的变更，需大于索引的refresh间隔加上实例间的时钟偏差
+         */
+        private Duration settleLag = Duration.ofSeconds(2);
+
+        /**
+         * search_after每页读取的文档数
+         */
+        private int pageSize = 1000;
+
+        /**
+         * 一次轮询最多投递的变更数，剩余的留到下一次轮询
+         */
+        private int maxChangesPerPoll = 10000;
+
+        /**
+         * 删除留下的墓碑保留时间，需大于本地引擎的全量刷新间隔
+         */
+        private Duration tombstoneRetention = Duration.ofDays(1);
+
+        private Duration tombstoneCleanupInterval = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * 是否在全量加载后把本地引擎的词典写入磁盘快照，并在启动时先从快照恢复
+         */
+        private boolean enabled = true;
+
+        /**
+         * 快照文件路径，写入时先写同目录的临时文件再原子替换
+         */
+        private String path = "data/token-snapshot.bin";
+    }
+
+    @Data
+    public static class Suggest {
+        private SuggestMode mode = SuggestMode.COMPLETION;
+
+        /**
+         * Completion模式下是否启用模糊补全
+         */
+        private boolean fuzzy = false;
+
+        private String fuzziness = "AUTO";
+
+        private int fuzzyPrefixLength = 1;
+
+        /**
+         * Completion模式下是否跳过文本相同的重复建议
+         */
+        private boolean skipDuplicates = true;
+
+        /**
+         * 按链过滤时第一个链（用户当前所在的链）的上下文加权倍数，其余链为1
+         */
+        private double currentChainBoost = 2.0;
+
+        /**
+         * 一次请求最多指定的链数量
+         */
+        private int maxChains = 10;
+    }
+
+    @Data
+    public static class CacheSettings {
+        private boolean enabled = true;
+
+        /**
+         * 缓存总权重上限，每条缓存的权重为结果条数加一
+         */
+        private long maxWeight = 100_000;
+
+        private Duration ttl = Duration.ofMinutes(1);
+
+        /**
+         * 是否允许用更短前缀的完整结果本地收窄出更长前缀的结果
+         */
+        private boolean narrowing = true;
+
+        /**
+         * 一次写入的Token数超过该值时直接清空补全缓存，不再逐条判断受影响的前缀
+         */
+        private int maxSelectiveInvalidation = 1000;
+    }
+
+    @Data
+    public static class Coalescing {
+        /**
+         * 是否把同时进行的相同查询（模式、归一化查询、size）合并为一次Elasticsearch请求
+         */
+        private boolean enabled = true;
+
+        /**
+         * 跟随者等待进行中查询的最长时间，超时后按超时失败处理，不再单独发起查询
+         */
+        private Duration maxWait = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Resilience {
+        /**
+         * 关闭后ES查询直接在调用线程上执行，不设截止时间、不对冲、不熔断
+         */
+        private boolean enabled = true;
+
+        private Deadlines deadlines = new Deadlines();
+
+        private Hedge hedge = new Hedge();
+
+        private CircuitBreakerSettings circuitBreaker = new CircuitBreakerSettings();
+
+        /**
+         * ES查询失败、超时或熔断时，用本地持有的名称/符号快照回答并标记为degraded；
+         * 开启后即使关闭了本地前缀引擎，也会定时加载快照作为后备
+         */
+        private boolean degradedFallback = true;
+    }
+
+    /**
+     * 各接口ES查询的截止时间，补全请求晚到的结果没有意义
+     */
+    @Data
+    public static class Deadlines {
+        private Duration suggest = Duration.ofMillis(300);
+
+        private Duration correct = Duration.ofMillis(500);
+
+        private Duration suggestOrCorrect = Duration.ofMillis(500);
+
+        private Duration phraseCorrect = Duration.ofSeconds(1);
+
+        private Duration batch = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Hedge {
+        /**
+         * 是否在首个请求超过近期延迟分位数仍未返回时发送一个相同的对冲请求，先返回的结果生效
+         */
+        private boolean enabled = false;
+
+        /**
+         * 对冲延迟取近期成功请求延迟的该分位数
+         */
+        private double percentile = 0.95;
+
+        /**
+         * 对冲延迟的下限，避免在延迟很低时成倍放大请求量
+         */
+        private Duration minDelay = Duration.ofMillis(10);
+
+        /**
+         * 每个接口保留的最近延迟样本数
+         */
+        private int window = 200;
+
+        /**
+         * 样本数不足时不发送对冲请求
+         */
+        private int minSamples = 20;
+    }
+
+    @Data
+    public static class CircuitBreakerSettings {
+        private boolean enabled = true;
+
+        /**
+         * 统计失败率的滑动窗口（最近的调用次数）
+         */
+        private int window = 50;
+
+        /**
+         * 窗口内至少有这么多次调用才计算失败率
+         */
+        private int minimumCalls = 20;
+
+        /**
+         * 失败率（失败、超时）达到该值时熔断
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * 熔断后拒绝请求的时间，到期后放行少量试探请求
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        /**
+         * 半开状态放行的试探请求数，全部成功后恢复，任一失败重新熔断
+         */
+        private int halfOpenCalls = 3;
+    }
+
+    @Data
+    public static class Correction {
+        private CorrectionEngineType engine = CorrectionEngineType.LOCAL;
+
+        /**
+         * 本地纠错允许的最大编辑距离，实际距离还会按输入长度与ES的fuzziness=AUTO规则取较小值
+         */
+        private int maxEditDistance = 2;
+
+        /**
+         * 生成删除变体时只取词条的前N个字符，越大越精确、内存占用越高
+         */
+        private int prefixLength = 7;
+    }
+
+    @Data
+    public static class Ingest {
+        /**
+         * 每个bulk请求最多包含的文档数
+         */
+        private int chunkDocs = 1000;
+
+        /**
+         * 每个bulk请求的估算字节数上限
+         */
+        private DataSize chunkBytes = DataSize.ofMegabytes(5);
+
+        /**
+         * 同时在途的bulk请求数，达到上限时暂停读取数据源（背压）
+         */
+        private int maxInFlight = 4;
+
+        /**
+         * 被ES拒绝（429）的文档或整体失败的bulk请求的最大重试次数
+         */
+        private int maxRetries = 3;
+
+        /**
+         * 首次重试的等待时间，之后每次翻倍
+         */
+        private Duration retryBackoff = Duration.ofMillis(200);
+
+        /**
+         * 报告中最多列出的失败明细条数
+         */
+        private int maxReportedFailures = 100;
+    }
+
+    @Data
+    public static class Reindex {
+        /**
+         * 读取源索引时的并行切片数，为1时不切片
+         */
+        private int slices = 2;
+
+        /**
+         * 每个切片每页读取的文档数
+         */
+        private int pageSize = 1000;
+
+        /**
+         * point-in-time 在两次翻页之间的保活时间
+         */
+        private Duration keepAlive = Duration.ofMinutes(5);
+
+        /**
+         * 别名切换后是否删除旧版本索引，关闭后可通过手动移动别名回滚
+         */
+        private boolean deleteOldIndices = true;
+
+        /**
+         * 启动时发现映射过时（缺少中缀子字段、chain上下文或别名）是否自动重建；重建只在单个实例内互斥，
+         * 滚动部署时应只在一个实例上开启，或保持关闭并调用 POST /api/admin/index/reindex 迁移
+         */
+        private boolean autoMigrate = false;
+    }
+
+    @Data
+    public static class Execution {
+        private ExecutionMode mode = ExecutionMode.BLOCKING;
+
+        /**
+         * 异步请求的超时时间，超时后取消查询并返回504
+         */
+        private Duration timeout = Duration.ofSeconds(5);
+
+        /**
+         * 运行时不支持虚拟线程时，回退的平台线程池大小
+         */
+        private int fallbackThreads = 200;
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * 一次批量请求最多包含的查询数
+         */
+        private int maxItems = 50;
+    }
+
+    @Data
+    public static class Typeahead {
+        /**
+         * 是否开放WebSocket输入流通道，一个连接承载一个输入框的连续按键
+         */
+        private boolean enabled = true;
+
+        private String path = "/ws/typeahead";
+
+        private List<String> allowedOrigins = new ArrayList<>(List.of("*"));
+
+        /**
+         * 单条推送写出的时间上限，超过后关闭连接
+         */
+        private Duration sendTimeLimit = Duration.ofSeconds(5);
+
+        /**
+         * 等待写出的推送缓冲上限，超过时丢弃最早的推送，只保留较新的结果
+         */
+        private DataSize sendBufferSize = DataSize.ofKilobytes(64);
+
+        /**
+         * 消息没有指定size时的结果数量
+         */
+        private int defaultSize = 5;
+
+        /**
+         * size的上限，避免单个连接请求过多结果
+         */
+        private int maxSize = 20;
+    }
+
+    @Data
+    public static class AccessLogSettings {
+        private boolean enabled = true;
+
+        /**
+         * 正常请求的采样比例，0到1之间
+         */
+        private double sampleRate = 0.01;
+
+        /**
+         * 耗时达到该值的请求不受采样限制，总是记录；出错、超时的请求同样总是记录
+         */
+        private Duration slowThreshold = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class QueryLog {
+        /**
+         * 是否统计查询日志：高频前缀、零结果查询和被采纳的纠错
+         */
+        private boolean enabled = true;
+
+        /**
+         * 请求线程与统计线程之间的环形队列容量（向上取整到2的幂），满时丢弃新事件而不阻塞请求
+         */
+        private int bufferSize = 65536;
+
+        /**
+         * 每类统计保留的候选数，报告最多返回这么多条
+         */
+        private int topN = 100;
+
+        /**
+         * Count-Min草图每行的计数器数与行数，决定高估的误差和概率
+         */
+        private int sketchWidth = 2048;
+
+        private int sketchDepth = 4;
+
+        /**
+         * 计数每隔这段时间减半，旧的热门查询逐渐让位于新的
+         */
+        private Duration halfLife = Duration.ofHours(1);
+
+        /**
+         * 超过该长度的查询截断后再计数
+         */
+        private int maxQueryLength = 64;
+    }
+
+    @Data
+    public static class Prewarm {
+        /**
+         * 是否在启动完成、报告就绪之前预热：加载completion的FST，并回放热门前缀和纠错输入
+         */
+        private boolean enabled = true;
+
+        /**
+         * 回放的补全前缀
+         */
+        private List<String> prefixes = new ArrayList<>();
+
+        /**
+         * 回放的纠错输入
+         */
+        private List<String> corrections = new ArrayList<>();
+
+        /**
+         * 额外的预热文件，每行一条：suggest或correct、Tab、查询；没有模式的行按补全处理，#开头为注释。不存在时忽略
+         */
+        private String file = "data/prewarm-queries.txt";
+
+        /**
+         * 关闭时把查询日志中的热门前缀和被纠错的输入写回预热文件，与文件中原有的条目合并
+         */
+        private boolean recordOnShutdown = true;
+
+        /**
+         * 回放和写回的条目上限
+         */
+        private int maxEntries = 500;
+
+        /**
+         * 同时回放的查询数
+         */
+        private int concurrency = 4;
+
+        /**
+         * 预热的时间上限，超过后剩余条目跳过，不再推迟就绪
+         */
+        private Duration timeBudget = Duration.ofSeconds(20);
+
+        /**
+         * 回放时的结果数量，与页面请求的size一致才能命中结果缓存
+         */
+        private int size = 5;
+
+        /**
+         * 是否在两个completion字段上执行补全，让各分片加载FST
+         */
+        private boolean warmIndex = true;
+    }
+
+    @Data
+    public static class HttpCache {
+        /**
+         * 是否给补全响应加上由索引代数派生的强ETag和Cache-Control，并对 If-None-Match 命中的请求返回304
+         */
+        private boolean enabled = true;
+
+        /**
+         * Cache-Control的max-age，浏览器和CDN在这段时间内不再请求；为0时每次都用ETag重新验证
+         */
+        private Duration maxAge = Duration.ofSeconds(5);
+
+        private ResponseCache responseCache = new ResponseCache();
+    }
+
+    @Data
+    public static class ResponseCache {
+        /**
+         * 是否缓存热门查询序列化好的响应字节，命中时跳过查询和序列化
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存的查询数上限，按访问频率准入和淘汰
+         */
+        private long maxEntries = 1000;
+
+        /**
+         * 达到该大小的JSON同时保存gzip压缩结果，客户端接受gzip时直接返回
+         */
+        private DataSize compressMinSize = DataSize.ofBytes(512);
+    }
+}
\ No newline at end of file
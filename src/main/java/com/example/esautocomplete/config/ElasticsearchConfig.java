@@ -1,18 +1,109 @@
 package com.example.esautocomplete.config;
 
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchClient;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
+import com.example.esautocomplete.client.NodeFailureListener;
+import com.example.esautocomplete.client.NodeHealthTracker;
+import com.example.esautocomplete.client.RestClientTuning;
+import com.example.esautocomplete.metrics.InstrumentedTransport;
+import com.example.esautocomplete.metrics.SearchMetrics;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+
 @Configuration
 @EnableElasticsearchRepositories(basePackages = "com.example.esautocomplete.repository")
 public class ElasticsearchConfig extends ElasticsearchConfiguration {
 
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    /**
+     * 节点列表、超时、连接池、压缩和节点选择都来自 autocomplete.client，不再写死在代码中
+     */
     @Override
     public ClientConfiguration clientConfiguration() {
+        AutocompleteProperties.Client settings = properties.getClient();
+        NodeHealthTracker tracker = nodeHealthTracker();
+        NodeFailureListener failureListener = nodeFailureListener();
         return ClientConfiguration.builder()
-                .connectedTo("localhost:9200")
+                .connectedTo(settings.getNodes().toArray(new String[0]))
+                .withConnectTimeout(settings.getConnectTimeout())
+                .withSocketTimeout(settings.getSocketTimeout())
+                .withClientConfigurer(ElasticsearchClients.ElasticsearchHttpClientConfigurationCallback.from(
+                        builder -> RestClientTuning.configure(builder, settings, tracker)))
+                .withClientConfigurer(ElasticsearchClients.ElasticsearchRestClientConfigurationCallback.from(
+                        builder -> RestClientTuning.configure(builder, settings, tracker, failureListener)))
+                .build();
+    }
+
+    /**
+     * 按节点统计延迟和失败，同时把客户端配置注册为指标
+     */
+    @Bean
+    public NodeHealthTracker nodeHealthTracker() {
+        return new NodeHealthTracker(properties.getClient());
+    }
+
+    @Bean
+    public NodeFailureListener nodeFailureListener() {
+        return new NodeFailureListener(nodeHealthTracker());
+    }
+
+    /**
+     * 定期通过 _nodes/http 发现集群中的节点并替换RestClient的节点列表，节点失败时立即重新发现
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "autocomplete.client.sniffer", name = "enabled", havingValue = "true")
+    public Sniffer elasticsearchSniffer(RestClient restClient) {
+        AutocompleteProperties.Sniffer settings = properties.getClient().getSniffer();
+        Sniffer sniffer = Sniffer.builder(restClient)
+                .setNodesSniffer(new ElasticsearchNodesSniffer(restClient,
+                        properties.getClient().getSocketTimeout().toMillis(), ElasticsearchNodesSniffer.Scheme.HTTP))
+                .setSniffIntervalMillis(Math.toIntExact(settings.getInterval().toMillis()))
+                .setSniffAfterFailureDelayMillis(Math.toIntExact(settings.getDelayAfterFailure().toMillis()))
                 .build();
+        nodeFailureListener().setSniffer(sniffer);
+        return sniffer;
+    }
+
+    /**
+     * 同步客户端、响应式客户端和ElasticsearchTemplate共用的transport，统一统计每个请求的耗时和took
+     */
+    @Override
+    public ElasticsearchTransport elasticsearchTransport(RestClient restClient, JsonpMapper jsonpMapper) {
+        return new InstrumentedTransport(super.elasticsearchTransport(restClient, jsonpMapper), searchMetrics);
+    }
+
+    /**
+     * 响应式客户端与同步客户端共用同一个transport（底层RestClient的异步IO），
+     * 取消订阅时会中止进行中的HTTP请求
+     */
+    @Bean
+    public ReactiveElasticsearchClient reactiveElasticsearchClient(ElasticsearchTransport transport) {
+        return new ReactiveElasticsearchClient(transport);
+    }
+
+    @Bean(name = {"reactiveElasticsearchOperations", "reactiveElasticsearchTemplate"})
+    public ReactiveElasticsearchOperations reactiveElasticsearchOperations(ReactiveElasticsearchClient client,
+                                                                           ElasticsearchConverter elasticsearchConverter) {
+        return new ReactiveElasticsearchTemplate(client, elasticsearchConverter);
     }
 } 
\ No newline at end of file
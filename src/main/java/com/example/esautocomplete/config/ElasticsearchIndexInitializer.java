@@ -1,19 +1,13 @@
 package com.example.esautocomplete.config;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.index.PutTemplateRequest;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StreamUtils;
 
-import com.example.esautocomplete.model.Token;
+import com.example.esautocomplete.engine.LocalEngineRefresher;
+import com.example.esautocomplete.index.TokenIndexManager;
+import com.example.esautocomplete.prewarm.StartupPrewarmer;
 import com.example.esautocomplete.service.TokenService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -23,49 +17,81 @@ import lombok.extern.slf4j.Slf4j;
 public class ElasticsearchIndexInitializer {
 
     @Autowired
-    private ElasticsearchOperations elasticsearchOperations;
+    private TokenIndexManager tokenIndexManager;
     
     @Autowired
     private TokenService tokenService;
     
-//    @EventListener(ApplicationReadyEvent.class)
+    @Autowired
+    private AutocompleteProperties properties;
+    
+    @Autowired
+    private LocalEngineRefresher localEngineRefresher;
+    
+    @Autowired
+    private StartupPrewarmer startupPrewarmer;
+    
+    @EventListener(ApplicationReadyEvent.class)
     public void initIndices() {
+        // 先从磁盘快照恢复本地引擎，不必等ES检查和全量加载完成就能提供补全
+        localEngineRefresher.restoreSnapshot();
+
         try {
             log.info("正在检查并初始化Elasticsearch索引...");
 
-            // 删除索引
-             elasticsearchOperations.indexOps(Token.class).delete();
-
-            // 检查索引是否存在
-            boolean indexExists = elasticsearchOperations.indexOps(Token.class).exists();
-
-            if (!indexExists) {
-                log.info("索引不存在，开始创建token索引...");
-                createTokenIndex();
-
+            // 别名和索引都不存在时创建第一个版本化索引
+            if (tokenIndexManager.createIfAbsent()) {
                 // 初始化示例数据
                 log.info("开始初始化样本数据...");
                 tokenService.initSampleData();
 
                 log.info("token索引创建完成");
+            } else if (!tokenIndexManager.isAliased()) {
+                // 直接访问索引名仍然可用，迁移前读写照常进行
+                migrate("token是直接创建的索引，需要重建迁移到版本化索引和别名");
             } else {
-                log.info("token索引已存在，执行数据重新索引以确保大小写不敏感匹配生效");
-                tokenService.reindexAllTokens();
+                boolean infixFields = tokenIndexManager.detectInfixFields();
+                boolean chainContexts = tokenIndexManager.detectChainContexts();
+                boolean infixOutdated = !infixFields
+                        && properties.getSuggest().getMode() == AutocompleteProperties.SuggestMode.INFIX;
+                boolean migrated = false;
+                if (infixOutdated) {
+                    migrated = migrate("token索引缺少中缀补全子字段，迁移完成前中缀查询回退到通配符查询");
+                } else if (!chainContexts) {
+                    // completion字段不能原地加上下文
+                    migrated = migrate("token索引的completion字段缺少chain上下文，迁移完成前按链过滤的补全回退到通配符查询");
+                }
+                if (!migrated && !tokenIndexManager.detectAddressFields()) {
+                    // 新增的address字段可以原地加到映射上，不需要重建，多个实例同时执行也没有影响
+                    log.info("token索引缺少合约地址字段，原地更新映射");
+                    tokenIndexManager.putAddressFields();
+                } else if (!infixOutdated && chainContexts) {
+                    log.info("token别名已存在，跳过初始化；需要应用新映射时调用重新索引");
+                }
             }
 
         } catch (Exception e) {
             log.error("初始化Elasticsearch索引时发生错误", e);
         }
+
+        // ApplicationReadyEvent的监听器执行完之后才发布ACCEPTING_TRAFFIC，预热期间就绪探针仍报告未就绪
+        startupPrewarmer.prewarm();
     }
-    
-    private void createTokenIndex() throws IOException {
-        try {
-            // 使用Spring Data Elasticsearch提供的方法创建索引
-            elasticsearchOperations.indexOps(Token.class).createWithMapping();
-            log.info("索引创建成功，使用了@Document和@Field注解配置");
-        } catch (Exception e) {
-            log.error("创建索引时发生错误", e);
-            throw e;
+
+    /**
+     * 需要重建才能应用的映射变化。重建只在单个进程内互斥，滚动部署时每个实例都重建会同时竞争别名切换，
+     * 并删除其他实例仍在读取的旧索引，启动也会一直阻塞到重建结束，因此默认只记录日志，
+     * 由运维调用重新索引接口，或只在一个实例上开启 autocomplete.reindex.auto-migrate
+     *
+     * @return 是否已在启动时完成重建
+     */
+    private boolean migrate(String reason) {
+        if (!properties.getReindex().isAutoMigrate()) {
+            log.warn("{}；未开启 autocomplete.reindex.auto-migrate，请调用 POST /api/admin/index/reindex 迁移", reason);
+            return false;
         }
+        log.info("{}，开始重建迁移到新映射", reason);
+        tokenService.reindexAllTokens();
+        return true;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.example.esautocomplete.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * virtual-threads 执行模式下运行同步查询的调度器
+ */
+@Slf4j
+@Configuration
+public class RequestExecutionConfig {
+
+    private static final String THREAD_NAME = "token-request";
+
+    /**
+     * 运行在 JDK 21+ 上时每个请求一个虚拟线程；项目以 JDK 17 编译，因此通过反射创建，
+     * 运行时不支持虚拟线程时回退到有界的平台线程池。取消订阅时会中断执行查询的线程。
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler requestScheduler(AutocompleteProperties properties) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) factory.invoke(null);
+            log.info("请求调度器使用虚拟线程");
+            return Schedulers.fromExecutorService(executor, THREAD_NAME);
+        } catch (ReflectiveOperationException e) {
+            int threads = properties.getExecution().getFallbackThreads();
+            if (properties.getExecution().getMode() == AutocompleteProperties.ExecutionMode.VIRTUAL_THREADS) {
+                log.warn("当前JDK不支持虚拟线程，virtual-threads模式回退到{}个平台线程", threads);
+            }
+            return Schedulers.newBoundedElastic(threads, Integer.MAX_VALUE, THREAD_NAME, 60, true);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.esautocomplete.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import com.example.esautocomplete.typeahead.TypeaheadWebSocketHandler;
+
+/**
+ * 在 autocomplete.typeahead.path 上注册输入流通道
+ */
+@Configuration
+@EnableWebSocket
+@ConditionalOnProperty(prefix = "autocomplete.typeahead", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TypeaheadWebSocketConfig implements WebSocketConfigurer {
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    @Autowired
+    private TypeaheadWebSocketHandler typeaheadWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        AutocompleteProperties.Typeahead settings = properties.getTypeahead();
+        registry.addHandler(typeaheadWebSocketHandler, settings.getPath())
+                .setAllowedOriginPatterns(settings.getAllowedOrigins().toArray(new String[0]));
+    }
+}
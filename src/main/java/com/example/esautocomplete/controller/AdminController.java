@@ -0,0 +1,122 @@
+package com.example.esautocomplete.controller;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.esautocomplete.cache.SuggestResponseCache;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.dto.CacheStatsResponse;
+import com.example.esautocomplete.dto.IndexStatusResponse;
+import com.example.esautocomplete.dto.PrewarmReport;
+import com.example.esautocomplete.dto.QueryLogReport;
+import com.example.esautocomplete.index.TokenIndexManager;
+import com.example.esautocomplete.prewarm.StartupPrewarmer;
+import com.example.esautocomplete.querylog.QueryLogCollector;
+import com.example.esautocomplete.service.TokenService;
+
+/**
+ * 运维管理接口
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    @Autowired
+    private SuggestionCache suggestionCache;
+
+    @Autowired
+    private SuggestResponseCache responseCache;
+
+    @Autowired
+    private TokenIndexManager tokenIndexManager;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private QueryLogCollector queryLogCollector;
+
+    @Autowired
+    private StartupPrewarmer startupPrewarmer;
+
+    /**
+     * 获取补全/纠错缓存的命中、未命中和前缀收窄统计，以及补全接口响应字节缓存的命中统计
+     *
+     * @return 按缓存名称分组的统计信息
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, CacheStatsResponse>> getCacheStats() {
+        Map<String, CacheStatsResponse> stats = new LinkedHashMap<>();
+        stats.put("suggest", suggestionCache.suggestionStats());
+        stats.put("correct", suggestionCache.correctionStats());
+        stats.put("response", responseCache.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 查询日志统计：最常见的补全前缀、零结果查询和被采纳的纠错，计数按半衰期衰减
+     *
+     * @param limit 每类返回的条数，不超过 query-log.top-n
+     */
+    @GetMapping("/query-log")
+    public ResponseEntity<QueryLogReport> getQueryLog(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return ResponseEntity.ok(queryLogCollector.report(Math.max(0, limit)));
+    }
+
+    /**
+     * 启动预热的报告：预热的分片数，回放成功、失败和因超时跳过的条目数
+     *
+     * @return 尚未预热或未启用时返回204
+     */
+    @GetMapping("/prewarm")
+    public ResponseEntity<PrewarmReport> getPrewarmReport() {
+        PrewarmReport report = startupPrewarmer.lastReport();
+        return report == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(report);
+    }
+
+    /**
+     * 重新执行一次预热，如ES节点重启或索引重建之后
+     */
+    @PostMapping("/prewarm")
+    public ResponseEntity<PrewarmReport> prewarm() {
+        PrewarmReport report = startupPrewarmer.prewarm();
+        return report == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(report);
+    }
+
+    /**
+     * 查看token别名下索引的映射状态，如是否已包含中缀补全所需的子字段
+     */
+    @GetMapping("/index")
+    public ResponseEntity<IndexStatusResponse> getIndexStatus() throws IOException {
+        return ResponseEntity.ok(indexStatus());
+    }
+
+    /**
+     * 按当前映射重建token索引并原子切换别名，用于把旧索引迁移到新映射（如启用中缀补全）
+     *
+     * @return 重建后的索引映射状态
+     */
+    @PostMapping("/index/reindex")
+    public ResponseEntity<IndexStatusResponse> reindex() throws IOException {
+        tokenService.reindexAllTokens();
+        return ResponseEntity.ok(indexStatus());
+    }
+
+    private IndexStatusResponse indexStatus() throws IOException {
+        return IndexStatusResponse.builder()
+                .aliased(tokenIndexManager.isAliased())
+                .infixFields(tokenIndexManager.detectInfixFields())
+                .chainContexts(tokenIndexManager.detectChainContexts())
+                .addressFields(tokenIndexManager.detectAddressFields())
+                .build();
+    }
+}
@@ -1,17 +1,56 @@
 package com.example.esautocomplete.controller;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.example.esautocomplete.cache.SuggestResponseCache;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.BatchItem;
+import com.example.esautocomplete.dto.BatchItemResult;
+import com.example.esautocomplete.dto.BatchRequest;
+import com.example.esautocomplete.dto.BatchResponse;
+import com.example.esautocomplete.dto.CorrectionFeedbackRequest;
+import com.example.esautocomplete.dto.IngestReport;
 import com.example.esautocomplete.dto.SuggestResponse;
+import com.example.esautocomplete.dto.TaggedSuggestResponse;
+import com.example.esautocomplete.dto.WeightUpdate;
+import com.example.esautocomplete.dto.WeightUpdateRequest;
+import com.example.esautocomplete.dto.WeightUpdateResponse;
+import com.example.esautocomplete.ingest.NdjsonTokenIterator;
+import com.example.esautocomplete.metrics.AccessLog;
+import com.example.esautocomplete.metrics.SearchMetrics;
+import com.example.esautocomplete.querylog.QueryLogCollector;
 import com.example.esautocomplete.service.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
 
 @Slf4j
 @RestController
@@ -22,23 +61,89 @@ public class TokenController {
     @Autowired
     private TokenService tokenService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    @Autowired
+    private AccessLog accessLog;
+
+    @Autowired
+    private QueryLogCollector queryLog;
+
+    @Autowired
+    private SuggestResponseCache responseCache;
+
     /**
      * 获取自动补全建议
      * 
      * @param query 查询前缀
      * @param size 建议数量，默认为5
-     * @return 补全建议列表
+     * @param chains 只返回这些链上的Token，如 chain=polygon,ethereum；第一个为用户当前所在的链，排序时加权
+     * @param ifNoneMatch 之前响应的ETag，索引没有变化时返回304
+     * @param acceptEncoding 接受gzip且缓存中有压缩结果时直接返回压缩后的字节
+     * @return 补全建议列表，带ETag和Cache-Control；降级结果不缓存
      */
     @GetMapping("/suggest")
-    public ResponseEntity<SuggestResponse> getSuggestions(
+    public DeferredResult<ResponseEntity<?>> getSuggestions(
             @RequestParam("query") String query,
-            @RequestParam(value = "size", defaultValue = "5") int size) {
-        
-        log.info("接收到自动补全请求: query={}, size={}", query, size);
+            @RequestParam(value = "size", defaultValue = "5") int size,
+            @RequestParam(value = "chain", required = false) List<String> chains,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         
-        return ResponseEntity.ok(SuggestResponse.builder()
-                .suggestions(tokenService.getSuggestions(query, size))
-                .build());
+        long start = System.nanoTime();
+        if (chains != null && chains.size() > properties.getSuggest().getMaxChains()) {
+            accessLog.record(SearchMetrics.SUGGEST, query, size, 0, start, AccessLog.REJECTED);
+            return completed(ResponseEntity.badRequest().build());
+        }
+        if (!properties.getHttpCache().isEnabled()) {
+            return toDeferredResult(SearchMetrics.SUGGEST, query, size, start,
+                    tokenService.getSuggestionsAsync(query, size, chains), ResponseEntity::ok);
+        }
+
+        // 在查询之前取代数，查询期间的写入使下一次请求的ETag不同
+        SuggestResponseCache.Key key = responseCache.key(query, size, chains);
+        String etag = responseCache.etag(key);
+        SuggestResponseCache.Encoded cached = responseCache.lookup(key);
+        boolean gzip = SuggestResponseCache.acceptsGzip(acceptEncoding);
+        // 回显客户端验证的那个变体，响应字节未缓存时也不会把gzip形式的ETag换成未压缩形式
+        String validatedEtag = SuggestResponseCache.validatedEtag(ifNoneMatch, etag,
+                gzip && cached != null && cached.gzip() != null ? SuggestResponseCache.gzipEtag(etag) : etag);
+        if (validatedEtag != null) {
+            // 响应字节未缓存时条数未知，只记访问日志；热门查询通常都在缓存中
+            int results = cached == null ? 0 : cached.results();
+            accessLog.record(SearchMetrics.SUGGEST, query, size, results, start, AccessLog.NOT_MODIFIED);
+            if (cached != null) {
+                queryLog.record(SearchMetrics.SUGGEST, query, results);
+            }
+            return completed(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(validatedEtag)
+                    .cacheControl(responseCache.cacheControl())
+                    .build());
+        }
+        if (cached != null) {
+            accessLog.record(SearchMetrics.SUGGEST, query, size, cached.results(), start,
+                    AccessLog.outcome(cached.results()));
+            queryLog.record(SearchMetrics.SUGGEST, query, cached.results());
+            return completed(encodedEntity(cached, gzip));
+        }
+        return toDeferredResult(SearchMetrics.SUGGEST, query, size, start,
+                tokenService.getSuggestionsAsync(query, size, chains), response -> {
+                    if (response.isDegraded()) {
+                        // 本地快照给出的结果可能不完整，不让浏览器和CDN保存
+                        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(response);
+                    }
+                    if (responseCache.responseCacheEnabled()) {
+                        return encodedEntity(responseCache.encode(key, response), gzip);
+                    }
+                    return ResponseEntity.ok().eTag(etag).cacheControl(responseCache.cacheControl()).body(response);
+                });
     }
 
     /**
@@ -49,15 +154,35 @@ public class TokenController {
      * @return 纠错建议列表
      */
     @GetMapping("/correct")
-    public ResponseEntity<SuggestResponse> getCorrections(
+    public DeferredResult<ResponseEntity<?>> getCorrections(
             @RequestParam("query") String query,
             @RequestParam(value = "size", defaultValue = "5") int size) {
         
-        log.info("接收到纠错请求: query={}, size={}", query, size);
+        long start = System.nanoTime();
+        return toDeferredResult(SearchMetrics.CORRECT, query, size, start,
+                tokenService.getCorrectionsAsync(query, size), ResponseEntity::ok);
+    }
+
+    /**
+     * 获取补全建议，不足size条时在同一响应中补充纠错候选，每条结果标记来源
+     * 
+     * @param query 输入文本
+     * @param size 建议数量，默认为5
+     * @return 补全结果在前、纠错候选在后的建议列表
+     */
+    @GetMapping("/suggest-or-correct")
+    public ResponseEntity<TaggedSuggestResponse> getSuggestionsWithCorrections(
+            @RequestParam("query") String query,
+            @RequestParam(value = "size", defaultValue = "5") int size) {
         
-        return ResponseEntity.ok(SuggestResponse.builder()
-                .suggestions(tokenService.getCorrections(query, size))
-                .build());
+        long start = System.nanoTime();
+        TaggedSuggestResponse response = tokenService.getSuggestionsWithCorrections(query, size);
+        int results = response.getSuggestions().size();
+        accessLog.record(SearchMetrics.SUGGEST_OR_CORRECT, query, size, results, start,
+                AccessLog.outcome(results, response.isDegraded()));
+        queryLog.record(SearchMetrics.SUGGEST_OR_CORRECT, query, results);
+        
+        return ResponseEntity.ok(response);
     }
 
     /**
@@ -72,10 +197,166 @@ public class TokenController {
             @RequestParam("query") String query,
             @RequestParam(value = "size", defaultValue = "5") int size) {
         
-        log.info("接收到短语纠错请求: query={}, size={}", query, size);
+        long start = System.nanoTime();
+        List<String> suggestions = tokenService.getPhraseCorrections(query, size);
+        accessLog.record(SearchMetrics.PHRASE_CORRECT, query, size, suggestions.size(), start,
+                AccessLog.outcome(suggestions.size()));
+        queryLog.record(SearchMetrics.PHRASE_CORRECT, query, suggestions.size());
         
         return ResponseEntity.ok(SuggestResponse.builder()
-                .suggestions(tokenService.getPhraseCorrections(query, size))
+                .suggestions(suggestions)
                 .build());
     }
+
+    /**
+     * 批量获取补全/纠错建议，如交易对的两个币种、同一文本的补全和纠错
+     * 
+     * @param request 查询列表，每项包含 mode（suggest/correct）、query 和 size
+     * @return 与请求顺序一致的结果，单项失败时只有该项带错误信息
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResponse> batch(@RequestBody BatchRequest request) {
+        long start = System.nanoTime();
+        List<BatchItem> items = request.getItems() == null ? Collections.emptyList() : request.getItems();
+
+        if (items.size() > properties.getBatch().getMaxItems()) {
+            accessLog.record(SearchMetrics.BATCH, items.size(), 0, 0, start, AccessLog.REJECTED);
+            return ResponseEntity.badRequest().build();
+        }
+        List<BatchItemResult> results = tokenService.batch(items);
+        accessLog.record(SearchMetrics.BATCH, items.size(), 0, results.size(), start, AccessLog.OK);
+        for (BatchItemResult result : results) {
+            if (result.getError() == null && result.getSuggestions() != null) {
+                String operation = BatchItem.MODE_CORRECT.equals(result.getMode())
+                        ? SearchMetrics.CORRECT
+                        : SearchMetrics.SUGGEST;
+                queryLog.record(operation, result.getQuery(), result.getSuggestions().size());
+            }
+        }
+        return ResponseEntity.ok(BatchResponse.builder()
+                .results(results)
+                .build());
+    }
+
+    /**
+     * 记录用户采纳了某个纠错结果，用于统计最常见的拼写错误，如 {"query":"etherum","correction":"Ethereum"}
+     * 
+     * @param request 原始查询和被采纳的纠错结果
+     * @return 202，统计异步进行
+     */
+    @PostMapping("/corrections/accepted")
+    public ResponseEntity<Void> acceptCorrection(@RequestBody CorrectionFeedbackRequest request) {
+        if (request.getQuery() == null || request.getQuery().isBlank()
+                || request.getCorrection() == null || request.getCorrection().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        queryLog.recordAcceptedCorrection(request.getQuery(), request.getCorrection());
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * 以NDJSON流式批量导入Token，每行一个JSON对象，如 {"name":"Bitcoin","symbol":"BTC"}
+     * 
+     * @param request 请求体为 application/x-ndjson
+     * @return 导入报告，包含成功/失败数量、失败明细和吞吐量
+     */
+    @PostMapping(value = "/ingest", consumes = {"application/x-ndjson", "application/json"})
+    public ResponseEntity<IngestReport> ingestTokens(HttpServletRequest request) throws IOException {
+        log.info("接收到批量导入请求: contentLength={}", request.getContentLengthLong());
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        NdjsonTokenIterator tokens = new NdjsonTokenIterator(reader, objectMapper,
+                properties.getIngest().getMaxReportedFailures());
+        IngestReport report = tokenService.ingestTokens(tokens);
+
+        // 合并解析失败的行
+        report.setTotal(report.getTotal() + tokens.getParseFailureCount());
+        report.setFailed(report.getFailed() + tokens.getParseFailureCount());
+        report.getFailures().addAll(tokens.getParseFailures());
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * 批量更新Token的热度权重，无需全量重建索引，如 {"updates":[{"id":"...","weight":1200}]}
+     * 
+     * @param request 更新列表
+     * @return 更新结果，包含成功/失败数量和失败明细
+     */
+    @PostMapping("/weights")
+    public ResponseEntity<WeightUpdateResponse> updateWeights(@RequestBody WeightUpdateRequest request) {
+        List<WeightUpdate> updates = request.getUpdates() == null ? Collections.emptyList() : request.getUpdates();
+        return ResponseEntity.ok(tokenService.updateWeights(updates));
+    }
+
+    /**
+     * 删除Token
+     * 
+     * @param id Token的ID
+     * @return 删除成功返回204，Token不存在返回404
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteToken(@PathVariable("id") String id) {
+        return tokenService.deleteToken(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * 序列化好的补全响应；客户端接受gzip且有压缩结果时返回压缩后的字节，ETag带 -gzip 后缀
+     */
+    private ResponseEntity<?> encodedEntity(SuggestResponseCache.Encoded encoded, boolean gzip) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(responseCache.cacheControl());
+        if (encoded.gzip() == null) {
+            return builder.eTag(encoded.etag()).body(encoded.json());
+        }
+        builder.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        return gzip
+                ? builder.eTag(SuggestResponseCache.gzipEtag(encoded.etag()))
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .body(encoded.gzip())
+                : builder.eTag(encoded.etag()).body(encoded.json());
+    }
+
+    private static DeferredResult<ResponseEntity<?>> completed(ResponseEntity<?> entity) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        result.setResult(entity);
+        return result;
+    }
+
+    /**
+     * 订阅查询结果并写入异步响应。超时、客户端断开（异步请求出错）或响应完成时都会取消订阅，
+     * 被放弃的按键不再继续占用ES：响应式模式下中止进行中的HTTP请求，虚拟线程模式下中断执行查询的线程
+     *
+     * @param toEntity 把查询结果转为响应，如附加缓存相关的响应头
+     */
+    private DeferredResult<ResponseEntity<?>> toDeferredResult(String operation, String query, int size, long start,
+                                                               Mono<SuggestResponse> suggestions,
+                                                               Function<SuggestResponse, ResponseEntity<?>> toEntity) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(properties.getExecution().getTimeout().toMillis());
+        Disposable subscription = suggestions.subscribe(
+                response -> {
+                    int results = response.getSuggestions().size();
+                    accessLog.record(operation, query, size, results, start,
+                            AccessLog.outcome(results, response.isDegraded()));
+                    queryLog.record(operation, query, results);
+                    result.setResult(toEntity.apply(response));
+                },
+                error -> {
+                    searchMetrics.failed(operation, error);
+                    accessLog.record(operation, query, size, 0, start, AccessLog.ERROR);
+                    result.setErrorResult(error);
+                });
+        result.onTimeout(() -> {
+            subscription.dispose();
+            searchMetrics.timedOut(operation);
+            accessLog.record(operation, query, size, 0, start, AccessLog.TIMEOUT);
+            result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(SuggestResponse.builder().suggestions(Collections.emptyList()).build()));
+        });
+        result.onError(error -> subscription.dispose());
+        result.onCompletion(subscription::dispose);
+        return result;
+    }
 } 
\ No newline at end of file
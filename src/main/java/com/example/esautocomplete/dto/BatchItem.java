@@ -0,0 +1,21 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItem {
+    public static final String MODE_SUGGEST = "suggest";
+    public static final String MODE_CORRECT = "correct";
+
+    /** suggest 或 correct */
+    private String mode;
+    private String query;
+    /** 结果数量，默认为5 */
+    private Integer size;
+}
@@ -0,0 +1,28 @@
+package com.example.esautocomplete.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+    public static final String SOURCE_LOCAL = "local";
+    public static final String SOURCE_CACHE = "cache";
+    public static final String SOURCE_ELASTICSEARCH = "elasticsearch";
+    /** ES不可用时由本地快照给出的降级结果 */
+    public static final String SOURCE_DEGRADED = "degraded";
+
+    private String mode;
+    private String query;
+    private List<String> suggestions;
+    /** 结果来源：local、cache、elasticsearch 或 degraded，失败时为null */
+    private String source;
+    /** 该项失败的原因，成功时为null */
+    private String error;
+}
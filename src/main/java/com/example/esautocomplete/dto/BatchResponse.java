@@ -0,0 +1,17 @@
+package com.example.esautocomplete.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResponse {
+    /** 与请求中的items一一对应 */
+    private List<BatchItemResult> results;
+}
@@ -0,0 +1,21 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+    private long hitCount;
+    private long missCount;
+    private long narrowedCount;
+    private double hitRate;
+    private double missRate;
+    private double narrowingRate;
+    private long evictionCount;
+    private long size;
+} 
\ No newline at end of file
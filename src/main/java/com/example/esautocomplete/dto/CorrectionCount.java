@@ -0,0 +1,19 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CorrectionCount {
+    /** 用户输入的原始查询（归一化后） */
+    private String query;
+    /** 用户点击采纳的纠错结果 */
+    private String correction;
+    /** 估计的次数，随半衰期衰减 */
+    private long count;
+}
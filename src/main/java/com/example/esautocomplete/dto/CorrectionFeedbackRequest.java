@@ -0,0 +1,17 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CorrectionFeedbackRequest {
+    /** 触发纠错的原始查询 */
+    private String query;
+    /** 用户采纳的纠错结果 */
+    private String correction;
+}
@@ -0,0 +1,21 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexStatusResponse {
+    /** token是否是指向版本化索引的别名 */
+    private boolean aliased;
+    /** 别名下的索引是否包含中缀补全所需的子字段 */
+    private boolean infixFields;
+    /** 别名下的索引的completion字段是否带有chain上下文 */
+    private boolean chainContexts;
+    /** 别名下的索引是否包含合约地址字段及其前缀子字段 */
+    private boolean addressFields;
+}
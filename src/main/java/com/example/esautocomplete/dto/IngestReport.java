@@ -0,0 +1,35 @@
+package com.example.esautocomplete.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestReport {
+    private long total;
+    private long indexed;
+    private long failed;
+    private long retried;
+    private long chunks;
+    private long elapsedMillis;
+    private double docsPerSecond;
+    @Builder.Default
+    private List<ItemFailure> failures = new ArrayList<>();
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemFailure {
+        private String id;
+        private Integer status;
+        private String reason;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.example.esautocomplete.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrewarmReport {
+    /** 预热开始的时刻 */
+    private Instant startedAt;
+    /** completion字段是否预热成功 */
+    private boolean indexWarmed;
+    /** 预热成功的分片数 */
+    private int warmedShards;
+    /** 待回放的条目数 */
+    private int entries;
+    /** 回放成功的条目数 */
+    private int warmed;
+    /** 回放时抛出异常的条目数 */
+    private int failed;
+    /** 超过时间上限而跳过的条目数 */
+    private int skipped;
+    /** 预热总耗时 */
+    private long elapsedMillis;
+}
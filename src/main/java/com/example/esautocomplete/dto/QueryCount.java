@@ -0,0 +1,17 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryCount {
+    /** 归一化后的查询文本 */
+    private String query;
+    /** 估计的次数，随半衰期衰减 */
+    private long count;
+}
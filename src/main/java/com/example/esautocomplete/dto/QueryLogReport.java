@@ -0,0 +1,32 @@
+package com.example.esautocomplete.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryLogReport {
+    /** 是否在统计查询日志 */
+    private boolean enabled;
+    /** 开始统计的时刻 */
+    private Instant since;
+    /** 上一次计数减半的时刻 */
+    private Instant lastDecay;
+    /** 进入统计的事件数 */
+    private long recorded;
+    /** 因队列满被丢弃的事件数 */
+    private long dropped;
+    /** 补全请求中最常见的前缀 */
+    private List<QueryCount> topPrefixes;
+    /** 最常见的零结果查询 */
+    private List<QueryCount> zeroResults;
+    /** 最常被采纳的纠错 */
+    private List<CorrectionCount> acceptedCorrections;
+}
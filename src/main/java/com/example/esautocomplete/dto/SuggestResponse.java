@@ -2,6 +2,8 @@ package com.example.esautocomplete.dto;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,4 +15,9 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class SuggestResponse {
     private List<String> suggestions;
+    /** ES不可用时由本地快照给出的结果，可能不完整或不是最新 */
+    private boolean degraded;
+    /** 该前缀的全部匹配都已经在结果里，输入流会话据此在本地收窄更长的输入；不输出到响应 */
+    @JsonIgnore
+    private boolean complete;
 } 
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.esautocomplete.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaggedSuggestResponse {
+    private List<TaggedSuggestion> suggestions;
+    /** ES不可用时由本地快照给出的结果，可能不完整或不是最新 */
+    private boolean degraded;
+}
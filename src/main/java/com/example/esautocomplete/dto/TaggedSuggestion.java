@@ -0,0 +1,19 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaggedSuggestion {
+    public static final String ORIGIN_SUGGEST = "suggest";
+    public static final String ORIGIN_CORRECT = "correct";
+
+    private String text;
+    /** suggest：前缀补全；correct：纠错候选 */
+    private String origin;
+}
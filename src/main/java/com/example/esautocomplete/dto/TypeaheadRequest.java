@@ -0,0 +1,23 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 输入流通道上客户端发送的一次输入，如 {"seq":3,"query":"bit"}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypeaheadRequest {
+    /** 客户端递增的输入序号，小于等于已收到序号的输入视为乱序丢弃；不传时由服务端按到达顺序编号 */
+    private Long seq;
+    /** suggest 或 correct，默认为 suggest */
+    private String mode;
+    private String query;
+    /** 结果数量，默认为 autocomplete.typeahead.default-size */
+    private Integer size;
+}
@@ -0,0 +1,29 @@
+package com.example.esautocomplete.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 输入流通道推送的结果，只推送每个连接上最新一次输入的结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypeaheadResponse {
+    /** 对应输入的序号 */
+    private long seq;
+    private String mode;
+    private String query;
+    private List<String> suggestions;
+    /** ES不可用时由本地快照给出的结果，可能不完整或不是最新 */
+    private boolean degraded;
+    /** 由同一连接上一次输入的完整结果本地收窄得到，没有访问Elasticsearch */
+    private boolean narrowed;
+    /** 查询失败时的错误信息，此时suggestions为空 */
+    private String error;
+}
@@ -0,0 +1,17 @@
+package com.example.esautocomplete.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeightUpdate {
+    /** Token的ID */
+    private String id;
+    /** 新的热度权重，不能为负 */
+    private Integer weight;
+}
@@ -0,0 +1,18 @@
+package com.example.esautocomplete.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeightUpdateRequest {
+    @Builder.Default
+    private List<WeightUpdate> updates = new ArrayList<>();
+}
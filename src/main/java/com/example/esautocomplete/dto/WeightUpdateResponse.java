@@ -0,0 +1,22 @@
+package com.example.esautocomplete.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WeightUpdateResponse {
+    private long requested;
+    private long updated;
+    private long failed;
+    private long elapsedMillis;
+    @Builder.Default
+    private List<IngestReport.ItemFailure> failures = new ArrayList<>();
+}
@@ -0,0 +1,263 @@
+package com.example.esautocomplete.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 不可变的合约地址二进制基数树（crit-bit / PATRICIA），按任意长度的地址前缀取权重最高的Token。
+ * <p>
+ * 地址解码为20字节后排序去重，连续存放在一个 byte[] 里。n 个不同地址只有 n - 1 个内部节点，
+ * 每个节点记录两棵子树开始不同的那一位（crit bit）、左右孩子、子树最大权重和子树最左的地址，全部是 int 数组；
+ * 孩子为负数时表示叶子，即 ~地址下标。排序后相邻两个地址的分叉位构成一棵笛卡尔树，用一个栈线性建成。
+ * <p>
+ * 查询把前缀的十六进制位解码为半字节，从根沿分叉位小于前缀位数的节点往下走，最多160步；
+ * 停下的子树中任取一个地址与前缀比较，相同则整棵子树都是命中，否则没有命中，因此任意长度的前缀都只需一次下降。
+ * 取前 k 个与 {@link PrefixTrie} 一样做最佳优先搜索，只展开与结果有关的节点。
+ * 同一地址上的多个Token（如不同链上同一地址的合约）按权重从高到低相邻返回。
+ * <p>
+ * 排序使用构建时的权重，原地更新的权重要等下一次重建才影响地址查询的顺序。
+ */
+final class AddressIndex {
+
+    private static final long NODE = 0;
+    private static final long LEAF = 1;
+
+    private static final int BYTES = TokenAddress.BYTES;
+
+    private static final AddressIndex EMPTY = build(TokenDictionary.empty());
+
+    private final TokenDictionary dictionary;
+
+    /** 排序去重后的地址，每个20字节 */
+    private final byte[] keys;
+
+    /** 地址 i 上的Token为 leafTokens[leafOffsets[i], leafOffsets[i + 1])，按权重从高到低 */
+    private final int[] leafOffsets;
+    private final int[] leafTokens;
+    private final int[] leafWeight;
+
+    /** 内部节点的分叉位，0为最高位 */
+    private final int[] crit;
+    private final int[] left;
+    private final int[] right;
+    private final int[] nodeMaxWeight;
+    private final int[] nodeLo;
+
+    /** 根节点；只有一个地址时为叶子 ~0 */
+    private final int root;
+
+    private AddressIndex(TokenDictionary dictionary, byte[] keys, int[] leafOffsets, int[] leafTokens,
+                         int[] leafWeight, int[] crit, int[] left, int[] right, int[] nodeMaxWeight, int[] nodeLo,
+                         int root) {
+        this.dictionary = dictionary;
+        this.keys = keys;
+        this.leafOffsets = leafOffsets;
+        this.leafTokens = leafTokens;
+        this.leafWeight = leafWeight;
+        this.crit = crit;
+        this.left = left;
+        this.right = right;
+        this.nodeMaxWeight = nodeMaxWeight;
+        this.nodeLo = nodeLo;
+        this.root = root;
+    }
+
+    static AddressIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * 收集词典中全部完整的EVM地址建树；其他格式的地址不进入索引
+     */
+    static AddressIndex build(TokenDictionary dictionary) {
+        int n = dictionary.size();
+        byte[] decoded = new byte[n * BYTES];
+        int[] entryToken = new int[n];
+        int count = 0;
+        for (int token = 0; token < n; token++) {
+            if (dictionary.addressKey(token, decoded, count * BYTES)) {
+                entryToken[count++] = token;
+            }
+        }
+
+        // 地址升序，同一地址内权重降序；归并排序稳定，权重相同时保持词典顺序
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        TokenDictionary.sort(order, count, (a, b) -> {
+            int cmp = Arrays.compareUnsigned(decoded, a * BYTES, a * BYTES + BYTES, decoded, b * BYTES, b * BYTES + BYTES);
+            return cmp != 0 ? cmp
+                    : Integer.compare(dictionary.weight(entryToken[b]), dictionary.weight(entryToken[a]));
+        });
+
+        byte[] keys = new byte[count * BYTES];
+        int[] leafOffsets = new int[count + 1];
+        int[] leafTokens = new int[count];
+        int[] leafWeight = new int[count];
+        int leaves = 0;
+        for (int i = 0; i < count; i++) {
+            int entry = order[i];
+            if (i == 0 || !Arrays.equals(decoded, order[i - 1] * BYTES, order[i - 1] * BYTES + BYTES,
+                    decoded, entry * BYTES, entry * BYTES + BYTES)) {
+                System.arraycopy(decoded, entry * BYTES, keys, leaves * BYTES, BYTES);
+                leafOffsets[leaves] = i;
+                // 同一地址内第一个Token的权重最高
+                leafWeight[leaves] = dictionary.weight(entryToken[entry]);
+                leaves++;
+            }
+            leafTokens[i] = entryToken[entry];
+        }
+        leafOffsets[leaves] = count;
+        keys = Arrays.copyOf(keys, leaves * BYTES);
+
+        int internal = Math.max(0, leaves - 1);
+        int[] crit = new int[internal];
+        int[] left = new int[internal];
+        int[] right = new int[internal];
+        int[] stack = new int[internal];
+        int sp = 0;
+        for (int i = 0; i < internal; i++) {
+            crit[i] = firstDifferentBit(keys, i, i + 1);
+            // 分叉位更靠后的节点挂到新节点的左侧，新节点挂到栈顶节点的右侧
+            int last = -1;
+            while (sp > 0 && crit[stack[sp - 1]] > crit[i]) {
+                last = stack[--sp];
+            }
+            left[i] = last >= 0 ? last : ~i;
+            right[i] = ~(i + 1);
+            if (sp > 0) {
+                right[stack[sp - 1]] = i;
+            }
+            stack[sp++] = i;
+        }
+        int root = internal == 0 ? ~0 : stack[0];
+
+        // 先序收集节点后倒序处理，处理到一个节点时它的孩子都已处理过
+        int[] nodeMaxWeight = new int[internal];
+        int[] nodeLo = new int[internal];
+        int[] preorder = new int[internal];
+        int visited = 0;
+        sp = 0;
+        if (internal > 0) {
+            stack[sp++] = root;
+        }
+        while (sp > 0) {
+            int node = stack[--sp];
+            preorder[visited++] = node;
+            if (left[node] >= 0) {
+                stack[sp++] = left[node];
+            }
+            if (right[node] >= 0) {
+                stack[sp++] = right[node];
+            }
+        }
+        for (int i = visited - 1; i >= 0; i--) {
+            int node = preorder[i];
+            int l = left[node];
+            int r = right[node];
+            nodeMaxWeight[node] = Math.max(l >= 0 ? nodeMaxWeight[l] : leafWeight[~l],
+                    r >= 0 ? nodeMaxWeight[r] : leafWeight[~r]);
+            nodeLo[node] = l >= 0 ? nodeLo[l] : ~l;
+        }
+
+        return new AddressIndex(dictionary, keys, Arrays.copyOf(leafOffsets, leaves + 1), leafTokens,
+                Arrays.copyOf(leafWeight, leaves), crit, left, right, nodeMaxWeight, nodeLo, root);
+    }
+
+    /**
+     * 不同地址的数量
+     */
+    int size() {
+        return keys.length / BYTES;
+    }
+
+    /**
+     * 以 query 为前缀的地址上权重最高的前 k 个Token的展示文本（名称，没有名称时为符号），去重
+     *
+     * @param query 0x 加 1 到 40 位十六进制数字，大小写无关
+     */
+    List<String> topK(String query, int k) {
+        if (k <= 0 || keys.length == 0) {
+            return Collections.emptyList();
+        }
+        byte[] prefix = new byte[BYTES];
+        int digits = TokenAddress.decodePrefix(query, prefix);
+        if (digits < 0) {
+            return Collections.emptyList();
+        }
+
+        int bits = digits * 4;
+        int node = root;
+        while (node >= 0 && crit[node] < bits) {
+            node = bit(prefix, crit[node]) == 0 ? left[node] : right[node];
+        }
+        if (!startsWith(node >= 0 ? nodeLo[node] : ~node, prefix, digits)) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>(Math.min(k, 16));
+        CandidateHeap heap = new CandidateHeap();
+        push(heap, node);
+        while (result.size() < k && !heap.isEmpty()) {
+            boolean isLeaf = (heap.peekPriority() & 1) == LEAF;
+            int id = heap.pop();
+            if (!isLeaf) {
+                push(heap, left[id]);
+                push(heap, right[id]);
+                continue;
+            }
+            for (int i = leafOffsets[id]; i < leafOffsets[id + 1] && result.size() < k; i++) {
+                int token = leafTokens[i];
+                String text = dictionary.name(token) != null ? dictionary.name(token) : dictionary.symbol(token);
+                if (text != null && !result.contains(text)) {
+                    result.add(text);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void push(CandidateHeap heap, int child) {
+        if (child >= 0) {
+            heap.push(priority(nodeMaxWeight[child], nodeLo[child], NODE), child);
+        } else {
+            heap.push(priority(leafWeight[~child], ~child, LEAF), ~child);
+        }
+    }
+
+    /**
+     * 堆中的优先级：权重高者优先，其次地址小者优先；最低位区分节点和叶子
+     */
+    private static long priority(int weight, int leaf, long type) {
+        return ((long) weight << 32) | ((long) (Integer.MAX_VALUE - leaf) << 1) | type;
+    }
+
+    /**
+     * 地址 leaf 的前 digits 个十六进制位是否与 prefix 相同
+     */
+    private boolean startsWith(int leaf, byte[] prefix, int digits) {
+        int offset = leaf * BYTES;
+        int whole = digits >>> 1;
+        if (!Arrays.equals(keys, offset, offset + whole, prefix, 0, whole)) {
+            return false;
+        }
+        return (digits & 1) == 0 || ((keys[offset + whole] ^ prefix[whole]) & 0xF0) == 0;
+    }
+
+    private static int firstDifferentBit(byte[] keys, int a, int b) {
+        for (int i = 0; i < BYTES; i++) {
+            int diff = (keys[a * BYTES + i] ^ keys[b * BYTES + i]) & 0xFF;
+            if (diff != 0) {
+                return i * 8 + Integer.numberOfLeadingZeros(diff) - 24;
+            }
+        }
+        return BYTES * 8;
+    }
+
+    private static int bit(byte[] key, int position) {
+        return (key[position >>> 3] >>> (7 - (position & 7))) & 1;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.esautocomplete.engine;
+
+import java.util.Arrays;
+
+/**
+ * 按优先级取最大值的二叉堆，优先级和节点/检索键编号分别存放在两个数组里，不为每个候选分配对象
+ */
+final class CandidateHeap {
+
+    private long[] priorities = new long[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long peekPriority() {
+        return priorities[0];
+    }
+
+    void push(long priority, int id) {
+        if (size == priorities.length) {
+            priorities = Arrays.copyOf(priorities, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] >= priority) {
+                break;
+            }
+            priorities[i] = priorities[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        ids[i] = id;
+    }
+
+    int pop() {
+        int top = ids[0];
+        size--;
+        long priority = priorities[size];
+        int id = ids[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && priorities[child + 1] > priorities[child]) {
+                child++;
+            }
+            if (priorities[child] <= priority) {
+                break;
+            }
+            priorities[i] = priorities[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        priorities[i] = priority;
+        ids[i] = id;
+        return top;
+    }
+}
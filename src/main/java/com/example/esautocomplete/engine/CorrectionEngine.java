@@ -0,0 +1,40 @@
+package com.example.esautocomplete.engine;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.example.esautocomplete.model.Token;
+
+/**
+ * 进程内拼写纠错引擎。
+ * 引擎未加载完成时 {@link #isLoaded()} 返回 false，调用方应回退到Elasticsearch的fuzzy查询。
+ */
+public interface CorrectionEngine {
+
+    /**
+     * 引擎是否已加载可用
+     */
+    boolean isLoaded();
+
+    /**
+     * 获取纠错建议，按编辑距离由近到远排列
+     * @param text 待纠错文本
+     * @param size 结果数量
+     * @return 纠错建议列表
+     */
+    List<String> correct(String text, int size);
+
+    /**
+     * 使用全量Token重建引擎，构建完成后原子替换旧的数据
+     * @param tokens 全量Token
+     */
+    default void rebuild(Collection<Token> tokens) {
+        rebuild(TokenDictionary.of(tokens));
+    }
+
+    /**
+     * 使用全量Token词典重建引擎，构建完成后原子替换旧的数据；引擎直接引用词典中的文本字节，不复制
+     * @param dictionary 全量Token词典，构建完成后除权重外不应再修改
+     */
+    void rebuild(TokenDictionary dictionary);
+}
@@ -0,0 +1,248 @@
+package com.example.esautocomplete.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.cache.IndexGeneration;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.feed.TokenChange;
+import com.example.esautocomplete.feed.TokenChangeFeed;
+import com.example.esautocomplete.model.Token;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 定时从token索引拉取全量名称和符号，重建本地前缀引擎和纠错引擎。
+ * 拉取失败时保留上一份快照继续服务，引擎从未加载成功时查询会回退到Elasticsearch。
+ * 开启 autocomplete.resilience.degraded-fallback 时，即使关闭了本地引擎也会加载快照，供ES不可用时降级回答。
+ * <p>
+ * 两次全量加载之间订阅 {@link TokenChangeFeed} 的增量变更：只改了权重的Token在前缀引擎中原地更新，
+ * 新增、删除或改名时用内存中的全量Token重建引擎，不再访问ES；同时清除受影响的缓存结果。
+ * 内存中的全量Token是一份 {@link TokenDictionary}，前缀引擎和纠错引擎直接引用其中的字节，不各自复制文本。
+ * <p>
+ * 每次全量加载后把词典写入 {@link TokenSnapshot}，重启时先从快照恢复，本地引擎立即可用，
+ * 再由变更订阅和全量加载在后台追赶ES。
+ */
+@Slf4j
+@Component
+public class LocalEngineRefresher {
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Autowired
+    private PrefixEngine prefixEngine;
+
+    @Autowired
+    private CorrectionEngine correctionEngine;
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    @Autowired
+    private TokenChangeFeed changeFeed;
+
+    @Autowired
+    private SuggestionCache suggestionCache;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
+    /** 最近一次全量加载加上之后的增量变更；尚未全量加载成功时为null */
+    private TokenDictionary dictionary;
+
+    @PostConstruct
+    public void subscribe() {
+        changeFeed.subscribe(this::apply);
+    }
+
+    @Scheduled(fixedDelayString = "${autocomplete.local-engine.refresh-interval:PT5M}")
+    public void refresh() {
+        if (!prefixEnabled() && !correctionEnabled()) {
+            return;
+        }
+
+        try {
+            long loadStart = System.currentTimeMillis();
+            // 拉取期间不持有锁，启动时的快照恢复和增量变更不必等待全量扫描
+            TokenDictionary loaded = loadAllTokens();
+            install(loaded, loadStart);
+            writeSnapshot(loaded, loadStart);
+        } catch (Exception e) {
+            log.error("刷新本地引擎时发生错误，已加载的引擎继续使用旧快照，未加载的引擎回退到Elasticsearch查询", e);
+        }
+    }
+
+    /**
+     * 从磁盘快照恢复引擎，之后由变更订阅和定时全量加载追赶；已经全量加载过时不再恢复
+     *
+     * @return 是否已从快照恢复
+     */
+    public synchronized boolean restoreSnapshot() {
+        AutocompleteProperties.Snapshot settings = properties.getSnapshot();
+        if (!settings.isEnabled() || dictionary != null || (!prefixEnabled() && !correctionEnabled())) {
+            return false;
+        }
+        Path path = Path.of(settings.getPath());
+        if (!Files.exists(path)) {
+            log.info("本地引擎快照 {} 不存在，等待从Elasticsearch全量加载", path);
+            return false;
+        }
+
+        try {
+            long start = System.nanoTime();
+            TokenSnapshot snapshot = TokenSnapshot.read(path);
+            TokenDictionary restored = snapshot.dictionary();
+            rebuild(restored);
+            dictionary = restored;
+            indexGeneration.advance();
+
+            long age = System.currentTimeMillis() - snapshot.createdAt();
+            // 墓碑只保留 tombstone-retention，更早的快照重放不到全部删除，交给全量加载纠正
+            if (age < properties.getChangeFeed().getTombstoneRetention().toMillis()) {
+                changeFeed.replaySince(snapshot.createdAt());
+            }
+            log.info("已从快照 {} 恢复本地引擎: Token数={}, 词典约{}KB, 快照生成于{}秒前, 耗时={}ms", path,
+                    restored.size(), restored.memoryBytes() / 1024, age / 1000, (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (IOException e) {
+            log.warn("本地引擎快照 {} 不可用，等待从Elasticsearch全量加载: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void install(TokenDictionary loaded, long loadStart) {
+        rebuild(loaded);
+        dictionary = loaded;
+        indexGeneration.advance();
+        // 加载期间写入的文档可能没有读到，从加载开始前重新投递
+        changeFeed.replaySince(loadStart);
+    }
+
+    private void writeSnapshot(TokenDictionary loaded, long loadStart) {
+        if (!properties.getSnapshot().isEnabled()) {
+            return;
+        }
+        Path path = Path.of(properties.getSnapshot().getPath());
+        try {
+            long start = System.nanoTime();
+            TokenSnapshot.write(path, loaded, loadStart);
+            log.debug("本地引擎快照已写入 {}: Token数={}, 耗时={}ms",
+                    path, loaded.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("写入本地引擎快照 {} 失败，下次全量加载后重试: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 按顺序应用一批增量变更
+     */
+    synchronized void apply(List<TokenChange> changes) {
+        List<Token> affected = new ArrayList<>(changes.size() * 2);
+        for (TokenChange change : changes) {
+            affected.add(change.token());
+        }
+        if (dictionary == null) {
+            // 引擎还没有全量加载，只需清除缓存
+            suggestionCache.invalidate(affected);
+            indexGeneration.advance();
+            return;
+        }
+
+        boolean rebuild = false;
+        List<Token> reweighted = new ArrayList<>();
+        // 本批次内每个ID的最新状态，null表示删除
+        Map<String, Token> pending = new LinkedHashMap<>();
+        for (TokenChange change : changes) {
+            Token previous = pending.containsKey(change.id()) ? pending.get(change.id()) : current(change.id());
+            pending.put(change.id(), change.isDelete() ? null : change.token());
+            if (previous != null) {
+                affected.add(previous);
+            }
+            if (change.isDelete()) {
+                rebuild |= previous != null;
+            } else if (previous == null || !sameTexts(previous, change.token())) {
+                rebuild = true;
+            } else if (!Objects.equals(previous.getWeight(), change.token().getWeight())) {
+                reweighted.add(change.token());
+            }
+        }
+
+        if (rebuild) {
+            dictionary = dictionary.with(pending);
+            rebuild(dictionary);
+        } else {
+            for (Token token : reweighted) {
+                // 前缀引擎未加载时只更新词典
+                dictionary.setWeight(dictionary.indexOf(token.getId()), token.getWeight());
+                prefixEngine.updateWeight(token.getId(), token.getWeight());
+            }
+        }
+        suggestionCache.invalidate(affected);
+        indexGeneration.advance();
+        log.debug("已应用 {} 条Token变更: 重建引擎={}, 原地更新权重={}", changes.size(), rebuild, reweighted.size());
+    }
+
+    private Token current(String id) {
+        int index = dictionary.indexOf(id);
+        return index < 0 ? null : dictionary.token(index);
+    }
+
+    private void rebuild(TokenDictionary tokens) {
+        if (prefixEnabled()) {
+            prefixEngine.rebuild(tokens);
+        }
+        if (correctionEnabled()) {
+            correctionEngine.rebuild(tokens);
+        }
+    }
+
+    private boolean prefixEnabled() {
+        return properties.getLocalEngine().isEnabled() || properties.getResilience().isDegradedFallback();
+    }
+
+    private boolean correctionEnabled() {
+        return properties.getResilience().isDegradedFallback()
+                || properties.getCorrection().getEngine() == AutocompleteProperties.CorrectionEngineType.LOCAL;
+    }
+
+    private static boolean sameTexts(Token a, Token b) {
+        return Objects.equals(a.getName(), b.getName()) && Objects.equals(a.getSymbol(), b.getSymbol())
+                && Objects.equals(a.getAddress(), b.getAddress());
+    }
+
+    /**
+     * 流式拉取全量Token直接写入词典，不在内存中保留整批 {@link Token} 对象
+     */
+    private TokenDictionary loadAllTokens() {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(new Query.Builder().matchAll(m -> m).build())
+                .withSourceFilter(new FetchSourceFilter(new String[]{"id", "name", "symbol", "address", "weight"}, null))
+                .withPageable(PageRequest.of(0, properties.getLocalEngine().getFetchSize()))
+                .build();
+
+        TokenDictionary.Builder builder = TokenDictionary.builder(properties.getLocalEngine().getFetchSize());
+        try (SearchHitsIterator<Token> iterator = elasticsearchOperations.searchForStream(query, Token.class)) {
+            iterator.forEachRemaining(hit -> builder.add(hit.getContent()));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.esautocomplete.engine;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.example.esautocomplete.model.Token;
+
+/**
+ * 进程内前缀补全引擎。
+ * 引擎未加载完成时 {@link #isLoaded()} 返回 false，调用方应回退到Elasticsearch查询。
+ */
+public interface PrefixEngine {
+
+    /**
+     * 引擎是否已加载可用
+     */
+    boolean isLoaded();
+
+    /**
+     * 获取前缀补全建议
+     * @param prefix 用户输入的前缀；0x开头的十六进制串按合约地址前缀查询
+     * @param size 结果数量
+     * @return 补全建议列表
+     */
+    List<String> suggest(String prefix, int size);
+
+    /**
+     * 使用全量Token重建引擎，构建完成后原子替换旧的数据
+     * @param tokens 全量Token
+     */
+    default void rebuild(Collection<Token> tokens) {
+        rebuild(TokenDictionary.of(tokens));
+    }
+
+    /**
+     * 使用全量Token词典重建引擎，构建完成后原子替换旧的数据；引擎直接引用词典中的文本字节，不复制
+     * @param dictionary 全量Token词典，构建完成后除权重外不应再修改
+     */
+    void rebuild(TokenDictionary dictionary);
+
+    /**
+     * 原地更新Token的热度权重，不重建引擎；名称或符号被多个Token共用时，文本权重取这些Token中的最大值
+     * @param id Token ID
+     * @param weight 新的权重
+     * @return Token是否存在于引擎中
+     */
+    boolean updateWeight(String id, Integer weight);
+}
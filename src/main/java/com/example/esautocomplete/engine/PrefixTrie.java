@@ -0,0 +1,555 @@
+package com.example.esautocomplete.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不可变的路径压缩前缀树（radix trie）。
+ * <p>
+ * 所有检索键（名称/符号的小写整串及其词首后缀）排序后存放在一个数组里，
+ * 每个节点只记录它在该数组中覆盖的区间 [lo, hi) 以及边标签的深度范围，
+ * 边标签本身直接从区间内第一个键上读取，不额外存储字符。
+ * 节点只出现在分叉处，因此节点数不超过键数的两倍，全部存放在几个 int 数组里。
+ * <p>
+ * 检索键不是独立的字符串，而是 {@link TokenDictionary} 归一化字节中的起点（词首后缀与整串共用同一段字节），
+ * 按无符号字节排序，深度以字节计；展示文本也只是词典中的文本引用，只在输出结果时解码。
+ * <p>
+ * 查询只需沿前缀走 O(|prefix|) 步定位到节点，节点区间即全部命中，不需要任何网络往返。
+ * <p>
+ * 每个展示文本带一个热度权重，每个节点记录子树内的最大权重。取前 k 个时从命中节点开始做最佳优先搜索：
+ * 堆中同时放节点（优先级为子树最大权重）和检索键（优先级为自身权重），弹出的检索键一定是剩余命中中权重最高的，
+ * 取满 k 个去重结果即停止，只展开与结果有关的少数节点，与命中总数无关。权重相同时按检索键字典序。
+ * <p>
+ * 结构在构建完成后不再变化，可以被多个线程无锁并发访问；只有权重可以通过 {@link #updateWeight} 原地修改，
+ * 修改沿父节点向上更新子树最大权重，并发查询最多看到短暂过时的排序。
+ * 文本的权重是共用它的全部Token中的最大值，被多个Token共用的文本（如多条链上的同一符号）另存一份文本引用列表，
+ * 更新一个Token的权重后按列表重新取最大值，结果与重新构建一致。
+ */
+public final class PrefixTrie {
+
+    private static final PrefixTrie EMPTY = new Builder(TokenDictionary.empty(), new int[0], new int[0])
+            .build(new int[0], new int[0], new int[0], new int[1], new int[0]);
+
+    private static final long NODE = 0;
+    private static final long KEY = 1;
+
+    /** 展示文本和检索键的字节都在词典里 */
+    private final TokenDictionary dictionary;
+    /** 去重后的展示文本在词典中的引用 */
+    private final int[] entries;
+    /** 展示文本的权重，可原地更新 */
+    private final int[] entryWeight;
+    /** 排好序的检索键在词典归一化字节中的起点，终点即所属文本的终点 */
+    private final int[] keyStart;
+    /** 检索键对应的 entries 下标 */
+    private final int[] keyEntry;
+    /** 被多个Token共用的展示文本的 entries 下标，升序；其余文本只有 entries 中的一个引用 */
+    private final int[] sharedEntries;
+    /** 共用文本的全部文本引用（CSR），sharedEntries[i] 的引用在 [sharedOffsets[i], sharedOffsets[i + 1]) */
+    private final int[] sharedOffsets;
+    private final int[] sharedRefs;
+
+    private final int[] nodeLo;
+    private final int[] nodeHi;
+    private final int[] nodeDepthEnd;
+    private final int[] nodeFirstChild;
+    private final int[] nodeChildCount;
+    private final int[] nodeParent;
+    /** 子树（含终止于该节点的检索键）内的最大权重 */
+    private final int[] nodeMaxWeight;
+    private final int nodeCount;
+
+    private PrefixTrie(TokenDictionary dictionary, int[] entries, int[] entryWeight, int[] keyStart, int[] keyEntry,
+                       int[] sharedEntries, int[] sharedOffsets, int[] sharedRefs, int[] nodeLo, int[] nodeHi,
+                       int[] nodeDepthEnd, int[] nodeFirstChild, int[] nodeChildCount, int[] nodeParent,
+                       int[] nodeMaxWeight, int nodeCount) {
+        this.dictionary = dictionary;
+        this.entries = entries;
+        this.entryWeight = entryWeight;
+        this.keyStart = keyStart;
+        this.keyEntry = keyEntry;
+        this.sharedEntries = sharedEntries;
+        this.sharedOffsets = sharedOffsets;
+        this.sharedRefs = sharedRefs;
+        this.nodeLo = nodeLo;
+        this.nodeHi = nodeHi;
+        this.nodeDepthEnd = nodeDepthEnd;
+        this.nodeFirstChild = nodeFirstChild;
+        this.nodeChildCount = nodeChildCount;
+        this.nodeParent = nodeParent;
+        this.nodeMaxWeight = nodeMaxWeight;
+        this.nodeCount = nodeCount;
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            nodeMaxWeight[node] = computeMaxWeight(node);
+        }
+    }
+
+    /**
+     * 由展示文本集合构建前缀树，重复文本只保留一份，权重均为0
+     */
+    public static PrefixTrie build(Collection<String> texts) {
+        Map<String, Integer> weighted = new LinkedHashMap<>();
+        for (String text : texts) {
+            weighted.putIfAbsent(text, 0);
+        }
+        return build(weighted);
+    }
+
+    /**
+     * 由展示文本及其权重构建前缀树
+     *
+     * @param weightedTexts 展示文本到权重（非负）的映射
+     */
+    public static PrefixTrie build(Map<String, Integer> weightedTexts) {
+        TokenDictionary.Builder builder = TokenDictionary.builder(weightedTexts.size());
+        weightedTexts.forEach((text, weight) -> builder.add(null, text, null, weight, null));
+        return build(builder.build());
+    }
+
+    /**
+     * 由词典中全部Token的名称和符号构建前缀树，同一文本出现在多个Token上时取最大权重
+     */
+    public static PrefixTrie build(TokenDictionary dictionary) {
+        int[] textEntry = new int[dictionary.textCount()];
+        int[] entries = dictionary.distinctTexts(textEntry);
+        if (entries.length == 0) {
+            return EMPTY;
+        }
+        int entryCount = entries.length;
+        int[] entryWeight = new int[entryCount];
+        int[] refCount = new int[entryCount];
+        for (int ref = 0; ref < textEntry.length; ref++) {
+            if (textEntry[ref] >= 0) {
+                int weight = Math.max(0, dictionary.weight(TokenDictionary.tokenOf(ref)));
+                entryWeight[textEntry[ref]] = Math.max(entryWeight[textEntry[ref]], weight);
+                refCount[textEntry[ref]]++;
+            }
+        }
+
+        // 共用文本 -> 文本引用的 CSR；refCount 改存共用文本的下标，未共用为-1
+        int sharedCount = 0;
+        int sharedRefCount = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (refCount[entry] > 1) {
+                sharedCount++;
+                sharedRefCount += refCount[entry];
+            }
+        }
+        int[] sharedEntries = new int[sharedCount];
+        int[] sharedOffsets = new int[sharedCount + 1];
+        int[] sharedRefs = new int[sharedRefCount];
+        int shared = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            if (refCount[entry] > 1) {
+                sharedEntries[shared] = entry;
+                sharedOffsets[shared + 1] = sharedOffsets[shared] + refCount[entry];
+                refCount[entry] = shared++;
+            } else {
+                refCount[entry] = -1;
+            }
+        }
+        int[] fill = Arrays.copyOf(sharedOffsets, sharedCount);
+        for (int ref = 0; ref < textEntry.length; ref++) {
+            if (textEntry[ref] >= 0 && refCount[textEntry[ref]] >= 0) {
+                sharedRefs[fill[refCount[textEntry[ref]]]++] = ref;
+            }
+        }
+
+        // 每个文本的整串和每个词首后缀各是一个检索键，先数出总数再填充
+        int[] counter = {0};
+        for (int ref : entries) {
+            counter[0]++;
+            dictionary.forEachWordStart(ref, start -> counter[0]++);
+        }
+        int[] starts = new int[counter[0]];
+        int[] owners = new int[counter[0]];
+        counter[0] = 0;
+        for (int entry = 0; entry < entryCount; entry++) {
+            int owner = entry;
+            starts[counter[0]] = dictionary.foldedStart(entries[entry]);
+            owners[counter[0]++] = owner;
+            dictionary.forEachWordStart(entries[entry], start -> {
+                starts[counter[0]] = start;
+                owners[counter[0]++] = owner;
+            });
+        }
+
+        // 稳定排序，相同的检索键保持文本的先后顺序
+        int[] order = new int[starts.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        TokenDictionary.sort(order, order.length, (a, b) -> dictionary.compareFolded(
+                starts[a], dictionary.foldedEnd(entries[owners[a]]),
+                starts[b], dictionary.foldedEnd(entries[owners[b]])));
+        int[] keyStart = new int[order.length];
+        int[] keyEntry = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keyStart[i] = starts[order[i]];
+            keyEntry[i] = owners[order[i]];
+        }
+        return new Builder(dictionary, entries, keyStart)
+                .build(entryWeight, keyEntry, sharedEntries, sharedOffsets, sharedRefs);
+    }
+
+    /**
+     * 返回被前缀命中的权重最高的 k 个展示文本，权重相同时按检索键字典序
+     *
+     * @param normalizedPrefix 已经归一化的前缀
+     * @param k 结果数量
+     */
+    public List<String> topK(String normalizedPrefix, int k) {
+        if (k <= 0 || normalizedPrefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int node = find(normalizedPrefix.getBytes(StandardCharsets.UTF_8));
+        if (node < 0) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>(Math.min(k, 16));
+        int[] seen = new int[Math.min(k, nodeHi[node] - nodeLo[node])];
+        int seenCount = 0;
+        CandidateHeap heap = new CandidateHeap();
+        heap.push(priority(nodeMaxWeight[node], nodeLo[node], NODE), node);
+        while (seenCount < k && !heap.isEmpty()) {
+            boolean isKey = (heap.peekPriority() & 1) == KEY;
+            int id = heap.pop();
+            if (!isKey) {
+                expand(id, heap);
+                continue;
+            }
+            int entry = keyEntry[id];
+            if (!contains(seen, seenCount, entry)) {
+                seen[seenCount++] = entry;
+                result.add(dictionary.text(entries[entry]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把终止于节点的检索键和全部子节点放入堆
+     */
+    private void expand(int node, CandidateHeap heap) {
+        int terminalEnd = terminalEnd(node);
+        for (int i = nodeLo[node]; i < terminalEnd; i++) {
+            heap.push(priority(entryWeight[keyEntry[i]], i, KEY), i);
+        }
+        int firstChild = nodeFirstChild[node];
+        for (int child = firstChild; child < firstChild + nodeChildCount[node]; child++) {
+            heap.push(priority(nodeMaxWeight[child], nodeLo[child], NODE), child);
+        }
+    }
+
+    /**
+     * 堆中的优先级：权重高者优先，其次检索键下标小者优先；最低位区分节点和检索键
+     */
+    private static long priority(int weight, int keyIndex, long type) {
+        return ((long) weight << 32) | ((long) (Integer.MAX_VALUE - keyIndex) << 1) | type;
+    }
+
+    /**
+     * 原地更新Token的权重：写入词典，名称和符号的权重重新取共用该文本的全部Token中的最大值，
+     * 再向上更新相关节点的子树最大权重
+     *
+     * @param weight 新的权重，null表示未设置，按0排序
+     * @return Token是否存在
+     */
+    public synchronized boolean updateWeight(String id, Integer weight) {
+        int token = dictionary.indexOf(id);
+        if (token < 0) {
+            return false;
+        }
+
+        dictionary.setWeight(token, weight);
+        refreshWeight(TokenDictionary.ref(token, TokenDictionary.NAME));
+        refreshWeight(TokenDictionary.ref(token, TokenDictionary.SYMBOL));
+        return true;
+    }
+
+    private void refreshWeight(int ref) {
+        int end = dictionary.foldedEnd(ref);
+        if (dictionary.foldedStart(ref) == end) {
+            return;
+        }
+        int entry = entryOf(ref);
+        // 未共用的文本只有 entries 中的一个引用
+        int weight = Math.max(0, dictionary.weight(TokenDictionary.tokenOf(entries[entry])));
+        int shared = Arrays.binarySearch(sharedEntries, entry);
+        if (shared >= 0) {
+            for (int i = sharedOffsets[shared]; i < sharedOffsets[shared + 1]; i++) {
+                weight = Math.max(weight, dictionary.weight(TokenDictionary.tokenOf(sharedRefs[i])));
+            }
+        }
+        if (weight == entryWeight[entry]) {
+            return;
+        }
+
+        entryWeight[entry] = weight;
+        int first = entries[entry];
+        updateMaxWeight(leafOf(dictionary.foldedStart(first), end));
+        dictionary.forEachWordStart(first, start -> updateMaxWeight(leafOf(start, end)));
+    }
+
+    private void updateMaxWeight(int leaf) {
+        for (int n = leaf; n >= 0; n = nodeParent[n]) {
+            int max = computeMaxWeight(n);
+            if (max == nodeMaxWeight[n]) {
+                // 子树最大权重未变，祖先节点也不会变
+                break;
+            }
+            nodeMaxWeight[n] = max;
+        }
+    }
+
+    /**
+     * 展示文本的当前权重，文本不存在时为-1
+     */
+    public int weight(String text) {
+        int entry = entryOf(text);
+        return entry < 0 ? -1 : entryWeight[entry];
+    }
+
+    /**
+     * 展示文本的 entries 下标：整串检索键终止于前缀等于自身的节点，在该节点的终止键中逐个比较原文
+     */
+    private int entryOf(String text) {
+        String normalized = TokenText.normalize(text);
+        int node = normalized.isEmpty() ? -1 : find(normalized.getBytes(StandardCharsets.UTF_8));
+        if (node < 0) {
+            return -1;
+        }
+        for (int i = nodeLo[node]; i < terminalEnd(node); i++) {
+            if (dictionary.textEquals(entries[keyEntry[i]], text)) {
+                return keyEntry[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 词典中文本引用的 entries 下标，文本必须在构建时已存在
+     */
+    private int entryOf(int ref) {
+        int node = leafOf(dictionary.foldedStart(ref), dictionary.foldedEnd(ref));
+        for (int i = nodeLo[node]; i < terminalEnd(node); i++) {
+            if (dictionary.textEquals(entries[keyEntry[i]], ref)) {
+                return keyEntry[i];
+            }
+        }
+        throw new IllegalStateException("文本不在前缀树中: " + dictionary.text(ref));
+    }
+
+    /**
+     * 检索键 [start, end) 终止的节点：从根向下走到深度等于键长的节点
+     */
+    private int leafOf(int start, int end) {
+        int length = end - start;
+        int node = 0;
+        while (nodeDepthEnd[node] < length) {
+            node = findChild(node, nodeDepthEnd[node], dictionary.foldedByte(start + nodeDepthEnd[node]));
+        }
+        return node;
+    }
+
+    private int computeMaxWeight(int node) {
+        int max = 0;
+        int terminalEnd = terminalEnd(node);
+        for (int i = nodeLo[node]; i < terminalEnd; i++) {
+            max = Math.max(max, entryWeight[keyEntry[i]]);
+        }
+        int firstChild = nodeFirstChild[node];
+        for (int child = firstChild; child < firstChild + nodeChildCount[node]; child++) {
+            max = Math.max(max, nodeMaxWeight[child]);
+        }
+        return max;
+    }
+
+    /**
+     * 长度恰好等于节点深度的检索键排在区间最前面，它们终止于该节点
+     */
+    private int terminalEnd(int node) {
+        int i = nodeLo[node];
+        while (i < nodeHi[node] && keyLength(i) == nodeDepthEnd[node]) {
+            i++;
+        }
+        return i;
+    }
+
+    private int keyLength(int key) {
+        return dictionary.foldedEnd(entries[keyEntry[key]]) - keyStart[key];
+    }
+
+    private int keyByte(int key, int depth) {
+        return dictionary.foldedByte(keyStart[key] + depth);
+    }
+
+    /**
+     * 去重后的展示文本数量
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    public int keyCount() {
+        return keyStart.length;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    private int find(byte[] prefix) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+        int node = 0;
+        int depth = 0;
+        while (true) {
+            int label = nodeLo[node];
+            int end = Math.min(prefix.length, nodeDepthEnd[node]);
+            for (; depth < end; depth++) {
+                if (keyByte(label, depth) != (prefix[depth] & 0xFF)) {
+                    return -1;
+                }
+            }
+            if (prefix.length <= nodeDepthEnd[node]) {
+                return node;
+            }
+            node = findChild(node, depth, prefix[depth] & 0xFF);
+            if (node < 0) {
+                return -1;
+            }
+        }
+    }
+
+    private int findChild(int node, int depth, int b) {
+        int lo = nodeFirstChild[node];
+        int hi = lo + nodeChildCount[node] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midByte = keyByte(nodeLo[mid], depth);
+            if (midByte < b) {
+                lo = mid + 1;
+            } else if (midByte > b) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按层（BFS）构建节点，保证同一父节点的子节点在数组中连续，便于二分查找
+     */
+    private static final class Builder {
+
+        private final TokenDictionary dictionary;
+        private final int[] entries;
+        private final int[] keyStart;
+        private int[] keyEnd;
+        private int[] lo;
+        private int[] hi;
+        private int[] depthEnd;
+        private int[] firstChild;
+        private int[] childCount;
+        private int[] parent;
+        private int count;
+
+        Builder(TokenDictionary dictionary, int[] entries, int[] keyStart) {
+            this.dictionary = dictionary;
+            this.entries = entries;
+            this.keyStart = keyStart;
+            int capacity = Math.max(16, keyStart.length * 2);
+            this.lo = new int[capacity];
+            this.hi = new int[capacity];
+            this.depthEnd = new int[capacity];
+            this.firstChild = new int[capacity];
+            this.childCount = new int[capacity];
+            this.parent = new int[capacity];
+        }
+
+        PrefixTrie build(int[] entryWeight, int[] keyEntry, int[] sharedEntries, int[] sharedOffsets,
+                         int[] sharedRefs) {
+            // 键长只在构建期间缓存
+            keyEnd = new int[keyStart.length];
+            for (int i = 0; i < keyStart.length; i++) {
+                keyEnd[i] = dictionary.foldedEnd(entries[keyEntry[i]]) - keyStart[i];
+            }
+            if (keyStart.length > 0) {
+                addNode(0, keyStart.length, -1);
+            }
+            for (int node = 0; node < count; node++) {
+                int end = commonPrefixLength(lo[node], hi[node] - 1);
+                depthEnd[node] = end;
+                firstChild[node] = count;
+
+                // 长度恰好等于 end 的键排在区间最前面，它们终止于当前节点
+                int i = lo[node];
+                while (i < hi[node] && keyEnd[i] == end) {
+                    i++;
+                }
+                while (i < hi[node]) {
+                    int b = keyByte(i, end);
+                    int j = i + 1;
+                    while (j < hi[node] && keyByte(j, end) == b) {
+                        j++;
+                    }
+                    addNode(i, j, node);
+                    i = j;
+                }
+                childCount[node] = count - firstChild[node];
+            }
+            return new PrefixTrie(dictionary, entries, entryWeight, keyStart, keyEntry, sharedEntries, sharedOffsets,
+                    sharedRefs, Arrays.copyOf(lo, count),
+                    Arrays.copyOf(hi, count), Arrays.copyOf(depthEnd, count), Arrays.copyOf(firstChild, count),
+                    Arrays.copyOf(childCount, count), Arrays.copyOf(parent, count), new int[count], count);
+        }
+
+        private int keyByte(int key, int depth) {
+            return dictionary.foldedByte(keyStart[key] + depth);
+        }
+
+        private void addNode(int from, int to, int parentNode) {
+            if (count == lo.length) {
+                int capacity = count * 2;
+                lo = Arrays.copyOf(lo, capacity);
+                hi = Arrays.copyOf(hi, capacity);
+                depthEnd = Arrays.copyOf(depthEnd, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+            }
+            parent[count] = parentNode;
+            lo[count] = from;
+            hi[count] = to;
+            count++;
+        }
+
+        private int commonPrefixLength(int a, int b) {
+            int max = Math.min(keyEnd[a], keyEnd[b]);
+            int i = 0;
+            while (i < max && keyByte(a, i) == keyByte(b, i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.example.esautocomplete.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于 {@link SymSpellIndex} 的纠错引擎，与 {@link TriePrefixEngine} 一样通过替换不可变快照完成重建
+ */
+@Slf4j
+@Component
+public class SymSpellCorrectionEngine implements CorrectionEngine {
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    private volatile SymSpellIndex index;
+
+    @Override
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    @Override
+    public List<String> correct(String text, int size) {
+        SymSpellIndex current = index;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        return current.lookup(TokenText.normalize(text), size);
+    }
+
+    @Override
+    public void rebuild(TokenDictionary dictionary) {
+        long start = System.nanoTime();
+        AutocompleteProperties.Correction settings = properties.getCorrection();
+        SymSpellIndex rebuilt = SymSpellIndex.build(dictionary, settings.getMaxEditDistance(),
+                settings.getPrefixLength());
+        this.index = rebuilt;
+
+        log.info("本地纠错引擎重建完成: 词条数={}, 删除变体数={}, 耗时={}ms",
+                rebuilt.termCount(), rebuilt.deleteCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,561 @@
+package com.example.esautocomplete.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 不可变的 SymSpell（对称删除）拼写纠错索引。
+ * <p>
+ * 构建时对词典中每个词条（名称/符号整串及其中的单词）生成编辑距离内的全部"删除变体"，
+ * 建立 删除变体 -> 词条 的倒排；查询时只需对输入同样生成删除变体并查表，
+ * 再用 Damerau-Levenshtein（OSA）距离校验候选，不需要像ES fuzzy查询那样在词典上做项展开。
+ * <p>
+ * 为控制内存，只对词条前 {@code prefixLength} 个字符生成删除变体（SymSpell 的前缀截断），
+ * 每个词条最多产生 1 + p + p(p-1)/2 个删除键（p=7、距离2时为29个）。
+ * <p>
+ * 全部数据都是基本类型数组：词条是 {@link TokenDictionary} 归一化字节中的区间，不复制文本；
+ * 删除变体不保存字符串，只保存64位哈希，排序后与词条下标一起组成 CSR 倒排（每个删除键约 12 字节），
+ * 查询时二分查找。哈希碰撞只会多出几个候选，随后的距离校验会把它们过滤掉。
+ * 词条到展示文本的映射同样是 CSR，整个索引只有十来个数组，GC不需要逐个扫描对象。
+ */
+public final class SymSpellIndex {
+
+    private static final SymSpellIndex EMPTY = new SymSpellIndex(TokenDictionary.empty(), new int[0], new int[0],
+            new int[0], new int[0], new int[1], new int[0], new long[0], new int[1], new int[0], 2, 7);
+
+    /** 64位删除键最多能标记的前缀长度 */
+    private static final int MAX_PREFIX_LENGTH = 64;
+
+    private static final long FNV64_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
+    private final TokenDictionary dictionary;
+    /** 去重后的展示文本在词典中的引用 */
+    private final int[] entries;
+    /** 词条在词典归一化字节中的区间 [termStart, termEnd) */
+    private final int[] termStart;
+    private final int[] termEnd;
+    /** 词条的码点数 */
+    private final int[] termLength;
+    /** 词条 t 对应的展示文本下标为 termEntries[termEntryOffsets[t] .. termEntryOffsets[t + 1]) */
+    private final int[] termEntryOffsets;
+    private final int[] termEntries;
+    /** 升序排列的删除变体哈希，对应词条下标为 deleteTerms[deleteOffsets[i] .. deleteOffsets[i + 1]) */
+    private final long[] deleteHashes;
+    private final int[] deleteOffsets;
+    private final int[] deleteTerms;
+    private final int maxEditDistance;
+    private final int prefixLength;
+
+    private SymSpellIndex(TokenDictionary dictionary, int[] entries, int[] termStart, int[] termEnd,
+                          int[] termLength, int[] termEntryOffsets, int[] termEntries, long[] deleteHashes,
+                          int[] deleteOffsets, int[] deleteTerms, int maxEditDistance, int prefixLength) {
+        this.dictionary = dictionary;
+        this.entries = entries;
+        this.termStart = termStart;
+        this.termEnd = termEnd;
+        this.termLength = termLength;
+        this.termEntryOffsets = termEntryOffsets;
+        this.termEntries = termEntries;
+        this.deleteHashes = deleteHashes;
+        this.deleteOffsets = deleteOffsets;
+        this.deleteTerms = deleteTerms;
+        this.maxEditDistance = maxEditDistance;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * 由展示文本集合构建纠错索引
+     *
+     * @param texts 名称和符号
+     * @param maxEditDistance 最大编辑距离
+     * @param prefixLength 生成删除变体时使用的前缀长度
+     */
+    public static SymSpellIndex build(Collection<String> texts, int maxEditDistance, int prefixLength) {
+        TokenDictionary.Builder builder = TokenDictionary.builder(texts.size());
+        for (String text : texts) {
+            builder.add(null, text, null, null, null);
+        }
+        return build(builder.build(), maxEditDistance, prefixLength);
+    }
+
+    /**
+     * 由词典中全部Token的名称和符号构建纠错索引
+     *
+     * @param maxEditDistance 最大编辑距离
+     * @param prefixLength 生成删除变体时使用的前缀长度，不超过64
+     */
+    public static SymSpellIndex build(TokenDictionary dictionary, int maxEditDistance, int prefixLength) {
+        int[] entries = dictionary.distinctTexts(null);
+        if (entries.length == 0) {
+            return EMPTY;
+        }
+        prefixLength = Math.min(prefixLength, MAX_PREFIX_LENGTH);
+        TermCollector terms = new TermCollector(dictionary, entries.length);
+        for (int entry = 0; entry < entries.length; entry++) {
+            terms.addEntry(entries[entry], entry);
+        }
+        int termCount = terms.count;
+
+        // 词条 -> 展示文本的 CSR，保持每个词条内展示文本的先后顺序
+        int[] termEntryOffsets = new int[termCount + 1];
+        for (int i = 0; i < terms.pairCount; i++) {
+            termEntryOffsets[terms.pairTerm[i] + 1]++;
+        }
+        for (int t = 0; t < termCount; t++) {
+            termEntryOffsets[t + 1] += termEntryOffsets[t];
+        }
+        int[] termEntries = new int[terms.pairCount];
+        int[] fill = Arrays.copyOf(termEntryOffsets, termCount);
+        for (int i = 0; i < terms.pairCount; i++) {
+            termEntries[fill[terms.pairTerm[i]]++] = terms.pairEntry[i];
+        }
+
+        // 删除变体哈希 -> 词条
+        int[] key = new int[prefixLength];
+        long[] variants = new long[variantCount(prefixLength, maxEditDistance)];
+        long[] hashes = new long[termCount * 4];
+        int[] owners = new int[termCount * 4];
+        int pairs = 0;
+        for (int t = 0; t < termCount; t++) {
+            int length = Math.min(dictionary.foldedCodePoints(terms.start[t], terms.end[t], key), prefixLength);
+            int count = variants(key, length, maxEditDistance, variants);
+            if (pairs + count > hashes.length) {
+                int capacity = Math.max(hashes.length * 2, pairs + count);
+                hashes = Arrays.copyOf(hashes, capacity);
+                owners = Arrays.copyOf(owners, capacity);
+            }
+            System.arraycopy(variants, 0, hashes, pairs, count);
+            Arrays.fill(owners, pairs, pairs + count, t);
+            pairs += count;
+        }
+        sortPairs(hashes, owners, 0, pairs - 1);
+
+        int distinct = 0;
+        for (int i = 0; i < pairs; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                distinct++;
+            }
+        }
+        long[] deleteHashes = new long[distinct];
+        int[] deleteOffsets = new int[distinct + 1];
+        int[] deleteTerms = new int[pairs];
+        int d = -1;
+        int n = 0;
+        for (int i = 0; i < pairs; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                deleteHashes[++d] = hashes[i];
+                deleteOffsets[d] = n;
+            } else if (owners[i] == owners[i - 1]) {
+                continue;
+            }
+            deleteTerms[n++] = owners[i];
+        }
+        deleteOffsets[distinct] = n;
+
+        return new SymSpellIndex(dictionary, entries, Arrays.copyOf(terms.start, termCount),
+                Arrays.copyOf(terms.end, termCount), Arrays.copyOf(terms.length, termCount), termEntryOffsets,
+                termEntries, deleteHashes, deleteOffsets, Arrays.copyOf(deleteTerms, n), maxEditDistance,
+                prefixLength);
+    }
+
+    /**
+     * 查询纠错建议，按编辑距离升序、词条覆盖的展示文本数降序排列
+     *
+     * @param normalizedText 已归一化的输入
+     * @param size 结果数量
+     */
+    public List<String> lookup(String normalizedText, int size) {
+        if (size <= 0 || normalizedText.isEmpty() || termStart.length == 0) {
+            return Collections.emptyList();
+        }
+        int[] query = normalizedText.codePoints().toArray();
+        int maxDistance = Math.min(maxEditDistance, autoFuzziness(query.length));
+        int keyLength = Math.min(query.length, prefixLength);
+        long[] variants = new long[variantCount(keyLength, maxDistance)];
+        int variantCount = variants(query, keyLength, maxDistance, variants);
+
+        // 先定位每个删除变体的倒排区间，候选总数决定去重表的大小
+        int[] rangeFrom = new int[variantCount];
+        int[] rangeTo = new int[variantCount];
+        int total = 0;
+        for (int v = 0; v < variantCount; v++) {
+            int i = Arrays.binarySearch(deleteHashes, variants[v]);
+            if (i >= 0) {
+                rangeFrom[v] = deleteOffsets[i];
+                rangeTo[v] = deleteOffsets[i + 1];
+                total += rangeTo[v] - rangeFrom[v];
+            }
+        }
+        if (total == 0) {
+            return Collections.emptyList();
+        }
+
+        int[] visited = new int[TokenDictionary.tableSize(total)];
+        int mask = visited.length - 1;
+        int[] candidates = new int[total];
+        int[] distances = new int[total];
+        int candidateCount = 0;
+        int[] scratch = new int[query.length + maxDistance + 1];
+        for (int v = 0; v < variantCount; v++) {
+            for (int i = rangeFrom[v]; i < rangeTo[v]; i++) {
+                int term = deleteTerms[i];
+                int slot = TokenDictionary.mix(term) & mask;
+                while (visited[slot] != 0 && visited[slot] != term + 1) {
+                    slot = (slot + 1) & mask;
+                }
+                if (visited[slot] != 0) {
+                    continue;
+                }
+                visited[slot] = term + 1;
+                if (Math.abs(termLength[term] - query.length) > maxDistance) {
+                    continue;
+                }
+                int length = dictionary.foldedCodePoints(termStart[term], termEnd[term], scratch);
+                int distance = distance(query, query.length, scratch, length, maxDistance);
+                if (distance <= maxDistance) {
+                    distances[candidateCount] = distance;
+                    candidates[candidateCount++] = term;
+                }
+            }
+        }
+
+        int[] order = new int[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            order[i] = i;
+        }
+        TokenDictionary.sort(order, candidateCount, (a, b) -> {
+            int byDistance = Integer.compare(distances[a], distances[b]);
+            if (byDistance != 0) {
+                return byDistance;
+            }
+            int byEntries = Integer.compare(entryCount(candidates[b]), entryCount(candidates[a]));
+            return byEntries != 0 ? byEntries : Integer.compare(termLength[candidates[a]], termLength[candidates[b]]);
+        });
+
+        List<String> result = new ArrayList<>(Math.min(size, 16));
+        int[] seen = new int[size];
+        for (int i = 0; i < candidateCount; i++) {
+            int term = candidates[order[i]];
+            for (int j = termEntryOffsets[term]; j < termEntryOffsets[term + 1]; j++) {
+                int entry = termEntries[j];
+                if (!contains(seen, result.size(), entry)) {
+                    seen[result.size()] = entry;
+                    result.add(dictionary.text(entries[entry]));
+                    if (result.size() >= size) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private int entryCount(int term) {
+        return termEntryOffsets[term + 1] - termEntryOffsets[term];
+    }
+
+    public int termCount() {
+        return termStart.length;
+    }
+
+    public int deleteCount() {
+        return deleteHashes.length;
+    }
+
+    /**
+     * 与ES的 fuzziness=AUTO 一致：长度 1~2 不允许编辑，3~5 允许 1 次，更长允许 2 次
+     */
+    static int autoFuzziness(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        return length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * 把 key 前 length 个码点删去至多 maxDistance 个后的全部变体的哈希写入 out，去重后返回个数
+     */
+    private static int variants(int[] key, int length, int maxDistance, long[] out) {
+        int count = collectVariants(key, length, 0, maxDistance, 0L, out, 0);
+        Arrays.sort(out, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || out[i] != out[i - 1]) {
+                out[unique++] = out[i];
+            }
+        }
+        return unique;
+    }
+
+    private static int collectVariants(int[] key, int length, int from, int remaining, long deleted, long[] out,
+                                       int count) {
+        out[count++] = variantHash(key, length, deleted);
+        if (remaining == 0) {
+            return count;
+        }
+        for (int i = from; i < length; i++) {
+            count = collectVariants(key, length, i + 1, remaining - 1, deleted | 1L << i, out, count);
+        }
+        return count;
+    }
+
+    /**
+     * 跳过 deleted 中标记的位置后剩余码点的64位哈希（FNV-1a，再做一次 fmix64 打散）
+     */
+    private static long variantHash(int[] key, int length, long deleted) {
+        long hash = FNV64_OFFSET;
+        for (int i = 0; i < length; i++) {
+            if ((deleted & 1L << i) == 0) {
+                hash = (hash ^ key[i]) * FNV64_PRIME;
+            }
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * 长度为 length 的键最多 maxDistance 次删除得到的变体数（含重复）：C(length, 0) + ... + C(length, maxDistance)
+     */
+    private static int variantCount(int length, int maxDistance) {
+        long total = 0;
+        long combinations = 1;
+        for (int k = 0; k <= Math.min(length, maxDistance); k++) {
+            total += combinations;
+            combinations = combinations * (length - k) / (k + 1);
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * 按 (哈希, 词条) 对两个平行数组做快速排序
+     */
+    private static void sortPairs(long[] hashes, int[] owners, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pivotHash = hashes[mid];
+            int pivotOwner = owners[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (comparePair(hashes[i], owners[i], pivotHash, pivotOwner) < 0) {
+                    i++;
+                }
+                while (comparePair(hashes[j], owners[j], pivotHash, pivotOwner) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(hashes, owners, i++, j--);
+                }
+            }
+            // 先递归较短的一侧，栈深度不超过 log n
+            if (j - lo < hi - i) {
+                sortPairs(hashes, owners, lo, j);
+                lo = i;
+            } else {
+                sortPairs(hashes, owners, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && comparePair(hashes[j - 1], owners[j - 1], hashes[j], owners[j]) > 0; j--) {
+                swap(hashes, owners, j - 1, j);
+            }
+        }
+    }
+
+    private static int comparePair(long hash, int owner, long otherHash, int otherOwner) {
+        int byHash = Long.compare(hash, otherHash);
+        return byHash != 0 ? byHash : Integer.compare(owner, otherOwner);
+    }
+
+    private static void swap(long[] hashes, int[] owners, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        int owner = owners[i];
+        owners[i] = owners[j];
+        owners[j] = owner;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 带上界的 OSA（相邻交换算一次编辑）距离，超过上界时提前返回 max + 1
+     */
+    static int distance(String a, String b, int max) {
+        int[] x = a.codePoints().toArray();
+        int[] y = b.codePoints().toArray();
+        return distance(x, x.length, y, y.length, max);
+    }
+
+    private static int distance(int[] a, int n, int[] b, int m, int max) {
+        if (n == m && Arrays.equals(a, 0, n, b, 0, m)) {
+            return 0;
+        }
+        if (Math.abs(n - m) > max) {
+            return max + 1;
+        }
+        int[] prevPrev = new int[m + 1];
+        int[] prev = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+                int value = Math.min(Math.min(prev[j] + 1, current[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a[i - 1] == b[j - 2] && a[i - 2] == b[j - 1]) {
+                    value = Math.min(value, prevPrev[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = prevPrev;
+            prevPrev = prev;
+            prev = current;
+            current = recycled;
+        }
+        return Math.min(prev[m], max + 1);
+    }
+
+    /**
+     * 收集词条：每个展示文本的归一化整串，以及其中长度大于1、与整串不同的单词；
+     * 相同的词条按归一化字节去重，(词条, 展示文本) 对按出现顺序记录
+     */
+    private static final class TermCollector {
+
+        private final TokenDictionary dictionary;
+        private int[] table;
+        private int[] start;
+        private int[] end;
+        private int[] length;
+        /** 每个词条最近一次记录的展示文本，避免同一文本中的重复单词记录两次 */
+        private int[] lastEntry;
+        private int count;
+        private int[] pairTerm;
+        private int[] pairEntry;
+        private int pairCount;
+
+        TermCollector(TokenDictionary dictionary, int expected) {
+            this.dictionary = dictionary;
+            int capacity = Math.max(16, expected * 2);
+            this.table = new int[TokenDictionary.tableSize(capacity)];
+            this.start = new int[capacity];
+            this.end = new int[capacity];
+            this.length = new int[capacity];
+            this.lastEntry = new int[capacity];
+            this.pairTerm = new int[capacity];
+            this.pairEntry = new int[capacity];
+        }
+
+        void addEntry(int ref, int entry) {
+            int from = dictionary.foldedStart(ref);
+            int to = dictionary.foldedEnd(ref);
+            add(from, to, -1, entry);
+            int wordStart = -1;
+            int wordLength = 0;
+            for (int position = from; ; ) {
+                boolean atEnd = position == to;
+                int codePoint = atEnd ? 0 : dictionary.foldedCodePointAt(position);
+                if (!atEnd && Character.isLetterOrDigit(codePoint)) {
+                    if (wordStart < 0) {
+                        wordStart = position;
+                        wordLength = 0;
+                    }
+                    wordLength++;
+                } else {
+                    // 与整串相同的单词不重复记录
+                    if (wordStart >= 0 && wordLength > 1 && (wordStart != from || position != to)) {
+                        add(wordStart, position, wordLength, entry);
+                    }
+                    wordStart = -1;
+                }
+                if (atEnd) {
+                    return;
+                }
+                position += TokenDictionary.utf8Length(codePoint);
+            }
+        }
+
+        /**
+         * @param codePoints 词条的码点数，-1 表示需要计算
+         * @return 词条下标
+         */
+        private int add(int from, int to, int codePoints, int entry) {
+            int mask = table.length - 1;
+            int slot = TokenDictionary.mix(dictionary.foldedHash(from, to)) & mask;
+            while (table[slot] != 0 && !dictionary.foldedEquals(start[table[slot] - 1], end[table[slot] - 1],
+                    from, to)) {
+                slot = (slot + 1) & mask;
+            }
+            int term;
+            if (table[slot] != 0) {
+                term = table[slot] - 1;
+                if (lastEntry[term] == entry) {
+                    return term;
+                }
+            } else {
+                term = newTerm(from, to, codePoints);
+                table[slot] = term + 1;
+                if (count * 2 > table.length) {
+                    rehash();
+                }
+            }
+            lastEntry[term] = entry;
+            if (pairCount == pairTerm.length) {
+                pairTerm = Arrays.copyOf(pairTerm, pairCount * 2);
+                pairEntry = Arrays.copyOf(pairEntry, pairCount * 2);
+            }
+            pairTerm[pairCount] = term;
+            pairEntry[pairCount++] = entry;
+            return term;
+        }
+
+        private int newTerm(int from, int to, int codePoints) {
+            if (count == start.length) {
+                int capacity = count * 2;
+                start = Arrays.copyOf(start, capacity);
+                end = Arrays.copyOf(end, capacity);
+                length = Arrays.copyOf(length, capacity);
+                lastEntry = Arrays.copyOf(lastEntry, capacity);
+            }
+            start[count] = from;
+            end[count] = to;
+            length[count] = codePoints >= 0 ? codePoints : dictionary.foldedCodePoints(from, to, new int[0]);
+            lastEntry[count] = -1;
+            return count++;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int term = 0; term < count; term++) {
+                int slot = TokenDictionary.mix(dictionary.foldedHash(start[term], end[term])) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = term + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.esautocomplete.engine;
+
+import java.util.Locale;
+
+/**
+ * 合约地址的规则：写入时的归一化、查询时识别地址前缀，以及20字节地址的编解码。
+ * <p>
+ * 只处理EVM风格的地址（{@code 0x} 加40位十六进制）；其他链的地址（如区分大小写的Base58）原样保存，不参与地址前缀查询。
+ */
+public final class TokenAddress {
+
+    /** 地址的字节数 */
+    public static final int BYTES = 20;
+
+    /** 地址去掉 0x 后的十六进制位数 */
+    public static final int HEX_DIGITS = BYTES * 2;
+
+    private static final int PREFIX_LENGTH = 2;
+
+    private TokenAddress() {
+    }
+
+    /**
+     * 写入时的归一化：去首尾空白，0x开头的十六进制串转为小写（与大小写混合的校验和写法视为同一地址），
+     * 其他地址保持原样；空白为null
+     */
+    public static String normalize(String address) {
+        if (address == null || address.isBlank()) {
+            return null;
+        }
+        String trimmed = address.trim();
+        return isHex(trimmed, HEX_DIGITS) ? trimmed.toLowerCase(Locale.ROOT) : trimmed;
+    }
+
+    /**
+     * 查询是否是合约地址前缀：0x 后跟 1 到 40 位十六进制数字，忽略首尾空白和大小写
+     */
+    public static boolean isAddressPrefix(String query) {
+        return query != null && isHex(query.trim(), HEX_DIGITS);
+    }
+
+    /**
+     * 把地址前缀的十六进制位按半字节写入 key（高半字节在前），key 至少 {@link #BYTES} 字节
+     *
+     * @return 十六进制位数，不是地址前缀时为-1
+     */
+    static int decodePrefix(String query, byte[] key) {
+        if (!isAddressPrefix(query)) {
+            return -1;
+        }
+        String trimmed = query.trim();
+        int digits = trimmed.length() - PREFIX_LENGTH;
+        for (int i = 0; i < digits; i++) {
+            int nibble = hexValue(trimmed.charAt(PREFIX_LENGTH + i));
+            key[i >>> 1] |= (byte) ((i & 1) == 0 ? nibble << 4 : nibble);
+        }
+        return digits;
+    }
+
+    /**
+     * 把UTF-8字节形式的完整地址（0x 加40位十六进制，不区分大小写）解码为20字节写入 into[offset, offset + 20)
+     *
+     * @return 是否是完整的EVM地址；不是时 into 的内容未定义
+     */
+    static boolean decode(byte[] bytes, int from, int to, byte[] into, int offset) {
+        if (to - from != PREFIX_LENGTH + HEX_DIGITS || bytes[from] != '0'
+                || (bytes[from + 1] != 'x' && bytes[from + 1] != 'X')) {
+            return false;
+        }
+        for (int i = 0; i < BYTES; i++) {
+            int high = hexValue(bytes[from + PREFIX_LENGTH + 2 * i]);
+            int low = hexValue(bytes[from + PREFIX_LENGTH + 2 * i + 1]);
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            into[offset + i] = (byte) (high << 4 | low);
+        }
+        return true;
+    }
+
+    /**
+     * 是否为 0x 加 1 到 maxDigits 位十六进制数字
+     */
+    private static boolean isHex(String text, int maxDigits) {
+        int digits = text.length() - PREFIX_LENGTH;
+        if (digits < 1 || digits > maxDigits || text.charAt(0) != '0'
+                || (text.charAt(1) != 'x' && text.charAt(1) != 'X')) {
+            return false;
+        }
+        for (int i = PREFIX_LENGTH; i < text.length(); i++) {
+            if (hexValue(text.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ASCII十六进制数字的值，其他字符（包括全角等非ASCII数字）为-1
+     */
+    private static int hexValue(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return c >= 'A' && c <= 'F' ? c - 'A' + 10 : -1;
+    }
+}
@@ -0,0 +1,851 @@
+package com.example.esautocomplete.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+
+import com.example.esautocomplete.model.Token;
+
+/**
+ * 紧凑的Token词典，本地前缀引擎、纠错引擎和词典快照共用同一份数据。
+ * <p>
+ * 每个Token的ID、名称、符号和合约地址按UTF-8依次写入几个大的 byte[]，只用 int 偏移定位，
+ * 名称和符号另外保存一份归一化（{@link TokenText#normalize}）后的字节，大小写无关的比较和前缀判断直接在字节上进行，
+ * 查询时不解码、不分配对象。权重、序号和ID索引（开放寻址的 int 表）都是基本类型数组。
+ * <p>
+ * 与每个Token一个 {@link Token} 对象加若干 String 相比，内存只与字节数和Token数成正比：
+ * 除文本字节本身外每个Token约 (4 + 2 + 2) × 4 字节偏移、4 字节权重、8 字节序号、1 字节空值标记和 8 字节ID索引，
+ * 没有对象头和指针，GC只需要扫描十几个数组。单个数组不超过2GB，足够容纳千万级Token。
+ * <p>
+ * 文本引用 {@code ref = token * 2 + field}，field 为 {@link #NAME} 或 {@link #SYMBOL}。
+ * 构建完成后除权重外不再变化，可以被多个线程无锁并发读取。
+ */
+public final class TokenDictionary {
+
+    public static final int NAME = 0;
+    public static final int SYMBOL = 1;
+
+    private static final int ID_NULL = 1;
+    private static final int NAME_NULL = 2;
+    private static final int SYMBOL_NULL = 4;
+    private static final int ADDRESS_NULL = 8;
+
+    /** {@link #encodedLength} 中合约地址的编号，与空值标记的位一致 */
+    static final int ADDRESS_PART = 3;
+
+    private static final int NO_WEIGHT = Integer.MIN_VALUE;
+    private static final long NO_SEQ = Long.MIN_VALUE;
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private static final TokenDictionary EMPTY = new Builder(0).build();
+
+    private final int size;
+
+    private final byte[] ids;
+    private final int[] idOffsets;
+
+    /** 名称和符号的原始UTF-8字节 */
+    private final byte[] texts;
+    private final int[] textOffsets;
+
+    /** 名称和符号归一化后的UTF-8字节 */
+    private final byte[] folded;
+    private final int[] foldedOffsets;
+
+    /** 合约地址的原始UTF-8字节，写入时已经归一化（{@link TokenAddress#normalize}） */
+    private final byte[] addresses;
+    private final int[] addressOffsets;
+
+    /** 权重，可原地更新 */
+    private final int[] weights;
+    private final long[] seqs;
+    private final byte[] nulls;
+
+    /** ID -> token + 1 的开放寻址表，0 为空槽 */
+    private final int[] idTable;
+
+    private TokenDictionary(int size, byte[] ids, int[] idOffsets, byte[] texts, int[] textOffsets, byte[] folded,
+                            int[] foldedOffsets, byte[] addresses, int[] addressOffsets, int[] weights, long[] seqs,
+                            byte[] nulls) {
+        this.size = size;
+        this.ids = ids;
+        this.idOffsets = idOffsets;
+        this.texts = texts;
+        this.textOffsets = textOffsets;
+        this.folded = folded;
+        this.foldedOffsets = foldedOffsets;
+        this.addresses = addresses;
+        this.addressOffsets = addressOffsets;
+        this.weights = weights;
+        this.seqs = seqs;
+        this.nulls = nulls;
+        this.idTable = new int[tableSize(size)];
+        int mask = idTable.length - 1;
+        for (int token = 0; token < size; token++) {
+            if ((nulls[token] & ID_NULL) != 0) {
+                continue;
+            }
+            int slot = mix(hash(ids, idOffsets[token], idOffsets[token + 1])) & mask;
+            while (idTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            // ID重复时保留先加入的Token，后加入的只能按下标访问
+            idTable[slot] = token + 1;
+        }
+    }
+
+    public static TokenDictionary empty() {
+        return EMPTY;
+    }
+
+    public static TokenDictionary of(Collection<Token> tokens) {
+        Builder builder = new Builder(tokens.size());
+        for (Token token : tokens) {
+            builder.add(token);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public static int ref(int token, int field) {
+        return token << 1 | field;
+    }
+
+    public static int tokenOf(int ref) {
+        return ref >>> 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 名称和符号的总数，即文本引用的上界
+     */
+    public int textCount() {
+        return size * 2;
+    }
+
+    public String id(int token) {
+        return (nulls[token] & ID_NULL) != 0 ? null : decode(ids, idOffsets[token], idOffsets[token + 1]);
+    }
+
+    public String name(int token) {
+        return text(ref(token, NAME));
+    }
+
+    public String symbol(int token) {
+        return text(ref(token, SYMBOL));
+    }
+
+    public String address(int token) {
+        return (nulls[token] & ADDRESS_NULL) != 0
+                ? null : decode(addresses, addressOffsets[token], addressOffsets[token + 1]);
+    }
+
+    /**
+     * 把合约地址解码为20字节写入 into[offset, offset + 20)；不分配对象
+     *
+     * @return 是否是完整的EVM地址
+     */
+    boolean addressKey(int token, byte[] into, int offset) {
+        return (nulls[token] & ADDRESS_NULL) == 0
+                && TokenAddress.decode(addresses, addressOffsets[token], addressOffsets[token + 1], into, offset);
+    }
+
+    /**
+     * 名称或符号的原始文本；每次调用解码出一个新的String，只应在输出结果时使用
+     */
+    public String text(int ref) {
+        if (isNull(ref)) {
+            return null;
+        }
+        return decode(texts, textOffsets[ref], textOffsets[ref + 1]);
+    }
+
+    /**
+     * 权重，没有权重时为0
+     */
+    public int weight(int token) {
+        return weights[token] == NO_WEIGHT ? 0 : weights[token];
+    }
+
+    public void setWeight(int token, Integer weight) {
+        weights[token] = weight == null ? NO_WEIGHT : weight;
+    }
+
+    public Token token(int token) {
+        return Token.builder()
+                .id(id(token))
+                .name(name(token))
+                .symbol(symbol(token))
+                .address(address(token))
+                .weight(weights[token] == NO_WEIGHT ? null : weights[token])
+                .seq(seqs[token] == NO_SEQ ? null : seqs[token])
+                .build();
+    }
+
+    /**
+     * 全部Token的对象形式，只用于需要 {@link Token} 的少数场合
+     */
+    public List<Token> tokens() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int token = 0; token < size; token++) {
+            tokens.add(token(token));
+        }
+        return tokens;
+    }
+
+    /**
+     * 按ID查找Token下标，不存在时为-1；不分配对象
+     */
+    public int indexOf(String id) {
+        if (id == null || size == 0) {
+            return -1;
+        }
+        int mask = idTable.length - 1;
+        for (int slot = mix(hash(id)) & mask; idTable[slot] != 0; slot = (slot + 1) & mask) {
+            int token = idTable[slot] - 1;
+            if ((nulls[token] & ID_NULL) == 0 && utf8Equals(ids, idOffsets[token], idOffsets[token + 1], id)) {
+                return token;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 原始文本是否与给定字符串相同（区分大小写）；不分配对象
+     */
+    public boolean textEquals(int ref, String text) {
+        if (text == null || isNull(ref)) {
+            return text == null && isNull(ref);
+        }
+        return utf8Equals(texts, textOffsets[ref], textOffsets[ref + 1], text);
+    }
+
+    /**
+     * 两个原始文本是否相同
+     */
+    public boolean textEquals(int ref, int other) {
+        if (isNull(ref) || isNull(other)) {
+            return isNull(ref) && isNull(other);
+        }
+        return Arrays.equals(texts, textOffsets[ref], textOffsets[ref + 1],
+                texts, textOffsets[other], textOffsets[other + 1]);
+    }
+
+    public int textHash(int ref) {
+        return hash(texts, textOffsets[ref], textOffsets[ref + 1]);
+    }
+
+    /**
+     * 归一化文本在 {@link #foldedByte} 坐标中的起点
+     */
+    public int foldedStart(int ref) {
+        return foldedOffsets[ref];
+    }
+
+    public int foldedEnd(int ref) {
+        return foldedOffsets[ref + 1];
+    }
+
+    /**
+     * 归一化字节，按无符号值返回；UTF-8字节序与码点顺序一致
+     */
+    public int foldedByte(int position) {
+        return folded[position] & 0xFF;
+    }
+
+    /**
+     * 归一化文本从 from 开始的后缀与 normalized 按码点顺序比较，即大小写无关的比较；不分配对象
+     *
+     * @param from {@link #foldedStart} 到 {@link #foldedEnd} 之间的位置，可以是某个单词的起点
+     * @param normalized 已经归一化的文本
+     */
+    public int compareIgnoreCase(int ref, int from, String normalized) {
+        int end = foldedOffsets[ref + 1];
+        int position = from;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = codePointAt(normalized, i);
+            i += Character.charCount(codePoint);
+            for (int k = 0, n = utf8Length(codePoint); k < n; k++) {
+                if (position == end) {
+                    return -1;
+                }
+                int diff = (folded[position++] & 0xFF) - utf8Byte(codePoint, k, n);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+        }
+        return position == end ? 0 : 1;
+    }
+
+    /**
+     * 归一化文本从 from 开始是否以 normalizedPrefix 开头；不分配对象
+     */
+    public boolean startsWithIgnoreCase(int ref, int from, String normalizedPrefix) {
+        int end = foldedOffsets[ref + 1];
+        int position = from;
+        for (int i = 0; i < normalizedPrefix.length(); ) {
+            int codePoint = codePointAt(normalizedPrefix, i);
+            i += Character.charCount(codePoint);
+            for (int k = 0, n = utf8Length(codePoint); k < n; k++) {
+                if (position == end || (folded[position++] & 0xFF) != utf8Byte(codePoint, k, n)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与 {@link TokenText#matchesPrefix} 相同的语义：整串或任一单词以前缀开头；不分配对象
+     */
+    public boolean matchesPrefix(int ref, String normalizedPrefix) {
+        if (startsWithIgnoreCase(ref, foldedOffsets[ref], normalizedPrefix)) {
+            return true;
+        }
+        int end = foldedOffsets[ref + 1];
+        boolean previousWord = false;
+        for (int position = foldedOffsets[ref]; position < end; ) {
+            int codePoint = decodeCodePoint(folded, position);
+            boolean word = Character.isLetterOrDigit(codePoint);
+            if (word && !previousWord && position > foldedOffsets[ref]
+                    && startsWithIgnoreCase(ref, position, normalizedPrefix)) {
+                return true;
+            }
+            previousWord = word;
+            position += utf8Length(codePoint);
+        }
+        return false;
+    }
+
+    /**
+     * 依次给出归一化文本中除开头以外每个单词的起点，与 {@link TokenText#prefixKeys} 的词首后缀对应
+     */
+    public void forEachWordStart(int ref, IntConsumer consumer) {
+        int start = foldedOffsets[ref];
+        int end = foldedOffsets[ref + 1];
+        boolean previousWord = true;
+        for (int position = start; position < end; ) {
+            int codePoint = decodeCodePoint(folded, position);
+            boolean word = Character.isLetterOrDigit(codePoint);
+            if (word && !previousWord) {
+                consumer.accept(position);
+            }
+            previousWord = word;
+            position += utf8Length(codePoint);
+        }
+    }
+
+    /**
+     * 把 [from, to) 之间的归一化字节解码为码点写入 into，返回码点数；into 不够大时只写入能容纳的部分
+     */
+    public int foldedCodePoints(int from, int to, int[] into) {
+        int count = 0;
+        for (int position = from; position < to; count++) {
+            int codePoint = decodeCodePoint(folded, position);
+            if (count < into.length) {
+                into[count] = codePoint;
+            }
+            position += utf8Length(codePoint);
+        }
+        return count;
+    }
+
+    /**
+     * 归一化字节中 position 处的码点，position 必须是码点的起始字节
+     */
+    public int foldedCodePointAt(int position) {
+        return decodeCodePoint(folded, position);
+    }
+
+    /**
+     * 去重后的非空展示文本，按首次出现的顺序返回文本引用；textEntry 非null时填入每个文本引用对应的结果下标，空文本为-1
+     */
+    public int[] distinctTexts(int[] textEntry) {
+        int textCount = textCount();
+        int[] distinct = new int[textCount];
+        int count = 0;
+        int[] table = new int[tableSize(textCount)];
+        int mask = table.length - 1;
+        for (int ref = 0; ref < textCount; ref++) {
+            if (foldedOffsets[ref] == foldedOffsets[ref + 1]) {
+                if (textEntry != null) {
+                    textEntry[ref] = -1;
+                }
+                continue;
+            }
+            int slot = mix(textHash(ref)) & mask;
+            while (table[slot] != 0 && !textEquals(distinct[table[slot] - 1], ref)) {
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == 0) {
+                distinct[count] = ref;
+                table[slot] = ++count;
+            }
+            if (textEntry != null) {
+                textEntry[ref] = table[slot] - 1;
+            }
+        }
+        return Arrays.copyOf(distinct, count);
+    }
+
+    /**
+     * 两段归一化字节按无符号字节比较
+     */
+    public int compareFolded(int from, int to, int otherFrom, int otherTo) {
+        return Arrays.compareUnsigned(folded, from, to, folded, otherFrom, otherTo);
+    }
+
+    /**
+     * 一段归一化字节的哈希，与 {@link #foldedEquals} 配合做不分配对象的去重
+     */
+    public int foldedHash(int from, int to) {
+        return hash(folded, from, to);
+    }
+
+    public boolean foldedEquals(int from, int to, int otherFrom, int otherTo) {
+        return Arrays.equals(folded, from, to, folded, otherFrom, otherTo);
+    }
+
+    /**
+     * 词典占用的堆内存估计（数组本身，不含对象头）
+     */
+    public long memoryBytes() {
+        return ids.length + texts.length + folded.length + addresses.length + nulls.length
+                + 4L * (idOffsets.length + textOffsets.length + foldedOffsets.length + addressOffsets.length
+                + weights.length + idTable.length)
+                + 8L * seqs.length;
+    }
+
+    /**
+     * ID、名称、符号或合约地址（part 为 0、1、2、3）的UTF-8字节数，null为-1；与 {@link #writeEncoded} 一起供快照直接写出原始字节
+     */
+    int encodedLength(int token, int part) {
+        if ((nulls[token] & (1 << part)) != 0) {
+            return -1;
+        }
+        if (part == 0) {
+            return idOffsets[token + 1] - idOffsets[token];
+        }
+        if (part == ADDRESS_PART) {
+            return addressOffsets[token + 1] - addressOffsets[token];
+        }
+        int ref = ref(token, part - 1);
+        return textOffsets[ref + 1] - textOffsets[ref];
+    }
+
+    void writeEncoded(OutputStream out, int token, int part) throws IOException {
+        if (part == 0) {
+            out.write(ids, idOffsets[token], idOffsets[token + 1] - idOffsets[token]);
+        } else if (part == ADDRESS_PART) {
+            out.write(addresses, addressOffsets[token], addressOffsets[token + 1] - addressOffsets[token]);
+        } else {
+            int ref = ref(token, part - 1);
+            out.write(texts, textOffsets[ref], textOffsets[ref + 1] - textOffsets[ref]);
+        }
+    }
+
+    /**
+     * 权重，null为 Integer.MIN_VALUE
+     */
+    int rawWeight(int token) {
+        return weights[token];
+    }
+
+    /**
+     * 序号，null为 Long.MIN_VALUE
+     */
+    long rawSeq(int token) {
+        return seqs[token];
+    }
+
+    /**
+     * 应用一批按ID的变更得到新词典：值为null表示删除，其余替换或追加；未变化的Token直接复制字节，不重新编码
+     */
+    public TokenDictionary with(Map<String, Token> changes) {
+        boolean[] replaced = new boolean[size];
+        for (String id : changes.keySet()) {
+            int token = indexOf(id);
+            if (token >= 0) {
+                replaced[token] = true;
+            }
+        }
+        Builder builder = new Builder(size + changes.size());
+        for (int token = 0; token < size; token++) {
+            if (!replaced[token]) {
+                builder.copy(this, token);
+            }
+        }
+        for (Token token : changes.values()) {
+            if (token != null) {
+                builder.add(token);
+            }
+        }
+        return builder.build();
+    }
+
+    private boolean isNull(int ref) {
+        return (nulls[tokenOf(ref)] & ((ref & 1) == NAME ? NAME_NULL : SYMBOL_NULL)) != 0;
+    }
+
+    /**
+     * 按 cmp 对 [0, n) 的下标做稳定的归并排序，不装箱
+     */
+    static void sort(int[] values, int n, IntBinaryOperator cmp) {
+        int[] buffer = new int[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int lo = 0; lo < n - width; lo += width << 1) {
+                int mid = lo + width;
+                int hi = Math.min(lo + (width << 1), n);
+                if (cmp.applyAsInt(values[mid - 1], values[mid]) <= 0) {
+                    continue;
+                }
+                System.arraycopy(values, lo, buffer, lo, hi - lo);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (j >= hi || (i < mid && cmp.applyAsInt(buffer[i], buffer[j]) <= 0)) {
+                        values[k] = buffer[i++];
+                    } else {
+                        values[k] = buffer[j++];
+                    }
+                }
+            }
+        }
+    }
+
+    static int tableSize(int entries) {
+        return Integer.highestOneBit(Math.max(4, entries * 2 - 1)) << 1;
+    }
+
+    static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = FNV_OFFSET;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 与 hash(text.getBytes(UTF_8)) 相同，但边编码边计算
+     */
+    private static int hash(String text) {
+        int hash = FNV_OFFSET;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = codePointAt(text, i);
+            i += Character.charCount(codePoint);
+            for (int k = 0, n = utf8Length(codePoint); k < n; k++) {
+                hash = (hash ^ utf8Byte(codePoint, k, n)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    private static boolean utf8Equals(byte[] bytes, int from, int to, String text) {
+        int position = from;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = codePointAt(text, i);
+            i += Character.charCount(codePoint);
+            for (int k = 0, n = utf8Length(codePoint); k < n; k++) {
+                if (position == to || (bytes[position++] & 0xFF) != utf8Byte(codePoint, k, n)) {
+                    return false;
+                }
+            }
+        }
+        return position == to;
+    }
+
+    /**
+     * 与 String.getBytes(UTF_8) 一致：落单的代理字符编码为 '?'
+     */
+    private static int codePointAt(String text, int index) {
+        int codePoint = text.codePointAt(index);
+        return Character.isSurrogate((char) codePoint) && codePoint <= Character.MAX_VALUE ? '?' : codePoint;
+    }
+
+    static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    /**
+     * 码点UTF-8编码的第 k 个字节（共 n 个）
+     */
+    private static int utf8Byte(int codePoint, int k, int n) {
+        if (n == 1) {
+            return codePoint;
+        }
+        if (k == 0) {
+            int lead = n == 2 ? 0xC0 : n == 3 ? 0xE0 : 0xF0;
+            return lead | (codePoint >>> (6 * (n - 1)));
+        }
+        return 0x80 | ((codePoint >>> (6 * (n - 1 - k))) & 0x3F);
+    }
+
+    private static int decodeCodePoint(byte[] bytes, int position) {
+        int lead = bytes[position] & 0xFF;
+        if (lead < 0x80) {
+            return lead;
+        }
+        if (lead < 0xE0) {
+            return (lead & 0x1F) << 6 | (bytes[position + 1] & 0x3F);
+        }
+        if (lead < 0xF0) {
+            return (lead & 0x0F) << 12 | (bytes[position + 1] & 0x3F) << 6 | (bytes[position + 2] & 0x3F);
+        }
+        return (lead & 0x07) << 18 | (bytes[position + 1] & 0x3F) << 12 | (bytes[position + 2] & 0x3F) << 6
+                | (bytes[position + 3] & 0x3F);
+    }
+
+    private static String decode(byte[] bytes, int from, int to) {
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 逐个追加Token，字节写入可增长的数组，{@link #build()} 时截取到实际长度
+     */
+    public static final class Builder {
+
+        private int size;
+        private byte[] ids;
+        private int[] idOffsets;
+        private byte[] texts;
+        private int[] textOffsets;
+        private byte[] folded;
+        private int[] foldedOffsets;
+        private byte[] addresses;
+        private int[] addressOffsets;
+        private int[] weights;
+        private long[] seqs;
+        private byte[] nulls;
+        private int idLength;
+        private int textLength;
+        private int foldedLength;
+        private int addressLength;
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(4, expectedSize);
+            this.ids = new byte[capacity * 8];
+            this.idOffsets = new int[capacity + 1];
+            this.texts = new byte[capacity * 16];
+            this.textOffsets = new int[capacity * 2 + 1];
+            this.folded = new byte[capacity * 16];
+            this.foldedOffsets = new int[capacity * 2 + 1];
+            this.addresses = new byte[capacity * 8];
+            this.addressOffsets = new int[capacity + 1];
+            this.weights = new int[capacity];
+            this.seqs = new long[capacity];
+            this.nulls = new byte[capacity];
+        }
+
+        public Builder add(Token token) {
+            return add(token.getId(), token.getName(), token.getSymbol(), token.getAddress(), token.getWeight(),
+                    token.getSeq());
+        }
+
+        public Builder add(String id, String name, String symbol, Integer weight, Long seq) {
+            return add(id, name, symbol, null, weight, seq);
+        }
+
+        public Builder add(String id, String name, String symbol, String address, Integer weight, Long seq) {
+            byte[] idBytes = id == null ? null : id.getBytes(StandardCharsets.UTF_8);
+            byte[] nameBytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+            byte[] symbolBytes = symbol == null ? null : symbol.getBytes(StandardCharsets.UTF_8);
+            byte[] addressBytes = address == null ? null : address.getBytes(StandardCharsets.UTF_8);
+            return addEncoded(idBytes, idBytes == null ? -1 : idBytes.length,
+                    nameBytes, nameBytes == null ? -1 : nameBytes.length,
+                    symbolBytes, symbolBytes == null ? -1 : symbolBytes.length,
+                    addressBytes, addressBytes == null ? -1 : addressBytes.length, weight, seq);
+        }
+
+        /**
+         * 追加已经是UTF-8编码的Token，长度为-1表示null；字节数组可以是调用方复用的缓冲区
+         */
+        public Builder addEncoded(byte[] id, int idLen, byte[] name, int nameLen, byte[] symbol, int symbolLen,
+                                  byte[] address, int addressLen, Integer weight, Long seq) {
+            ensureTokenCapacity();
+            int token = size++;
+            byte flags = 0;
+            flags |= idLen < 0 ? ID_NULL : 0;
+            flags |= nameLen < 0 ? NAME_NULL : 0;
+            flags |= symbolLen < 0 ? SYMBOL_NULL : 0;
+            flags |= addressLen < 0 ? ADDRESS_NULL : 0;
+            nulls[token] = flags;
+            weights[token] = weight == null ? NO_WEIGHT : weight;
+            seqs[token] = seq == null ? NO_SEQ : seq;
+
+            idLength = appendRange(true, id, 0, Math.max(0, idLen), idLength);
+            idOffsets[token + 1] = idLength;
+            appendText(token, NAME, name, Math.max(0, nameLen));
+            appendText(token, SYMBOL, symbol, Math.max(0, symbolLen));
+            appendAddress(token, address, 0, Math.max(0, addressLen));
+            return this;
+        }
+
+        /**
+         * 从另一份词典复制一个Token，连同归一化字节一起复制，不重新编码
+         */
+        Builder copy(TokenDictionary source, int from) {
+            ensureTokenCapacity();
+            int token = size++;
+            nulls[token] = source.nulls[from];
+            weights[token] = source.weights[from];
+            seqs[token] = source.seqs[from];
+            idLength = appendRange(true, source.ids, source.idOffsets[from], source.idOffsets[from + 1], idLength);
+            idOffsets[token + 1] = idLength;
+            for (int field = NAME; field <= SYMBOL; field++) {
+                int ref = ref(from, field);
+                int target = ref(token, field);
+                textLength = appendRange(false, source.texts, source.textOffsets[ref], source.textOffsets[ref + 1],
+                        textLength);
+                textOffsets[target + 1] = textLength;
+                foldedLength = appendFolded(source.folded, source.foldedOffsets[ref], source.foldedOffsets[ref + 1]);
+                foldedOffsets[target + 1] = foldedLength;
+            }
+            appendAddress(token, source.addresses, source.addressOffsets[from], source.addressOffsets[from + 1]);
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public TokenDictionary build() {
+            return new TokenDictionary(size, Arrays.copyOf(ids, idLength), Arrays.copyOf(idOffsets, size + 1),
+                    Arrays.copyOf(texts, textLength), Arrays.copyOf(textOffsets, size * 2 + 1),
+                    Arrays.copyOf(folded, foldedLength), Arrays.copyOf(foldedOffsets, size * 2 + 1),
+                    Arrays.copyOf(addresses, addressLength), Arrays.copyOf(addressOffsets, size + 1),
+                    Arrays.copyOf(weights, size), Arrays.copyOf(seqs, size), Arrays.copyOf(nulls, size));
+        }
+
+        private void appendText(int token, int field, byte[] bytes, int length) {
+            int ref = ref(token, field);
+            textLength = appendRange(false, bytes, 0, length, textLength);
+            textOffsets[ref + 1] = textLength;
+            foldedLength = fold(bytes, length);
+            foldedOffsets[ref + 1] = foldedLength;
+        }
+
+        private void appendAddress(int token, byte[] source, int from, int to) {
+            if (addressLength + (to - from) > addresses.length) {
+                addresses = Arrays.copyOf(addresses, grow(addresses.length, addressLength + (to - from)));
+            }
+            if (to > from) {
+                System.arraycopy(source, from, addresses, addressLength, to - from);
+                addressLength += to - from;
+            }
+            addressOffsets[token + 1] = addressLength;
+        }
+
+        /**
+         * 写入归一化字节：纯ASCII时直接在字节上去首尾空白、转小写，否则经 {@link TokenText#normalize} 处理
+         */
+        private int fold(byte[] bytes, int length) {
+            int from = 0;
+            int to = length;
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = bytes[i] >= 0;
+            }
+            if (!ascii) {
+                byte[] normalized = TokenText.normalize(new String(bytes, 0, length, StandardCharsets.UTF_8))
+                        .getBytes(StandardCharsets.UTF_8);
+                return appendFolded(normalized, 0, normalized.length);
+            }
+            while (from < to && bytes[from] <= ' ') {
+                from++;
+            }
+            while (to > from && bytes[to - 1] <= ' ') {
+                to--;
+            }
+            ensureFolded(to - from);
+            for (int i = from; i < to; i++) {
+                byte b = bytes[i];
+                folded[foldedLength++] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+            }
+            return foldedLength;
+        }
+
+        private int appendFolded(byte[] source, int from, int to) {
+            ensureFolded(to - from);
+            System.arraycopy(source, from, folded, foldedLength, to - from);
+            return foldedLength + (to - from);
+        }
+
+        private void ensureFolded(int extra) {
+            if (foldedLength + extra > folded.length) {
+                folded = Arrays.copyOf(folded, grow(folded.length, foldedLength + extra));
+            }
+        }
+
+        private int appendRange(boolean id, byte[] source, int from, int to, int position) {
+            int length = to - from;
+            if (length == 0) {
+                return position;
+            }
+            if (id) {
+                if (position + length > ids.length) {
+                    ids = Arrays.copyOf(ids, grow(ids.length, position + length));
+                }
+                System.arraycopy(source, from, ids, position, length);
+            } else {
+                if (position + length > texts.length) {
+                    texts = Arrays.copyOf(texts, grow(texts.length, position + length));
+                }
+                System.arraycopy(source, from, texts, position, length);
+            }
+            return position + length;
+        }
+
+        private void ensureTokenCapacity() {
+            if (size < weights.length) {
+                return;
+            }
+            int capacity = grow(weights.length, size + 1);
+            idOffsets = Arrays.copyOf(idOffsets, capacity + 1);
+            textOffsets = Arrays.copyOf(textOffsets, capacity * 2 + 1);
+            foldedOffsets = Arrays.copyOf(foldedOffsets, capacity * 2 + 1);
+            addressOffsets = Arrays.copyOf(addressOffsets, capacity + 1);
+            weights = Arrays.copyOf(weights, capacity);
+            seqs = Arrays.copyOf(seqs, capacity);
+            nulls = Arrays.copyOf(nulls, capacity);
+        }
+
+        private static int grow(int current, int required) {
+            long doubled = Math.max((long) current * 2, required);
+            if (doubled > Integer.MAX_VALUE - 8) {
+                if (required > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("词典超过单个数组的容量上限");
+                }
+                return Integer.MAX_VALUE - 8;
+            }
+            return (int) doubled;
+        }
+    }
+}
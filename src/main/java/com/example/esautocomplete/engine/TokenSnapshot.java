@@ -0,0 +1,212 @@
+package com.example.esautocomplete.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+import com.example.esautocomplete.model.Token;
+
+/**
+ * 本地引擎词典的磁盘快照，重启时不必先从ES全量拉取就能用上一次的词典提供补全。
+ * <p>
+ * 文件格式（大端）：
+ * <pre>
+ * magic(4) version(4) createdAt(8) count(4)
+ * count × [id name symbol address: 长度(4)+UTF-8字节，null为-1] [weight(4)，null为MIN_VALUE] [seq(8)，null为MIN_VALUE]
+ * crc32c(4)  覆盖前面全部字节
+ * </pre>
+ * 写入先落到同目录的临时文件并fsync，再原子rename覆盖旧快照，进程中途退出不会留下半个文件；
+ * 读取时只读映射整个文件，直接在映射内存上校验CRC，字符串的UTF-8字节原样拷入 {@link TokenDictionary}，
+ * 不为每个Token解码出 String 和对象；写入同样直接输出词典中的字节。
+ * 版本1的记录没有 address，仍可读取。魔数、版本或校验和不符时抛出 {@link IOException}，调用方应丢弃快照改为从ES加载。
+ */
+public final class TokenSnapshot {
+
+    /** "TKSN" */
+    private static final int MAGIC = 0x544B534E;
+
+    private static final int VERSION = 2;
+
+    /** 记录中还没有合约地址的版本 */
+    private static final int VERSION_WITHOUT_ADDRESS = 1;
+
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+
+    private static final int CRC_BYTES = 4;
+
+    private static final int NULL_LENGTH = -1;
+
+    /** 每条记录依次是 id、name、symbol、address 四个字符串 */
+    private static final int STRINGS_PER_RECORD = 4;
+
+    /** 单条记录的最小字节数：四个字符串长度、权重和序号 */
+    private static final int MIN_RECORD_BYTES = 4 * STRINGS_PER_RECORD + 4 + 8;
+
+    private final long createdAt;
+
+    private final TokenDictionary dictionary;
+
+    private TokenSnapshot(long createdAt, TokenDictionary dictionary) {
+        this.createdAt = createdAt;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * 快照写入的时刻（毫秒）
+     */
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public TokenDictionary dictionary() {
+        return dictionary;
+    }
+
+    public List<Token> tokens() {
+        return dictionary.tokens();
+    }
+
+    /**
+     * 写入快照：先写临时文件并fsync，再原子替换目标文件
+     *
+     * @param createdAt 快照对应的数据时刻，恢复后从这一时刻起追赶变更
+     */
+    public static void write(Path path, Collection<Token> tokens, long createdAt) throws IOException {
+        write(path, TokenDictionary.of(tokens), createdAt);
+    }
+
+    /**
+     * 写入快照：先写临时文件并fsync，再原子替换目标文件
+     *
+     * @param createdAt 快照对应的数据时刻，恢复后从这一时刻起追赶变更
+     */
+    public static void write(Path path, TokenDictionary dictionary, long createdAt) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                OutputStream stream = Channels.newOutputStream(channel);
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new BufferedOutputStream(stream, 64 * 1024), new CRC32C());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(createdAt);
+                out.writeInt(dictionary.size());
+                for (int token = 0; token < dictionary.size(); token++) {
+                    for (int part = 0; part < STRINGS_PER_RECORD; part++) {
+                        int length = dictionary.encodedLength(token, part);
+                        out.writeInt(length);
+                        if (length > 0) {
+                            dictionary.writeEncoded(out, token, part);
+                        }
+                    }
+                    out.writeInt(dictionary.rawWeight(token));
+                    out.writeLong(dictionary.rawSeq(token));
+                }
+                out.flush();
+                // 校验和本身不计入校验
+                int crc = (int) checked.getChecksum().getValue();
+                new DataOutputStream(stream).writeInt(crc);
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * 只读映射并校验快照
+     *
+     * @throws IOException 文件不存在、格式不认识或校验失败
+     */
+    public static TokenSnapshot read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + CRC_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("快照文件大小异常: " + size);
+            }
+            // 映射在通道关闭后仍然有效
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int bodyEnd = buffer.capacity() - CRC_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(bodyEnd));
+        if ((int) crc.getValue() != buffer.getInt(bodyEnd)) {
+            throw new IOException("快照校验和不符");
+        }
+
+        ByteBuffer in = buffer.duplicate().limit(bodyEnd);
+        if (in.getInt() != MAGIC) {
+            throw new IOException("不是Token快照文件");
+        }
+        int version = in.getInt();
+        if (version != VERSION && version != VERSION_WITHOUT_ADDRESS) {
+            throw new IOException("不支持的快照版本: " + version);
+        }
+        long createdAt = in.getLong();
+        int count = in.getInt();
+
+        TokenDictionary.Builder builder = TokenDictionary.builder(
+                Math.max(0, Math.min(count, in.remaining() / MIN_RECORD_BYTES)));
+        int strings = version == VERSION_WITHOUT_ADDRESS ? STRINGS_PER_RECORD - 1 : STRINGS_PER_RECORD;
+        byte[][] scratch = new byte[STRINGS_PER_RECORD][256];
+        int[] lengths = {NULL_LENGTH, NULL_LENGTH, NULL_LENGTH, NULL_LENGTH};
+        try {
+            for (int i = 0; i < count; i++) {
+                for (int part = 0; part < strings; part++) {
+                    lengths[part] = readString(in, scratch, part);
+                }
+                int weight = in.getInt();
+                long seq = in.getLong();
+                builder.addEncoded(scratch[0], lengths[0], scratch[1], lengths[1], scratch[2], lengths[2],
+                        scratch[3], lengths[3], weight == Integer.MIN_VALUE ? null : weight,
+                        seq == Long.MIN_VALUE ? null : seq);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("快照记录数与内容不符: " + count);
+        }
+        if (in.hasRemaining()) {
+            throw new IOException("快照末尾有多余的 " + in.remaining() + " 字节");
+        }
+        return new TokenSnapshot(createdAt, builder.build());
+    }
+
+    /**
+     * 把一个字符串的UTF-8字节读入 scratch[part]，不够大时换成更大的缓冲区
+     *
+     * @return 字节数，null为-1
+     */
+    private static int readString(ByteBuffer in, byte[][] scratch, int part) throws IOException {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return NULL_LENGTH;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("快照中的字符串长度异常: " + length);
+        }
+        if (length > scratch[part].length) {
+            scratch[part] = new byte[Math.max(length, scratch[part].length * 2)];
+        }
+        in.get(scratch[part], 0, length);
+        return length;
+    }
+}
\ No newline at end of file
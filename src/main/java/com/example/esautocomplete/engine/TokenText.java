@@ -0,0 +1,114 @@
+package com.example.esautocomplete.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 本地引擎共用的文本规则：归一化与"词首"切分。
+ * 与ES端的前缀语义保持一致：整串前缀或任一单词的前缀都算命中，
+ * 例如 "coin" 可以命中 "Binance Coin"。
+ */
+public final class TokenText {
+
+    private TokenText() {
+    }
+
+    /**
+     * 查询与索引统一使用的归一化：去首尾空白并转小写
+     */
+    public static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 返回归一化文本本身及其每个单词起始位置开始的后缀，
+     * 如 "binance coin" -> ["binance coin", "coin"]
+     */
+    public static List<String> prefixKeys(String normalized) {
+        List<String> keys = new ArrayList<>(2);
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalized);
+        for (int i = 1; i < normalized.length(); i++) {
+            if (isWordStart(normalized, i)) {
+                keys.add(normalized.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 判断候选文本是否被归一化后的前缀命中（整串前缀或词首前缀）
+     */
+    public static boolean matchesPrefix(String candidate, String normalizedPrefix) {
+        String lower = normalize(candidate);
+        if (lower.startsWith(normalizedPrefix)) {
+            return true;
+        }
+        for (int i = 1; i < lower.length(); i++) {
+            if (isWordStart(lower, i) && lower.startsWith(normalizedPrefix, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断候选文本整串是否以归一化后的前缀开头，与Completion Suggester的匹配一致
+     */
+    public static boolean startsWith(String candidate, String normalizedPrefix) {
+        return normalize(candidate).startsWith(normalizedPrefix);
+    }
+
+    /**
+     * 判断候选文本是否在任意位置包含归一化后的查询，与通配符模式对命中文本的过滤一致
+     */
+    public static boolean contains(String candidate, String normalizedQuery) {
+        return normalize(candidate).contains(normalizedQuery);
+    }
+
+    /**
+     * 判断候选文本是否被归一化后的查询以中缀方式命中：整串出现在文本中任意位置，
+     * 或查询中的每个单词都是文本中某个单词的前缀（如 "usd co" 命中 "USD Coin"）。
+     * 与前缀命中一样对查询单调：更长的查询命中的文本一定也被更短的查询命中
+     */
+    public static boolean matchesInfix(String candidate, String normalizedQuery) {
+        String lower = normalize(candidate);
+        if (lower.contains(normalizedQuery)) {
+            return true;
+        }
+        List<String> words = words(normalizedQuery);
+        if (words.isEmpty()) {
+            return false;
+        }
+        List<String> candidateWords = words(lower);
+        for (String word : words) {
+            if (candidateWords.stream().noneMatch(candidateWord -> candidateWord.startsWith(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static boolean isWordStart(String text, int index) {
+        return Character.isLetterOrDigit(text.charAt(index))
+                && !Character.isLetterOrDigit(text.charAt(index - 1));
+    }
+}
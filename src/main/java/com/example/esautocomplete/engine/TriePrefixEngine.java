@@ -0,0 +1,58 @@
+package com.example.esautocomplete.engine;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于 {@link PrefixTrie} 的前缀补全引擎，0x开头的合约地址前缀由 {@link AddressIndex} 回答。
+ * 查询线程只读取 volatile 引用指向的不可变快照，重建时整体替换引用，读写之间无需加锁。
+ */
+@Slf4j
+@Component
+public class TriePrefixEngine implements PrefixEngine {
+
+    private volatile PrefixTrie trie;
+
+    private volatile AddressIndex addresses = AddressIndex.empty();
+
+    @Override
+    public boolean isLoaded() {
+        return trie != null;
+    }
+
+    @Override
+    public List<String> suggest(String prefix, int size) {
+        PrefixTrie current = trie;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        if (TokenAddress.isAddressPrefix(prefix)) {
+            return addresses.topK(prefix, size);
+        }
+        return current.topK(TokenText.normalize(prefix), size);
+    }
+
+    @Override
+    public void rebuild(TokenDictionary dictionary) {
+        long start = System.nanoTime();
+        // 同一文本出现在多个Token上时取最大权重
+        PrefixTrie rebuilt = PrefixTrie.build(dictionary);
+        AddressIndex rebuiltAddresses = AddressIndex.build(dictionary);
+        this.addresses = rebuiltAddresses;
+        this.trie = rebuilt;
+
+        log.info("本地前缀引擎重建完成: 文本数={}, 检索键数={}, 节点数={}, 地址数={}, 耗时={}ms",
+                rebuilt.size(), rebuilt.keyCount(), rebuilt.nodeCount(), rebuiltAddresses.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public boolean updateWeight(String id, Integer weight) {
+        PrefixTrie current = trie;
+        return current != null && id != null && current.updateWeight(id, weight);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.esautocomplete.feed;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Token写入时使用的变更序号：毫秒时间戳乘以1000，同一毫秒内的多次写入依次加1，进程内严格递增。
+ * <p>
+ * 不同实例的序号按各自时钟大致有序但不保证全局递增，{@link TokenChangeFeed} 只读取 settle-lag 之前的序号，
+ * 以容忍实例间的时钟偏差和ES的refresh延迟。
+ */
+@Component
+public class ChangeSequence {
+
+    private static final long PER_MILLI = 1000;
+
+    private final LongSupplier millisClock;
+
+    private final AtomicLong last = new AtomicLong();
+
+    public ChangeSequence() {
+        this(System::currentTimeMillis);
+    }
+
+    ChangeSequence(LongSupplier millisClock) {
+        this.millisClock = millisClock;
+    }
+
+    public long next() {
+        long floor = floor(millisClock.getAsLong());
+        return last.updateAndGet(previous -> Math.max(previous + 1, floor));
+    }
+
+    /**
+     * 该时刻之前写入的变更序号都小于返回值
+     */
+    public static long floor(long epochMillis) {
+        return epochMillis * PER_MILLI;
+    }
+
+    /**
+     * 序号对应的写入时刻（毫秒）
+     */
+    public static long toMillis(long seq) {
+        return seq / PER_MILLI;
+    }
+}
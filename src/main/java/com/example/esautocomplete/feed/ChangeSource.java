@@ -0,0 +1,28 @@
+package com.example.esautocomplete.feed;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 变更的读取方式，默认实现为 {@link ElasticsearchChangeSource}
+ */
+@FunctionalInterface
+interface ChangeSource {
+
+    /**
+     * @param after 上次读到的位置，只返回排在它之后的变更
+     * @param upTo seq 的上限（含）
+     * @param size 最多返回的条数
+     * @return 按 (seq, id) 升序的变更
+     */
+    List<TokenChange> fetch(TokenChangeFeed.Position after, long upTo, int size) throws IOException;
+
+    /**
+     * 删除 seq 小于 before 的墓碑
+     *
+     * @return 删除的条数
+     */
+    default long purgeTombstones(long before) throws IOException {
+        return 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.esautocomplete.feed;
+
+import com.example.esautocomplete.model.Token;
+
+/**
+ * 一次Token变更，按 (seq, id) 升序投递
+ *
+ * @param token 写入后的完整Token；删除时只有墓碑中记录的id、name、symbol
+ */
+public record TokenChange(Type type, String id, long seq, Token token) {
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+
+    public boolean isDelete() {
+        return type == Type.DELETE;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.esautocomplete.feed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Token的变更订阅：定时拉取上次检查点之后写入或删除的文档，按 (seq, id) 升序投递给订阅者，
+ * 每次轮询的代价只与变更数有关，本地引擎不必为几条写入重新扫描全量索引。
+ * <p>
+ * 写入时在文档上记录递增的 seq（见 {@link ChangeSequence}），删除时在墓碑索引中记录同样的 seq；
+ * 轮询只读取 settle-lag 之前的序号，此前写入的文档已经refresh可见，不会因为可见顺序与序号顺序不一致而被跳过。
+ * 订阅者全量加载后调用 {@link #replaySince(long)} 把检查点退回到加载开始之前，加载期间的变更会重新投递。
+ * <p>
+ * 指标：autocomplete.feed.changes{type}、autocomplete.feed.lag（已投递到的时刻距现在的毫秒数）、autocomplete.feed.failures
+ */
+@Slf4j
+@Component
+public class TokenChangeFeed {
+
+    private static final String NO_ID = "";
+
+    private final AutocompleteProperties properties;
+
+    private final ChangeSource source;
+
+    private final LongSupplier millisClock;
+
+    private final List<TokenChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Counter upserts;
+
+    private final Counter deletes;
+
+    private final Counter failures;
+
+    private Position checkpoint;
+
+    /** 这一时刻之前的变更都已投递 */
+    private volatile long caughtUpMillis;
+
+    private boolean failing;
+
+    @Autowired
+    public TokenChangeFeed(ElasticsearchClient elasticsearchClient, ElasticsearchOperations elasticsearchOperations,
+                           AutocompleteProperties properties, MeterRegistry registry) {
+        this(properties, registry,
+                new ElasticsearchChangeSource(elasticsearchClient, elasticsearchOperations.getElasticsearchConverter()),
+                System::currentTimeMillis);
+    }
+
+    TokenChangeFeed(AutocompleteProperties properties, MeterRegistry registry, ChangeSource source,
+                    LongSupplier millisClock) {
+        this.properties = properties;
+        this.source = source;
+        this.millisClock = millisClock;
+        // 启动前的变更由订阅者的全量加载覆盖
+        this.caughtUpMillis = settledMillis();
+        this.checkpoint = new Position(ChangeSequence.floor(caughtUpMillis), NO_ID);
+
+        this.upserts = Counter.builder("autocomplete.feed.changes")
+                .tag("type", "upsert")
+                .register(registry);
+        this.deletes = Counter.builder("autocomplete.feed.changes")
+                .tag("type", "delete")
+                .register(registry);
+        this.failures = Counter.builder("autocomplete.feed.failures")
+                .register(registry);
+        Gauge.builder("autocomplete.feed.lag", this, feed -> feed.millisClock.getAsLong() - feed.caughtUpMillis)
+                .description("已投递的变更落后当前时间的毫秒数，至少为settle-lag")
+                .register(registry);
+    }
+
+    public void subscribe(TokenChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 把检查点退回到该时刻（再减去settle-lag）之前，之后的变更重新投递；检查点已经更早时不变
+     */
+    public synchronized void replaySince(long epochMillis) {
+        Position position = new Position(ChangeSequence.floor(epochMillis - settleLag()), NO_ID);
+        if (position.compareTo(checkpoint) < 0) {
+            checkpoint = position;
+            caughtUpMillis = Math.min(caughtUpMillis, epochMillis - settleLag());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${autocomplete.change-feed.poll-interval:PT1S}")
+    public void poll() {
+        if (properties.getChangeFeed().isEnabled() && !listeners.isEmpty()) {
+            pollOnce();
+        }
+    }
+
+    /**
+     * 拉取并投递一批变更，单次最多 max-changes-per-poll 条，剩余的留到下一次轮询
+     *
+     * @return 投递的变更数
+     */
+    synchronized int pollOnce() {
+        AutocompleteProperties.ChangeFeed settings = properties.getChangeFeed();
+        long settled = settledMillis();
+        long upTo = ChangeSequence.floor(settled) - 1;
+        int limit = settings.getMaxChangesPerPoll();
+
+        List<TokenChange> changes = new ArrayList<>();
+        Position position = checkpoint;
+        boolean drained = false;
+        try {
+            while (!drained) {
+                int size = Math.min(settings.getPageSize(), limit - changes.size());
+                List<TokenChange> page = source.fetch(position, upTo, size);
+                changes.addAll(page);
+                if (!page.isEmpty()) {
+                    TokenChange last = page.get(page.size() - 1);
+                    position = new Position(last.seq(), last.id());
+                }
+                drained = page.size() < size;
+                if (changes.size() >= limit) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            failures.increment();
+            if (!failing) {
+                log.warn("拉取Token变更失败，检查点保持在 {}，下次轮询重试: {}", checkpoint, e.getMessage());
+                failing = true;
+            }
+            return 0;
+        }
+        if (failing) {
+            log.info("拉取Token变更已恢复");
+            failing = false;
+        }
+
+        if (!changes.isEmpty()) {
+            for (TokenChangeListener listener : listeners) {
+                try {
+                    listener.onChanges(changes);
+                } catch (RuntimeException e) {
+                    // 检查点照常前进，订阅者下一次全量加载时自行纠正
+                    log.error("变更订阅者处理 {} 条变更时出错", changes.size(), e);
+                }
+            }
+            for (TokenChange change : changes) {
+                (change.isDelete() ? deletes : upserts).increment();
+            }
+            checkpoint = position;
+        }
+        caughtUpMillis = drained ? settled : ChangeSequence.toMillis(position.seq());
+        return changes.size();
+    }
+
+    /**
+     * 删除超过 tombstone-retention 的墓碑；落后更久的订阅者依靠定时全量加载纠正
+     */
+    @Scheduled(fixedDelayString = "${autocomplete.change-feed.tombstone-cleanup-interval:PT1H}")
+    public void purgeTombstones() {
+        AutocompleteProperties.ChangeFeed settings = properties.getChangeFeed();
+        if (!settings.isEnabled()) {
+            return;
+        }
+        long before = ChangeSequence.floor(millisClock.getAsLong() - settings.getTombstoneRetention().toMillis());
+        try {
+            long deleted = source.purgeTombstones(before);
+            if (deleted > 0) {
+                log.info("已清理 {} 条过期墓碑", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("清理过期墓碑失败: {}", e.getMessage());
+        }
+    }
+
+    synchronized Position checkpoint() {
+        return checkpoint;
+    }
+
+    private long settledMillis() {
+        return millisClock.getAsLong() - settleLag();
+    }
+
+    private long settleLag() {
+        return properties.getChangeFeed().getSettleLag().toMillis();
+    }
+
+    /**
+     * 变更流中的位置，按 seq、再按 id 排序
+     */
+    record Position(long seq, String id) implements Comparable<Position> {
+
+        @Override
+        public int compareTo(Position other) {
+            int bySeq = Long.compare(seq, other.seq);
+            return bySeq != 0 ? bySeq : id.compareTo(other.id);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.esautocomplete.feed;
+
+import java.util.List;
+
+/**
+ * 变更订阅者，通过 {@link TokenChangeFeed#subscribe(TokenChangeListener)} 注册
+ */
+@FunctionalInterface
+public interface TokenChangeListener {
+
+    /**
+     * 在轮询线程上按 (seq, id) 升序收到一批变更，同一个id可能出现多次，以最后一次为准
+     */
+    void onChanges(List<TokenChange> changes);
+}
@@ -0,0 +1,137 @@
+package com.example.esautocomplete.index;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.example.esautocomplete.model.Token;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 按切片并行读取源索引，合并成一个顺序迭代器。
+ * <p>
+ * 每个切片一个读取线程，各自用 search_after 翻页，把读到的Token放入有界队列；
+ * 消费者（批量写入）跟不上时读取线程阻塞在队列上，内存中最多只有队列容量加上各线程手里的一页数据。
+ * 任一切片读取失败后迭代提前结束，调用方需要通过 {@link #getFailure()} 判断是否读全。
+ */
+@Slf4j
+final class SlicedTokenReader implements Iterator<Token>, AutoCloseable {
+
+    /** 切片读取完毕的标记 */
+    private static final Object END = new Object();
+
+    /**
+     * 读取一页数据
+     */
+    @FunctionalInterface
+    interface PageFetcher {
+        /**
+         * @param slice 切片编号，从0开始
+         * @param searchAfter 上一页最后一条的排序值，第一页为null
+         * @return 本页数据，数据为空表示该切片已读完
+         */
+        Page fetch(int slice, List<FieldValue> searchAfter) throws Exception;
+    }
+
+    record Page(List<Token> tokens, List<FieldValue> searchAfter) {
+    }
+
+    private final BlockingQueue<Object> queue;
+    private final List<Thread> readers = new ArrayList<>();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final int slices;
+
+    private int finishedSlices;
+    private Token next;
+
+    SlicedTokenReader(int slices, int queueCapacity, PageFetcher fetcher) {
+        this.slices = slices;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        for (int slice = 0; slice < slices; slice++) {
+            int sliceId = slice;
+            Thread thread = new Thread(() -> read(sliceId, fetcher), "token-reindex-slice-" + slice);
+            thread.setDaemon(true);
+            readers.add(thread);
+        }
+        readers.forEach(Thread::start);
+    }
+
+    private void read(int slice, PageFetcher fetcher) {
+        try {
+            List<FieldValue> searchAfter = null;
+            while (failure.get() == null) {
+                Page page = fetcher.fetch(slice, searchAfter);
+                if (page.tokens().isEmpty()) {
+                    break;
+                }
+                for (Token token : page.tokens()) {
+                    queue.put(token);
+                }
+                searchAfter = page.searchAfter();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            log.error("读取源索引切片{}时发生错误", slice, e);
+            failure.compareAndSet(null, e);
+        }
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (finishedSlices == slices || failure.get() != null) {
+                return false;
+            }
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+                return false;
+            }
+            if (item == END) {
+                finishedSlices++;
+            } else {
+                next = (Token) item;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Token token = next;
+        next = null;
+        return token;
+    }
+
+    /**
+     * @return 第一个读取错误，全部切片正常读完时为null
+     */
+    Exception getFailure() {
+        return failure.get();
+    }
+
+    @Override
+    public void close() {
+        readers.forEach(Thread::interrupt);
+        queue.clear();
+    }
+}
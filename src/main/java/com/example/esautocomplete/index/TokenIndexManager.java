@@ -0,0 +1,547 @@
+package com.example.esautocomplete.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.elasticsearch.client.elc.EntityAsMap;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.IngestReport;
+import com.example.esautocomplete.feed.ChangeSequence;
+import com.example.esautocomplete.ingest.TokenBulkIngester;
+import com.example.esautocomplete.model.Token;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.mapping.FieldType;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.get_mapping.IndexMappingRecord;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import co.elastic.clients.json.JsonData;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * token索引的版本化管理。
+ * <p>
+ * 读写都通过别名 {@value #ALIAS} 进行，实际数据存放在 token_v&lt;时间戳&gt; 形式的版本化索引中。
+ * 重建索引时新建一个版本，按切片并行读取当前别名下的数据（point-in-time + search_after），
+ * 关闭副本和刷新后批量写入新索引，写完恢复设置并刷新，最后在一次 update_aliases 请求中原子地把别名切到新索引。
+ * 整个过程中读请求一直访问旧索引，内存占用只与切片数和页大小有关，与数据总量无关。
+ * <p>
+ * 重建期间通过别名写入的数据落在旧索引上：打开point-in-time之前记下变更序号的下限（减去 settle-lag，
+ * 覆盖refresh延迟和实例间的时钟偏差），全量复制完成后把旧索引中seq不小于下限的文档补写到新索引，
+ * 并按墓碑删除期间被删掉的文档。第一轮补写不阻塞写入；随后持有 {@link #writeGate()} 的独占锁，
+ * 只补写第一轮开始之后的少量增量并切换别名，本实例的写入只在这段时间内等待。
+ * 其他实例的写入不经过这把锁，在最后一轮补写与切换之间写入的少量文档仍可能需要重新写入。
+ * <p>
+ * 映射变化（如中缀补全所需的子字段和分析器）只能通过重建生效：分析器不能添加到已打开的索引上，
+ * 重建后别名原子切换，迁移期间读请求不中断。
+ */
+@Slf4j
+@Component
+public class TokenIndexManager {
+
+    public static final String ALIAS = "token";
+
+    /** 删除Token时写入墓碑的索引，不随版本化索引重建 */
+    public static final String TOMBSTONE_INDEX = "token_tombstone";
+
+    private static final String MAPPING_PATH = "es/token-mapping.json";
+    private static final String SETTINGS_PATH = "es/token-settings.json";
+    private static final String TOMBSTONE_MAPPING_PATH = "es/token-tombstone-mapping.json";
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+    private static final List<String> INFIX_FIELDS = List.of("prefix", "infix");
+    private static final List<String> COMPLETION_FIELDS = List.of("nameSuggest", "symbolSuggest");
+
+    /** completion字段上按链过滤的上下文名称，取值来自文档的chain字段 */
+    public static final String CHAIN_CONTEXT = "chain";
+
+    /** 合约地址字段，及其带index_prefixes的前缀子字段 */
+    public static final String ADDRESS_FIELD = "address";
+    public static final String ADDRESS_PREFIX_FIELD = "address.prefix";
+
+    private static final String SEQ_FIELD = "seq";
+    private static final String ID_FIELD = "id";
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Autowired
+    private TokenBulkIngester tokenBulkIngester;
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** 别名下的索引是否已包含中缀补全所需的子字段，由 {@link #detectInfixFields()}、建索引和重建更新 */
+    private volatile boolean infixFields;
+
+    /** 别名下的索引的completion字段是否已带chain上下文，由 {@link #detectChainContexts()}、建索引和重建更新 */
+    private volatile boolean chainContexts;
+
+    /** 别名下的索引是否已包含合约地址字段，由 {@link #detectAddressFields()}、{@link #putAddressFields()}、建索引和重建更新 */
+    private volatile boolean addressFields;
+
+    private volatile boolean tombstoneIndexReady;
+
+    /** 通过别名写入时共享持有，重建索引追平最后一段增量并切换别名时独占；公平模式下等待中的独占不会被新的写入饿死 */
+    private final ReentrantReadWriteLock writeGate = new ReentrantReadWriteLock(true);
+
+    /**
+     * 本实例通过别名写入（保存、批量写入、删除、更新权重）时持有的锁。
+     * 重建索引只在切换别名前的最后一段增量追平期间独占，写入在这段时间内短暂等待
+     */
+    public Lock writeGate() {
+        return writeGate.readLock();
+    }
+
+    /**
+     * 别名和同名索引都不存在时，创建第一个版本化索引并挂上别名
+     *
+     * @return 是否新建了索引
+     */
+    public synchronized boolean createIfAbsent() throws IOException {
+        if (elasticsearchClient.indices().exists(e -> e.index(ALIAS)).value()) {
+            return false;
+        }
+        String index = newIndexName();
+        createIndex(index, false);
+        elasticsearchClient.indices().updateAliases(u -> u.actions(a -> a.add(add -> add.index(index).alias(ALIAS))));
+        infixFields = true;
+        chainContexts = true;
+        addressFields = true;
+        log.info("已创建索引 {} 并设置别名 {}", index, ALIAS);
+        return true;
+    }
+
+    /**
+     * 创建墓碑索引（已存在时跳过），变更订阅从这里得知已删除的文档
+     */
+    public synchronized void createTombstoneIndexIfAbsent() throws IOException {
+        if (tombstoneIndexReady) {
+            return;
+        }
+        if (!elasticsearchClient.indices().exists(e -> e.index(TOMBSTONE_INDEX)).value()) {
+            ObjectNode definition = readJson(TOMBSTONE_MAPPING_PATH);
+            elasticsearchClient.indices().create(c -> c
+                    .index(TOMBSTONE_INDEX)
+                    .settings(IndexSettings.of(s -> s.withJson(new StringReader(definition.path("settings").toString()))))
+                    .mappings(TypeMapping.of(m -> m.withJson(new StringReader(definition.path("mappings").toString())))));
+            log.info("已创建墓碑索引 {}", TOMBSTONE_INDEX);
+        }
+        tombstoneIndexReady = true;
+    }
+
+    /**
+     * 中缀补全所需的子字段是否可用；为false时中缀查询应回退到通配符查询
+     */
+    public boolean hasInfixFields() {
+        return infixFields;
+    }
+
+    /**
+     * 读取别名下全部索引的映射，检查name/symbol是否都带有中缀补全所需的子字段
+     */
+    public boolean detectInfixFields() throws IOException {
+        Map<String, IndexMappingRecord> mappings = elasticsearchClient.indices().getMapping(g -> g.index(ALIAS)).result();
+        infixFields = !mappings.isEmpty()
+                && mappings.values().stream().allMatch(record -> hasInfixFields(record.mappings()));
+        return infixFields;
+    }
+
+    static boolean hasInfixFields(TypeMapping mapping) {
+        for (String field : List.of("name", "symbol")) {
+            Property property = mapping.properties().get(field);
+            if (property == null || !property.isText()
+                    || !property.text().fields().keySet().containsAll(INFIX_FIELDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * completion字段的chain上下文是否可用；为false时按链过滤的补全应回退到普通查询
+     */
+    public boolean hasChainContexts() {
+        return chainContexts;
+    }
+
+    /**
+     * 读取别名下全部索引的映射，检查两个completion字段是否都带有chain上下文
+     */
+    public boolean detectChainContexts() throws IOException {
+        Map<String, IndexMappingRecord> mappings = elasticsearchClient.indices().getMapping(g -> g.index(ALIAS)).result();
+        chainContexts = !mappings.isEmpty()
+                && mappings.values().stream().allMatch(record -> hasChainContexts(record.mappings()));
+        return chainContexts;
+    }
+
+    static boolean hasChainContexts(TypeMapping mapping) {
+        for (String field : COMPLETION_FIELDS) {
+            Property property = mapping.properties().get(field);
+            if (property == null || !property.isCompletion() || property.completion().contexts().stream()
+                    .noneMatch(context -> CHAIN_CONTEXT.equals(context.name()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合约地址字段是否可用；为false时地址前缀查询回退到address字段本身上的前缀查询
+     */
+    public boolean hasAddressFields() {
+        return addressFields;
+    }
+
+    /**
+     * 读取别名下全部索引的映射，检查是否都带有address字段及其前缀子字段
+     */
+    public boolean detectAddressFields() throws IOException {
+        Map<String, IndexMappingRecord> mappings = elasticsearchClient.indices().getMapping(g -> g.index(ALIAS)).result();
+        addressFields = !mappings.isEmpty()
+                && mappings.values().stream().allMatch(record -> hasAddressFields(record.mappings()));
+        return addressFields;
+    }
+
+    static boolean hasAddressFields(TypeMapping mapping) {
+        Property property = mapping.properties().get(ADDRESS_FIELD);
+        return property != null && property.isKeyword() && property.keyword().fields().containsKey("prefix");
+    }
+
+    /**
+     * 把映射文件中的address字段原地加到别名下的全部索引上。新增字段只用内置的keyword分析器，不需要关闭索引或重建；
+     * 已有文档没有地址，之后写入的文档直接按新映射索引。字段已被动态映射为其他类型时ES会拒绝，需要改为重建
+     */
+    public synchronized void putAddressFields() throws IOException {
+        JsonNode address = readJson(MAPPING_PATH).path("mappings").path("properties").path(ADDRESS_FIELD);
+        Property property = Property.of(p -> p.withJson(new StringReader(address.toString())));
+        elasticsearchClient.indices().putMapping(p -> p.index(ALIAS).properties(ADDRESS_FIELD, property));
+        addressFields = true;
+        log.info("已在别名 {} 下的索引上添加合约地址字段", ALIAS);
+    }
+
+    /**
+     * 在两个completion字段上各执行一次补全，让每个分片把completion的FST加载进内存。
+     * FST在分片上第一次被查询时才加载，新节点或新索引上的第一批补全请求会承担这部分开销；
+     * 关闭请求缓存，确保请求真正到达分片。每个分片只预热被选中的一个副本。
+     *
+     * @return 成功响应的分片数
+     */
+    public int warmCompletionFields() throws IOException {
+        SearchResponse<Void> response = elasticsearchClient.search(s -> s
+                .index(ALIAS)
+                .size(0)
+                .requestCache(false)
+                .suggest(sg -> {
+                    for (String field : COMPLETION_FIELDS) {
+                        sg.suggesters(field, f -> f.prefix("a").completion(c -> c.field(field).size(1)));
+                    }
+                    return sg;
+                }), Void.class);
+        return response.shards().successful().intValue();
+    }
+
+    /**
+     * 别名是否已指向版本化索引；为false时可能是旧版本直接创建的同名索引，需要通过重建迁移
+     */
+    public boolean isAliased() throws IOException {
+        return elasticsearchClient.indices().existsAlias(e -> e.name(ALIAS)).value();
+    }
+
+    /**
+     * 把别名下的全部数据重建到一个新版本的索引中并原子切换别名。
+     * 读取或写入有任何失败时删除新索引，别名保持不变。
+     *
+     * @param preparer 写入新索引前对每个Token执行的预处理
+     * @return 写入报告
+     */
+    public synchronized IngestReport reindex(Consumer<Token> preparer) throws IOException {
+        AutocompleteProperties.Reindex settings = properties.getReindex();
+        boolean aliased = isAliased();
+        Set<String> oldIndices = aliased
+                ? new TreeSet<>(elasticsearchClient.indices().getAlias(g -> g.name(ALIAS)).result().keySet())
+                : Set.of(ALIAS);
+
+        String target = newIndexName();
+        createIndex(target, true);
+        log.info("开始重建索引: {} -> {}，切片数={}", oldIndices, target, settings.getSlices());
+
+        Time keepAlive = Time.of(t -> t.time(settings.getKeepAlive().toSeconds() + "s"));
+        // 序号不小于这个下限的写入可能不在point-in-time里，切换别名前补写
+        long deltaFloor = deltaFloor();
+        String pitId = elasticsearchClient.openPointInTime(o -> o.index(ALIAS).keepAlive(keepAlive)).id();
+        IngestReport report;
+        Exception readFailure;
+        try (SlicedTokenReader reader = new SlicedTokenReader(settings.getSlices(),
+                settings.getPageSize() * settings.getSlices(),
+                (slice, searchAfter) -> fetchPage(pitId, keepAlive, slice, searchAfter))) {
+            report = tokenBulkIngester.ingest(reader, preparer, IndexCoordinates.of(target), null);
+            readFailure = reader.getFailure();
+        } catch (RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        } finally {
+            closePointInTime(pitId);
+        }
+
+        if (readFailure != null || report.getFailed() > 0) {
+            deleteQuietly(target);
+            throw new IllegalStateException("重建索引失败，别名保持不变: 读取错误=" + readFailure
+                    + ", 写入失败=" + report.getFailed(), readFailure);
+        }
+
+        Lock exclusive = writeGate.writeLock();
+        try {
+            // 第一轮不阻塞写入，追平全量复制期间的写入；最后一轮只剩第一轮开始之后的少量增量
+            long finalFloor = deltaFloor();
+            int caughtUp = copyDelta(oldIndices, target, deltaFloor, preparer);
+            restoreSettings(target);
+            exclusive.lock();
+            caughtUp += copyDelta(oldIndices, target, finalFloor, preparer);
+            elasticsearchClient.indices().refresh(r -> r.index(target));
+            swapAlias(target, oldIndices, aliased);
+            log.info("重建期间的写入已补写到新索引: {} 条", caughtUp);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        } finally {
+            if (writeGate.isWriteLockedByCurrentThread()) {
+                exclusive.unlock();
+            }
+        }
+        infixFields = true;
+        chainContexts = true;
+        addressFields = true;
+        if (aliased && settings.isDeleteOldIndices()) {
+            elasticsearchClient.indices().delete(d -> d.index(new ArrayList<>(oldIndices)));
+        }
+        log.info("重建索引完成，别名 {} 已切换到 {}，共写入 {} 条", ALIAS, target, report.getIndexed());
+        return report;
+    }
+
+    private SlicedTokenReader.Page fetchPage(String pitId, Time keepAlive, int slice, List<FieldValue> searchAfter)
+            throws IOException {
+        int slices = properties.getReindex().getSlices();
+        SearchResponse<EntityAsMap> response = elasticsearchClient.search(s -> {
+            s.pit(p -> p.id(pitId).keepAlive(keepAlive))
+                    .size(properties.getReindex().getPageSize())
+                    .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+            if (slices > 1) {
+                s.slice(sl -> sl.id(String.valueOf(slice)).max(slices));
+            }
+            if (searchAfter != null) {
+                s.searchAfter(searchAfter);
+            }
+            return s;
+        }, EntityAsMap.class);
+
+        return toPage(response.hits().hits());
+    }
+
+    private SlicedTokenReader.Page toPage(List<Hit<EntityAsMap>> hits) {
+        List<Token> tokens = new ArrayList<>(hits.size());
+        for (Hit<EntityAsMap> hit : hits) {
+            // 通过Spring Data的转换器读取，_class等元数据字段和以后新增的字段都按实体映射处理
+            Document document = Document.from(hit.source());
+            document.setId(hit.id());
+            tokens.add(elasticsearchOperations.getElasticsearchConverter().read(Token.class, document));
+        }
+        List<FieldValue> next = hits.isEmpty() ? null : hits.get(hits.size() - 1).sort();
+        return new SlicedTokenReader.Page(tokens, next);
+    }
+
+    /**
+     * 当前时刻减去 settle-lag 对应的变更序号：refresh之前和时钟偏差范围内的写入序号都不小于它
+     */
+    private long deltaFloor() {
+        return ChangeSequence.floor(System.currentTimeMillis() - properties.getChangeFeed().getSettleLag().toMillis());
+    }
+
+    /**
+     * 把旧索引中seq不小于floor的文档补写到新索引，再按floor之后的墓碑删除新索引中的文档。
+     * 重复补写同一文档是幂等的，floor取得保守一些只会多写几条
+     *
+     * @return 补写和删除的文档数
+     */
+    private int copyDelta(Set<String> oldIndices, String target, long floor, Consumer<Token> preparer)
+            throws IOException {
+        List<String> sources = new ArrayList<>(oldIndices);
+        elasticsearchClient.indices().refresh(r -> r.index(sources));
+        Map<String, Long> written = new HashMap<>();
+        for (SlicedTokenReader.Page page = fetchSince(sources, floor, null); !page.tokens().isEmpty();
+             page = fetchSince(sources, floor, page.searchAfter())) {
+            IngestReport report = tokenBulkIngester.ingest(page.tokens().iterator(), preparer,
+                    IndexCoordinates.of(target), null);
+            if (report.getFailed() > 0) {
+                throw new IllegalStateException("补写重建期间的写入失败，别名保持不变: 写入失败=" + report.getFailed());
+            }
+            page.tokens().forEach(token -> written.merge(token.getId(), seqOf(token), Math::max));
+        }
+
+        createTombstoneIndexIfAbsent();
+        elasticsearchClient.indices().refresh(r -> r.index(TOMBSTONE_INDEX));
+        Map<String, Long> tombstones = new HashMap<>();
+        for (SlicedTokenReader.Page page = fetchSince(List.of(TOMBSTONE_INDEX), floor, null);
+             !page.tokens().isEmpty(); page = fetchSince(List.of(TOMBSTONE_INDEX), floor, page.searchAfter())) {
+            page.tokens().forEach(token -> tombstones.merge(token.getId(), seqOf(token), Math::max));
+        }
+        List<String> deleted = deletedSince(tombstones, written);
+        if (!deleted.isEmpty()) {
+            BulkResponse response = elasticsearchClient.bulk(b -> {
+                deleted.forEach(id -> b.operations(o -> o.delete(d -> d.index(target).id(id))));
+                return b;
+            });
+            // 新索引中本来就没有的文档返回not_found，不算失败
+            long failed = response.items().stream().filter(item -> item.error() != null).count();
+            if (failed > 0) {
+                throw new IllegalStateException("按墓碑删除重建期间删掉的文档失败，别名保持不变: 失败=" + failed);
+            }
+        }
+        return written.size() + deleted.size();
+    }
+
+    /**
+     * 需要从新索引中删除的文档：有墓碑，且没有被序号更大的写入重新创建
+     *
+     * @param tombstones 文档ID到墓碑序号
+     * @param written 文档ID到补写时读到的序号
+     */
+    static List<String> deletedSince(Map<String, Long> tombstones, Map<String, Long> written) {
+        List<String> deleted = new ArrayList<>();
+        tombstones.forEach((id, seq) -> {
+            Long rewritten = written.get(id);
+            if (rewritten == null || rewritten < seq) {
+                deleted.add(id);
+            }
+        });
+        return deleted;
+    }
+
+    private static long seqOf(Token token) {
+        return token.getSeq() == null ? 0 : token.getSeq();
+    }
+
+    /**
+     * 按 (seq, id) 翻页读取seq不小于floor的文档；旧映射没有seq字段的索引不返回任何文档
+     */
+    private SlicedTokenReader.Page fetchSince(List<String> indices, long floor, List<FieldValue> searchAfter)
+            throws IOException {
+        SearchResponse<EntityAsMap> response = elasticsearchClient.search(s -> {
+            s.index(indices)
+                    .size(properties.getReindex().getPageSize())
+                    .query(q -> q.range(r -> r.field(SEQ_FIELD).gte(JsonData.of(floor))))
+                    .sort(so -> so.field(f -> f.field(SEQ_FIELD).order(SortOrder.Asc).unmappedType(FieldType.Long)))
+                    .sort(so -> so.field(f -> f.field(ID_FIELD).order(SortOrder.Asc).unmappedType(FieldType.Keyword)));
+            if (searchAfter != null) {
+                s.searchAfter(searchAfter);
+            }
+            return s;
+        }, EntityAsMap.class);
+        return toPage(response.hits().hits());
+    }
+
+    private void swapAlias(String target, Set<String> oldIndices, boolean aliased) throws IOException {
+        List<Action> actions = new ArrayList<>();
+        if (aliased) {
+            oldIndices.forEach(index -> actions.add(Action.of(a -> a.remove(r -> r.index(index).alias(ALIAS)))));
+        } else {
+            // 旧版本直接创建的同名索引：删除索引与添加别名在同一个请求中完成
+            actions.add(Action.of(a -> a.removeIndex(r -> r.index(ALIAS))));
+        }
+        actions.add(Action.of(a -> a.add(add -> add.index(target).alias(ALIAS))));
+        elasticsearchClient.indices().updateAliases(u -> u.actions(actions));
+    }
+
+    private void createIndex(String index, boolean bulkMode) throws IOException {
+        ObjectNode settings = indexSettings(readJson(SETTINGS_PATH), bulkMode);
+        JsonNode mappings = readJson(MAPPING_PATH).path("mappings");
+        elasticsearchClient.indices().create(c -> c
+                .index(index)
+                .settings(IndexSettings.of(s -> s.withJson(new StringReader(settings.toString()))))
+                .mappings(TypeMapping.of(m -> m.withJson(new StringReader(mappings.toString())))));
+    }
+
+    /**
+     * 批量写入期间关闭副本和刷新，写完后再恢复为配置文件中的值
+     */
+    static ObjectNode indexSettings(ObjectNode configured, boolean bulkMode) {
+        ObjectNode settings = configured.deepCopy();
+        if (bulkMode) {
+            ObjectNode index = settings.withObject("/index");
+            index.put("refresh_interval", "-1");
+            index.put("number_of_replicas", "0");
+        }
+        return settings;
+    }
+
+    private void restoreSettings(String index) throws IOException {
+        JsonNode configured = readJson(SETTINGS_PATH).path("index");
+        String replicas = configured.path("number_of_replicas").asText("1");
+        String refreshInterval = configured.path("refresh_interval").asText("1s");
+        elasticsearchClient.indices().putSettings(p -> p
+                .index(index)
+                .settings(s -> s
+                        .numberOfReplicas(replicas)
+                        .refreshInterval(t -> t.time(refreshInterval))));
+    }
+
+    private ObjectNode readJson(String path) throws IOException {
+        try (InputStream input = new ClassPathResource(path).getInputStream()) {
+            return (ObjectNode) objectMapper.readTree(input);
+        }
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        } catch (Exception e) {
+            log.warn("关闭point-in-time失败，将在保活时间后自动释放: {}", e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(String index) {
+        try {
+            elasticsearchClient.indices().delete(d -> d.index(index));
+        } catch (Exception e) {
+            log.warn("删除未完成的索引 {} 失败: {}", index, e.getMessage());
+        }
+    }
+
+    private static String newIndexName() {
+        return ALIAS + "_v" + LocalDateTime.now().format(VERSION_FORMAT);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.esautocomplete.ingest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.example.esautocomplete.dto.IngestReport;
+import com.example.esautocomplete.model.Token;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * 逐行解析NDJSON（每行一个Token的JSON对象）的迭代器，不会把整个请求体读入内存。
+ * 无法解析的行会被跳过，并以 "line:行号" 作为ID记录为解析失败。
+ */
+public class NdjsonTokenIterator implements Iterator<Token> {
+
+    private final BufferedReader reader;
+    private final ObjectReader tokenReader;
+    private final int maxReportedFailures;
+    private final List<IngestReport.ItemFailure> parseFailures = new ArrayList<>();
+    private long parseFailureCount;
+    private long lineNumber;
+    private Token next;
+
+    public NdjsonTokenIterator(BufferedReader reader, ObjectMapper objectMapper, int maxReportedFailures) {
+        this.reader = reader;
+        this.tokenReader = objectMapper.readerFor(Token.class);
+        this.maxReportedFailures = maxReportedFailures;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    next = tokenReader.readValue(line);
+                    return true;
+                } catch (JsonProcessingException e) {
+                    parseFailureCount++;
+                    if (parseFailures.size() < maxReportedFailures) {
+                        parseFailures.add(IngestReport.ItemFailure.builder()
+                                .id("line:" + lineNumber)
+                                .reason("JSON解析失败: " + e.getOriginalMessage())
+                                .build());
+                    }
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取NDJSON请求体失败", e);
+        }
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Token token = next;
+        next = null;
+        return token;
+    }
+
+    public long getParseFailureCount() {
+        return parseFailureCount;
+    }
+
+    public List<IngestReport.ItemFailure> getParseFailures() {
+        return parseFailures;
+    }
+}
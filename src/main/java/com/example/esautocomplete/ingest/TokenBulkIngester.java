@@ -0,0 +1,301 @@
+package com.example.esautocomplete.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.IngestReport;
+import com.example.esautocomplete.model.Token;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 流式、分块、并行的Token批量写入。
+ * <p>
+ * 调用线程逐条读取数据源并执行预处理，按文档数和估算字节数切分成bulk请求，
+ * 交给所有写入共用的工作线程池并行发送；每次写入的在途请求数达到上限时调用线程阻塞，不再读取数据源，
+ * 因此内存中最多只有 maxInFlight + 1 个分块，与数据源总量无关。
+ * 线程池只有 maxInFlight 个线程，并发的多次写入排队共用，不会随调用次数创建新的线程。
+ * 被ES拒绝（429）的文档按指数退避重试，其余失败逐条记录在报告中。
+ */
+@Slf4j
+@Component
+public class TokenBulkIngester {
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    /** 所有写入共用，首次写入时按 maxInFlight 创建 */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 写入数据源中的全部Token
+     *
+     * @param source 数据源，只会被顺序遍历一次
+     * @param preparer 写入前对每个Token执行的预处理（生成ID、补全字段等）
+     * @param index 目标索引
+     * @param onChunkIndexed 每个分块写入成功后的回调，参数为该分块中写入成功的Token
+     * @return 写入报告
+     */
+    public IngestReport ingest(Iterator<Token> source, Consumer<Token> preparer, IndexCoordinates index,
+                               Consumer<List<Token>> onChunkIndexed) {
+        AutocompleteProperties.Ingest settings = properties.getIngest();
+        long maxChunkBytes = settings.getChunkBytes().toBytes();
+        Run run = new Run(settings, index, onChunkIndexed);
+
+        long start = System.nanoTime();
+        ExecutorService executor = executor();
+        List<Token> chunk = new ArrayList<>(settings.getChunkDocs());
+        try {
+            long chunkBytes = 0;
+            while (source.hasNext()) {
+                Token token = source.next();
+                run.total.increment();
+                try {
+                    preparer.accept(token);
+                } catch (RuntimeException e) {
+                    // 单条数据不合法（如缺少名称）只记录失败，不影响其余数据
+                    run.fail(token.getId(), null, "预处理失败: " + e);
+                    continue;
+                }
+                chunk.add(token);
+                chunkBytes += estimateBytes(token);
+                if (chunk.size() >= settings.getChunkDocs() || chunkBytes >= maxChunkBytes) {
+                    run.submit(executor, chunk);
+                    chunk = new ArrayList<>(settings.getChunkDocs());
+                    chunkBytes = 0;
+                }
+            }
+            if (!chunk.isEmpty()) {
+                run.submit(executor, chunk);
+                chunk = List.of();
+            }
+            run.awaitAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // 已读取但未提交的分块记为失败；已提交的分块仍在发送，等它们结束后报告才准确
+            chunk.forEach(token -> run.fail(token.getId(), null, "批量写入被中断"));
+            log.warn("批量写入被中断，{}条未提交的文档记为失败，等待已提交的分块完成", chunk.size());
+            run.awaitAllUninterruptibly();
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        IngestReport report = run.toReport(elapsedMillis);
+        log.info("批量写入完成: 总数={}, 成功={}, 失败={}, 重试={}, 分块数={}, 耗时={}ms, 吞吐={} docs/s",
+                report.getTotal(), report.getIndexed(), report.getFailed(), report.getRetried(),
+                report.getChunks(), elapsedMillis, String.format("%.1f", report.getDocsPerSecond()));
+        return report;
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            int threads = properties.getIngest().getMaxInFlight();
+            // 每次写入最多提交 maxInFlight 个分块，队列长度受并发写入数限制；空闲线程一分钟后回收
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new IngestThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 估算一个Token在bulk请求中的字节数：name和symbol在_source中出现一次，
+     * 在两个completion字段中各出现两次（原文和小写），再加上固定的元数据开销
+     */
+    static long estimateBytes(Token token) {
+        long text = utf8Length(token.getName()) + utf8Length(token.getSymbol());
+        return 128 + utf8Length(token.getId()) + text * 3;
+    }
+
+    private static long utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * 一次写入过程的状态，被调用线程和工作线程共享
+     */
+    private final class Run {
+
+        private final AutocompleteProperties.Ingest settings;
+        private final IndexCoordinates index;
+        private final Consumer<List<Token>> onChunkIndexed;
+        private final Semaphore inFlight;
+
+        private final LongAdder total = new LongAdder();
+        private final LongAdder indexed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+        private final LongAdder chunks = new LongAdder();
+        private final List<IngestReport.ItemFailure> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Run(AutocompleteProperties.Ingest settings, IndexCoordinates index, Consumer<List<Token>> onChunkIndexed) {
+            this.settings = settings;
+            this.index = index;
+            this.onChunkIndexed = onChunkIndexed;
+            this.inFlight = new Semaphore(settings.getMaxInFlight());
+        }
+
+        void submit(ExecutorService executor, List<Token> chunk) throws InterruptedException {
+            // 在途请求已满时阻塞，形成对数据源的背压
+            inFlight.acquire();
+            chunks.increment();
+            executor.execute(() -> {
+                try {
+                    indexChunk(chunk);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        void awaitAll() throws InterruptedException {
+            inFlight.acquire(settings.getMaxInFlight());
+            inFlight.release(settings.getMaxInFlight());
+        }
+
+        void awaitAllUninterruptibly() {
+            inFlight.acquireUninterruptibly(settings.getMaxInFlight());
+            inFlight.release(settings.getMaxInFlight());
+        }
+
+        private void indexChunk(List<Token> chunk) {
+            List<Token> pending = chunk;
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    elasticsearchOperations.bulkIndex(toQueries(pending), index);
+                    succeeded(pending);
+                    return;
+                } catch (BulkFailureException e) {
+                    List<Token> rejected = new ArrayList<>();
+                    List<Token> succeeded = new ArrayList<>();
+                    Map<String, BulkFailureException.FailureDetails> failedDocuments = e.getFailedDocuments();
+                    for (Token token : pending) {
+                        BulkFailureException.FailureDetails details = failedDocuments.get(token.getId());
+                        if (details == null) {
+                            succeeded.add(token);
+                        } else if (isRejected(details) && attempt < settings.getMaxRetries()) {
+                            rejected.add(token);
+                        } else {
+                            fail(token.getId(), details.status(), details.errorMessage());
+                        }
+                    }
+                    succeeded(succeeded);
+                    if (rejected.isEmpty()) {
+                        return;
+                    }
+                    pending = rejected;
+                } catch (Exception e) {
+                    if (attempt >= settings.getMaxRetries()) {
+                        log.error("bulk请求重试{}次后仍然失败，{}条文档写入失败", attempt, pending.size(), e);
+                        pending.forEach(token -> fail(token.getId(), null, e.getMessage()));
+                        return;
+                    }
+                    log.warn("bulk请求失败，准备第{}次重试: {}", attempt + 1, e.getMessage());
+                }
+                retried.add(pending.size());
+                if (!backoff(attempt)) {
+                    pending.forEach(token -> fail(token.getId(), null, "重试等待被中断"));
+                    return;
+                }
+            }
+        }
+
+        private boolean isRejected(BulkFailureException.FailureDetails details) {
+            return details.status() != null && details.status() == HTTP_TOO_MANY_REQUESTS;
+        }
+
+        private boolean backoff(int attempt) {
+            try {
+                Thread.sleep(settings.getRetryBackoff().toMillis() << attempt);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private void succeeded(List<Token> tokens) {
+            if (tokens.isEmpty()) {
+                return;
+            }
+            indexed.add(tokens.size());
+            if (onChunkIndexed != null) {
+                onChunkIndexed.accept(tokens);
+            }
+        }
+
+        private void fail(String id, Integer status, String reason) {
+            failed.increment();
+            if (failures.size() < settings.getMaxReportedFailures()) {
+                failures.add(IngestReport.ItemFailure.builder().id(id).status(status).reason(reason).build());
+            }
+        }
+
+        private List<IndexQuery> toQueries(List<Token> tokens) {
+            List<IndexQuery> queries = new ArrayList<>(tokens.size());
+            for (Token token : tokens) {
+                queries.add(new IndexQueryBuilder().withId(token.getId()).withObject(token).build());
+            }
+            return queries;
+        }
+
+        IngestReport toReport(long elapsedMillis) {
+            return IngestReport.builder()
+                    .total(total.sum())
+                    .indexed(indexed.sum())
+                    .failed(failed.sum())
+                    .retried(retried.sum())
+                    .chunks(chunks.sum())
+                    .elapsedMillis(elapsedMillis)
+                    .docsPerSecond(indexed.sum() * 1000.0 / elapsedMillis)
+                    .failures(new ArrayList<>(failures))
+                    .build();
+        }
+    }
+
+    private static final class IngestThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "token-ingest-" + SEQUENCE.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
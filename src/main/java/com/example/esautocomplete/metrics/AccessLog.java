@@ -0,0 +1,79 @@
+package com.example.esautocomplete.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 采样的访问日志，替代热路径上每个请求一条的同步INFO日志。
+ * <p>
+ * 正常请求按 autocomplete.access-log.sample-rate 采样，慢请求、出错和超时的请求总是记录。
+ * 日志写入名为 access 的logger，由 logback-spring.xml 中的异步appender输出，
+ * 请求线程只负责把事件放入队列，队列满时丢弃而不是阻塞请求。
+ */
+@Slf4j(topic = "access")
+@Component
+public class AccessLog {
+
+    public static final String OK = "ok";
+    public static final String EMPTY = "empty";
+    public static final String ERROR = "error";
+    public static final String TIMEOUT = "timeout";
+    public static final String REJECTED = "rejected";
+    public static final String DEGRADED = "degraded";
+    /** 条件请求命中ETag，返回304 */
+    public static final String NOT_MODIFIED = "not_modified";
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    /**
+     * @param endpoint 接口名
+     * @param query 查询文本，批量请求为查询项数
+     * @param results 返回的条数
+     * @param startNanos 请求开始时的 {@link System#nanoTime()}
+     * @param outcome 请求结果，见本类的常量
+     */
+    public void record(String endpoint, Object query, int size, int results, long startNanos, String outcome) {
+        AutocompleteProperties.AccessLogSettings settings = properties.getAccessLog();
+        if (!settings.isEnabled() || !log.isInfoEnabled()) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        if (!shouldLog(settings, elapsedNanos, outcome)) {
+            return;
+        }
+        log.info("{} query={} size={} results={} outcome={} 耗时={}ms", endpoint, query, size, results, outcome,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    static boolean shouldLog(AutocompleteProperties.AccessLogSettings settings, long elapsedNanos, String outcome) {
+        if (!OK.equals(outcome) && !EMPTY.equals(outcome) && !NOT_MODIFIED.equals(outcome)) {
+            return true;
+        }
+        if (elapsedNanos >= settings.getSlowThreshold().toNanos()) {
+            return true;
+        }
+        return ThreadLocalRandom.current().nextDouble() < settings.getSampleRate();
+    }
+
+    /**
+     * 按返回条数区分正常和空结果
+     */
+    public static String outcome(int results) {
+        return results == 0 ? EMPTY : OK;
+    }
+
+    /**
+     * 降级结果总是记录，其余按返回条数区分
+     */
+    public static String outcome(int results, boolean degraded) {
+        return degraded ? DEGRADED : outcome(results);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.esautocomplete.metrics;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResult;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+
+/**
+ * 在transport层统计每个ES请求的客户端耗时和响应中的took。
+ * <p>
+ * Spring Data的SearchHits不暴露took，放在这一层可以同时覆盖ElasticsearchOperations、
+ * 直接使用的ElasticsearchClient（_msearch、重建索引）和响应式客户端，且不改变任何调用方。
+ * 异步请求直接返回原始的future，取消订阅时仍能中止进行中的HTTP请求。
+ */
+public class InstrumentedTransport implements ElasticsearchTransport {
+
+    private final ElasticsearchTransport delegate;
+
+    private final SearchMetrics searchMetrics;
+
+    public InstrumentedTransport(ElasticsearchTransport delegate, SearchMetrics searchMetrics) {
+        this.delegate = delegate;
+        this.searchMetrics = searchMetrics;
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request,
+                                                                   Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                   TransportOptions options) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ResponseT response = delegate.performRequest(request, endpoint, options);
+            record(endpoint, response, start);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            searchMetrics.esFailure(endpoint.id(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(
+            RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+        long start = System.nanoTime();
+        CompletableFuture<ResponseT> future = delegate.performRequestAsync(request, endpoint, options);
+        future.whenComplete((response, error) -> {
+            if (error instanceof CancellationException) {
+                // 调用方放弃的请求（如用户继续输入）不算失败
+                return;
+            }
+            if (error != null) {
+                searchMetrics.esFailure(endpoint.id(), error);
+            } else {
+                record(endpoint, response, start);
+            }
+        });
+        return future;
+    }
+
+    private void record(Endpoint<?, ?, ?> endpoint, Object response, long start) {
+        searchMetrics.esRequest(endpoint.id(), took(response), System.nanoTime() - start);
+    }
+
+    private static long took(Object response) {
+        if (response instanceof ResponseBody<?> search) {
+            return search.took();
+        }
+        if (response instanceof MultiSearchResult<?> multiSearch) {
+            return multiSearch.took();
+        }
+        if (response instanceof BulkResponse bulk) {
+            return bulk.took();
+        }
+        return -1;
+    }
+
+    @Override
+    public JsonpMapper jsonpMapper() {
+        return delegate.jsonpMapper();
+    }
+
+    @Override
+    public TransportOptions options() {
+        return delegate.options();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.esautocomplete.metrics;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.resilience.CircuitOpenException;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 补全/纠错的业务指标。
+ * <p>
+ * 服务层出错时仍返回空列表，但错误和空结果都按原因计数，ES故障不会再和"没有匹配"混在一起：
+ * <ul>
+ *     <li>autocomplete.errors{operation, cause}：出错次数，cause见 {@link #cause(Throwable)}</li>
+ *     <li>autocomplete.empty{operation, cause}：空结果次数，cause为 blank_query、no_match（ES或本地引擎没有命中）、
+ *     filtered（ES有命中但被Java侧过滤掉）、error、timeout</li>
+ *     <li>autocomplete.hits.fetched / autocomplete.hits.returned{operation}：ES返回的命中（含completion选项）
+ *     与过滤、去重、截取之后返回的条数</li>
+ *     <li>autocomplete.degraded{operation, cause}：ES不可用（出错、超过截止时间或熔断）时由本地快照回答的请求</li>
+ *     <li>autocomplete.es.took / autocomplete.es.latency{endpoint}：ES报告的执行耗时与客户端观测到的耗时，
+ *     两者之差是网络、排队和序列化的开销</li>
+ * </ul>
+ * 各个接口的延迟分布由Spring的 http.server.requests 提供，分位数在application.yml中配置。
+ */
+@Component
+public class SearchMetrics {
+
+    public static final String SUGGEST = "suggest";
+    public static final String CORRECT = "correct";
+    public static final String PHRASE_CORRECT = "phrase_correct";
+    public static final String SUGGEST_OR_CORRECT = "suggest_or_correct";
+    public static final String BATCH = "batch";
+
+    public static final String CAUSE_BLANK_QUERY = "blank_query";
+    public static final String CAUSE_NO_MATCH = "no_match";
+    public static final String CAUSE_FILTERED = "filtered";
+    public static final String CAUSE_ERROR = "error";
+    public static final String CAUSE_TIMEOUT = "timeout";
+    public static final String CAUSE_CONNECTION = "connection";
+    public static final String CAUSE_REJECTED = "rejected";
+    public static final String CAUSE_ES_ERROR = "es_error";
+    public static final String CAUSE_IO = "io";
+    public static final String CAUSE_INTERNAL = "internal";
+    public static final String CAUSE_CIRCUIT_OPEN = "circuit_open";
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+
+    /** 按标签组合缓存的计量器，热路径上不再每次构建Meter.Id */
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public SearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void blankQuery(String operation) {
+        empty(operation, CAUSE_BLANK_QUERY);
+    }
+
+    /**
+     * 本地引擎给出的结果
+     */
+    public void served(String operation, int returned) {
+        if (returned == 0) {
+            empty(operation, CAUSE_NO_MATCH);
+        }
+    }
+
+    /**
+     * ES查询的结果
+     *
+     * @param fetched ES返回的命中数与completion选项数之和
+     * @param returned Java侧过滤、去重、截取之后的条数
+     */
+    public void fetched(String operation, int fetched, int returned) {
+        summary("autocomplete.hits.fetched", operation).record(fetched);
+        summary("autocomplete.hits.returned", operation).record(returned);
+        if (returned == 0) {
+            empty(operation, fetched == 0 ? CAUSE_NO_MATCH : CAUSE_FILTERED);
+        }
+    }
+
+    public void failed(String operation, Throwable error) {
+        failed(operation, cause(error));
+    }
+
+    public void failed(String operation, String cause) {
+        counter("autocomplete.errors", "operation", operation, "cause", cause).increment();
+        empty(operation, CAUSE_ERROR);
+    }
+
+    public void timedOut(String operation) {
+        counter("autocomplete.errors", "operation", operation, "cause", CAUSE_TIMEOUT).increment();
+        empty(operation, CAUSE_TIMEOUT);
+    }
+
+    /**
+     * ES查询出错（含超过截止时间和熔断），改由本地快照给出降级结果
+     */
+    public void degraded(String operation, Throwable error, int returned) {
+        counter("autocomplete.errors", "operation", operation, "cause", cause(error)).increment();
+        counter("autocomplete.degraded", "operation", operation, "cause", cause(error)).increment();
+        if (returned == 0) {
+            empty(operation, CAUSE_ERROR);
+        }
+    }
+
+    /**
+     * 一次ES请求完成
+     *
+     * @param endpoint 客户端的endpoint标识，如 search、msearch、bulk
+     * @param tookMillis 响应中的took，响应不带took时为负数
+     * @param elapsedNanos 客户端从发出请求到解析完响应的耗时
+     */
+    public void esRequest(String endpoint, long tookMillis, long elapsedNanos) {
+        timer("autocomplete.es.latency", endpoint).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (tookMillis >= 0) {
+            timer("autocomplete.es.took", endpoint).record(Duration.ofMillis(tookMillis));
+        }
+    }
+
+    public void esFailure(String endpoint, Throwable error) {
+        counter("autocomplete.es.errors", "endpoint", endpoint, "cause", cause(error)).increment();
+    }
+
+    private void empty(String operation, String cause) {
+        counter("autocomplete.empty", "operation", operation, "cause", cause).increment();
+    }
+
+    /**
+     * 把异常归类为有限的几种原因，沿cause链查找第一个可识别的异常
+     */
+    public static String cause(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof CircuitOpenException) {
+                return CAUSE_CIRCUIT_OPEN;
+            }
+            if (t instanceof SocketTimeoutException || t instanceof TimeoutException) {
+                return CAUSE_TIMEOUT;
+            }
+            if (t instanceof ConnectException || t instanceof DataAccessResourceFailureException) {
+                return CAUSE_CONNECTION;
+            }
+            if (t instanceof ElasticsearchException e) {
+                return e.status() == HTTP_TOO_MANY_REQUESTS ? CAUSE_REJECTED : CAUSE_ES_ERROR;
+            }
+        }
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof IOException) {
+                return CAUSE_IO;
+            }
+        }
+        return CAUSE_INTERNAL;
+    }
+
+    private Counter counter(String name, String key1, String value1, String key2, String value2) {
+        return counters.computeIfAbsent(name + '|' + value1 + '|' + value2, k -> Counter.builder(name)
+                .tag(key1, value1)
+                .tag(key2, value2)
+                .register(registry));
+    }
+
+    private DistributionSummary summary(String name, String operation) {
+        return summaries.computeIfAbsent(name + '|' + operation, k -> DistributionSummary.builder(name)
+                .tag("operation", operation)
+                .publishPercentiles(PERCENTILES)
+                .register(registry));
+    }
+
+    private Timer timer(String name, String endpoint) {
+        return timers.computeIfAbsent(name + '|' + endpoint, k -> Timer.builder(name)
+                .tag("endpoint", endpoint)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
@@ -17,7 +17,8 @@ import lombok.NoArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@Document(indexName = "token")
+// token是别名，实际索引由TokenIndexManager按版本创建
+@Document(indexName = "token", createIndex = false)
 @Setting(settingPath = "es/token-settings.json")
 public class Token {
     
@@ -30,6 +31,27 @@ public class Token {
     @Field(type = FieldType.Text, analyzer = "ik_max_word")
     private String symbol;
     
+    // 热度权重（非负），如按交易量或流动性换算，越大补全时越靠前
+    @Field(type = FieldType.Integer)
+    private Integer weight;
+    
+    // 变更序号，每次写入时递增，变更订阅按它拉取上次检查点之后变化的文档
+    @Field(type = FieldType.Long)
+    private Long seq;
+    
+    // 所在的链，如 ethereum、polygon、solana；同一符号在不同链上是不同的Token。写入时转为小写
+    @Field(type = FieldType.Keyword)
+    private String chain;
+    
+    // 分类，如 stablecoin、defi
+    @Field(type = FieldType.Keyword)
+    private String category;
+    
+    // 合约地址，写入时0x开头的十六进制地址转为小写；address.prefix子字段带index_prefixes，按地址前缀查询（见token-mapping.json）
+    @Field(type = FieldType.Keyword)
+    private String address;
+    
+    // 两个completion字段按chain和category建立上下文（见token-mapping.json），补全时可以在FST内按链过滤
     @CompletionField(maxInputLength = 100)
     private Completion nameSuggest;
     
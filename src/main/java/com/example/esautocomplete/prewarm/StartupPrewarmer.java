@@ -0,0 +1,298 @@
+package com.example.esautocomplete.prewarm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.BatchItem;
+import com.example.esautocomplete.dto.CorrectionCount;
+import com.example.esautocomplete.dto.PrewarmReport;
+import com.example.esautocomplete.dto.QueryCount;
+import com.example.esautocomplete.dto.QueryLogReport;
+import com.example.esautocomplete.index.TokenIndexManager;
+import com.example.esautocomplete.querylog.QueryLogCollector;
+import com.example.esautocomplete.service.TokenService;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 启动预热：部署后的第一批请求不再落在冷的ES分片、空的结果缓存和未编译的代码上。
+ * <p>
+ * 在报告就绪之前同步执行：先在completion字段上执行补全让各分片加载FST，
+ * 再按有限的并发把配置和预热文件中的热门前缀、纠错输入经 {@link TokenService} 回放一遍，
+ * 超过时间上限后剩余条目跳过。关闭时把查询日志中的热门前缀和被纠错的输入合并写回预热文件，下一次启动回放。
+ */
+@Slf4j
+@Component
+public class StartupPrewarmer {
+
+    private static final String COMMENT = "#";
+
+    private static final String MODE_SEPARATOR = "\t";
+
+    private final TokenService tokenService;
+
+    private final TokenIndexManager tokenIndexManager;
+
+    private final QueryLogCollector queryLogCollector;
+
+    private final AutocompleteProperties properties;
+
+    private volatile PrewarmReport lastReport;
+
+    public StartupPrewarmer(TokenService tokenService, TokenIndexManager tokenIndexManager,
+                            QueryLogCollector queryLogCollector, AutocompleteProperties properties) {
+        this.tokenService = tokenService;
+        this.tokenIndexManager = tokenIndexManager;
+        this.queryLogCollector = queryLogCollector;
+        this.properties = properties;
+    }
+
+    /**
+     * 执行一次预热，阻塞到全部条目回放完或超过时间上限
+     *
+     * @return 预热报告，未启用时为null
+     */
+    public PrewarmReport prewarm() {
+        AutocompleteProperties.Prewarm settings = properties.getPrewarm();
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        long deadline = start + settings.getTimeBudget().toNanos();
+
+        int warmedShards = -1;
+        if (settings.isWarmIndex()) {
+            try {
+                warmedShards = tokenIndexManager.warmCompletionFields();
+            } catch (Exception e) {
+                log.warn("预热completion字段失败: {}", e.getMessage());
+            }
+        }
+
+        List<Entry> entries = entries(settings);
+        AtomicInteger warmed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        replay(entries, settings, deadline, warmed, failed);
+
+        PrewarmReport report = PrewarmReport.builder()
+                .startedAt(startedAt)
+                .indexWarmed(warmedShards >= 0)
+                .warmedShards(Math.max(0, warmedShards))
+                .entries(entries.size())
+                .warmed(warmed.get())
+                .failed(failed.get())
+                .skipped(Math.max(0, entries.size() - warmed.get() - failed.get()))
+                .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .build();
+        lastReport = report;
+        log.info("预热完成: 分片 {}，回放 {}/{} 条，失败 {} 条，跳过 {} 条，耗时 {}ms", report.getWarmedShards(),
+                report.getWarmed(), report.getEntries(), report.getFailed(), report.getSkipped(),
+                report.getElapsedMillis());
+        return report;
+    }
+
+    /**
+     * 上一次预热的报告，尚未预热时为null
+     */
+    public PrewarmReport lastReport() {
+        return lastReport;
+    }
+
+    private void replay(List<Entry> entries, AutocompleteProperties.Prewarm settings, long deadline,
+                        AtomicInteger warmed, AtomicInteger failed) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, settings.getConcurrency()),
+                new PrewarmThreadFactory());
+        for (Entry entry : entries) {
+            executor.execute(() -> {
+                if (System.nanoTime() >= deadline) {
+                    return;
+                }
+                try {
+                    if (BatchItem.MODE_CORRECT.equals(entry.mode())) {
+                        tokenService.getCorrections(entry.query(), settings.getSize());
+                    } else {
+                        tokenService.getSuggestions(entry.query(), settings.getSize());
+                    }
+                    warmed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                log.warn("预热超过时间上限 {}，剩余条目跳过", settings.getTimeBudget());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 配置中的前缀和纠错输入在前，预热文件中的条目在后，去重后截取 max-entries 条
+     */
+    List<Entry> entries(AutocompleteProperties.Prewarm settings) {
+        Set<Entry> entries = new LinkedHashSet<>();
+        for (String prefix : settings.getPrefixes()) {
+            add(entries, BatchItem.MODE_SUGGEST, prefix);
+        }
+        for (String correction : settings.getCorrections()) {
+            add(entries, BatchItem.MODE_CORRECT, correction);
+        }
+        entries.addAll(readFile(settings));
+        return limit(entries, settings.getMaxEntries());
+    }
+
+    /**
+     * 把查询日志中的热门前缀和被采纳纠错的原始输入写回预热文件，
+     * 新记录的条目排在前面，原有条目排在后面，合计不超过 max-entries 条；先写临时文件再原子替换
+     */
+    @PreDestroy
+    public void recordHotEntries() {
+        AutocompleteProperties.Prewarm settings = properties.getPrewarm();
+        if (!settings.isEnabled() || !settings.isRecordOnShutdown() || isBlank(settings.getFile())) {
+            return;
+        }
+        QueryLogReport report = queryLogCollector.report(settings.getMaxEntries());
+        Set<Entry> entries = new LinkedHashSet<>();
+        for (QueryCount prefix : report.getTopPrefixes()) {
+            add(entries, BatchItem.MODE_SUGGEST, prefix.getQuery());
+        }
+        for (CorrectionCount correction : report.getAcceptedCorrections()) {
+            add(entries, BatchItem.MODE_CORRECT, correction.getQuery());
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        entries.addAll(readFile(settings));
+
+        List<String> lines = new ArrayList<>();
+        lines.add(COMMENT + " 由查询日志在关闭时生成，每行: 模式<Tab>查询");
+        for (Entry entry : limit(entries, settings.getMaxEntries())) {
+            lines.add(entry.mode() + MODE_SEPARATOR + entry.query());
+        }
+        Path path = Paths.get(settings.getFile());
+        try {
+            Path dir = path.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tmp, lines, StandardCharsets.UTF_8);
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            log.info("已把 {} 条热门查询写入预热文件 {}", lines.size() - 1, path);
+        } catch (IOException e) {
+            log.warn("写入预热文件 {} 失败: {}", path, e.getMessage());
+        }
+    }
+
+    private List<Entry> readFile(AutocompleteProperties.Prewarm settings) {
+        List<Entry> entries = new ArrayList<>();
+        if (isBlank(settings.getFile())) {
+            return entries;
+        }
+        Path path = Paths.get(settings.getFile());
+        if (!Files.isRegularFile(path)) {
+            return entries;
+        }
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                Entry entry = parse(line);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取预热文件 {} 失败: {}", path, e.getMessage());
+        }
+        return entries;
+    }
+
+    /**
+     * 解析预热文件的一行，空行、注释和不认识的模式返回null
+     */
+    static Entry parse(String line) {
+        if (line.isBlank() || line.startsWith(COMMENT)) {
+            return null;
+        }
+        int separator = line.indexOf(MODE_SEPARATOR);
+        if (separator < 0) {
+            return entry(BatchItem.MODE_SUGGEST, line);
+        }
+        String mode = line.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+        if (!BatchItem.MODE_SUGGEST.equals(mode) && !BatchItem.MODE_CORRECT.equals(mode)) {
+            return null;
+        }
+        return entry(mode, line.substring(separator + 1));
+    }
+
+    private static void add(Set<Entry> entries, String mode, String query) {
+        Entry entry = entry(mode, query);
+        if (entry != null) {
+            entries.add(entry);
+        }
+    }
+
+    private static Entry entry(String mode, String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        return new Entry(mode, query.trim());
+    }
+
+    private static List<Entry> limit(Set<Entry> entries, int maxEntries) {
+        return entries.stream().limit(Math.max(0, maxEntries)).toList();
+    }
+
+    private static boolean isBlank(String text) {
+        return text == null || text.isBlank();
+    }
+
+    /**
+     * 一条回放的查询
+     *
+     * @param mode suggest 或 correct
+     */
+    record Entry(String mode, String query) {
+    }
+
+    private static final class PrewarmThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "prewarm-" + SEQUENCE.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
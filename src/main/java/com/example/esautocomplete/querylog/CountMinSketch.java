@@ -0,0 +1,94 @@
+package com.example.esautocomplete.querylog;
+
+/**
+ * Count-Min计数草图：depth行、每行width个计数器，内存固定，估计值只会偏大不会偏小。
+ * 更新采用保守更新（只抬高等于最小值的计数器），哈希冲突带来的高估比普通更新小。
+ * 非线程安全，只由查询日志的消费线程访问。
+ */
+final class CountMinSketch {
+
+    private final int depth;
+
+    private final int width;
+
+    private final int mask;
+
+    private final long[] counts;
+
+    /**
+     * @param width 每行计数器数，向上取整到2的幂
+     */
+    CountMinSketch(int depth, int width) {
+        this.depth = Math.max(1, depth);
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = this.width - 1;
+        this.counts = new long[this.depth * this.width];
+    }
+
+    /**
+     * 增加计数
+     *
+     * @return 增加后的估计值
+     */
+    long add(String key, long n) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[slot(row, h1, h2)]);
+        }
+        long updated = min + n;
+        for (int row = 0; row < depth; row++) {
+            int slot = slot(row, h1, h2);
+            if (counts[slot] < updated) {
+                counts[slot] = updated;
+            }
+        }
+        return updated;
+    }
+
+    long estimate(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[slot(row, h1, h2)]);
+        }
+        return min;
+    }
+
+    /**
+     * 全部计数减半，用于按半衰期衰减旧的查询
+     */
+    void halve() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] >>>= 1;
+        }
+    }
+
+    /**
+     * 由两个哈希值线性组合出每一行的位置（Kirsch-Mitzenmacher），每个key只计算一次哈希
+     */
+    private int slot(int row, int h1, int h2) {
+        return row * width + ((h1 + row * h2) & mask);
+    }
+
+    /**
+     * 64位FNV-1a，再经过MurmurHash3的fmix64打散高低位
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
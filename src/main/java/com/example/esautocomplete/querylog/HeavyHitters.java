@@ -0,0 +1,114 @@
+package com.example.esautocomplete.querylog;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 流式Top-N：{@link CountMinSketch} 估计每个key的次数，一个容量为capacity的小顶堆保留估计值最高的候选。
+ * 新key的估计值超过堆顶时替换堆顶，内存只与草图大小和capacity有关，与不同key的数量无关。
+ * 非线程安全，只由查询日志的消费线程访问，读取报告时由调用方加锁。
+ */
+final class HeavyHitters {
+
+    private static final Comparator<Candidate> BY_COUNT = Comparator.comparingLong(Candidate::count);
+
+    private final CountMinSketch sketch;
+
+    private final int capacity;
+
+    private final Map<String, Candidate> candidates = new HashMap<>();
+
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(BY_COUNT);
+
+    private long total;
+
+    HeavyHitters(int capacity, int sketchDepth, int sketchWidth) {
+        this.capacity = Math.max(1, capacity);
+        this.sketch = new CountMinSketch(sketchDepth, sketchWidth);
+    }
+
+    void add(String key) {
+        total++;
+        long estimate = sketch.add(key, 1);
+        Candidate candidate = candidates.get(key);
+        if (candidate != null) {
+            // 堆中元素的次数只能在出堆后修改；capacity很小，删除的线性开销可以忽略
+            heap.remove(candidate);
+            candidate.count = estimate;
+            heap.add(candidate);
+            return;
+        }
+        if (candidates.size() >= capacity) {
+            if (estimate <= heap.peek().count) {
+                return;
+            }
+            candidates.remove(heap.poll().key);
+        }
+        candidate = new Candidate(key, estimate);
+        candidates.put(key, candidate);
+        heap.add(candidate);
+    }
+
+    /**
+     * 估计次数最高的limit个key，按次数降序，次数相同时按key排序
+     */
+    List<Map.Entry<String, Long>> top(int limit) {
+        List<Candidate> sorted = new ArrayList<>(candidates.values());
+        sorted.sort(BY_COUNT.reversed().thenComparing(Candidate::key));
+        List<Map.Entry<String, Long>> top = new ArrayList<>(Math.min(limit, sorted.size()));
+        for (Candidate candidate : sorted) {
+            if (top.size() >= limit) {
+                break;
+            }
+            top.add(Map.entry(candidate.key, candidate.count));
+        }
+        return top;
+    }
+
+    /**
+     * 记录过的事件总数（随衰减减半）
+     */
+    long total() {
+        return total;
+    }
+
+    /**
+     * 草图和候选的次数全部减半，减到0的候选移出；减半保持次数的大小顺序，堆结构依然有效
+     */
+    void halve() {
+        sketch.halve();
+        total >>>= 1;
+        candidates.values().removeIf(candidate -> {
+            candidate.count >>>= 1;
+            if (candidate.count == 0) {
+                heap.remove(candidate);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static final class Candidate {
+
+        private final String key;
+
+        private long count;
+
+        Candidate(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        String key() {
+            return key;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.esautocomplete.querylog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界的多生产者、单消费者环形队列，生产者和消费者都不加锁。
+ * <p>
+ * 生产者用CAS认领尾部序号后写入槽位；队列满时 {@link #offer} 立即返回false，由调用方丢弃事件，不会阻塞请求线程。
+ * 消费者只有一个：槽位为null表示生产者已认领但尚未写入，消费者停在这里等下一轮。
+ * 消费者先清空槽位再推进头部序号，生产者看到新的头部序号时一定也能看到槽位已清空。
+ */
+final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整到2的幂
+     */
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return 是否入队；队列满时返回false
+     */
+    boolean offer(E element) {
+        while (true) {
+            long t = tail.get();
+            if (t - head.get() >= slots.length()) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) t & mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 只能由唯一的消费者线程调用
+     *
+     * @return 队首元素，队列为空或队首尚未写入完成时为null
+     */
+    E poll() {
+        long h = head.get();
+        int index = (int) h & mask;
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * 近似的元素数，包括已认领但尚未写入的槽位
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
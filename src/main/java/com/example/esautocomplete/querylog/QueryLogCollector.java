@@ -0,0 +1,253 @@
+package com.example.esautocomplete.querylog;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.CorrectionCount;
+import com.example.esautocomplete.dto.QueryCount;
+import com.example.esautocomplete.dto.QueryLogReport;
+import com.example.esautocomplete.engine.TokenText;
+import com.example.esautocomplete.metrics.SearchMetrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 查询日志统计：补全请求中最常见的前缀、最常见的零结果查询和最常被采纳的纠错。
+ * <p>
+ * 请求线程只做一次无锁入队（{@link MpscRingBuffer}），队列满时丢弃事件并计数，不等待也不分配锁；
+ * 归一化、截断和计数都在专用的 query-log-drain 线程上完成，每类统计由 {@link HeavyHitters} 维护，
+ * 内存与不同查询的数量无关。计数每隔 half-life 减半，报告反映的是近期的查询分布。
+ * <p>
+ * 指标：autocomplete.querylog.recorded（进入统计的事件）、autocomplete.querylog.dropped（队列满时丢弃的事件）
+ */
+@Slf4j
+@Component
+public class QueryLogCollector {
+
+    /** 原始查询与纠错结果之间的分隔符，不会出现在归一化后的查询中 */
+    private static final char CORRECTION_SEPARATOR = '\u001f';
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final AutocompleteProperties properties;
+
+    private final LongSupplier millisClock;
+
+    private final MpscRingBuffer<Event> buffer;
+
+    private final HeavyHitters prefixes;
+
+    private final HeavyHitters zeroResults;
+
+    private final HeavyHitters corrections;
+
+    private final AtomicLong recorded = new AtomicLong();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final long since;
+
+    private long lastDecay;
+
+    private volatile boolean running;
+
+    private Thread drainer;
+
+    @Autowired
+    public QueryLogCollector(AutocompleteProperties properties, MeterRegistry registry) {
+        this(properties, registry, System::currentTimeMillis);
+    }
+
+    QueryLogCollector(AutocompleteProperties properties, MeterRegistry registry, LongSupplier millisClock) {
+        this.properties = properties;
+        this.millisClock = millisClock;
+        AutocompleteProperties.QueryLog settings = properties.getQueryLog();
+        this.buffer = new MpscRingBuffer<>(settings.getBufferSize());
+        this.prefixes = heavyHitters(settings);
+        this.zeroResults = heavyHitters(settings);
+        this.corrections = heavyHitters(settings);
+        this.since = millisClock.getAsLong();
+        this.lastDecay = since;
+
+        FunctionCounter.builder("autocomplete.querylog.recorded", recorded, AtomicLong::get)
+                .description("进入查询日志统计的事件")
+                .register(registry);
+        FunctionCounter.builder("autocomplete.querylog.dropped", dropped, LongAdder::sum)
+                .description("统计线程跟不上、队列满时丢弃的事件")
+                .register(registry);
+    }
+
+    private static HeavyHitters heavyHitters(AutocompleteProperties.QueryLog settings) {
+        return new HeavyHitters(settings.getTopN(), settings.getSketchDepth(), settings.getSketchWidth());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.getQueryLog().isEnabled()) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drainLoop, "query-log-drain");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (drainer != null) {
+            LockSupport.unpark(drainer);
+            drainer.join(TimeUnit.SECONDS.toMillis(1));
+        }
+    }
+
+    /**
+     * 记录一次请求。补全类请求的查询计入高频前缀，返回0条的请求计入零结果查询；只在请求线程上入队
+     *
+     * @param operation 操作名，见 {@link SearchMetrics} 的常量
+     * @param query 原始查询文本
+     * @param results 返回的条数
+     */
+    public void record(String operation, String query, int results) {
+        boolean prefix = SearchMetrics.SUGGEST.equals(operation) || SearchMetrics.SUGGEST_OR_CORRECT.equals(operation);
+        boolean zeroResult = results == 0;
+        if (!(prefix || zeroResult) || query == null || !properties.getQueryLog().isEnabled()) {
+            return;
+        }
+        offer(new Event(query, null, prefix, zeroResult));
+    }
+
+    /**
+     * 记录用户采纳了某个纠错结果
+     */
+    public void recordAcceptedCorrection(String query, String correction) {
+        if (query == null || correction == null || !properties.getQueryLog().isEnabled()) {
+            return;
+        }
+        offer(new Event(query, correction, false, false));
+    }
+
+    private void offer(Event event) {
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (RuntimeException e) {
+                log.error("查询日志统计出错", e);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * 把队列中的事件全部计入统计，到了半衰期时把计数减半
+     *
+     * @return 处理的事件数
+     */
+    synchronized int drain() {
+        int maxLength = properties.getQueryLog().getMaxQueryLength();
+        int drained = 0;
+        Event event;
+        while ((event = buffer.poll()) != null) {
+            drained++;
+            String query = truncate(TokenText.normalize(event.query()), maxLength);
+            if (query.isEmpty()) {
+                continue;
+            }
+            if (event.correction() != null) {
+                String correction = truncate(event.correction().trim(), maxLength);
+                if (!correction.isEmpty()) {
+                    corrections.add(query + CORRECTION_SEPARATOR + correction);
+                }
+            }
+            if (event.prefix()) {
+                prefixes.add(query);
+            }
+            if (event.zeroResult()) {
+                zeroResults.add(query);
+            }
+        }
+        recorded.addAndGet(drained);
+        decayIfDue();
+        return drained;
+    }
+
+    private void decayIfDue() {
+        long halfLife = properties.getQueryLog().getHalfLife().toMillis();
+        long now = millisClock.getAsLong();
+        if (halfLife <= 0 || now - lastDecay < halfLife) {
+            return;
+        }
+        prefixes.halve();
+        zeroResults.halve();
+        corrections.halve();
+        lastDecay = now;
+    }
+
+    /**
+     * 先处理队列中已有的事件，再给出每类统计中次数最高的 limit 条
+     */
+    public synchronized QueryLogReport report(int limit) {
+        drain();
+        List<CorrectionCount> accepted = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : corrections.top(limit)) {
+            String key = entry.getKey();
+            int separator = key.indexOf(CORRECTION_SEPARATOR);
+            accepted.add(CorrectionCount.builder()
+                    .query(key.substring(0, separator))
+                    .correction(key.substring(separator + 1))
+                    .count(entry.getValue())
+                    .build());
+        }
+        return QueryLogReport.builder()
+                .enabled(properties.getQueryLog().isEnabled())
+                .since(Instant.ofEpochMilli(since))
+                .lastDecay(Instant.ofEpochMilli(lastDecay))
+                .recorded(recorded.get())
+                .dropped(dropped.sum())
+                .topPrefixes(counts(prefixes, limit))
+                .zeroResults(counts(zeroResults, limit))
+                .acceptedCorrections(accepted)
+                .build();
+    }
+
+    private static List<QueryCount> counts(HeavyHitters hitters, int limit) {
+        List<QueryCount> counts = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : hitters.top(limit)) {
+            counts.add(new QueryCount(entry.getKey(), entry.getValue()));
+        }
+        return counts;
+    }
+
+    private static String truncate(String text, int maxLength) {
+        return text.length() <= maxLength ? text : text.substring(0, maxLength);
+    }
+
+    /**
+     * 请求线程入队的原始事件，归一化留给统计线程
+     */
+    private record Event(String query, String correction, boolean prefix, boolean zeroResult) {
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.esautocomplete.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+/**
+ * 按最近N次调用的失败率熔断的断路器。
+ * <ul>
+ *     <li>CLOSED：正常放行，窗口内调用数达到 minimum-calls 且失败率达到阈值时转为OPEN</li>
+ *     <li>OPEN：拒绝所有调用，open-duration 到期后转为HALF_OPEN</li>
+ *     <li>HALF_OPEN：最多放行 half-open-calls 个试探调用，全部成功后转为CLOSED并清空窗口，任一失败重新OPEN</li>
+ * </ul>
+ * 每次ES调用都只做一次加锁的计数更新，与一次网络请求相比可以忽略。
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final AutocompleteProperties.CircuitBreakerSettings settings;
+
+    private final LongSupplier nanoClock;
+
+    /** 环形窗口，true表示失败 */
+    private final boolean[] outcomes;
+
+    private int position;
+
+    private int recorded;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private int trialsInFlight;
+
+    private int trialSuccesses;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder opened = new LongAdder();
+
+    public CircuitBreaker(AutocompleteProperties.CircuitBreakerSettings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    CircuitBreaker(AutocompleteProperties.CircuitBreakerSettings settings, LongSupplier nanoClock) {
+        this.settings = settings;
+        this.nanoClock = nanoClock;
+        this.outcomes = new boolean[Math.max(1, settings.getWindow())];
+    }
+
+    /**
+     * 申请一次调用，返回false时调用方不应访问ES；返回true时必须以
+     * {@link #onSuccess()}、{@link #onFailure()} 或 {@link #release()} 之一结束
+     */
+    public synchronized boolean tryAcquire() {
+        if (!settings.isEnabled()) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            long openNanos = settings.getOpenDuration().toNanos();
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                rejected.increment();
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsInFlight = 0;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight + trialSuccesses >= settings.getHalfOpenCalls()) {
+                rejected.increment();
+                return false;
+            }
+            trialsInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(0, trialsInFlight - 1);
+            if (++trialSuccesses >= settings.getHalfOpenCalls()) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+        }
+    }
+
+    /**
+     * 调用被放弃（如客户端断开），不计入成功或失败，只归还半开状态的试探名额
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(0, trialsInFlight - 1);
+        }
+    }
+
+    public synchronized State state() {
+        // OPEN到期但还没有新调用时，对外仍如实报告为可以试探
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= settings.getOpenDuration().toNanos()) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * 熔断剩余的时间（毫秒），未熔断时为0
+     */
+    public synchronized long remainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        long remaining = settings.getOpenDuration().toNanos() - (nanoClock.getAsLong() - openedAt);
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining));
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long openedCount() {
+        return opened.sum();
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % outcomes.length;
+        if (recorded >= settings.getMinimumCalls()
+                && (double) failures / recorded >= settings.getFailureRateThreshold()) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+        opened.increment();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.esautocomplete.resilience;
+
+/**
+ * 断路器处于熔断状态，ES查询没有发出
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
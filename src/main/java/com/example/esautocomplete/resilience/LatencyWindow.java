@@ -0,0 +1,47 @@
+package com.example.esautocomplete.resilience;
+
+import java.util.Arrays;
+
+/**
+ * 最近N个延迟样本的环形缓冲，用于计算对冲请求的发送时机
+ */
+class LatencyWindow {
+
+    private final long[] samples;
+
+    private int position;
+
+    private int count;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    synchronized void record(long nanos) {
+        samples[position] = nanos;
+        position = (position + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @return 样本的分位数（纳秒），没有样本时为-1
+     */
+    long percentile(double quantile) {
+        long[] copy;
+        synchronized (this) {
+            if (count == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(quantile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(copy.length - 1, index))];
+    }
+}
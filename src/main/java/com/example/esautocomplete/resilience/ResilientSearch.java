@@ -0,0 +1,261 @@
+package com.example.esautocomplete.resilience;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.metrics.SearchMetrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * 为每次ES查询加上截止时间、对冲请求和断路器。
+ * <p>
+ * 同步查询在请求调度器上执行，调用线程最多等待该接口的截止时间，超时后中断查询线程并抛出以
+ * {@link TimeoutException} 为cause的异常；开启对冲时，首个请求超过近期成功延迟的分位数（默认p95）
+ * 仍未返回就再发送一个相同的请求，RestClient轮询到另一个节点，先成功的结果生效，另一个被取消。
+ * 断路器统计每次查询的成功、失败和超时，熔断期间直接抛出 {@link CircuitOpenException}，调用方改用本地快照回答。
+ * <p>
+ * 指标：autocomplete.resilience.deadline.exceeded{operation}、autocomplete.resilience.hedges{operation}、
+ * autocomplete.resilience.hedge.wins{operation}、autocomplete.resilience.breaker.state（0关闭、1熔断、2半开）、
+ * autocomplete.resilience.breaker.rejected、autocomplete.resilience.breaker.opened
+ */
+@Component
+public class ResilientSearch {
+
+    private final AutocompleteProperties properties;
+
+    private final Scheduler scheduler;
+
+    private final MeterRegistry registry;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public ResilientSearch(AutocompleteProperties properties, @Qualifier("requestScheduler") Scheduler scheduler,
+                           MeterRegistry registry) {
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.registry = registry;
+        this.circuitBreaker = new CircuitBreaker(properties.getResilience().getCircuitBreaker());
+
+        Gauge.builder("autocomplete.resilience.breaker.state", circuitBreaker, b -> b.state().ordinal())
+                .description("断路器状态：0关闭、1熔断、2半开")
+                .register(registry);
+        FunctionCounter.builder("autocomplete.resilience.breaker.rejected", circuitBreaker,
+                        CircuitBreaker::rejectedCount)
+                .description("熔断期间没有发出的ES查询")
+                .register(registry);
+        FunctionCounter.builder("autocomplete.resilience.breaker.opened", circuitBreaker, CircuitBreaker::openedCount)
+                .register(registry);
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 在截止时间内执行一次同步ES查询
+     *
+     * @param operation 接口名，见 {@link SearchMetrics} 的常量，决定截止时间和延迟统计的分组
+     */
+    public <V> V call(String operation, Supplier<V> search) {
+        AutocompleteProperties.Resilience settings = properties.getResilience();
+        if (!settings.isEnabled()) {
+            return search.get();
+        }
+        acquire();
+
+        long start = System.nanoTime();
+        long deadline = deadline(operation).toNanos();
+        Attempts<V> attempts = new Attempts<>(operation, search);
+        attempts.launch();
+        try {
+            V value;
+            long hedgeDelay = hedgeDelay(operation);
+            if (hedgeDelay >= 0 && hedgeDelay < deadline) {
+                try {
+                    value = attempts.result.get(hedgeDelay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    counter("autocomplete.resilience.hedges", operation).increment();
+                    attempts.launch();
+                    value = attempts.result.get(deadline - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+                }
+            } else {
+                value = attempts.result.get(deadline, TimeUnit.NANOSECONDS);
+            }
+            circuitBreaker.onSuccess();
+            if (attempts.winner.get() > 1) {
+                counter("autocomplete.resilience.hedge.wins", operation).increment();
+            }
+            return value;
+        } catch (TimeoutException e) {
+            counter("autocomplete.resilience.deadline.exceeded", operation).increment();
+            circuitBreaker.onFailure();
+            throw new CompletionException(operation + " 查询超过截止时间 " + deadline(operation).toMillis() + "ms", e);
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(cause);
+        } catch (InterruptedException e) {
+            // 调用方被取消（如虚拟线程模式下客户端断开），不计入失败
+            circuitBreaker.release();
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } finally {
+            attempts.cancel();
+        }
+    }
+
+    /**
+     * 响应式查询的截止时间和断路器，不做对冲；取消订阅时中止进行中的HTTP请求，不计入失败
+     */
+    public <V> Mono<V> callReactive(String operation, Mono<V> search) {
+        if (!properties.getResilience().isEnabled()) {
+            return search;
+        }
+        return Mono.defer(() -> {
+            acquire();
+            long start = System.nanoTime();
+            Duration deadline = deadline(operation);
+            return search
+                    .timeout(deadline, Mono.error(() -> {
+                        counter("autocomplete.resilience.deadline.exceeded", operation).increment();
+                        return new CompletionException(operation + " 查询超过截止时间 " + deadline.toMillis() + "ms",
+                                new TimeoutException());
+                    }))
+                    .doOnSuccess(value -> {
+                        latency(operation).record(System.nanoTime() - start);
+                        circuitBreaker.onSuccess();
+                    })
+                    .doOnError(e -> circuitBreaker.onFailure())
+                    .doOnCancel(circuitBreaker::release);
+        });
+    }
+
+    private void acquire() {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new CircuitOpenException("Elasticsearch断路器已熔断，剩余 " + circuitBreaker.remainingOpenMillis() + "ms");
+        }
+    }
+
+    Duration deadline(String operation) {
+        AutocompleteProperties.Deadlines deadlines = properties.getResilience().getDeadlines();
+        switch (operation) {
+            case SearchMetrics.SUGGEST:
+                return deadlines.getSuggest();
+            case SearchMetrics.CORRECT:
+                return deadlines.getCorrect();
+            case SearchMetrics.SUGGEST_OR_CORRECT:
+                return deadlines.getSuggestOrCorrect();
+            case SearchMetrics.PHRASE_CORRECT:
+                return deadlines.getPhraseCorrect();
+            default:
+                return deadlines.getBatch();
+        }
+    }
+
+    /**
+     * @return 发送对冲请求前等待的纳秒数，不对冲时为-1
+     */
+    long hedgeDelay(String operation) {
+        AutocompleteProperties.Hedge hedge = properties.getResilience().getHedge();
+        if (!hedge.isEnabled()) {
+            return -1;
+        }
+        LatencyWindow window = latency(operation);
+        if (window.count() < hedge.getMinSamples()) {
+            return -1;
+        }
+        return Math.max(hedge.getMinDelay().toNanos(), window.percentile(hedge.getPercentile()));
+    }
+
+    private LatencyWindow latency(String operation) {
+        return latencies.computeIfAbsent(operation,
+                k -> new LatencyWindow(properties.getResilience().getHedge().getWindow()));
+    }
+
+    private Counter counter(String name, String operation) {
+        return counters.computeIfAbsent(name + '|' + operation, k -> Counter.builder(name)
+                .tag("operation", operation)
+                .register(registry));
+    }
+
+    /**
+     * 同一次查询的首个请求和对冲请求，先成功的结果生效，全部失败时以最后一个异常结束
+     */
+    private final class Attempts<V> {
+
+        private final String operation;
+
+        private final Supplier<V> search;
+
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        private final AtomicInteger launched = new AtomicInteger();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        /** 先成功的请求序号，1为首个请求 */
+        private final AtomicInteger winner = new AtomicInteger();
+
+        /** 只在调用线程上读写 */
+        private final List<Disposable> tasks = new ArrayList<>(2);
+
+        Attempts(String operation, Supplier<V> search) {
+            this.operation = operation;
+            this.search = search;
+        }
+
+        void launch() {
+            int attempt = launched.incrementAndGet();
+            tasks.add(scheduler.schedule(() -> {
+                long start = System.nanoTime();
+                try {
+                    V value = search.get();
+                    latency(operation).record(System.nanoTime() - start);
+                    if (winner.compareAndSet(0, attempt)) {
+                        result.complete(value);
+                    }
+                } catch (Throwable t) {
+                    if (failed.incrementAndGet() == launched.get()) {
+                        result.completeExceptionally(t);
+                    }
+                }
+            }));
+        }
+
+        void cancel() {
+            // 已完成的任务dispose无副作用；仍在进行的请求被中断，连接归还连接池
+            tasks.forEach(Disposable::dispose);
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.example.esautocomplete.service;
 
+import java.util.Iterator;
 import java.util.List;
 
+import com.example.esautocomplete.dto.BatchItem;
+import com.example.esautocomplete.dto.BatchItemResult;
+import com.example.esautocomplete.dto.IngestReport;
+import com.example.esautocomplete.dto.SuggestResponse;
+import com.example.esautocomplete.dto.TaggedSuggestResponse;
+import com.example.esautocomplete.dto.WeightUpdate;
+import com.example.esautocomplete.dto.WeightUpdateResponse;
 import com.example.esautocomplete.model.Token;
 
+import reactor.core.publisher.Mono;
+
 public interface TokenService {
     
     /**
@@ -19,6 +29,27 @@ public interface TokenService {
      */
     void saveTokens(List<Token> tokens);
     
+    /**
+     * 流式批量写入Token，按文档数和字节数分块并行发送bulk请求
+     * @param tokens Token数据源，只会被顺序遍历一次
+     * @return 写入报告，包含成功/失败数量、失败明细和吞吐量
+     */
+    IngestReport ingestTokens(Iterator<Token> tokens);
+    
+    /**
+     * 原地更新Token的热度权重：只发送部分文档更新，不重建索引，同时更新本地前缀引擎
+     * @param updates 每项包含Token的ID和新的权重
+     * @return 更新结果，包含成功/失败数量和失败明细
+     */
+    WeightUpdateResponse updateWeights(List<WeightUpdate> updates);
+    
+    /**
+     * 删除Token，同时写入墓碑，其他实例通过变更订阅同步删除
+     * @param id Token的ID
+     * @return Token是否存在并已删除
+     */
+    boolean deleteToken(String id);
+    
     /**
      * 获取自动补全建议
      * @param prefix 前缀
@@ -35,6 +66,47 @@ public interface TokenService {
      */
     List<String> getCorrections(String text, int size);
     
+    /**
+     * 获取补全建议，不足size条时在同一响应中补充纠错候选；
+     * 需要同时查询两者时只发送一次Elasticsearch请求
+     * @param text 输入文本
+     * @param size 结果总数量
+     * @return 按来源标记的建议列表，补全结果在前；ES不可用时由本地快照回答并标记为降级
+     */
+    TaggedSuggestResponse getSuggestionsWithCorrections(String text, int size);
+    
+    /**
+     * 按 autocomplete.execution.mode 异步获取自动补全建议，取消订阅时取消进行中的查询
+     * @param prefix 前缀
+     * @param size 结果数量
+     * @return 补全建议列表；ES不可用时由本地快照回答并标记为降级
+     */
+    Mono<SuggestResponse> getSuggestionsAsync(String prefix, int size);
+    
+    /**
+     * 按链过滤的补全：在completion的chain上下文内查询，size限制作用在过滤后的结果上
+     * @param prefix 前缀
+     * @param size 结果数量
+     * @param chains 链列表，第一个为用户当前所在的链并加权排在前面；为空时不过滤
+     * @return 补全建议列表；本地快照不区分链，ES不可用时不降级
+     */
+    Mono<SuggestResponse> getSuggestionsAsync(String prefix, int size, List<String> chains);
+    
+    /**
+     * 按 autocomplete.execution.mode 异步获取拼写纠错建议，取消订阅时取消进行中的查询
+     * @param text 待纠错文本
+     * @param size 结果数量
+     * @return 纠错建议列表；ES不可用时由本地快照回答并标记为降级
+     */
+    Mono<SuggestResponse> getCorrectionsAsync(String text, int size);
+    
+    /**
+     * 批量获取补全/纠错建议，本地引擎和缓存无法满足的项合并为一次 _msearch 请求
+     * @param items 查询列表
+     * @return 与items顺序一致的结果，单项失败时只有该项带错误信息
+     */
+    List<BatchItemResult> batch(List<BatchItem> items);
+    
     /**
      * 初始化示例数据
      */
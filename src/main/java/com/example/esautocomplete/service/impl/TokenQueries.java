@@ -0,0 +1,578 @@
+package com.example.esautocomplete.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.springframework.data.elasticsearch.client.elc.EntityAsMap;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.suggest.response.CompletionSuggestion;
+import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
+
+import com.example.esautocomplete.cache.SuggestionResult;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.engine.TokenText;
+import com.example.esautocomplete.index.TokenIndexManager;
+import com.example.esautocomplete.model.Token;
+
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.mapping.FieldType;
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultisearchBody;
+import co.elastic.clients.elasticsearch.core.search.CompletionContext;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggester;
+import co.elastic.clients.elasticsearch.core.search.FieldSuggester;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.Suggester;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
+
+/**
+ * Token查询的构建与结果解析。
+ * 查询构建与命中后处理集中在这里，便于同步、批量等不同调用路径复用同一套逻辑。
+ */
+final class TokenQueries {
+
+    static final String NAME_SUGGESTER = "name-suggest";
+    static final String SYMBOL_SUGGESTER = "symbol-suggest";
+
+    private static final int DEFAULT_HITS = 10;
+
+    private static final FetchSourceFilter NAME_AND_SYMBOL =
+            new FetchSourceFilter(new String[]{"name", "symbol"}, null);
+
+    private static final SortOptions BY_SCORE = SortOptions.of(s -> s.score(sc -> sc.order(SortOrder.Desc)));
+
+    // 旧索引没有weight字段时按0处理，不会报错
+    private static final SortOptions BY_WEIGHT = SortOptions.of(s -> s.field(f -> f
+            .field("weight")
+            .order(SortOrder.Desc)
+            .missing(0)
+            .unmappedType(FieldType.Integer)));
+
+    private TokenQueries() {
+    }
+
+    /**
+     * 通配符前缀查询：在name/symbol字段上做大小写不敏感的前缀匹配
+     */
+    static NativeQuery wildcardSuggestQuery(String lowerPrefix, int size) {
+        return wildcardSuggestQuery(lowerPrefix, size, List.of());
+    }
+
+    /**
+     * 按链过滤的通配符前缀查询，chains为空时不过滤
+     */
+    static NativeQuery wildcardSuggestQuery(String lowerPrefix, int size, List<String> chains) {
+        Query namePrefixQuery = new Query.Builder()
+                .wildcard(w -> w.field("name").value(lowerPrefix + "*"))
+                .build();
+
+        Query symbolPrefixQuery = new Query.Builder()
+                .wildcard(w -> w.field("symbol").value(lowerPrefix + "*"))
+                .build();
+
+        Query boolQuery = new Query.Builder()
+                .bool(b -> b.should(namePrefixQuery).should(symbolPrefixQuery))
+                .build();
+
+        // 按热度权重降序，只取回权重最高的一批命中；结果是否完整由返回的命中数判断，见 hitResult
+        return NativeQuery.builder()
+                .withQuery(chainScoped(boolQuery, chains))
+                .withSort(BY_WEIGHT)
+                .withSourceFilter(NAME_AND_SYMBOL)
+                .withMaxResults(suggestHits(size))
+                .build();
+    }
+
+    /**
+     * 通配符和中缀查询请求的命中数
+     */
+    static int suggestHits(int size) {
+        return Math.max(size, DEFAULT_HITS);
+    }
+
+    /**
+     * 普通查询（通配符、中缀、地址）的补全结果。
+     * 同一名称可能出现在多条命中上，去重后条数少于size不代表已取尽匹配；
+     * 只有ES返回的命中数少于请求的命中数（全部匹配都已取回）且去重后没有被size截断时结果才完整
+     *
+     * @param hits ES返回的命中数
+     * @param requestedHits 查询请求的命中数
+     */
+    static SuggestionResult hitResult(List<String> suggestions, int hits, int requestedHits, int size) {
+        return new SuggestionResult(suggestions, hits < requestedHits && suggestions.size() < size);
+    }
+
+    /**
+     * 从通配符查询结果中提取包含前缀的名称和符号
+     */
+    static List<String> extractWildcardSuggestions(SearchHits<Token> searchHits, String lowerPrefix, int size) {
+        return extractWildcardSuggestions(searchHits.getSearchHits(), lowerPrefix, size);
+    }
+
+    static List<String> extractWildcardSuggestions(List<SearchHit<Token>> hits, String lowerPrefix, int size) {
+        return wildcardSuggestions(contents(hits), lowerPrefix, size);
+    }
+
+    static List<String> wildcardSuggestions(List<Token> tokens, String lowerPrefix, int size) {
+        List<String> suggestions = new ArrayList<>();
+        tokens.forEach(token -> {
+            // 与结果缓存在通配符模式下收窄时的规则相同
+            if (token.getName() != null && TokenText.contains(token.getName(), lowerPrefix)) {
+                suggestions.add(token.getName());
+            }
+            if (token.getSymbol() != null && TokenText.contains(token.getSymbol(), lowerPrefix)) {
+                suggestions.add(token.getSymbol());
+            }
+        });
+
+        return suggestions.stream().distinct().limit(size).collect(Collectors.toList());
+    }
+
+    /**
+     * 中缀查询：在name/symbol的 prefix（逐词边缘n-gram）和 infix（三元组）子字段上做词条匹配，
+     * 前缀和n-gram在写入时展开，查询时不需要扫描词典。
+     * 每个查询单词都是某个单词的前缀（词首、多词匹配）得2分，查询的三元组全部出现（单词中间的中缀）得1分，
+     * 同分按热度权重排序。少于3个字符的查询不产生三元组，只做词首匹配
+     */
+    static NativeQuery infixSuggestQuery(String lowerQuery, int size) {
+        return infixSuggestQuery(lowerQuery, size, List.of());
+    }
+
+    /**
+     * 按链过滤的中缀查询，chains为空时不过滤
+     */
+    static NativeQuery infixSuggestQuery(String lowerQuery, int size, List<String> chains) {
+        Query boolQuery = new Query.Builder()
+                .bool(b -> b
+                        .should(termsMatch("name.prefix", lowerQuery, 2))
+                        .should(termsMatch("symbol.prefix", lowerQuery, 2))
+                        .should(termsMatch("name.infix", lowerQuery, 1))
+                        .should(termsMatch("symbol.infix", lowerQuery, 1)))
+                .build();
+
+        return NativeQuery.builder()
+                .withQuery(chainScoped(boolQuery, chains))
+                .withSort(BY_SCORE, BY_WEIGHT)
+                .withSourceFilter(NAME_AND_SYMBOL)
+                .withMaxResults(suggestHits(size))
+                .build();
+    }
+
+    /**
+     * 合约地址前缀查询：前缀不超过19个字符时落在 address.prefix 的 index_prefixes 子字段上，是一次词条查找；
+     * 更长的前缀在词典中已经足够精确，直接按前缀扫描。索引还没有前缀子字段时在address字段本身上做前缀查询。
+     * 按热度权重降序
+     *
+     * @param lowerPrefix 0x开头的小写地址前缀
+     * @param prefixField 索引是否已有 address.prefix 子字段
+     */
+    static NativeQuery addressSuggestQuery(String lowerPrefix, int size, List<String> chains, boolean prefixField) {
+        String field = prefixField ? TokenIndexManager.ADDRESS_PREFIX_FIELD : TokenIndexManager.ADDRESS_FIELD;
+        Query prefixQuery = Query.of(q -> q.prefix(p -> p.field(field).value(lowerPrefix)));
+
+        return NativeQuery.builder()
+                .withQuery(chainScoped(prefixQuery, chains))
+                .withSort(BY_WEIGHT)
+                .withSourceFilter(NAME_AND_SYMBOL)
+                .withMaxResults(size)
+                .build();
+    }
+
+    /**
+     * 从地址前缀查询结果中提取展示文本：每个命中取名称，没有名称时取符号，保持ES返回的顺序
+     */
+    static List<String> addressSuggestions(List<Token> tokens, int size) {
+        return tokens.stream()
+                .map(token -> token.getName() != null ? token.getName() : token.getSymbol())
+                .filter(Objects::nonNull)
+                .distinct()
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 普通查询的链过滤：chain字段的terms过滤不影响得分，链之间没有加权，排序仍按原查询的规则
+     */
+    private static Query chainScoped(Query query, List<String> chains) {
+        if (chains.isEmpty()) {
+            return query;
+        }
+        List<FieldValue> values = chains.stream().map(FieldValue::of).collect(Collectors.toList());
+        return Query.of(q -> q.bool(b -> b
+                .must(query)
+                .filter(f -> f.terms(t -> t.field("chain").terms(v -> v.value(values))))));
+    }
+
+    /**
+     * 查询分词后的全部词条都出现时命中，得分固定为boost，不受词频影响
+     */
+    private static Query termsMatch(String field, String lowerQuery, float boost) {
+        return Query.of(q -> q.constantScore(c -> c
+                .filter(f -> f.match(m -> m.field(field).query(lowerQuery).operator(Operator.And)))
+                .boost(boost)));
+    }
+
+    /**
+     * 从中缀查询结果中提取被查询命中的名称和符号，保持ES返回的顺序
+     */
+    static List<String> infixSuggestions(List<Token> tokens, String lowerQuery, int size) {
+        // 同一命中的名称和符号只保留被查询命中的那个，三元组的假阳性在这里排除
+        List<String> suggestions = new ArrayList<>();
+        tokens.forEach(token -> {
+            if (token.getName() != null && TokenText.matchesInfix(token.getName(), lowerQuery)) {
+                suggestions.add(token.getName());
+            }
+            if (token.getSymbol() != null && TokenText.matchesInfix(token.getSymbol(), lowerQuery)) {
+                suggestions.add(token.getSymbol());
+            }
+        });
+
+        return suggestions.stream().distinct().limit(size).collect(Collectors.toList());
+    }
+
+    /**
+     * Completion Suggester查询：一次请求同时查询nameSuggest和symbolSuggest两个completion字段，
+     * 直接命中ES节点堆内的FST，不返回普通搜索结果
+     */
+    static NativeQuery completionSuggestQuery(String lowerPrefix, int size, AutocompleteProperties.Suggest settings) {
+        return completionSuggestQuery(lowerPrefix, size, settings, List.of());
+    }
+
+    /**
+     * 按链过滤的Completion Suggester查询：chain上下文在FST内过滤，不会先取回其他链的建议再丢弃，
+     * size限制始终作用在过滤后的结果上。第一个链是用户当前所在的链，按 current-chain-boost 加权。
+     * chains为空时不带上下文，查询全部链
+     */
+    static NativeQuery completionSuggestQuery(String lowerPrefix, int size, AutocompleteProperties.Suggest settings,
+                                              List<String> chains) {
+        List<CompletionContext> contexts = chainContexts(chains, settings.getCurrentChainBoost());
+        Suggester suggester = Suggester.of(s -> s
+                .suggesters(NAME_SUGGESTER, completionSuggester(lowerPrefix, "nameSuggest", size, settings, contexts))
+                .suggesters(SYMBOL_SUGGESTER,
+                        completionSuggester(lowerPrefix, "symbolSuggest", size, settings, contexts)));
+
+        return NativeQuery.builder()
+                .withSuggester(suggester)
+                .withSourceFilter(NAME_AND_SYMBOL)
+                .withMaxResults(0)
+                .build();
+    }
+
+    private static List<CompletionContext> chainContexts(List<String> chains, double currentChainBoost) {
+        List<CompletionContext> contexts = new ArrayList<>(chains.size());
+        for (int i = 0; i < chains.size(); i++) {
+            String chain = chains.get(i);
+            double boost = i == 0 ? currentChainBoost : 1.0;
+            contexts.add(CompletionContext.of(c -> c.context(x -> x.category(chain)).boost(boost)));
+        }
+        return contexts;
+    }
+
+    private static FieldSuggester completionSuggester(String lowerPrefix, String field, int size,
+                                                      AutocompleteProperties.Suggest settings,
+                                                      List<CompletionContext> contexts) {
+        CompletionSuggester completion = CompletionSuggester.of(c -> {
+            c.field(field)
+                    .size(size)
+                    .skipDuplicates(settings.isSkipDuplicates());
+            if (!contexts.isEmpty()) {
+                c.contexts(TokenIndexManager.CHAIN_CONTEXT, contexts);
+            }
+            if (settings.isFuzzy()) {
+                c.fuzzy(f -> f
+                        .fuzziness(settings.getFuzziness())
+                        .prefixLength(settings.getFuzzyPrefixLength()));
+            }
+            return c;
+        });
+        return FieldSuggester.of(f -> f.prefix(lowerPrefix).completion(completion));
+    }
+
+    /**
+     * 合并两个completion建议的结果：按得分（即completion权重）降序，
+     * name建议取名称、symbol建议取符号，去重后截取前size个
+     */
+    static List<String> extractCompletionSuggestions(SearchHits<Token> searchHits, int size) {
+        return extractCompletionSuggestions(searchHits.getSuggest(), size);
+    }
+
+    static List<String> extractCompletionSuggestions(Suggest suggest, int size) {
+        if (suggest == null) {
+            return new ArrayList<>();
+        }
+
+        List<ScoredText> candidates = new ArrayList<>();
+        collectCompletionOptions(suggest, NAME_SUGGESTER, false, candidates);
+        collectCompletionOptions(suggest, SYMBOL_SUGGESTER, true, candidates);
+        return mergeByScore(candidates, size);
+    }
+
+    /**
+     * 从 _msearch 的原始响应中合并completion建议，规则与 {@link #extractCompletionSuggestions(Suggest, int)} 相同
+     */
+    static List<String> extractCompletionSuggestions(Map<String, List<Suggestion<EntityAsMap>>> suggest, int size) {
+        List<ScoredText> candidates = new ArrayList<>();
+        collectRawCompletionOptions(suggest.get(NAME_SUGGESTER), "name", candidates);
+        collectRawCompletionOptions(suggest.get(SYMBOL_SUGGESTER), "symbol", candidates);
+        return mergeByScore(candidates, size);
+    }
+
+    private static void collectRawCompletionOptions(List<Suggestion<EntityAsMap>> suggestions, String field,
+                                                    List<ScoredText> candidates) {
+        if (suggestions == null) {
+            return;
+        }
+        for (Suggestion<EntityAsMap> suggestion : suggestions) {
+            if (!suggestion.isCompletion()) {
+                continue;
+            }
+            for (CompletionSuggestOption<EntityAsMap> option : suggestion.completion().options()) {
+                String text = option.text();
+                if (option.source() != null && option.source().get(field) instanceof String value) {
+                    text = value;
+                }
+                if (text != null) {
+                    double score = option.score() == null ? 0 : option.score();
+                    candidates.add(new ScoredText(text, score));
+                }
+            }
+        }
+    }
+
+    private static List<String> mergeByScore(List<ScoredText> candidates, int size) {
+        candidates.sort(Comparator.comparingDouble(ScoredText::score).reversed());
+
+        return candidates.stream()
+                .map(ScoredText::text)
+                .distinct()
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 纠错查询：先精确匹配小写文本，再用fuzzy查询实现纠错
+     */
+    static NativeQuery correctionQuery(String lowerText) {
+        return NativeQuery.builder()
+                .withQuery(correctionBoolQuery(lowerText))
+                .build();
+    }
+
+    /**
+     * 补全加纠错：completion建议与纠错查询放在同一个 _search 中，建议取自suggest部分，纠错取自命中
+     */
+    static NativeQuery suggestAndCorrectQuery(String lowerText, int size, AutocompleteProperties.Suggest settings) {
+        NativeQuery completion = completionSuggestQuery(lowerText, size, settings);
+        return NativeQuery.builder()
+                .withSuggester(completion.getSuggester())
+                .withQuery(correctionBoolQuery(lowerText))
+                .withSourceFilter(NAME_AND_SYMBOL)
+                .withMaxResults(DEFAULT_HITS)
+                .build();
+    }
+
+    private static Query correctionBoolQuery(String lowerText) {
+        // 首先尝试精确匹配小写文本
+        Query exactLowerMatchName = new Query.Builder()
+                .match(m -> m.field("name").query(lowerText))
+                .build();
+
+        Query exactLowerMatchSymbol = new Query.Builder()
+                .match(m -> m.field("symbol").query(lowerText))
+                .build();
+
+        // 然后使用fuzzy查询实现纠错功能
+        Query fuzzyNameQuery = new Query.Builder()
+                .fuzzy(f -> f
+                        .field("name")
+                        .value(lowerText)
+                        .fuzziness("AUTO")
+                        .prefixLength(1)
+                        .maxExpansions(50))
+                .build();
+
+        Query fuzzySymbolQuery = new Query.Builder()
+                .fuzzy(f -> f
+                        .field("symbol")
+                        .value(lowerText)
+                        .fuzziness("AUTO")
+                        .prefixLength(1)
+                        .maxExpansions(50))
+                .build();
+
+        return new Query.Builder()
+                .bool(b -> b
+                        .should(exactLowerMatchName)
+                        .should(exactLowerMatchSymbol)
+                        .should(fuzzyNameQuery)
+                        .should(fuzzySymbolQuery))
+                .build();
+    }
+
+    /**
+     * 按命中顺序提取名称和符号，去重后截取前size个
+     */
+    static List<String> extractNamesAndSymbols(List<SearchHit<Token>> hits, int size) {
+        return namesAndSymbols(contents(hits), size);
+    }
+
+    static List<String> namesAndSymbols(List<Token> tokens, int size) {
+        List<String> texts = new ArrayList<>();
+        tokens.forEach(token -> {
+            if (token.getName() != null) {
+                texts.add(token.getName());
+            }
+            if (token.getSymbol() != null) {
+                texts.add(token.getSymbol());
+            }
+        });
+
+        return texts.stream().distinct().limit(size).collect(Collectors.toList());
+    }
+
+    /**
+     * ES返回的命中数与completion选项数之和，即Java侧过滤之前的候选数
+     */
+    static int fetchedCount(SearchHits<Token> searchHits) {
+        return searchHits.getSearchHits().size() + completionOptionCount(searchHits.getSuggest());
+    }
+
+    /**
+     * completion建议的补全结果：名称和符号两个建议各自返回的选项数都少于请求的size时已取尽全部匹配，
+     * 合并去重后没有被size截断时结果才完整
+     */
+    static SuggestionResult completionResult(List<String> suggestions, Suggest suggest, int size) {
+        boolean exhausted = suggest != null;
+        if (suggest != null) {
+            for (Suggest.Suggestion<? extends Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option>>
+                    suggestion : suggest.getSuggestions()) {
+                for (Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option> entry
+                        : suggestion.getEntries()) {
+                    exhausted &= entry.getOptions().size() < size;
+                }
+            }
+        }
+        return new SuggestionResult(suggestions, exhausted && suggestions.size() < size);
+    }
+
+    /**
+     * 从 _msearch 的原始响应中判断completion建议是否完整，规则与 {@link #completionResult(List, Suggest, int)} 相同
+     */
+    static SuggestionResult completionResult(List<String> suggestions,
+                                             Map<String, List<Suggestion<EntityAsMap>>> suggest, int size) {
+        boolean exhausted = true;
+        for (List<Suggestion<EntityAsMap>> fieldSuggestions : suggest.values()) {
+            for (Suggestion<EntityAsMap> suggestion : fieldSuggestions) {
+                if (suggestion.isCompletion()) {
+                    exhausted &= suggestion.completion().options().size() < size;
+                }
+            }
+        }
+        return new SuggestionResult(suggestions, exhausted && suggestions.size() < size);
+    }
+
+    static int completionOptionCount(Suggest suggest) {
+        if (suggest == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Suggest.Suggestion<? extends Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option>>
+                suggestion : suggest.getSuggestions()) {
+            for (Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option> entry : suggestion.getEntries()) {
+                count += entry.getOptions().size();
+            }
+        }
+        return count;
+    }
+
+    static int fetchedCount(MultiSearchItem<EntityAsMap> result) {
+        int count = result.hits().hits().size();
+        for (List<Suggestion<EntityAsMap>> suggestions : result.suggest().values()) {
+            for (Suggestion<EntityAsMap> suggestion : suggestions) {
+                if (suggestion.isCompletion()) {
+                    count += suggestion.completion().options().size();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把查询转换成 _msearch 中的一项，只包含这里用到的query、suggest、size和_source
+     */
+    static MultisearchBody toMultisearchBody(NativeQuery query) {
+        return MultisearchBody.of(b -> {
+            b.query(query.getQuery()).suggest(query.getSuggester());
+            if (query.getMaxResults() != null) {
+                b.size(query.getMaxResults());
+            }
+            if (!query.getSortOptions().isEmpty()) {
+                b.sort(query.getSortOptions());
+            }
+            if (query.getSourceFilter() != null && query.getSourceFilter().getIncludes() != null) {
+                b.source(s -> s.filter(f -> f.includes(Arrays.asList(query.getSourceFilter().getIncludes()))));
+            }
+            return b;
+        });
+    }
+
+    /**
+     * 从 _msearch 的原始命中中读取名称和符号
+     */
+    static List<Token> rawContents(List<Hit<EntityAsMap>> hits) {
+        List<Token> tokens = new ArrayList<>(hits.size());
+        for (Hit<EntityAsMap> hit : hits) {
+            EntityAsMap source = hit.source();
+            if (source != null) {
+                tokens.add(Token.builder()
+                        .id(hit.id())
+                        .name(source.getString("name"))
+                        .symbol(source.getString("symbol"))
+                        .build());
+            }
+        }
+        return tokens;
+    }
+
+    static List<Token> contents(List<SearchHit<Token>> hits) {
+        return hits.stream().map(SearchHit::getContent).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectCompletionOptions(Suggest suggest, String suggesterName, boolean symbol,
+                                                 List<ScoredText> candidates) {
+        if (!(suggest.getSuggestion(suggesterName) instanceof CompletionSuggestion<?> suggestion)) {
+            return;
+        }
+        for (CompletionSuggestion.Entry<?> entry : suggestion.getEntries()) {
+            for (CompletionSuggestion.Entry.Option<?> option : entry.getOptions()) {
+                SearchHit<Token> hit = (SearchHit<Token>) option.getSearchHit();
+                String text = option.getText();
+                if (hit != null && hit.getContent() != null) {
+                    Token token = hit.getContent();
+                    text = symbol ? token.getSymbol() : token.getName();
+                }
+                if (text != null) {
+                    double score = option.getScore() == null ? 0 : option.getScore();
+                    candidates.add(new ScoredText(text, score));
+                }
+            }
+        }
+    }
+
+    private record ScoredText(String text, double score) {
+    }
+}
@@ -1,30 +1,78 @@
 package com.example.esautocomplete.service.impl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import co.elastic.clients.elasticsearch.core.search.CompletionSuggest;
-import co.elastic.clients.elasticsearch.core.search.CompletionSuggester;
-import co.elastic.clients.elasticsearch.core.search.Suggester;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.client.elc.EntityAsMap;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.ReactiveElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.document.Document;
 import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
 import org.springframework.data.elasticsearch.core.suggest.Completion;
-import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
 import org.springframework.stereotype.Service;
 
+import com.example.esautocomplete.cache.IndexGeneration;
+import com.example.esautocomplete.cache.QueryCoalescer;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.cache.SuggestionResult;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.BatchItem;
+import com.example.esautocomplete.dto.BatchItemResult;
+import com.example.esautocomplete.dto.IngestReport;
+import com.example.esautocomplete.dto.SuggestResponse;
+import com.example.esautocomplete.dto.TaggedSuggestResponse;
+import com.example.esautocomplete.dto.TaggedSuggestion;
+import com.example.esautocomplete.dto.WeightUpdate;
+import com.example.esautocomplete.dto.WeightUpdateResponse;
+import com.example.esautocomplete.engine.CorrectionEngine;
+import com.example.esautocomplete.engine.PrefixEngine;
+import com.example.esautocomplete.engine.TokenAddress;
+import com.example.esautocomplete.engine.TokenText;
+import com.example.esautocomplete.feed.ChangeSequence;
+import com.example.esautocomplete.index.TokenIndexManager;
+import com.example.esautocomplete.ingest.TokenBulkIngester;
+import com.example.esautocomplete.metrics.SearchMetrics;
 import com.example.esautocomplete.model.Token;
 import com.example.esautocomplete.repository.TokenRepository;
+import com.example.esautocomplete.resilience.ResilientSearch;
 import com.example.esautocomplete.service.TokenService;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultisearchBody;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import co.elastic.clients.util.ObjectBuilder;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 @Slf4j
 @Service
@@ -32,28 +80,230 @@ public class TokenServiceImpl implements TokenService {
 
     private static final String INDEX_NAME = "token";
 
+    private static final int DEFAULT_BATCH_SIZE = 5;
+
     @Autowired
     private TokenRepository tokenRepository;
 
     @Autowired
     private ElasticsearchOperations elasticsearchOperations;
 
+    @Autowired
+    private ReactiveElasticsearchOperations reactiveElasticsearchOperations;
+
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private Scheduler requestScheduler;
+
+    @Autowired
+    private PrefixEngine prefixEngine;
+
+    @Autowired
+    private CorrectionEngine correctionEngine;
+
+    @Autowired
+    private AutocompleteProperties properties;
+
+    @Autowired
+    private SuggestionCache suggestionCache;
+
+    @Autowired
+    private QueryCoalescer queryCoalescer;
+
+    @Autowired
+    private TokenBulkIngester tokenBulkIngester;
+
+    @Autowired
+    private TokenIndexManager tokenIndexManager;
+
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    @Autowired
+    private ResilientSearch resilientSearch;
+
+    @Autowired
+    private ChangeSequence changeSequence;
+
+    @Autowired
+    private IndexGeneration indexGeneration;
+
     @Override
     public Token saveToken(Token token) {
-        prepareToken(token);
-        return tokenRepository.save(token);
+        Token saved = gated(() -> {
+            prepareWrite(token);
+            return tokenRepository.save(token);
+        });
+        invalidate(List.of(saved));
+        return saved;
     }
 
     @Override
     public void saveTokens(List<Token> tokens) {
-        tokens.forEach(this::prepareToken);
-        tokenRepository.saveAll(tokens);
+        IngestReport report = ingestTokens(tokens.iterator());
+        if (report.getFailed() > 0) {
+            Map<String, BulkFailureException.FailureDetails> failedDocuments = new HashMap<>();
+            report.getFailures().forEach(failure -> failedDocuments.put(failure.getId(),
+                    new BulkFailureException.FailureDetails(failure.getStatus(), failure.getReason())));
+            throw new BulkFailureException("批量保存Token时有 " + report.getFailed() + " 条失败", failedDocuments);
+        }
+    }
+
+    @Override
+    public IngestReport ingestTokens(Iterator<Token> tokens) {
+        return gated(() -> tokenBulkIngester.ingest(tokens, this::prepareWrite,
+                elasticsearchOperations.getIndexCoordinatesFor(Token.class), this::invalidate));
+    }
+
+    @Override
+    public boolean deleteToken(String id) {
+        Token existing = tokenRepository.findById(id).orElse(null);
+        if (existing == null) {
+            return false;
+        }
+        // 先写墓碑再删除文档：文档删除后，其他实例的变更订阅只能从墓碑得知。
+        // 墓碑索引在持有写入闸门之前创建，重建索引持有索引管理器的监视器时会等待闸门
+        try {
+            tokenIndexManager.createTombstoneIndexIfAbsent();
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建墓碑索引失败", e);
+        }
+        gated(() -> {
+            Token tombstone = Token.builder()
+                    .id(id)
+                    .name(existing.getName())
+                    .symbol(existing.getSymbol())
+                    .seq(changeSequence.next())
+                    .build();
+            elasticsearchOperations.save(tombstone, IndexCoordinates.of(TokenIndexManager.TOMBSTONE_INDEX));
+            tokenRepository.deleteById(id);
+            return null;
+        });
+        invalidate(List.of(existing));
+        log.info("已删除Token: id={}, name={}, symbol={}", id, existing.getName(), existing.getSymbol());
+        return true;
     }
 
-    private void prepareToken(Token token) {
+    @Override
+    public WeightUpdateResponse updateWeights(List<WeightUpdate> updates) {
+        long start = System.nanoTime();
+        int maxReportedFailures = properties.getIngest().getMaxReportedFailures();
+        WeightUpdateResponse response = WeightUpdateResponse.builder().requested(updates.size()).build();
+
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (WeightUpdate update : updates) {
+            if (update.getId() == null || update.getWeight() == null || update.getWeight() < 0) {
+                recordWeightFailure(response, update.getId(), 400, "id不能为空，weight必须为非负整数", maxReportedFailures);
+            } else {
+                weights.put(update.getId(), update.getWeight());
+            }
+        }
+
+        // 只发送部分文档：ES按对象递归合并，completion字段的input保持不变，只替换weight
+        IndexCoordinates index = elasticsearchOperations.getIndexCoordinatesFor(Token.class);
+        List<String> ids = new ArrayList<>(weights.keySet());
+        Set<String> updated = new HashSet<>(ids);
+        int chunkDocs = properties.getIngest().getChunkDocs();
+        for (int from = 0; from < ids.size(); from += chunkDocs) {
+            List<UpdateQuery> chunk = ids.subList(from, Math.min(from + chunkDocs, ids.size())).stream()
+                    .map(id -> weightUpdateQuery(id, weights.get(id), changeSequence.next()))
+                    .collect(Collectors.toList());
+            try {
+                gated(() -> {
+                    elasticsearchOperations.bulkUpdate(chunk, index);
+                    return null;
+                });
+            } catch (BulkFailureException e) {
+                e.getFailedDocuments().forEach((id, details) -> {
+                    updated.remove(id);
+                    recordWeightFailure(response, id, details.status(), details.errorMessage(), maxReportedFailures);
+                });
+            }
+        }
+
+        // 本地前缀引擎原地更新权重，无需等待下一次全量重建
+        for (String id : updated) {
+            prefixEngine.updateWeight(id, weights.get(id));
+        }
+        List<Token> tokens = new ArrayList<>(updated.size());
+        tokenRepository.findAllById(updated).forEach(tokens::add);
+        invalidate(tokens);
+
+        response.setUpdated(updated.size());
+        response.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("更新热度权重完成: 请求数={}, 成功={}, 失败={}, 耗时={}ms", response.getRequested(),
+                response.getUpdated(), response.getFailed(), response.getElapsedMillis());
+        return response;
+    }
+
+    /**
+     * 通过别名写入时持有索引管理器的写入闸门，重建索引追平最后一段增量并切换别名时写入短暂等待，
+     * 写入的序号不会落在最后一轮补写与别名切换之间
+     */
+    private <T> T gated(Supplier<T> write) {
+        Lock gate = tokenIndexManager.writeGate();
+        gate.lock();
+        try {
+            return write.get();
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * 写入后失效受影响的结果缓存，并推进索引代数使之前发出的ETag失效
+     */
+    private void invalidate(Collection<Token> written) {
+        suggestionCache.invalidate(written);
+        indexGeneration.advance();
+    }
+
+    private static UpdateQuery weightUpdateQuery(String id, int weight, long seq) {
+        Map<String, Object> partial = new HashMap<>();
+        partial.put("weight", weight);
+        partial.put("seq", seq);
+        partial.put("nameSuggest", Map.of("weight", weight));
+        partial.put("symbolSuggest", Map.of("weight", weight));
+        return UpdateQuery.builder(id)
+                .withDocument(Document.from(partial))
+                .withRetryOnConflict(3)
+                .build();
+    }
+
+    private static void recordWeightFailure(WeightUpdateResponse response, String id, Integer status, String reason,
+                                            int maxReportedFailures) {
+        response.setFailed(response.getFailed() + 1);
+        if (response.getFailures().size() < maxReportedFailures) {
+            response.getFailures().add(IngestReport.ItemFailure.builder()
+                    .id(id)
+                    .status(status)
+                    .reason(reason)
+                    .build());
+        }
+    }
+
+    /**
+     * 新写入的Token：预处理并记录变更序号。重建索引只调用 {@link #prepareToken(Token)}，保留文档原有的序号
+     */
+    private void prepareWrite(Token token) {
+        prepareToken(token);
+        token.setSeq(changeSequence.next());
+    }
+
+    /**
+     * 补齐ID并生成两个completion字段，包级可见以便基准测试直接调用
+     */
+    void prepareToken(Token token) {
         if (token.getId() == null) {
             token.setId(UUID.randomUUID().toString());
         }
+        // chain和category是completion上下文的取值，查询时同样转为小写后精确匹配
+        token.setChain(normalizeContext(token.getChain()));
+        token.setCategory(normalizeContext(token.getCategory()));
+        // 0x地址统一为小写，按前缀查询时不必再区分大小写
+        token.setAddress(TokenAddress.normalize(token.getAddress()));
 
         // 设置name字段的补全建议，添加小写版本以支持大小写不敏感
         String name = token.getName();
@@ -64,125 +314,695 @@ public class TokenServiceImpl implements TokenService {
         String symbol = token.getSymbol();
         Completion symbolCompletion = new Completion(new String[]{symbol, symbol.toLowerCase()});
         token.setSymbolSuggest(symbolCompletion);
+
+        // 热度权重即completion权重，Completion Suggester按权重返回前size个
+        if (token.getWeight() != null) {
+            int weight = Math.max(0, token.getWeight());
+            token.setWeight(weight);
+            nameCompletion.setWeight(weight);
+            symbolCompletion.setWeight(weight);
+        }
+    }
+
+    private static String normalizeContext(String value) {
+        return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 请求中的链列表：归一化、去掉空值和重复，保持顺序（第一个是用户当前所在的链）
+     */
+    private static List<String> normalizeChains(List<String> chains) {
+        if (chains == null || chains.isEmpty()) {
+            return List.of();
+        }
+        return chains.stream()
+                .map(TokenServiceImpl::normalizeContext)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
     }
 
     @Override
     public List<String> getSuggestions(String prefix, int size) {
-        if (prefix == null || prefix.isEmpty()) {
-            return Collections.emptyList();
+        return suggest(prefix, size, List.of()).getSuggestions();
+    }
+
+    private SuggestResponse suggest(String rawPrefix, int size, List<String> chains) {
+        // 入口处归一化一次，发给ES的查询与结果缓存、请求合并和HTTP缓存的key是同一个字符串，
+        // 只差首尾空白或大小写的输入得到同一个回答
+        String prefix = TokenText.normalize(rawPrefix);
+        if (prefix.isEmpty()) {
+            searchMetrics.blankQuery(SearchMetrics.SUGGEST);
+            return response(Collections.emptyList(), false);
+        }
+
+        // 本地前缀引擎已加载时直接在进程内完成查询，否则回退到Elasticsearch
+        if (chains.isEmpty() && localPrefixAvailable()) {
+            return response(localResult(served(SearchMetrics.SUGGEST, prefixEngine.suggest(prefix, size))));
         }
 
         try {
-            List<String> suggestions = new ArrayList<>();
-            String lowerPrefix = prefix.toLowerCase();
+            if (!chains.isEmpty()) {
+                // 本地引擎和缓存不区分链，按链过滤的查询只合并并发的相同查询
+                return response(queryCoalescer.execute(SearchMetrics.SUGGEST, prefix, size, String.join(",", chains),
+                        () -> searchSuggestions(prefix, size, chains)));
+            }
+            // 缓存未命中的并发相同查询合并为一次ES请求
+            return response(suggestionCache.getSuggestions(prefix, size, () -> queryCoalescer.execute(
+                    SearchMetrics.SUGGEST, prefix, size, () -> searchSuggestions(prefix, size, chains))));
+        } catch (Exception e) {
+            logFailure("获取自动补全建议时发生错误", e);
+            return degradedSuggestions(SearchMetrics.SUGGEST, prefix, size, chains, e);
+        }
+    }
 
-            // 使用通配符查询实现大小写不敏感的前缀匹配
-            Query namePrefixQuery = new Query.Builder()
-                    .wildcard(w -> w.field("name").value(lowerPrefix + "*"))
-                    .build();
+    /**
+     * 本地前缀引擎用于正常查询；关闭时引擎仍可能作为降级快照加载
+     */
+    private boolean localPrefixAvailable() {
+        return properties.getLocalEngine().isEnabled() && prefixEngine.isLoaded();
+    }
 
-            Query symbolPrefixQuery = new Query.Builder()
-                    .wildcard(w -> w.field("symbol").value(lowerPrefix + "*"))
-                    .build();
+    /**
+     * ES查询失败、超过截止时间或熔断时，用本地名称/符号快照回答并标记为降级；没有快照时返回空结果。
+     * 快照不区分链，按链过滤的查询不降级
+     */
+    private SuggestResponse degradedSuggestions(String operation, String prefix, int size, List<String> chains,
+                                                Throwable error) {
+        if (chains.isEmpty() && properties.getResilience().isDegradedFallback() && prefixEngine.isLoaded()) {
+            List<String> suggestions = prefixEngine.suggest(prefix, size);
+            searchMetrics.degraded(operation, error, suggestions.size());
+            return response(suggestions, true);
+        }
+        searchMetrics.failed(operation, error);
+        return response(Collections.emptyList(), false);
+    }
 
-            Query boolQuery = new Query.Builder()
-                    .bool(b -> b.should(namePrefixQuery).should(symbolPrefixQuery))
-                    .build();
+    private SuggestResponse degradedCorrections(String operation, String text, int size, Throwable error) {
+        if (properties.getResilience().isDegradedFallback() && correctionEngine.isLoaded()) {
+            List<String> corrections = correctionEngine.correct(text, size);
+            searchMetrics.degraded(operation, error, corrections.size());
+            return response(corrections, true);
+        }
+        searchMetrics.failed(operation, error);
+        return response(Collections.emptyList(), false);
+    }
 
-            NativeQuery searchQuery = NativeQuery.builder()
-                    .withQuery(boolQuery)
-                    .build();
+    private static SuggestResponse response(List<String> suggestions, boolean degraded) {
+        return SuggestResponse.builder().suggestions(suggestions).degraded(degraded).build();
+    }
 
-            SearchHits<Token> searchHits = elasticsearchOperations.search(searchQuery, Token.class);
+    private static SuggestResponse response(SuggestionResult result) {
+        return SuggestResponse.builder().suggestions(result.suggestions()).complete(result.complete()).build();
+    }
 
-            // 提取结果
-            searchHits.getSearchHits().forEach(hit -> {
-                Token token = hit.getContent();
-                if (token.getName() != null && token.getName().toLowerCase().contains(lowerPrefix)) {
-                    suggestions.add(token.getName());
-                }
-                if (token.getSymbol() != null && token.getSymbol().toLowerCase().contains(lowerPrefix)) {
-                    suggestions.add(token.getSymbol());
-                }
-            });
+    /**
+     * 本地前缀引擎按词首匹配，与各补全方式的收窄规则都不相同，结果不用于收窄；进程内查询本身只需微秒
+     */
+    private static SuggestionResult localResult(List<String> suggestions) {
+        return SuggestionResult.partial(suggestions);
+    }
 
-            return suggestions.stream().distinct().limit(size).collect(Collectors.toList());
-        } catch (Exception e) {
-            log.error("获取自动补全建议时发生错误", e);
-            return Collections.emptyList();
+    /**
+     * 熔断期间每个请求都会失败，不再逐条输出异常栈
+     */
+    private static void logFailure(String message, Throwable error) {
+        if (SearchMetrics.CAUSE_CIRCUIT_OPEN.equals(SearchMetrics.cause(error))) {
+            log.debug("{}: {}", message, error.getMessage());
+        } else {
+            log.error(message, error);
         }
     }
 
+    private SuggestionResult searchSuggestions(String prefix, int size, List<String> chains) {
+        if (TokenAddress.isAddressPrefix(prefix)) {
+            return searchAddresses(prefix, size, chains);
+        }
+        String lowerPrefix = prefix.toLowerCase();
+        AutocompleteProperties.SuggestMode mode = suggestMode(chains);
+        SearchHits<Token> searchHits = resilientSearch.call(SearchMetrics.SUGGEST,
+                () -> elasticsearchOperations.search(suggestQuery(mode, lowerPrefix, size, chains), Token.class));
+
+        SuggestionResult result = mode == AutocompleteProperties.SuggestMode.COMPLETION
+                ? TokenQueries.completionResult(TokenQueries.extractCompletionSuggestions(searchHits, size),
+                        searchHits.getSuggest(), size)
+                : TokenQueries.hitResult(
+                        hitSuggestions(mode, TokenQueries.contents(searchHits.getSearchHits()), lowerPrefix, size),
+                        searchHits.getSearchHits().size(), TokenQueries.suggestHits(size), size);
+        searchMetrics.fetched(SearchMetrics.SUGGEST, TokenQueries.fetchedCount(searchHits),
+                result.suggestions().size());
+        return result;
+    }
+
+    /**
+     * 0x开头的合约地址前缀在address字段上查询，不经过completion和通配符
+     */
+    private SuggestionResult searchAddresses(String prefix, int size, List<String> chains) {
+        SearchHits<Token> searchHits = resilientSearch.call(SearchMetrics.SUGGEST,
+                () -> elasticsearchOperations.search(addressQuery(prefix, size, chains), Token.class));
+        List<String> suggestions = TokenQueries.addressSuggestions(
+                TokenQueries.contents(searchHits.getSearchHits()), size);
+        searchMetrics.fetched(SearchMetrics.SUGGEST, TokenQueries.fetchedCount(searchHits), suggestions.size());
+        return TokenQueries.hitResult(suggestions, searchHits.getSearchHits().size(), size, size);
+    }
+
+    private NativeQuery addressQuery(String prefix, int size, List<String> chains) {
+        return TokenQueries.addressSuggestQuery(prefix.trim().toLowerCase(Locale.ROOT), size, chains,
+                tokenIndexManager.hasAddressFields());
+    }
+
+    /**
+     * 配置的补全方式；中缀模式在索引迁移到带中缀子字段的映射之前回退到通配符查询
+     */
+    private AutocompleteProperties.SuggestMode suggestMode() {
+        AutocompleteProperties.SuggestMode mode = properties.getSuggest().getMode();
+        if (mode == AutocompleteProperties.SuggestMode.INFIX && !tokenIndexManager.hasInfixFields()) {
+            return AutocompleteProperties.SuggestMode.WILDCARD;
+        }
+        return mode;
+    }
+
+    /**
+     * 按链过滤时的补全方式：completion字段在迁移重建完成前没有chain上下文，回退到带过滤的通配符查询
+     */
+    private AutocompleteProperties.SuggestMode suggestMode(List<String> chains) {
+        AutocompleteProperties.SuggestMode mode = suggestMode();
+        if (mode == AutocompleteProperties.SuggestMode.COMPLETION && !chains.isEmpty()
+                && !tokenIndexManager.hasChainContexts()) {
+            return AutocompleteProperties.SuggestMode.WILDCARD;
+        }
+        return mode;
+    }
+
+    /**
+     * 从普通查询（通配符或中缀）的命中中提取补全建议
+     */
+    private List<String> hitSuggestions(List<Token> tokens, String lowerPrefix, int size) {
+        return hitSuggestions(suggestMode(), tokens, lowerPrefix, size);
+    }
+
+    private static List<String> hitSuggestions(AutocompleteProperties.SuggestMode mode, List<Token> tokens,
+                                               String lowerPrefix, int size) {
+        return mode == AutocompleteProperties.SuggestMode.INFIX
+                ? TokenQueries.infixSuggestions(tokens, lowerPrefix, size)
+                : TokenQueries.wildcardSuggestions(tokens, lowerPrefix, size);
+    }
+
+    private List<String> served(String operation, List<String> results) {
+        searchMetrics.served(operation, results.size());
+        return results;
+    }
+
+    private NativeQuery suggestQuery(String lowerPrefix, int size) {
+        return suggestQuery(suggestMode(), lowerPrefix, size, List.of());
+    }
+
+    private NativeQuery suggestQuery(AutocompleteProperties.SuggestMode mode, String lowerPrefix, int size,
+                                     List<String> chains) {
+        if (mode == AutocompleteProperties.SuggestMode.COMPLETION) {
+            // 使用Completion Suggester，一次请求同时查询名称和符号的completion字段；链在chain上下文内过滤
+            return TokenQueries.completionSuggestQuery(lowerPrefix, size, properties.getSuggest(), chains);
+        }
+        if (mode == AutocompleteProperties.SuggestMode.INFIX) {
+            // 在写入时展开的n-gram子字段上做词首和中缀匹配
+            return TokenQueries.infixSuggestQuery(lowerPrefix, size, chains);
+        }
+        // 使用通配符查询实现大小写不敏感的前缀匹配
+        return TokenQueries.wildcardSuggestQuery(lowerPrefix, size, chains);
+    }
+
     @Override
     public List<String> getCorrections(String text, int size) {
-        if (text == null || text.isEmpty()) {
-            return Collections.emptyList();
+        return correct(text, size).getSuggestions();
+    }
+
+    private SuggestResponse correct(String rawText, int size) {
+        String text = TokenText.normalize(rawText);
+        if (text.isEmpty()) {
+            searchMetrics.blankQuery(SearchMetrics.CORRECT);
+            return response(Collections.emptyList(), false);
+        }
+
+        // 本地SymSpell纠错引擎可用时不再发送ES fuzzy查询
+        if (localCorrectionAvailable()) {
+            return response(served(SearchMetrics.CORRECT, correctionEngine.correct(text, size)), false);
         }
 
         try {
-            List<String> corrections = new ArrayList<>();
-            String lowerText = text.toLowerCase();
+            return response(suggestionCache.getCorrections(text, size, () -> queryCoalescer.execute(
+                    SearchMetrics.CORRECT, text, size, () -> searchCorrections(text, size))), false);
+        } catch (Exception e) {
+            logFailure("获取纠错建议时发生错误", e);
+            return degradedCorrections(SearchMetrics.CORRECT, text, size, e);
+        }
+    }
 
-            // 首先尝试精确匹配小写文本
-            Query exactLowerMatchName = new Query.Builder()
-                    .match(m -> m.field("name").query(lowerText))
-                    .build();
+    private boolean localCorrectionAvailable() {
+        return properties.getCorrection().getEngine() == AutocompleteProperties.CorrectionEngineType.LOCAL
+                && correctionEngine.isLoaded();
+    }
 
-            Query exactLowerMatchSymbol = new Query.Builder()
-                    .match(m -> m.field("symbol").query(lowerText))
-                    .build();
+    private List<String> searchCorrections(String text, int size) {
+        NativeQuery searchQuery = TokenQueries.correctionQuery(text.toLowerCase());
+        SearchHits<Token> searchHits = resilientSearch.call(SearchMetrics.CORRECT,
+                () -> elasticsearchOperations.search(searchQuery, Token.class));
+        List<String> corrections = TokenQueries.extractNamesAndSymbols(searchHits.getSearchHits(), size);
+        searchMetrics.fetched(SearchMetrics.CORRECT, TokenQueries.fetchedCount(searchHits), corrections.size());
+        return corrections;
+    }
 
-            // 然后使用fuzzy查询实现纠错功能
-            Query fuzzyNameQuery = new Query.Builder()
-                    .fuzzy(f -> f
-                            .field("name")
-                            .value(lowerText)
-                            .fuzziness("AUTO")
-                            .prefixLength(1)
-                            .maxExpansions(50))
-                    .build();
+    @Override
+    public TaggedSuggestResponse getSuggestionsWithCorrections(String rawText, int size) {
+        String text = TokenText.normalize(rawText);
+        if (text.isEmpty()) {
+            searchMetrics.blankQuery(SearchMetrics.SUGGEST_OR_CORRECT);
+            return tagged(Collections.emptyList(), false);
+        }
 
-            Query fuzzySymbolQuery = new Query.Builder()
-                    .fuzzy(f -> f
-                            .field("symbol")
-                            .value(lowerText)
-                            .fuzziness("AUTO")
-                            .prefixLength(1)
-                            .maxExpansions(50))
-                    .build();
+        List<String> suggestions = localPrefixAvailable()
+                ? prefixEngine.suggest(text, size)
+                : cachedSuggestions(text, size);
+        if (suggestions != null && suggestions.size() >= size) {
+            return tagged(tagSuggestions(suggestions, Collections.emptyList(), size), false);
+        }
 
-            Query boolQuery = new Query.Builder()
-                    .bool(b -> b
-                            .should(exactLowerMatchName)
-                            .should(exactLowerMatchSymbol)
-                            .should(fuzzyNameQuery)
-                            .should(fuzzySymbolQuery))
-                    .build();
+        List<String> corrections = localCorrectionAvailable()
+                ? correctionEngine.correct(text, size)
+                : suggestionCache.lookupCorrections(text, size);
 
-            NativeQuery searchQuery = NativeQuery.builder()
-                    .withQuery(boolQuery)
-                    .build();
+        boolean degraded = false;
+        if (suggestions == null && corrections == null) {
+            // 补全和纠错都需要查询ES时合并为一次请求，未命中时的延迟与命中时相同
+            SuggestionsAndCorrections searched = searchSuggestionsAndCorrections(text, size);
+            suggestions = searched.suggestions();
+            corrections = searched.corrections();
+            degraded = searched.degraded();
+        } else if (suggestions == null) {
+            SuggestResponse response = suggest(text, size, List.of());
+            suggestions = response.getSuggestions();
+            degraded = response.isDegraded();
+        } else if (corrections == null) {
+            SuggestResponse response = correct(text, size);
+            corrections = response.getSuggestions();
+            degraded = response.isDegraded();
+        }
+        return tagged(tagSuggestions(suggestions, corrections, size), degraded);
+    }
 
-            SearchHits<Token> searchHits = elasticsearchOperations.search(searchQuery, Token.class);
+    private List<String> cachedSuggestions(String text, int size) {
+        SuggestionResult cached = suggestionCache.lookupSuggestions(text, size);
+        return cached == null ? null : cached.suggestions();
+    }
 
-            // 提取结果
-            searchHits.getSearchHits().forEach(hit -> {
-                Token token = hit.getContent();
-                if (token.getName() != null) {
-                    corrections.add(token.getName());
-                }
-                if (token.getSymbol() != null) {
-                    corrections.add(token.getSymbol());
-                }
-            });
+    private static TaggedSuggestResponse tagged(List<TaggedSuggestion> suggestions, boolean degraded) {
+        return TaggedSuggestResponse.builder().suggestions(suggestions).degraded(degraded).build();
+    }
 
-            return corrections.stream().distinct().limit(size).collect(Collectors.toList());
+    private SuggestionsAndCorrections searchSuggestionsAndCorrections(String text, int size) {
+        try {
+            return queryCoalescer.execute(SearchMetrics.SUGGEST_OR_CORRECT, text, size,
+                    () -> fetchSuggestionsAndCorrections(text, size));
         } catch (Exception e) {
-            log.error("获取纠错建议时发生错误", e);
-            return Collections.emptyList();
+            logFailure("获取补全和纠错建议时发生错误", e);
+            boolean fallback = properties.getResilience().isDegradedFallback()
+                    && (prefixEngine.isLoaded() || correctionEngine.isLoaded());
+            if (!fallback) {
+                searchMetrics.failed(SearchMetrics.SUGGEST_OR_CORRECT, e);
+                return new SuggestionsAndCorrections(Collections.emptyList(), Collections.emptyList(), false);
+            }
+            List<String> suggestions = prefixEngine.isLoaded()
+                    ? prefixEngine.suggest(text, size)
+                    : Collections.emptyList();
+            List<String> corrections = correctionEngine.isLoaded()
+                    ? correctionEngine.correct(text, size)
+                    : Collections.emptyList();
+            searchMetrics.degraded(SearchMetrics.SUGGEST_OR_CORRECT, e, suggestions.size() + corrections.size());
+            return new SuggestionsAndCorrections(suggestions, corrections, true);
         }
     }
 
+    private SuggestionsAndCorrections fetchSuggestionsAndCorrections(String text, int size) {
+        String lowerText = text.toLowerCase();
+        SuggestionResult suggestions;
+        List<String> corrections;
+        int fetched;
+        if (suggestMode() == AutocompleteProperties.SuggestMode.COMPLETION) {
+            // completion建议和纠错查询放在同一个 _search 中
+            NativeQuery searchQuery = TokenQueries.suggestAndCorrectQuery(lowerText, size, properties.getSuggest());
+            SearchHits<Token> searchHits = resilientSearch.call(SearchMetrics.SUGGEST_OR_CORRECT,
+                    () -> elasticsearchOperations.search(searchQuery, Token.class));
+            suggestions = TokenQueries.completionResult(TokenQueries.extractCompletionSuggestions(searchHits, size),
+                    searchHits.getSuggest(), size);
+            corrections = TokenQueries.extractNamesAndSymbols(searchHits.getSearchHits(), size);
+            fetched = TokenQueries.fetchedCount(searchHits);
+        } else {
+            // 通配符/中缀补全与纠错都是普通查询，通过 _msearch 一次发送
+            String index = elasticsearchOperations.getIndexCoordinatesFor(Token.class).getIndexName();
+            MultisearchBody suggestBody = TokenQueries.toMultisearchBody(suggestQuery(lowerText, size));
+            MultisearchBody correctBody = TokenQueries.toMultisearchBody(TokenQueries.correctionQuery(lowerText));
+            MsearchResponse<EntityAsMap> response = resilientSearch.call(SearchMetrics.SUGGEST_OR_CORRECT,
+                    () -> msearch(m -> m
+                            .searches(s -> s.header(h -> h.index(index)).body(suggestBody))
+                            .searches(s -> s.header(h -> h.index(index)).body(correctBody))));
+            List<Token> suggestHits = rawHits(response.responses().get(0));
+            suggestions = TokenQueries.hitResult(hitSuggestions(suggestHits, lowerText, size), suggestHits.size(),
+                    TokenQueries.suggestHits(size), size);
+            corrections = TokenQueries.namesAndSymbols(rawHits(response.responses().get(1)), size);
+            fetched = response.responses().get(0).result().hits().hits().size()
+                    + response.responses().get(1).result().hits().hits().size();
+        }
+        searchMetrics.fetched(SearchMetrics.SUGGEST_OR_CORRECT, fetched,
+                suggestions.suggestions().size() + corrections.size());
+        suggestionCache.putSuggestions(text, size, suggestions);
+        suggestionCache.putCorrections(text, size, corrections);
+        return new SuggestionsAndCorrections(suggestions.suggestions(), corrections, false);
+    }
+
+    /**
+     * 同步的 _msearch，IO异常包装为非受检异常，以便在截止时间和断路器内执行
+     */
+    private MsearchResponse<EntityAsMap> msearch(
+            Function<MsearchRequest.Builder, ObjectBuilder<MsearchRequest>> request) {
+        try {
+            return elasticsearchClient.msearch(request, EntityAsMap.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Token> rawHits(MultiSearchResponseItem<EntityAsMap> item) {
+        if (item.isFailure()) {
+            throw new IllegalStateException(item.failure().error().reason());
+        }
+        return TokenQueries.rawContents(item.result().hits().hits());
+    }
+
+    /**
+     * 补全结果在前；不足size条时追加未重复的纠错候选，直到总数达到size
+     */
+    static List<TaggedSuggestion> tagSuggestions(List<String> suggestions, List<String> corrections, int size) {
+        List<TaggedSuggestion> tagged = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String suggestion : suggestions) {
+            if (tagged.size() >= size) {
+                return tagged;
+            }
+            if (seen.add(suggestion)) {
+                tagged.add(TaggedSuggestion.builder().text(suggestion).origin(TaggedSuggestion.ORIGIN_SUGGEST).build());
+            }
+        }
+        for (String correction : corrections) {
+            if (tagged.size() >= size) {
+                break;
+            }
+            if (seen.add(correction)) {
+                tagged.add(TaggedSuggestion.builder().text(correction).origin(TaggedSuggestion.ORIGIN_CORRECT).build());
+            }
+        }
+        return tagged;
+    }
+
+    private record SuggestionsAndCorrections(List<String> suggestions, List<String> corrections, boolean degraded) {
+    }
+
+    @Override
+    public Mono<SuggestResponse> getSuggestionsAsync(String prefix, int size) {
+        return getSuggestionsAsync(prefix, size, List.of());
+    }
+
+    @Override
+    public Mono<SuggestResponse> getSuggestionsAsync(String prefix, int size, List<String> chains) {
+        List<String> scope = normalizeChains(chains);
+        switch (properties.getExecution().getMode()) {
+            case REACTIVE:
+                return reactiveSuggestions(prefix, size, scope);
+            case VIRTUAL_THREADS:
+                return Mono.fromCallable(() -> suggest(prefix, size, scope)).subscribeOn(requestScheduler);
+            default:
+                return Mono.fromCallable(() -> suggest(prefix, size, scope));
+        }
+    }
+
+    @Override
+    public Mono<SuggestResponse> getCorrectionsAsync(String text, int size) {
+        switch (properties.getExecution().getMode()) {
+            case REACTIVE:
+                return reactiveCorrections(text, size);
+            case VIRTUAL_THREADS:
+                return Mono.fromCallable(() -> correct(text, size)).subscribeOn(requestScheduler);
+            default:
+                return Mono.fromCallable(() -> correct(text, size));
+        }
+    }
+
+    /**
+     * 与getSuggestions相同的本地引擎、缓存、ES查询、降级顺序，ES查询使用响应式客户端
+     */
+    private Mono<SuggestResponse> reactiveSuggestions(String rawPrefix, int size, List<String> chains) {
+        String prefix = TokenText.normalize(rawPrefix);
+        if (prefix.isEmpty()) {
+            searchMetrics.blankQuery(SearchMetrics.SUGGEST);
+            return Mono.just(response(Collections.emptyList(), false));
+        }
+        if (chains.isEmpty() && localPrefixAvailable()) {
+            return Mono.fromSupplier(() -> response(localResult(
+                    served(SearchMetrics.SUGGEST, prefixEngine.suggest(prefix, size)))));
+        }
+        SuggestionResult cached = chains.isEmpty() ? suggestionCache.lookupSuggestions(prefix, size) : null;
+        if (cached != null) {
+            return Mono.just(response(cached));
+        }
+
+        Mono<SuggestionResult> search = TokenAddress.isAddressPrefix(prefix)
+                ? reactiveAddressSearch(prefix, size, chains)
+                : reactiveSuggestSearch(prefix, size, chains);
+        return resilientSearch.callReactive(SearchMetrics.SUGGEST, search)
+                .doOnNext(suggestions -> {
+                    if (chains.isEmpty()) {
+                        suggestionCache.putSuggestions(prefix, size, suggestions);
+                    }
+                })
+                .map(TokenServiceImpl::response)
+                .onErrorResume(e -> {
+                    logFailure("获取自动补全建议时发生错误", e);
+                    return Mono.just(degradedSuggestions(SearchMetrics.SUGGEST, prefix, size, chains, e));
+                });
+    }
+
+    private Mono<SuggestionResult> reactiveSuggestSearch(String prefix, int size, List<String> chains) {
+        String lowerPrefix = prefix.toLowerCase();
+        AutocompleteProperties.SuggestMode mode = suggestMode(chains);
+        NativeQuery searchQuery = suggestQuery(mode, lowerPrefix, size, chains);
+        if (mode == AutocompleteProperties.SuggestMode.COMPLETION) {
+            return reactiveElasticsearchOperations.suggest(searchQuery, Token.class)
+                    .map(suggest -> TokenQueries.completionResult(
+                            fetched(SearchMetrics.SUGGEST, TokenQueries.completionOptionCount(suggest),
+                                    TokenQueries.extractCompletionSuggestions(suggest, size)), suggest, size))
+                    .defaultIfEmpty(SuggestionResult.partial(Collections.emptyList()));
+        }
+        return reactiveElasticsearchOperations.search(searchQuery, Token.class)
+                .collectList()
+                .map(hits -> TokenQueries.hitResult(fetched(SearchMetrics.SUGGEST, hits.size(),
+                        hitSuggestions(mode, TokenQueries.contents(hits), lowerPrefix, size)),
+                        hits.size(), TokenQueries.suggestHits(size), size));
+    }
+
+    private Mono<SuggestionResult> reactiveAddressSearch(String prefix, int size, List<String> chains) {
+        return reactiveElasticsearchOperations.search(addressQuery(prefix, size, chains), Token.class)
+                .collectList()
+                .map(hits -> TokenQueries.hitResult(fetched(SearchMetrics.SUGGEST, hits.size(),
+                        TokenQueries.addressSuggestions(TokenQueries.contents(hits), size)), hits.size(), size, size));
+    }
+
+    private Mono<SuggestResponse> reactiveCorrections(String rawText, int size) {
+        String text = TokenText.normalize(rawText);
+        if (text.isEmpty()) {
+            searchMetrics.blankQuery(SearchMetrics.CORRECT);
+            return Mono.just(response(Collections.emptyList(), false));
+        }
+        if (localCorrectionAvailable()) {
+            return Mono.fromSupplier(() -> response(served(SearchMetrics.CORRECT, correctionEngine.correct(text, size)),
+                    false));
+        }
+        List<String> cached = suggestionCache.lookupCorrections(text, size);
+        if (cached != null) {
+            return Mono.just(response(cached, false));
+        }
+
+        NativeQuery searchQuery = TokenQueries.correctionQuery(text.toLowerCase());
+        Mono<List<String>> search = reactiveElasticsearchOperations.search(searchQuery, Token.class)
+                .collectList()
+                .map(hits -> fetched(SearchMetrics.CORRECT, hits.size(),
+                        TokenQueries.extractNamesAndSymbols(hits, size)));
+        return resilientSearch.callReactive(SearchMetrics.CORRECT, search)
+                .doOnNext(corrections -> suggestionCache.putCorrections(text, size, corrections))
+                .map(corrections -> response(corrections, false))
+                .onErrorResume(e -> {
+                    logFailure("获取纠错建议时发生错误", e);
+                    return Mono.just(degradedCorrections(SearchMetrics.CORRECT, text, size, e));
+                });
+    }
+
+    private List<String> fetched(String operation, int fetched, List<String> results) {
+        searchMetrics.fetched(operation, fetched, results.size());
+        return results;
+    }
+
+    @Override
+    public List<BatchItemResult> batch(List<BatchItem> items) {
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        List<Integer> pending = new ArrayList<>();
+        List<RequestItem> searches = new ArrayList<>();
+        String index = elasticsearchOperations.getIndexCoordinatesFor(Token.class).getIndexName();
+
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            String mode = item.getMode() == null ? "" : item.getMode().toLowerCase(Locale.ROOT);
+            boolean suggest = BatchItem.MODE_SUGGEST.equals(mode);
+            int size = item.getSize() == null ? DEFAULT_BATCH_SIZE : item.getSize();
+            if (!suggest && !BatchItem.MODE_CORRECT.equals(mode)) {
+                results[i] = batchError(item, "不支持的模式: " + item.getMode());
+                continue;
+            }
+            if (size <= 0) {
+                results[i] = batchError(item, "size必须大于0");
+                continue;
+            }
+            String query = TokenText.normalize(item.getQuery());
+            if (query.isEmpty()) {
+                searchMetrics.blankQuery(SearchMetrics.BATCH);
+                results[i] = batchResult(item, Collections.emptyList(), BatchItemResult.SOURCE_LOCAL);
+                continue;
+            }
+
+            // 本地引擎和缓存能回答的项不进入 _msearch
+            if (suggest && localPrefixAvailable()) {
+                List<String> suggestions = served(SearchMetrics.BATCH, prefixEngine.suggest(query, size));
+                results[i] = batchResult(item, suggestions, BatchItemResult.SOURCE_LOCAL);
+                continue;
+            }
+            if (!suggest && localCorrectionAvailable()) {
+                List<String> corrections = served(SearchMetrics.BATCH, correctionEngine.correct(query, size));
+                results[i] = batchResult(item, corrections, BatchItemResult.SOURCE_LOCAL);
+                continue;
+            }
+            List<String> cached = suggest
+                    ? cachedSuggestions(query, size)
+                    : suggestionCache.lookupCorrections(query, size);
+            if (cached != null) {
+                results[i] = batchResult(item, cached, BatchItemResult.SOURCE_CACHE);
+                continue;
+            }
+
+            NativeQuery searchQuery = suggest
+                    ? batchSuggestQuery(query, size)
+                    : TokenQueries.correctionQuery(query.toLowerCase());
+            MultisearchBody body = TokenQueries.toMultisearchBody(searchQuery);
+            searches.add(RequestItem.of(r -> r.header(h -> h.index(index)).body(body)));
+            pending.add(i);
+        }
+
+        if (!pending.isEmpty()) {
+            multiSearch(items, pending, searches, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 批量查询中的补全项：合约地址前缀查address字段，其余按配置的补全方式
+     */
+    private NativeQuery batchSuggestQuery(String query, int size) {
+        return TokenAddress.isAddressPrefix(query) ? addressQuery(query, size, List.of())
+                : suggestQuery(query.toLowerCase(), size);
+    }
+
+    private void multiSearch(List<BatchItem> items, List<Integer> pending, List<RequestItem> searches,
+                             BatchItemResult[] results) {
+        MsearchResponse<EntityAsMap> response;
+        try {
+            // Spring Data的multiSearch会丢弃失败的子查询，这里直接使用客户端以保留逐项错误
+            response = resilientSearch.call(SearchMetrics.BATCH, () -> msearch(m -> m.searches(searches)));
+        } catch (Exception e) {
+            logFailure("批量查询时发生错误", e);
+            pending.forEach(i -> results[i] = degradedBatchItem(items.get(i), e));
+            return;
+        }
+
+        List<MultiSearchResponseItem<EntityAsMap>> responses = response.responses();
+        for (int k = 0; k < pending.size(); k++) {
+            int i = pending.get(k);
+            BatchItem item = items.get(i);
+            MultiSearchResponseItem<EntityAsMap> responseItem = responses.get(k);
+            if (responseItem.isFailure()) {
+                searchMetrics.failed(SearchMetrics.BATCH, SearchMetrics.CAUSE_ES_ERROR);
+                results[i] = batchError(item, responseItem.failure().error().reason());
+                continue;
+            }
+
+            MultiSearchItem<EntityAsMap> result = responseItem.result();
+            String query = TokenText.normalize(item.getQuery());
+            int size = item.getSize() == null ? DEFAULT_BATCH_SIZE : item.getSize();
+            List<String> suggestions;
+            List<Token> hits = TokenQueries.rawContents(result.hits().hits());
+            if (BatchItem.MODE_SUGGEST.equalsIgnoreCase(item.getMode()) && TokenAddress.isAddressPrefix(query)) {
+                suggestions = TokenQueries.addressSuggestions(hits, size);
+                suggestionCache.putSuggestions(query, size,
+                        TokenQueries.hitResult(suggestions, hits.size(), size, size));
+            } else if (BatchItem.MODE_SUGGEST.equalsIgnoreCase(item.getMode())) {
+                SuggestionResult loaded = suggestMode() == AutocompleteProperties.SuggestMode.COMPLETION
+                        ? TokenQueries.completionResult(TokenQueries.extractCompletionSuggestions(result.suggest(), size),
+                                result.suggest(), size)
+                        : TokenQueries.hitResult(hitSuggestions(hits, query.toLowerCase(), size), hits.size(),
+                                TokenQueries.suggestHits(size), size);
+                suggestions = loaded.suggestions();
+                suggestionCache.putSuggestions(query, size, loaded);
+            } else {
+                suggestions = TokenQueries.namesAndSymbols(hits, size);
+                suggestionCache.putCorrections(query, size, suggestions);
+            }
+            searchMetrics.fetched(SearchMetrics.BATCH, TokenQueries.fetchedCount(result), suggestions.size());
+            results[i] = batchResult(item, suggestions, BatchItemResult.SOURCE_ELASTICSEARCH);
+        }
+    }
+
+    /**
+     * 整个 _msearch 失败时逐项用本地快照降级回答，没有快照的项返回错误
+     */
+    private BatchItemResult degradedBatchItem(BatchItem item, Exception error) {
+        boolean suggest = BatchItem.MODE_SUGGEST.equalsIgnoreCase(item.getMode());
+        boolean fallback = properties.getResilience().isDegradedFallback()
+                && (suggest ? prefixEngine.isLoaded() : correctionEngine.isLoaded());
+        if (!fallback) {
+            searchMetrics.failed(SearchMetrics.BATCH, error);
+            return batchError(item, error.getMessage());
+        }
+        int size = item.getSize() == null ? DEFAULT_BATCH_SIZE : item.getSize();
+        String query = TokenText.normalize(item.getQuery());
+        List<String> suggestions = suggest
+                ? prefixEngine.suggest(query, size)
+                : correctionEngine.correct(query, size);
+        searchMetrics.degraded(SearchMetrics.BATCH, error, suggestions.size());
+        return batchResult(item, suggestions, BatchItemResult.SOURCE_DEGRADED);
+    }
+
+    private static BatchItemResult batchResult(BatchItem item, List<String> suggestions, String source) {
+        return BatchItemResult.builder()
+                .mode(item.getMode())
+                .query(item.getQuery())
+                .suggestions(suggestions)
+                .source(source)
+                .build();
+    }
+
+    private static BatchItemResult batchError(BatchItem item, String error) {
+        return BatchItemResult.builder()
+                .mode(item.getMode())
+                .query(item.getQuery())
+                .suggestions(Collections.emptyList())
+                .error(error)
+                .build();
+    }
+
     @Override
     public void initSampleData() {
         try {
@@ -203,8 +1023,11 @@ public class TokenServiceImpl implements TokenService {
             tokens.add(Token.builder().name("Shiba Inu").symbol("SHIB").build());
             tokens.add(Token.builder().name("Polygon").symbol("MATIC").build());
             tokens.add(Token.builder().name("Litecoin").symbol("LTC").build());
-            tokens.add(Token.builder().name("Chainlink").symbol("LINK").build());
-            tokens.add(Token.builder().name("Uniswap").symbol("UNI").build());
+            // 以太坊上的ERC-20代币带合约地址（校验和大小写，写入时转为小写），可以用0x开头的地址前缀查询
+            tokens.add(Token.builder().name("Chainlink").symbol("LINK")
+                    .chain("ethereum").address("0x514910771AF9Ca656af840dff83E8264EcF986CA").build());
+            tokens.add(Token.builder().name("Uniswap").symbol("UNI")
+                    .chain("ethereum").address("0x1f9840a85d5aF5bf1D1762F925BDADdC4201F984").build());
             tokens.add(Token.builder().name("Bitcoin Cash").symbol("BCH").build());
             tokens.add(Token.builder().name("Stellar").symbol("XLM").build());
             tokens.add(Token.builder().name("Cosmos").symbol("ATOM").build());
@@ -214,7 +1037,8 @@ public class TokenServiceImpl implements TokenService {
 
             // DeFi 代币
             tokens.add(Token.builder().name("Compound").symbol("COMP").build());
-            tokens.add(Token.builder().name("Aave").symbol("AAVE").build());
+            tokens.add(Token.builder().name("Aave").symbol("AAVE")
+                    .chain("ethereum").address("0x7Fc66500c84A76Ad7e9c93437bFc5Ac33E2DDaE9").build());
             tokens.add(Token.builder().name("Maker").symbol("MKR").build());
             tokens.add(Token.builder().name("PancakeSwap").symbol("CAKE").build());
             tokens.add(Token.builder().name("SushiSwap").symbol("SUSHI").build());
@@ -225,10 +1049,13 @@ public class TokenServiceImpl implements TokenService {
             tokens.add(Token.builder().name("1inch").symbol("1INCH").build());
 
             // 稳定币
-            tokens.add(Token.builder().name("Tether").symbol("USDT").build());
-            tokens.add(Token.builder().name("USD Coin").symbol("USDC").build());
+            tokens.add(Token.builder().name("Tether").symbol("USDT")
+                    .chain("ethereum").address("0xdAC17F958D2ee523a2206206994597C13D831ec7").build());
+            tokens.add(Token.builder().name("USD Coin").symbol("USDC")
+                    .chain("ethereum").address("0xA0b86991c6218b36c1d19D4a2e9Eb0cE3606eB48").build());
             tokens.add(Token.builder().name("Binance USD").symbol("BUSD").build());
-            tokens.add(Token.builder().name("Dai").symbol("DAI").build());
+            tokens.add(Token.builder().name("Dai").symbol("DAI")
+                    .chain("ethereum").address("0x6B175474E89094C44Da98b954EedeAC495271d0F").build());
             tokens.add(Token.builder().name("TrueUSD").symbol("TUSD").build());
 
             // 其他知名代币
@@ -247,28 +1074,16 @@ public class TokenServiceImpl implements TokenService {
     }
 
     /**
-     * 重新索引所有Token数据，确保大小写不敏感匹配生效
+     * 重新索引所有Token数据：写入新版本索引后原子切换别名，重建期间读请求不受影响
      */
     @Override
     public void reindexAllTokens() {
         try {
             log.info("开始重新索引所有Token数据...");
-
-            // 获取所有Token
-            Iterable<Token> allTokens = tokenRepository.findAll();
-            List<Token> tokenList = new ArrayList<>();
-            allTokens.forEach(tokenList::add);
-
-            if (tokenList.isEmpty()) {
-                log.info("没有找到Token数据，无需重新索引");
-                return;
-            }
-
-            // 重新准备并保存所有Token
-            tokenList.forEach(this::prepareToken);
-            tokenRepository.saveAll(tokenList);
-
-            log.info("重新索引完成，共处理 {} 条数据", tokenList.size());
+            IngestReport report = tokenIndexManager.reindex(this::prepareToken);
+            suggestionCache.invalidateAll();
+            indexGeneration.advance();
+            log.info("重新索引完成，共处理 {} 条数据，耗时 {}ms", report.getIndexed(), report.getElapsedMillis());
         } catch (Exception e) {
             log.error("重新索引Token数据时发生错误", e);
         }
@@ -277,6 +1092,7 @@ public class TokenServiceImpl implements TokenService {
     @Override
     public List<String> getPhraseCorrections(String text, int size) {
         if (text == null || text.isEmpty()) {
+            searchMetrics.blankQuery(SearchMetrics.PHRASE_CORRECT);
             return Collections.emptyList();
         }
 
@@ -304,7 +1120,8 @@ public class TokenServiceImpl implements TokenService {
                             .build())
                     .build();
 
-            SearchHits<Token> searchHits = elasticsearchOperations.search(searchQuery, Token.class);
+            SearchHits<Token> searchHits = resilientSearch.call(SearchMetrics.PHRASE_CORRECT,
+                    () -> elasticsearchOperations.search(searchQuery, Token.class));
 
             // 提取结果
             searchHits.getSearchHits().forEach(hit -> {
@@ -317,9 +1134,12 @@ public class TokenServiceImpl implements TokenService {
                 }
             });
 
-            return corrections.stream().distinct().limit(size).collect(Collectors.toList());
+            List<String> results = corrections.stream().distinct().limit(size).collect(Collectors.toList());
+            searchMetrics.fetched(SearchMetrics.PHRASE_CORRECT, searchHits.getSearchHits().size(), results.size());
+            return results;
         } catch (Exception e) {
-            log.error("获取短语纠错建议时发生错误", e);
+            logFailure("获取短语纠错建议时发生错误", e);
+            searchMetrics.failed(SearchMetrics.PHRASE_CORRECT, e);
             return Collections.emptyList();
         }
     }
@@ -0,0 +1,347 @@
+package com.example.esautocomplete.typeahead;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.example.esautocomplete.cache.IndexGeneration;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.BatchItem;
+import com.example.esautocomplete.dto.SuggestResponse;
+import com.example.esautocomplete.dto.TypeaheadRequest;
+import com.example.esautocomplete.dto.TypeaheadResponse;
+import com.example.esautocomplete.metrics.AccessLog;
+import com.example.esautocomplete.metrics.SearchMetrics;
+import com.example.esautocomplete.querylog.QueryLogCollector;
+import com.example.esautocomplete.service.TokenService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * 输入流通道：一个WebSocket连接承载一个输入框的连续按键，每条消息是一次完整的输入（不是增量字符）。
+ * <ul>
+ *     <li>新输入到达时取消同一连接上进行中的查询：响应式模式下中止HTTP请求，其余模式下中断执行查询的线程</li>
+ *     <li>上一次补全结果是完整结果（少于size条）且新输入是它的延伸时，直接在这份结果上本地收窄，不访问ES；
+ *     索引代数推进（写入、删除、变更订阅）后这份结果作废</li>
+ *     <li>只推送最新一次输入的结果，已被取代的输入的结果直接丢弃，乱序到达的旧输入被忽略</li>
+ * </ul>
+ * 指标：autocomplete.typeahead.sessions、autocomplete.typeahead.inputs、autocomplete.typeahead.cancelled、
+ * autocomplete.typeahead.narrowed、autocomplete.typeahead.stale
+ */
+@Slf4j
+@Component
+public class TypeaheadWebSocketHandler extends TextWebSocketHandler {
+
+    private static final String ENDPOINT = "typeahead";
+
+    private static final String SESSION_ATTRIBUTE = Session.class.getName();
+
+    private final TokenService tokenService;
+
+    private final SuggestionCache suggestionCache;
+
+    private final IndexGeneration indexGeneration;
+
+    private final AutocompleteProperties properties;
+
+    private final ObjectMapper objectMapper;
+
+    private final Scheduler scheduler;
+
+    private final SearchMetrics searchMetrics;
+
+    private final AccessLog accessLog;
+
+    private final QueryLogCollector queryLog;
+
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    private final Counter inputs;
+
+    private final Counter cancelled;
+
+    private final Counter narrowed;
+
+    private final Counter stale;
+
+    public TypeaheadWebSocketHandler(TokenService tokenService, SuggestionCache suggestionCache,
+                                     IndexGeneration indexGeneration, AutocompleteProperties properties,
+                                     ObjectMapper objectMapper, @Qualifier("requestScheduler") Scheduler scheduler,
+                                     SearchMetrics searchMetrics, AccessLog accessLog, QueryLogCollector queryLog,
+                                     MeterRegistry registry) {
+        this.tokenService = tokenService;
+        this.suggestionCache = suggestionCache;
+        this.indexGeneration = indexGeneration;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.scheduler = scheduler;
+        this.searchMetrics = searchMetrics;
+        this.accessLog = accessLog;
+        this.queryLog = queryLog;
+
+        Gauge.builder("autocomplete.typeahead.sessions", sessions, Set::size)
+                .description("当前打开的输入流连接")
+                .register(registry);
+        this.inputs = Counter.builder("autocomplete.typeahead.inputs")
+                .register(registry);
+        this.cancelled = Counter.builder("autocomplete.typeahead.cancelled")
+                .description("被同一连接上更新的输入取消的进行中查询")
+                .register(registry);
+        this.narrowed = Counter.builder("autocomplete.typeahead.narrowed")
+                .description("由上一次输入的完整结果本地收窄、没有访问ES的输入")
+                .register(registry);
+        this.stale = Counter.builder("autocomplete.typeahead.stale")
+                .description("乱序到达的旧输入，以及返回时已被取代、没有推送的结果")
+                .register(registry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession webSocketSession) {
+        AutocompleteProperties.Typeahead settings = properties.getTypeahead();
+        // 结果在查询线程上推送，多个线程可能同时写同一连接；写不过来时丢弃较早的推送
+        WebSocketSession outbound = new ConcurrentWebSocketSessionDecorator(webSocketSession,
+                (int) settings.getSendTimeLimit().toMillis(), (int) settings.getSendBufferSize().toBytes(),
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP);
+        Session session = new Session(outbound);
+        webSocketSession.getAttributes().put(SESSION_ATTRIBUTE, session);
+        sessions.add(session);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession webSocketSession, TextMessage message) {
+        Session session = (Session) webSocketSession.getAttributes().get(SESSION_ATTRIBUTE);
+        if (session == null) {
+            return;
+        }
+        TypeaheadRequest request;
+        try {
+            request = objectMapper.readValue(message.getPayload(), TypeaheadRequest.class);
+        } catch (JsonProcessingException e) {
+            log.debug("无法解析的输入流消息: session={}, error={}", webSocketSession.getId(), e.getMessage());
+            session.send(TypeaheadResponse.builder()
+                    .suggestions(List.of())
+                    .error("无法解析的消息")
+                    .build());
+            return;
+        }
+        inputs.increment();
+        session.onInput(request);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession webSocketSession, CloseStatus status) {
+        Session session = (Session) webSocketSession.getAttributes().remove(SESSION_ATTRIBUTE);
+        if (session != null) {
+            sessions.remove(session);
+            session.close();
+        }
+    }
+
+    private Mono<SuggestResponse> search(String mode, String query, int size) {
+        Mono<SuggestResponse> search = BatchItem.MODE_CORRECT.equals(mode)
+                ? tokenService.getCorrectionsAsync(query, size)
+                : tokenService.getSuggestionsAsync(query, size);
+        // blocking模式下查询会在订阅线程上同步执行，放到请求调度器上才不会阻塞同一连接的后续消息，也才能被中断
+        return search.subscribeOn(scheduler)
+                .timeout(properties.getExecution().getTimeout());
+    }
+
+    private int size(Integer requested) {
+        AutocompleteProperties.Typeahead settings = properties.getTypeahead();
+        if (requested == null || requested <= 0) {
+            return settings.getDefaultSize();
+        }
+        return Math.min(requested, settings.getMaxSize());
+    }
+
+    private static String operation(String mode) {
+        return BatchItem.MODE_CORRECT.equals(mode) ? SearchMetrics.CORRECT : SearchMetrics.SUGGEST;
+    }
+
+    /**
+     * 一个连接上的输入状态，输入在容器的消息线程上按顺序到达，查询结果在调度器线程上返回，状态读写都在锁内
+     */
+    private final class Session {
+
+        private final WebSocketSession outbound;
+
+        /** 最新一次输入的序号，只推送该序号的结果 */
+        private long latestSeq;
+
+        private Disposable inFlight;
+
+        /** 最近一次完整的补全结果及其查询，用于收窄更长的输入 */
+        private String completeQuery;
+
+        private List<String> completeResults;
+
+        private long completeAt;
+
+        /** 发起得到 completeResults 的查询之前的索引代数，代数变化后结果可能已经过时 */
+        private long completeGeneration;
+
+        private boolean closed;
+
+        Session(WebSocketSession outbound) {
+            this.outbound = outbound;
+        }
+
+        void onInput(TypeaheadRequest request) {
+            long start = System.nanoTime();
+            String mode = request.getMode() == null ? BatchItem.MODE_SUGGEST : request.getMode();
+            String query = request.getQuery() == null ? "" : request.getQuery();
+            int size = size(request.getSize());
+            if (!BatchItem.MODE_SUGGEST.equals(mode) && !BatchItem.MODE_CORRECT.equals(mode)) {
+                send(TypeaheadResponse.builder()
+                        .seq(request.getSeq() == null ? 0 : request.getSeq())
+                        .mode(mode)
+                        .query(query)
+                        .suggestions(List.of())
+                        .error("不支持的mode: " + mode)
+                        .build());
+                return;
+            }
+
+            long seq;
+            // 在查询之前取代数，查询期间发生的写入也会使这次的结果不能用于收窄
+            long generation = indexGeneration.current();
+            synchronized (this) {
+                seq = request.getSeq() == null ? latestSeq + 1 : request.getSeq();
+                if (closed || seq <= latestSeq) {
+                    stale.increment();
+                    return;
+                }
+                latestSeq = seq;
+                if (inFlight != null && !inFlight.isDisposed()) {
+                    inFlight.dispose();
+                    cancelled.increment();
+                }
+                inFlight = null;
+
+                List<String> local = narrow(mode, query);
+                if (local != null) {
+                    narrowed.increment();
+                    completeQuery = query;
+                    completeResults = local;
+                    List<String> suggestions = local.size() <= size ? local : local.subList(0, size);
+                    send(response(seq, mode, query, suggestions, false).narrowed(true).build());
+                    accessLog.record(ENDPOINT, query, size, suggestions.size(), start,
+                            AccessLog.outcome(suggestions.size()));
+                    queryLog.record(operation(mode), query, suggestions.size());
+                    return;
+                }
+            }
+
+            Disposable subscription = search(mode, query, size).subscribe(
+                    response -> onResult(seq, mode, query, size, start, generation, response),
+                    error -> onError(seq, mode, query, size, start, error));
+            synchronized (this) {
+                // 订阅期间可能已经有更新的输入或连接已关闭，此时不再保留
+                if (closed || seq != latestSeq) {
+                    subscription.dispose();
+                } else if (!subscription.isDisposed()) {
+                    inFlight = subscription;
+                }
+            }
+        }
+
+        private List<String> narrow(String mode, String query) {
+            if (!BatchItem.MODE_SUGGEST.equals(mode) || completeQuery == null) {
+                return null;
+            }
+            // 索引代数变化（写入、删除或变更订阅）后结果可能缺少新Token或仍包含已删除的Token；
+            // 没有变化时也只信任与结果缓存相同的TTL，超过后重新访问ES
+            if (indexGeneration.current() != completeGeneration
+                    || System.nanoTime() - completeAt > properties.getCache().getTtl().toNanos()) {
+                completeQuery = null;
+                completeResults = null;
+                return null;
+            }
+            return suggestionCache.narrow(completeQuery, completeResults, query);
+        }
+
+        private void onResult(long seq, String mode, String query, int size, long start, long generation,
+                              SuggestResponse response) {
+            List<String> suggestions = response.getSuggestions();
+            synchronized (this) {
+                if (closed || seq != latestSeq) {
+                    stale.increment();
+                    return;
+                }
+                inFlight = null;
+                // 只有查询方确认完整的结果才能用来收窄；降级结果来自本地快照，不会标记为完整
+                if (BatchItem.MODE_SUGGEST.equals(mode) && response.isComplete() && !response.isDegraded()
+                        && !query.isBlank()) {
+                    completeQuery = query;
+                    completeResults = suggestions;
+                    completeAt = System.nanoTime();
+                    completeGeneration = generation;
+                }
+                send(response(seq, mode, query, suggestions, response.isDegraded()).build());
+            }
+            accessLog.record(ENDPOINT, query, size, suggestions.size(), start,
+                    AccessLog.outcome(suggestions.size(), response.isDegraded()));
+            queryLog.record(operation(mode), query, suggestions.size());
+        }
+
+        private void onError(long seq, String mode, String query, int size, long start, Throwable error) {
+            synchronized (this) {
+                if (closed || seq != latestSeq) {
+                    stale.increment();
+                    return;
+                }
+                inFlight = null;
+                send(response(seq, mode, query, List.of(), false).error("查询失败").build());
+            }
+            searchMetrics.failed(operation(mode), error);
+            log.debug("输入流查询失败: query={}, error={}", query, error.toString());
+            accessLog.record(ENDPOINT, query, size, 0, start, AccessLog.ERROR);
+        }
+
+        private TypeaheadResponse.TypeaheadResponseBuilder response(long seq, String mode, String query,
+                                                                    List<String> suggestions, boolean degraded) {
+            return TypeaheadResponse.builder()
+                    .seq(seq)
+                    .mode(mode)
+                    .query(query)
+                    .suggestions(suggestions)
+                    .degraded(degraded);
+        }
+
+        void send(TypeaheadResponse response) {
+            try {
+                outbound.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+            } catch (IOException | SessionLimitExceededException e) {
+                // 客户端已断开或写出超时，连接关闭时会清理会话
+                log.debug("输入流推送失败: session={}, error={}", outbound.getId(), e.getMessage());
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (inFlight != null) {
+                inFlight.dispose();
+                inFlight = null;
+            }
+        }
+    }
+}
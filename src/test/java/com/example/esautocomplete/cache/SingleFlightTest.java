@@ -0,0 +1,210 @@
+package com.example.esautocomplete.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTest {
+
+    private static final Duration MAX_WAIT = Duration.ofSeconds(5);
+
+    private static final int CALLERS = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 启动CALLERS个并发调用，等全部follower都已加入后再放行leader
+     */
+    private <V> List<Future<V>> concurrentCalls(SingleFlight<String, V> flight, String key, CountDownLatch release,
+                                                Supplier<V> loader) throws InterruptedException {
+        List<Future<V>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> flight.execute(key, () -> {
+                await(release);
+                return loader.get();
+            }, MAX_WAIT)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flight.followerCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return futures;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneLoad() throws Exception {
+        SingleFlight<String, List<String>> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> result = List.of("Bitcoin", "BTC");
+
+        List<Future<List<String>>> futures = concurrentCalls(flight, "bit", release, () -> {
+            loads.incrementAndGet();
+            return result;
+        });
+        release.countDown();
+
+        for (Future<List<String>> future : futures) {
+            assertSame(result, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.leaderCount());
+        assertEquals(CALLERS - 1, flight.followerCount());
+        assertEquals(0, flight.inFlightCount());
+
+        // 完成后不再合并，下一次调用重新执行
+        flight.execute("bit", () -> { loads.incrementAndGet(); return result; }, MAX_WAIT);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testErrorPropagatesToAllCallers() throws Exception {
+        SingleFlight<String, List<String>> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("es unavailable");
+
+        List<Future<List<String>>> futures = concurrentCalls(flight, "eth", release, () -> {
+            throw failure;
+        });
+        release.countDown();
+
+        for (Future<List<String>> future : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    @Test
+    public void testInterruptedLeaderDoesNotFailFollowers() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        // 与ResilientSearch一样，查询线程被中断时抛出以InterruptedException为cause的CompletionException
+        Future<String> leader = executor.submit(() -> flight.execute("bit", () -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            return "Bitcoin";
+        }, MAX_WAIT));
+        while (flight.inFlightCount() == 0) {
+            Thread.sleep(1);
+        }
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 1; i < CALLERS; i++) {
+            followers.add(executor.submit(() -> flight.execute("bit", () -> {
+                loads.incrementAndGet();
+                return "Bitcoin";
+            }, MAX_WAIT)));
+        }
+        while (flight.followerCount() < CALLERS - 1) {
+            Thread.sleep(1);
+        }
+
+        // 客户端断开，只取消leader自己的请求
+        leader.cancel(true);
+        for (Future<String> follower : followers) {
+            assertEquals("Bitcoin", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, flight.abandonedCount());
+        assertTrue(loads.get() >= 2);
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    @Test
+    public void testFollowerWaitIsBounded() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> flight.execute("sol", () -> {
+            await(release);
+            return "Solana";
+        }, MAX_WAIT));
+        while (flight.inFlightCount() == 0) {
+            Thread.sleep(1);
+        }
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> flight.execute("sol", () -> "unused", Duration.ofMillis(50)));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(1, flight.timeoutCount());
+
+        // leader不受follower超时影响
+        release.countDown();
+        assertEquals("Solana", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCoalescerKeysAndMetrics() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QueryCoalescer coalescer = new QueryCoalescer(new AutocompleteProperties(), registry);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<List<String>> leader = executor.submit(() -> coalescer.execute("suggest", "BIT ", 5, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return List.of("Bitcoin");
+        }));
+        while (registry.get("autocomplete.coalescing.in.flight").gauge().value() == 0) {
+            Thread.sleep(1);
+        }
+        // 归一化后相同的查询合并到进行中的查询上
+        Future<List<String>> follower = executor.submit(() -> coalescer.execute("suggest", "bit", 5, () -> {
+            loads.incrementAndGet();
+            return List.of("unexpected");
+        }));
+        // 操作或size不同的查询各自执行
+        assertEquals(List.of(), coalescer.execute("correct", "bit", 5, List::of));
+        assertEquals(List.of(), coalescer.execute("suggest", "bit", 10, List::of));
+        while (registry.get("autocomplete.coalescing.calls").tag("role", "follower").functionCounter().count() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        assertEquals(List.of("Bitcoin"), leader.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("Bitcoin"), follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(3, registry.get("autocomplete.coalescing.calls").tag("role", "leader").functionCounter().count());
+        assertEquals(0.25, registry.get("autocomplete.coalescing.ratio").gauge().value());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.esautocomplete.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.SuggestResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SuggestResponseCacheTest {
+
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+
+    private final IndexGeneration generation = new IndexGeneration("test");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final SuggestResponseCache cache = new SuggestResponseCache(properties, objectMapper, generation);
+
+    @Test
+    public void testEtagAndCachedBytesFollowIndexGeneration() {
+        SuggestResponseCache.Key key = cache.key(" Bit ", 5, List.of("Ethereum"));
+        String etag = cache.etag(key);
+        // 归一化后相同的查询共用ETag，不同的size和链不共用
+        assertEquals(etag, cache.etag(cache.key("bit", 5, List.of("ethereum"))));
+        assertNotEquals(etag, cache.etag(cache.key("bit", 10, List.of("ethereum"))));
+        assertNotEquals(etag, cache.etag(cache.key("bit", 5, List.of())));
+        assertTrue(etag.startsWith("\"test.") && etag.endsWith("\""));
+
+        assertNull(cache.lookup(key));
+        SuggestResponseCache.Encoded encoded = cache.encode(key, response("Bitcoin", "Bitcoin Cash"));
+        assertSame(encoded, cache.lookup(cache.key("BIT", 5, List.of("ethereum"))));
+        assertEquals(2, encoded.results());
+        assertEquals(1, cache.stats().getHitCount());
+
+        // 写入后代数推进，旧的ETag和响应字节都不再命中
+        generation.advance();
+        SuggestResponseCache.Key next = cache.key("bit", 5, List.of("ethereum"));
+        assertNotEquals(etag, cache.etag(next));
+        assertNull(cache.lookup(next));
+
+        // 推进前开始的慢查询不覆盖新代数的响应
+        SuggestResponseCache.Encoded fresh = cache.encode(next, response("Bitcoin"));
+        cache.encode(key, response("Bitcoin", "Bitcoin Cash"));
+        assertSame(fresh, cache.lookup(next));
+    }
+
+    @Test
+    public void testLargeResponsesAreCompressed() throws IOException {
+        properties.getHttpCache().getResponseCache().setCompressMinSize(DataSize.ofBytes(64));
+        SuggestResponseCache.Encoded small = cache.encode(cache.key("b", 1, null), response("BNB"));
+        assertNull(small.gzip());
+
+        String[] names = new String[20];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "Wrapped Token " + i;
+        }
+        SuggestResponseCache.Encoded large = cache.encode(cache.key("w", 20, null), response(names));
+        assertTrue(large.gzip().length < large.json().length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(large.gzip()))) {
+            assertArrayEquals(large.json(), in.readAllBytes());
+        }
+        assertEquals(response(names), objectMapper.readValue(large.json(), SuggestResponse.class));
+    }
+
+    @Test
+    public void testConditionalRequestHeaders() {
+        String etag = "\"test.1-abc\"";
+        assertTrue(SuggestResponseCache.notModified(etag, etag));
+        assertTrue(SuggestResponseCache.notModified("\"other\", W/" + etag, etag));
+        assertTrue(SuggestResponseCache.notModified("\"test.1-abc-gzip\"", etag));
+        assertTrue(SuggestResponseCache.notModified("*", etag));
+        assertFalse(SuggestResponseCache.notModified("\"test.2-abc\"", etag));
+        assertFalse(SuggestResponseCache.notModified(null, etag));
+
+        // 304回显客户端验证的变体，只有 * 时回显本次会返回的表示
+        String gzipEtag = SuggestResponseCache.gzipEtag(etag);
+        assertEquals(gzipEtag, SuggestResponseCache.validatedEtag("W/" + gzipEtag, etag, etag));
+        assertEquals(etag, SuggestResponseCache.validatedEtag(etag, etag, gzipEtag));
+        assertEquals(gzipEtag, SuggestResponseCache.validatedEtag("*", etag, gzipEtag));
+        assertNull(SuggestResponseCache.validatedEtag("\"test.2-abc\"", etag, etag));
+
+        assertTrue(SuggestResponseCache.acceptsGzip("gzip, deflate, br"));
+        assertTrue(SuggestResponseCache.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+        assertTrue(SuggestResponseCache.acceptsGzip("*"));
+        assertFalse(SuggestResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(SuggestResponseCache.acceptsGzip("identity"));
+        assertFalse(SuggestResponseCache.acceptsGzip(null));
+    }
+
+    private static SuggestResponse response(String... suggestions) {
+        return SuggestResponse.builder().suggestions(List.of(suggestions)).build();
+    }
+}
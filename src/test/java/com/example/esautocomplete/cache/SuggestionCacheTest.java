@@ -0,0 +1,117 @@
+package com.example.esautocomplete.cache;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.model.Token;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SuggestionCacheTest {
+
+    private final SuggestionCache cache = new SuggestionCache(new AutocompleteProperties());
+
+    @Test
+    public void testExactHit() {
+        AtomicInteger loads = new AtomicInteger();
+        SuggestionResult full = partial("Bitcoin", "Bitcoin Cash", "BNB", "BTC", "BCH");
+
+        cache.getSuggestions("b", 5, () -> { loads.incrementAndGet(); return full; });
+        SuggestionResult second = cache.getSuggestions("B", 5, () -> { loads.incrementAndGet(); return full; });
+
+        assertEquals(full, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.suggestionStats().getHitCount());
+    }
+
+    @Test
+    public void testCompleteResultNarrowsLongerPrefix() {
+        AtomicInteger loads = new AtomicInteger();
+        // 加载方确认 "bi" 的全部命中都已经在结果里
+        cache.getSuggestions("bi", 5, () -> { loads.incrementAndGet(); return complete("Bitcoin", "Binance Coin"); });
+
+        SuggestionResult narrowed = cache.getSuggestions("bit", 5,
+                () -> { loads.incrementAndGet(); return complete(); });
+
+        assertEquals(List.of("Bitcoin"), narrowed.suggestions());
+        assertTrue(narrowed.complete());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.suggestionStats().getNarrowedCount());
+    }
+
+    @Test
+    public void testTruncatedResultIsNotNarrowed() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.getSuggestions("b", 2, () -> { loads.incrementAndGet(); return partial("Bitcoin", "BNB"); });
+        cache.getSuggestions("bi", 2, () -> { loads.incrementAndGet(); return partial("Bitcoin", "Binance Coin"); });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testDeduplicatedShortResultIsNotNarrowed() {
+        AtomicInteger loads = new AtomicInteger();
+        // 去重后少于size，但ES的命中已经取满，加载方不会标记为完整
+        cache.getSuggestions("us", 5, () -> { loads.incrementAndGet(); return partial("USD Coin", "USDC"); });
+        assertFalse(cache.lookupSuggestions("us", 5).complete());
+        cache.getSuggestions("usdt", 5, () -> { loads.incrementAndGet(); return complete("Tether USDt"); });
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.suggestionStats().getNarrowedCount());
+    }
+
+    @Test
+    public void testWriteInvalidatesAffectedPrefixes() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.getSuggestions("bi", 5, () -> { loads.incrementAndGet(); return complete("Bitcoin"); });
+        cache.getSuggestions("eth", 5, () -> { loads.incrementAndGet(); return complete("Ethereum"); });
+
+        cache.invalidate(List.of(Token.builder().name("Bitget Token").symbol("BGB").build()));
+
+        cache.getSuggestions("bi", 5, () -> { loads.incrementAndGet(); return complete("Bitcoin", "Bitget Token"); });
+        cache.getSuggestions("eth", 5, () -> { loads.incrementAndGet(); return complete("Ethereum"); });
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testAddressPrefixesAreExactOnlyAndInvalidatedByAddress() {
+        AtomicInteger loads = new AtomicInteger();
+        // 地址前缀的结果是名称，不能当作完整结果再按 "0x51" 过滤名称
+        cache.getSuggestions("0x5", 5, () -> { loads.incrementAndGet(); return complete("Chainlink"); });
+        assertEquals(List.of("Chainlink"),
+                cache.getSuggestions("0x5", 5, () -> { loads.incrementAndGet(); return complete(); }).suggestions());
+        assertEquals(List.of("Chainlink"), cache.getSuggestions("0x51", 5,
+                () -> { loads.incrementAndGet(); return complete("Chainlink"); }).suggestions());
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.suggestionStats().getNarrowedCount());
+        assertNull(cache.narrow("0x5", List.of("Chainlink"), "0x51"));
+
+        // 名称不相关但地址匹配的写入使缓存的地址前缀失效
+        cache.invalidate(List.of(Token.builder().name("Wrapped Link").symbol("WLINK")
+                .address("0x51aa000000000000000000000000000000000000").build()));
+        cache.getSuggestions("0x5", 5,
+                () -> { loads.incrementAndGet(); return complete("Chainlink", "Wrapped Link"); });
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testCompletionNarrowingMatchesWholeText() {
+        // Completion只匹配整串前缀，"co" 不命中词首为 coin 的 "Cat Coin"
+        List<String> narrowed = cache.narrow("c", List.of("Cat Coin", "Compound", "COMP"), "co");
+        assertEquals(List.of("Compound", "COMP"), narrowed);
+    }
+
+    private static SuggestionResult complete(String... suggestions) {
+        return new SuggestionResult(List.of(suggestions), true);
+    }
+
+    private static SuggestionResult partial(String... suggestions) {
+        return SuggestionResult.partial(List.of(suggestions));
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.esautocomplete.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RestClientTuningTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    private final Map<HttpServer, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+    private final Map<String, String> lastHeaders = new ConcurrentHashMap<>();
+
+    private RestClient restClient;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (restClient != null) {
+            restClient.close();
+        }
+        servers.forEach(server -> server.stop(0));
+    }
+
+    /**
+     * 本地替身节点：延迟 delayMillis 后返回 {}，记录请求次数和请求头
+     */
+    private HttpServer node(long delayMillis) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        AtomicInteger count = new AtomicInteger();
+        server.createContext("/", exchange -> {
+            count.incrementAndGet();
+            exchange.getRequestHeaders().forEach((name, values) -> lastHeaders.put(name.toLowerCase(), values.get(0)));
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        servers.add(server);
+        hits.put(server, count);
+        return server;
+    }
+
+    private static HttpHost host(HttpServer server) {
+        return new HttpHost("127.0.0.1", server.getAddress().getPort(), "http");
+    }
+
+    private static HttpHost deadHost() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return new HttpHost("127.0.0.1", socket.getLocalPort(), "http");
+        }
+    }
+
+    private static AutocompleteProperties.Client settings() {
+        AutocompleteProperties.Client settings = new AutocompleteProperties.Client();
+        settings.getSlowNode().setThreshold(Duration.ofMillis(100));
+        settings.getSlowNode().setBackoff(Duration.ofSeconds(30));
+        return settings;
+    }
+
+    private RestClient client(AutocompleteProperties.Client settings, NodeHealthTracker tracker, HttpHost... hosts) {
+        NodeFailureListener failureListener = new NodeFailureListener(tracker);
+        restClient = RestClientTuning.configure(RestClient.builder(hosts)
+                        .setHttpClientConfigCallback(builder -> RestClientTuning.configure(builder, settings, tracker)),
+                settings, tracker, failureListener).build();
+        return restClient;
+    }
+
+    @Test
+    public void testSlowNodeIsRoutedAround() throws IOException {
+        HttpServer fast = node(0);
+        HttpServer slow = node(500);
+        AutocompleteProperties.Client settings = settings();
+        // 第一个请求包含建连和类加载，阈值留出余量，避免快节点被误判
+        settings.getSlowNode().setThreshold(Duration.ofMillis(250));
+        settings.setNodes(List.of(host(fast).toHostString(), host(slow).toHostString()));
+        NodeHealthTracker tracker = new NodeHealthTracker(settings);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        tracker.bindTo(registry);
+        RestClient client = client(settings, tracker, host(fast), host(slow));
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(200, client.performRequest(new Request("GET", "/token/_search")).getStatusLine()
+                    .getStatusCode());
+        }
+
+        // 慢节点在第一次响应后即被绕开，其余请求都落在快节点上
+        assertEquals(1, hits.get(slow).get());
+        assertEquals(19, hits.get(fast).get());
+        assertTrue(tracker.isSlow(host(slow)));
+        assertTrue(tracker.latencyMillis(host(slow)) >= 500);
+        assertEquals(1, registry.get("autocomplete.es.node.slow").tag("node", host(slow).toHostString()).gauge().value());
+        assertEquals(2, registry.get("autocomplete.es.client.nodes").gauge().value());
+    }
+
+    @Test
+    public void testAllSlowNodesStillServeRequests() throws IOException {
+        HttpServer slow = node(150);
+        AutocompleteProperties.Client settings = settings();
+        NodeHealthTracker tracker = new NodeHealthTracker(settings);
+        RestClient client = client(settings, tracker, host(slow));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, client.performRequest(new Request("GET", "/token/_search")).getStatusLine()
+                    .getStatusCode());
+        }
+        assertEquals(3, hits.get(slow).get());
+    }
+
+    @Test
+    public void testSlowNonSearchRequestsDoNotMarkNodeSlow() throws IOException {
+        HttpServer node = node(150);
+        AutocompleteProperties.Client settings = settings();
+        NodeHealthTracker tracker = new NodeHealthTracker(settings);
+        RestClient client = client(settings, tracker, host(node));
+
+        // 批量写入和刷新本来就慢，不计入慢节点判断
+        client.performRequest(new Request("POST", "/_bulk?refresh=false"));
+        client.performRequest(new Request("POST", "/token/_refresh"));
+        assertFalse(tracker.isSlow(host(node)));
+
+        client.performRequest(new Request("POST", "/_msearch?typed_keys=true"));
+        assertTrue(tracker.isSlow(host(node)));
+    }
+
+    @Test
+    public void testSearchEndpoints() {
+        assertTrue(NodeLatencyInterceptor.isSearch("/token/_search"));
+        assertTrue(NodeLatencyInterceptor.isSearch("/_search?typed_keys=true"));
+        assertTrue(NodeLatencyInterceptor.isSearch("/_msearch/"));
+        assertFalse(NodeLatencyInterceptor.isSearch("/_bulk"));
+        assertFalse(NodeLatencyInterceptor.isSearch("/token/_search/template"));
+        assertFalse(NodeLatencyInterceptor.isSearch("/"));
+    }
+
+    @Test
+    public void testDeadNodeFailsOver() throws IOException {
+        HttpServer live = node(0);
+        HttpHost dead = deadHost();
+        AutocompleteProperties.Client settings = settings();
+        NodeHealthTracker tracker = new NodeHealthTracker(settings);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        tracker.bindTo(registry);
+        RestClient client = client(settings, tracker, dead, host(live));
+
+        for (int i = 0; i < 10; i++) {
+            Response response = client.performRequest(new Request("GET", "/"));
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            assertEquals(host(live), response.getHost());
+        }
+        assertEquals(10, hits.get(live).get());
+        assertTrue(registry.get("autocomplete.es.node.failures").tag("node", dead.toHostString())
+                .functionCounter().count() >= 1);
+    }
+
+    @Test
+    public void testRequestCompression() throws IOException {
+        HttpServer server = node(0);
+        AutocompleteProperties.Client settings = settings();
+        RestClient client = client(settings, new NodeHealthTracker(settings), host(server));
+
+        Request request = new Request("POST", "/token/_search");
+        request.setJsonEntity("{\"query\":{\"match_all\":{}}}");
+        client.performRequest(request);
+
+        assertEquals("gzip", lastHeaders.get("content-encoding"));
+        assertTrue(lastHeaders.get("accept-encoding").contains("gzip"));
+    }
+}
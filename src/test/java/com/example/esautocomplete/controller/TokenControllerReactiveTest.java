@@ -0,0 +1,45 @@
+package com.example.esautocomplete.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "autocomplete.execution.mode=reactive")
+@AutoConfigureMockMvc
+public class TokenControllerReactiveTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testGetSuggestionsReactive() throws Exception {
+        // 响应式模式下同样返回建议数组，ES不可用时返回空数组
+        MvcResult result = mockMvc.perform(get("/api/tokens/suggest").param("query", "bit"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.suggestions").isArray());
+    }
+
+    @Test
+    public void testGetCorrectionsReactive() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/tokens/correct").param("query", "bitcon"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.suggestions").isArray());
+    }
+}
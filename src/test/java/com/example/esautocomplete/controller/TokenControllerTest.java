@@ -4,10 +4,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import com.example.esautocomplete.cache.SuggestResponseCache;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.hamcrest.Matchers.hasSize;
@@ -19,20 +27,84 @@ public class TokenControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private SuggestResponseCache responseCache;
+
     @Test
     public void testGetSuggestions() throws Exception {
         // 测试自动补全接口
-        mockMvc.perform(get("/api/tokens/suggest")
+        MvcResult result = mockMvc.perform(get("/api/tokens/suggest")
                 .param("query", "bit")
                 .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.suggestions").isArray());
     }
 
+    @Test
+    public void testConditionalSuggestReturnsNotModified() throws Exception {
+        // 索引代数没有变化时，带着上次ETag的请求直接返回304，不再查询
+        String etag = responseCache.etag(responseCache.key("Bit", 5, null));
+        MvcResult result = mockMvc.perform(get("/api/tokens/suggest")
+                .param("query", "bit")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=5, public"));
+    }
+
+    @Test
+    public void testNotModifiedEchoesValidatedGzipEtag() throws Exception {
+        // 响应字节不在缓存中时，304仍回显客户端验证的gzip形式
+        String gzipEtag = SuggestResponseCache.gzipEtag(responseCache.etag(responseCache.key("never cached", 5, null)));
+        MvcResult result = mockMvc.perform(get("/api/tokens/suggest")
+                .param("query", " Never Cached ")
+                .header(HttpHeaders.IF_NONE_MATCH, gzipEtag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, gzipEtag));
+    }
+
     @Test
     public void testGetCorrections() throws Exception {
         // 测试纠错接口
-        mockMvc.perform(get("/api/tokens/correct")
+        MvcResult result = mockMvc.perform(get("/api/tokens/correct")
+                .param("query", "bitcon")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.suggestions").isArray());
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        // 批量接口按请求顺序返回结果，不支持的模式只影响该项
+        mockMvc.perform(post("/api/tokens/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"items\":[{\"mode\":\"suggest\",\"query\":\"bit\"},{\"mode\":\"unknown\",\"query\":\"eth\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results", hasSize(2)))
+                .andExpect(jsonPath("$.results[0].query").value("bit"))
+                .andExpect(jsonPath("$.results[1].error").exists());
+    }
+
+    @Test
+    public void testGetSuggestionsWithCorrections() throws Exception {
+        // 补全和纠错合并接口
+        mockMvc.perform(get("/api/tokens/suggest-or-correct")
                 .param("query", "bitcon")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -0,0 +1,96 @@
+package com.example.esautocomplete.engine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.model.Token;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AddressIndexTest {
+
+    private static final String USDC = "0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48";
+    private static final String USDT = "0xdac17f958d2ee523a2206206994597c13d831ec7";
+    private static final String DAI = "0x6b175474e89094c44da98b954eedeac495271d0f";
+
+    @Test
+    public void testPrefixesOfAnyLengthMatchBruteForce() {
+        Random random = new Random(7);
+        byte[] firstBytes = {0x00, (byte) 0xa0, (byte) 0xa1, (byte) 0xff};
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            byte[] key = new byte[TokenAddress.BYTES];
+            random.nextBytes(key);
+            // 让大量地址共享前缀，覆盖深层分叉
+            key[0] = firstBytes[random.nextInt(firstBytes.length)];
+            tokens.add(token("T" + i, "0x" + HexFormat.of().formatHex(key), i));
+        }
+        AddressIndex index = AddressIndex.build(TokenDictionary.of(tokens));
+        assertEquals(2000, index.size());
+
+        for (int q = 0; q < 300; q++) {
+            String address = tokens.get(random.nextInt(tokens.size())).getAddress();
+            String prefix = address.substring(0, 3 + random.nextInt(TokenAddress.HEX_DIGITS));
+            int k = 1 + random.nextInt(10);
+            List<String> expected = tokens.stream()
+                    .filter(token -> token.getAddress().startsWith(prefix))
+                    .sorted(Comparator.comparing(Token::getWeight).reversed())
+                    .map(Token::getName)
+                    .limit(k)
+                    .collect(Collectors.toList());
+            assertEquals(expected, index.topK(prefix.toUpperCase().replace("0X", "0x"), k), prefix);
+        }
+        // 首字节不在上面的集合中，没有命中
+        assertEquals(List.of(), index.topK("0x1" + "0".repeat(39), 5));
+    }
+
+    @Test
+    public void testSharedAddressesCaseAndOddLengthPrefixes() {
+        TokenDictionary dictionary = TokenDictionary.of(List.of(
+                token("USD Coin", USDC, 80),
+                // 另一条链上同一地址的合约，权重更高
+                token("Bridged USDC", USDC, 90),
+                token("Tether", USDT, 100),
+                token("Dai", DAI, 60),
+                Token.builder().symbol("NONAME").address("0xa0b8" + "0".repeat(36)).weight(10).build(),
+                // 非EVM地址和没有地址的Token不进入索引
+                token("Wrapped SOL", "So11111111111111111111111111111111111111112", 70),
+                token("Bitcoin", null, 200)));
+        AddressIndex index = AddressIndex.build(dictionary);
+
+        assertEquals(4, index.size());
+        assertEquals(List.of("Bridged USDC", "USD Coin", "NONAME"), index.topK("0xa0b8", 5));
+        assertEquals(List.of("Bridged USDC", "USD Coin", "NONAME"), index.topK("0XA0B", 5));
+        assertEquals(List.of("Bridged USDC", "USD Coin"), index.topK(USDC.toUpperCase().replace("0X", "0x"), 5));
+        assertEquals(List.of("Bridged USDC"), index.topK("0xa", 1));
+        assertEquals(List.of(), index.topK("0x", 5));
+        assertEquals(List.of(), index.topK("0xa0b9", 5));
+        assertEquals(List.of(), index.topK("0xzz", 5));
+        assertEquals(List.of(), index.topK(USDC + "0", 5));
+    }
+
+    @Test
+    public void testEngineRoutesAddressPrefixes() {
+        TriePrefixEngine engine = new TriePrefixEngine();
+        engine.rebuild(List.of(token("USD Coin", USDC, 80), token("Tether", USDT, 100)));
+
+        assertEquals(List.of("USD Coin"), engine.suggest("0xA0b869", 5));
+        assertEquals(List.of("USD Coin"), engine.suggest("usd", 5));
+        assertTrue(TokenAddress.isAddressPrefix(" 0xDAC "));
+        assertFalse(TokenAddress.isAddressPrefix("0x"));
+        assertFalse(TokenAddress.isAddressPrefix("0xbitcoin"));
+        assertFalse(TokenAddress.isAddressPrefix(USDC + "0"));
+    }
+
+    private static Token token(String name, String address, int weight) {
+        return Token.builder().id(name + "-" + weight).name(name).address(address).weight(weight).build();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.esautocomplete.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.esautocomplete.cache.IndexGeneration;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.cache.SuggestionResult;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.feed.TokenChange;
+import com.example.esautocomplete.feed.TokenChangeFeed;
+import com.example.esautocomplete.model.Token;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class LocalEngineRefresherTest {
+
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+
+    private final TriePrefixEngine prefixEngine = new TriePrefixEngine();
+
+    private final SymSpellCorrectionEngine correctionEngine = new SymSpellCorrectionEngine();
+
+    private final SuggestionCache suggestionCache = new SuggestionCache(properties);
+
+    private final IndexGeneration indexGeneration = new IndexGeneration();
+
+    private final LocalEngineRefresher refresher = new LocalEngineRefresher();
+
+    private final TokenChangeFeed changeFeed = mock(TokenChangeFeed.class);
+
+    private final Map<String, Token> tokens = new HashMap<>();
+
+    @TempDir
+    Path dir;
+
+    private static Token token(String id, String name, String symbol, int weight) {
+        return Token.builder().id(id).name(name).symbol(symbol).weight(weight).build();
+    }
+
+    private static TokenChange upsert(Token token, long seq) {
+        return new TokenChange(TokenChange.Type.UPSERT, token.getId(), seq, token);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(correctionEngine, "properties", properties);
+        ReflectionTestUtils.setField(refresher, "prefixEngine", prefixEngine);
+        ReflectionTestUtils.setField(refresher, "correctionEngine", correctionEngine);
+        ReflectionTestUtils.setField(refresher, "properties", properties);
+        ReflectionTestUtils.setField(refresher, "suggestionCache", suggestionCache);
+        ReflectionTestUtils.setField(refresher, "indexGeneration", indexGeneration);
+        ReflectionTestUtils.setField(refresher, "changeFeed", changeFeed);
+
+        // 相当于一次全量加载的结果
+        tokens.put("1", token("1", "Bitcoin", "BTC", 100));
+        tokens.put("2", token("2", "Binance Coin", "BNB", 50));
+        prefixEngine.rebuild(tokens.values());
+        correctionEngine.rebuild(tokens.values());
+        ReflectionTestUtils.setField(refresher, "dictionary", TokenDictionary.of(tokens.values()));
+    }
+
+    @Test
+    public void testWeightChangeUpdatesInPlace() {
+        PrefixTrie before = (PrefixTrie) ReflectionTestUtils.getField(prefixEngine, "trie");
+
+        refresher.apply(List.of(upsert(token("2", "Binance Coin", "BNB", 500), 1)));
+
+        // 没有重建，同一份前缀树上的权重已更新
+        assertSame(before, ReflectionTestUtils.getField(prefixEngine, "trie"));
+        assertEquals(List.of("Binance Coin", "Bitcoin"), prefixEngine.suggest("bi", 5));
+    }
+
+    @Test
+    public void testWeightChangeKeepsAddressResolvable() {
+        String link = "0x514910771af9ca656af840dff83e8264ecf986ca";
+        tokens.put("3", Token.builder().id("3").name("Chainlink").symbol("LINK").address(link).weight(40).build());
+        TokenDictionary dictionary = TokenDictionary.of(tokens.values());
+        prefixEngine.rebuild(dictionary);
+        ReflectionTestUtils.setField(refresher, "dictionary", dictionary);
+        PrefixTrie before = (PrefixTrie) ReflectionTestUtils.getField(prefixEngine, "trie");
+
+        // 变更订阅带回完整的地址，只改权重时不重建，地址仍可查询
+        refresher.apply(List.of(upsert(
+                Token.builder().id("3").name("Chainlink").symbol("LINK").address(link).weight(400).build(), 1)));
+
+        assertSame(before, ReflectionTestUtils.getField(prefixEngine, "trie"));
+        assertEquals(List.of("Chainlink"), prefixEngine.suggest("0x5149", 5));
+        assertEquals(List.of("Chainlink"), prefixEngine.suggest("chain", 5));
+    }
+
+    @Test
+    public void testInsertDeleteAndRenameRebuild() {
+        suggestionCache.putSuggestions("bi", 5, new SuggestionResult(List.of("Bitcoin", "Binance Coin"), true));
+        long generation = indexGeneration.current();
+
+        refresher.apply(List.of(
+                upsert(token("3", "Bitget Token", "BGB", 10), 1),
+                new TokenChange(TokenChange.Type.DELETE, "2", 2, token("2", "Binance Coin", "BNB", 0)),
+                upsert(token("1", "Bitcoin Core", "BTC", 100), 3)));
+
+        assertEquals(List.of("Bitcoin Core", "Bitget Token"), prefixEngine.suggest("bi", 5));
+        assertEquals(List.of(), prefixEngine.suggest("bnb", 5));
+        assertEquals("Bitget Token", correctionEngine.correct("bitgett token", 1).get(0));
+        // 受影响前缀的缓存结果已清除
+        assertNull(suggestionCache.lookupSuggestions("bi", 5));
+        // 其他实例的写入同样使之前发出的ETag失效
+        assertTrue(indexGeneration.current() > generation);
+    }
+
+    @Test
+    public void testRestoreSnapshotBeforeFirstFullLoad() throws IOException {
+        Path path = dir.resolve("token-snapshot.bin");
+        long createdAt = System.currentTimeMillis() - 60_000;
+        TokenSnapshot.write(path, List.of(token("3", "Bitget Token", "BGB", 10)), createdAt);
+        properties.getSnapshot().setPath(path.toString());
+
+        // 已经全量加载过，不用旧快照覆盖
+        assertFalse(refresher.restoreSnapshot());
+
+        TriePrefixEngine restoredEngine = new TriePrefixEngine();
+        LocalEngineRefresher restarted = new LocalEngineRefresher();
+        ReflectionTestUtils.setField(restarted, "prefixEngine", restoredEngine);
+        ReflectionTestUtils.setField(restarted, "correctionEngine", correctionEngine);
+        ReflectionTestUtils.setField(restarted, "properties", properties);
+        ReflectionTestUtils.setField(restarted, "changeFeed", changeFeed);
+        ReflectionTestUtils.setField(restarted, "indexGeneration", indexGeneration);
+
+        assertTrue(restarted.restoreSnapshot());
+        assertEquals(List.of("Bitget Token"), restoredEngine.suggest("bit", 5));
+        // 从快照时刻起追赶ES上的变更
+        verify(changeFeed).replaySince(createdAt);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.esautocomplete.engine;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PrefixTrieTest {
+
+    private final PrefixTrie trie = PrefixTrie.build(List.of(
+            "Bitcoin", "BTC", "Bitcoin Cash", "BCH", "Binance Coin", "BNB", "USD Coin", "USDC", "Curve DAO Token", "CRV"));
+
+    @Test
+    public void testPrefixIsCaseInsensitive() {
+        List<String> result = trie.topK(TokenText.normalize("BIT"), 10);
+        assertEquals(List.of("Bitcoin", "Bitcoin Cash"), result);
+    }
+
+    @Test
+    public void testWordStartMatch() {
+        // 单词开头同样可以命中，与ES分词后的前缀匹配语义一致
+        assertEquals(List.of("Binance Coin", "USD Coin"), trie.topK("coin", 10));
+        assertEquals(List.of("Curve DAO Token"), trie.topK("dao", 10));
+    }
+
+    @Test
+    public void testTopKIsDistinctAndLimited() {
+        List<String> result = trie.topK("b", 3);
+        assertEquals(3, result.size());
+        assertEquals(result.size(), result.stream().distinct().count());
+    }
+
+    @Test
+    public void testMissingPrefix() {
+        assertTrue(trie.topK("xyz", 5).isEmpty());
+        assertTrue(trie.topK("bitcoinx", 5).isEmpty());
+        assertTrue(PrefixTrie.build(List.of()).topK("b", 5).isEmpty());
+    }
+
+    @Test
+    public void testTopKOrderedByWeight() {
+        Map<String, Integer> weighted = new LinkedHashMap<>();
+        weighted.put("Bitcoin", 100);
+        weighted.put("BTC", 100);
+        weighted.put("Bitcoin Cash", 10);
+        weighted.put("BCH", 10);
+        weighted.put("Binance Coin", 50);
+        weighted.put("BNB", 50);
+        weighted.put("Bonk", 0);
+        PrefixTrie weightedTrie = PrefixTrie.build(weighted);
+
+        assertEquals(List.of("Bitcoin", "BTC", "Binance Coin"), weightedTrie.topK("b", 3));
+        assertEquals(List.of("Bitcoin", "Bitcoin Cash"), weightedTrie.topK("bit", 5));
+        // 单词开头命中同样按权重排序
+        assertEquals(List.of("Binance Coin", "Bitcoin Cash"), weightedTrie.topK("c", 5));
+    }
+
+    @Test
+    public void testUpdateWeightReranksInPlace() {
+        PrefixTrie weightedTrie = PrefixTrie.build(TokenDictionary.builder(2)
+                .add("btc", "Bitcoin", "BTC", 100, null)
+                .add("bch", "Bitcoin Cash", null, 10, null)
+                .build());
+        assertEquals(List.of("Bitcoin", "Bitcoin Cash"), weightedTrie.topK("bitcoin", 2));
+
+        assertTrue(weightedTrie.updateWeight("bch", 500));
+        assertEquals(500, weightedTrie.weight("Bitcoin Cash"));
+        assertEquals(List.of("Bitcoin Cash", "Bitcoin"), weightedTrie.topK("bitcoin", 2));
+        assertEquals(List.of("Bitcoin Cash"), weightedTrie.topK("b", 1));
+        assertEquals(List.of("Bitcoin Cash"), weightedTrie.topK("cash", 1));
+
+        // 降低权重后子树最大权重随之回落
+        assertTrue(weightedTrie.updateWeight("bch", 0));
+        assertEquals(List.of("Bitcoin", "BTC", "Bitcoin Cash"), weightedTrie.topK("b", 3));
+
+        assertFalse(weightedTrie.updateWeight("eth", 1));
+    }
+
+    @Test
+    public void testUpdateWeightKeepsMaxOfSharedText() {
+        // 同一符号在多条链上各是一个Token，文本权重取其中的最大值
+        TokenDictionary dictionary = TokenDictionary.builder(3)
+                .add("usdc-eth", "USD Coin", "USDC", 100, null)
+                .add("usdc-base", "USD Coin", "USDC", 10, null)
+                .add("usdt", "Tether USD", "USDT", 50, null)
+                .build();
+        PrefixTrie weightedTrie = PrefixTrie.build(dictionary);
+        assertEquals(List.of("USD Coin", "USDC", "Tether USD"), weightedTrie.topK("usd", 3));
+
+        // 只更新权重较低的Token，共用文本仍取另一条链的权重
+        assertTrue(weightedTrie.updateWeight("usdc-base", 20));
+        assertEquals(100, weightedTrie.weight("USDC"));
+        assertEquals(100, weightedTrie.weight("USD Coin"));
+        assertEquals(List.of("USD Coin", "USDC", "Tether USD"), weightedTrie.topK("usd", 3));
+
+        // 降低权重最高的Token后回落到其余Token中的最大值，与重新构建的结果一致
+        assertTrue(weightedTrie.updateWeight("usdc-eth", 5));
+        assertEquals(20, weightedTrie.weight("USDC"));
+        PrefixTrie rebuilt = PrefixTrie.build(dictionary);
+        assertEquals(rebuilt.topK("usd", 3), weightedTrie.topK("usd", 3));
+        assertEquals(List.of("Tether USD", "USDT", "USD Coin"), weightedTrie.topK("usd", 3));
+    }
+}
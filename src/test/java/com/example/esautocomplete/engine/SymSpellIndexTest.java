@@ -0,0 +1,42 @@
+package com.example.esautocomplete.engine;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SymSpellIndexTest {
+
+    private final SymSpellIndex index = SymSpellIndex.build(List.of(
+            "Bitcoin", "BTC", "Bitcoin Cash", "BCH", "Ethereum", "ETH", "Polkadot", "DOT", "Uniswap", "UNI"), 2, 7);
+
+    @Test
+    public void testSingleEditCorrection() {
+        // 缺字母、多字母、相邻交换都算一次编辑
+        assertEquals("Bitcoin", index.lookup("bitcon", 1).get(0));
+        assertEquals("Ethereum", index.lookup("etherum", 1).get(0));
+        assertEquals("Uniswap", index.lookup("unsiwap", 1).get(0));
+    }
+
+    @Test
+    public void testWordMatchReturnsAllEntries() {
+        List<String> result = index.lookup("bitcoinn", 5);
+        assertTrue(result.containsAll(List.of("Bitcoin", "Bitcoin Cash")));
+    }
+
+    @Test
+    public void testAutoFuzzinessForShortInput() {
+        // 与ES fuzziness=AUTO一致，两个字符以内只接受精确匹配
+        assertTrue(index.lookup("bt", 5).isEmpty());
+        assertEquals(List.of("BTC"), index.lookup("btc", 1));
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, SymSpellIndex.distance("bitcoin", "bitcoin", 2));
+        assertEquals(1, SymSpellIndex.distance("bitcoin", "bitcion", 2));
+        assertEquals(3, SymSpellIndex.distance("bitcoin", "ethereum", 2));
+    }
+}
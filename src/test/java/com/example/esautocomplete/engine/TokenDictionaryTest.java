@@ -0,0 +1,131 @@
+package com.example.esautocomplete.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.model.Token;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenDictionaryTest {
+
+    private static final List<String> TEXTS = List.of("Bitcoin", "Binance Coin", "  USD Coin ", "狗狗币",
+            "Ünïcode Token", "wrapped-BTC", "A");
+
+    @Test
+    public void testRoundTripAndIdLookup() {
+        Token bitcoin = token("1", "Bitcoin", "BTC", 100, 7L);
+        Token doge = token("doge", "狗狗币", null, null, null);
+        Token usdc = token("usdc", "USD Coin", "USDC", 80, 8L);
+        usdc.setAddress("0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48");
+        TokenDictionary dictionary = TokenDictionary.of(List.of(bitcoin, doge, usdc));
+
+        assertEquals(3, dictionary.size());
+        assertEquals(bitcoin, dictionary.token(0));
+        // null字段原样还原
+        assertEquals(doge, dictionary.token(1));
+        assertNull(dictionary.symbol(1));
+        assertEquals(0, dictionary.weight(1));
+        assertEquals(usdc, dictionary.token(2));
+        assertNull(dictionary.address(0));
+
+        byte[] key = new byte[TokenAddress.BYTES];
+        assertTrue(dictionary.addressKey(2, key, 0));
+        assertEquals((byte) 0xa0, key[0]);
+        assertEquals((byte) 0x48, key[TokenAddress.BYTES - 1]);
+        assertFalse(dictionary.addressKey(0, key, 0));
+
+        assertEquals(0, dictionary.indexOf("1"));
+        assertEquals(1, dictionary.indexOf("doge"));
+        assertEquals(-1, dictionary.indexOf("2"));
+        assertEquals(-1, dictionary.indexOf(null));
+        assertTrue(dictionary.textEquals(TokenDictionary.ref(1, TokenDictionary.NAME), "狗狗币"));
+        assertFalse(dictionary.textEquals(TokenDictionary.ref(0, TokenDictionary.NAME), "bitcoin"));
+    }
+
+    @Test
+    public void testCaseInsensitiveMatchingAgreesWithTokenText() {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < TEXTS.size(); i++) {
+            tokens.add(token(String.valueOf(i), TEXTS.get(i), null, 0, null));
+        }
+        TokenDictionary dictionary = TokenDictionary.of(tokens);
+
+        for (int i = 0; i < TEXTS.size(); i++) {
+            int ref = TokenDictionary.ref(i, TokenDictionary.NAME);
+            String normalized = TokenText.normalize(TEXTS.get(i));
+            assertEquals(0, dictionary.compareIgnoreCase(ref, dictionary.foldedStart(ref), normalized));
+            for (String prefix : List.of("b", "bi", "coin", "usd c", "狗", "ün", "token", "btc", "a", "x")) {
+                assertEquals(TokenText.matchesPrefix(TEXTS.get(i), prefix), dictionary.matchesPrefix(ref, prefix),
+                        TEXTS.get(i) + " / " + prefix);
+            }
+
+            // 词首后缀与 TokenText.prefixKeys 一致
+            List<String> keys = new ArrayList<>();
+            keys.add(normalized);
+            dictionary.forEachWordStart(ref, start -> keys.add(
+                    new String(bytes(dictionary, start, dictionary.foldedEnd(ref)), StandardCharsets.UTF_8)));
+            assertEquals(TokenText.prefixKeys(normalized), keys);
+        }
+    }
+
+    @Test
+    public void testWithAppliesDeletesReplacementsAndInserts() {
+        TokenDictionary dictionary = TokenDictionary.of(List.of(
+                token("1", "Bitcoin", "BTC", 100, 1L),
+                token("2", "Binance Coin", "BNB", 50, 2L),
+                token("3", "Ethereum", "ETH", 80, 3L)));
+        dictionary.setWeight(2, 90);
+
+        Map<String, Token> changes = new LinkedHashMap<>();
+        changes.put("2", null);
+        changes.put("1", token("1", "Bitcoin Core", "BTC", 100, 4L));
+        changes.put("4", token("4", "Bitget Token", "BGB", 10, 5L));
+        changes.put("5", null);
+        TokenDictionary updated = dictionary.with(changes);
+
+        assertEquals(List.of(
+                token("3", "Ethereum", "ETH", 90, 3L),
+                token("1", "Bitcoin Core", "BTC", 100, 4L),
+                token("4", "Bitget Token", "BGB", 10, 5L)), updated.tokens());
+        assertEquals(-1, updated.indexOf("2"));
+        assertEquals(1, updated.indexOf("1"));
+        // 原词典不受影响
+        assertEquals("Binance Coin", dictionary.name(1));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        TokenDictionary.Builder builder = TokenDictionary.builder(1);
+        for (int i = 0; i < 1000; i++) {
+            builder.add(token("id-" + i, "Token Number " + i, "T" + i, i, (long) i));
+        }
+        TokenDictionary dictionary = builder.build();
+
+        assertEquals(1000, dictionary.size());
+        assertEquals(999, dictionary.indexOf("id-999"));
+        assertEquals("Token Number 999", dictionary.name(999));
+        assertEquals(token("id-500", "Token Number 500", "T500", 500, 500L), dictionary.token(500));
+        assertTrue(dictionary.memoryBytes() > 0);
+    }
+
+    private static byte[] bytes(TokenDictionary dictionary, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = (byte) dictionary.foldedByte(i);
+        }
+        return bytes;
+    }
+
+    private static Token token(String id, String name, String symbol, Integer weight, Long seq) {
+        return Token.builder().id(id).name(name).symbol(symbol).weight(weight).seq(seq).build();
+    }
+}
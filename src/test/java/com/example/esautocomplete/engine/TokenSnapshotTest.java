@@ -0,0 +1,99 @@
+package com.example.esautocomplete.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.esautocomplete.model.Token;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TokenSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<Token> tokens() {
+        return List.of(
+                Token.builder().id("1").name("Bitcoin").symbol("BTC").weight(100).seq(42L).build(),
+                Token.builder().id("2").name("狗狗币").symbol("DOGE").build(),
+                Token.builder().id("3").name("USD Coin").symbol("USDC").weight(80)
+                        .address("0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48").build());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path path = dir.resolve("snapshot/token-snapshot.bin");
+        TokenSnapshot.write(path, tokens(), 1_700_000_000_000L);
+
+        TokenSnapshot snapshot = TokenSnapshot.read(path);
+        assertEquals(1_700_000_000_000L, snapshot.createdAt());
+        assertEquals(tokens(), snapshot.tokens());
+        assertNull(snapshot.tokens().get(1).getWeight());
+        assertNull(snapshot.tokens().get(1).getSeq());
+    }
+
+    @Test
+    public void testReplaceIsAtomicAndLeavesNoTemporaryFiles() throws IOException {
+        Path path = dir.resolve("token-snapshot.bin");
+        TokenSnapshot.write(path, tokens(), 1L);
+        TokenSnapshot.write(path, tokens().subList(0, 1), 2L);
+
+        TokenSnapshot snapshot = TokenSnapshot.read(path);
+        assertEquals(2L, snapshot.createdAt());
+        assertEquals(1, snapshot.tokens().size());
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(path), files.toList());
+        }
+    }
+
+    @Test
+    public void testCorruptionIsDetected() throws IOException {
+        Path path = dir.resolve("token-snapshot.bin");
+        TokenSnapshot.write(path, tokens(), 1L);
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        assertThrows(IOException.class, () -> TokenSnapshot.read(path));
+
+        // 截断的文件
+        Files.write(path, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> TokenSnapshot.read(path));
+    }
+
+    @Test
+    public void testReadsVersionWithoutAddress() throws IOException {
+        // 版本1的记录只有 id、name、symbol 三个字符串
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x544B534E);
+        out.writeInt(1);
+        out.writeLong(5L);
+        out.writeInt(1);
+        for (String text : List.of("1", "Bitcoin", "BTC")) {
+            out.writeInt(text.length());
+            out.writeBytes(text);
+        }
+        out.writeInt(100);
+        out.writeLong(Long.MIN_VALUE);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        Path path = dir.resolve("token-snapshot.bin");
+        Files.write(path, bytes.toByteArray());
+
+        TokenSnapshot snapshot = TokenSnapshot.read(path);
+        assertEquals(List.of(Token.builder().id("1").name("Bitcoin").symbol("BTC").weight(100).build()),
+                snapshot.tokens());
+    }
+}
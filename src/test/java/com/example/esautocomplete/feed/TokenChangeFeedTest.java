@@ -0,0 +1,171 @@
+package com.example.esautocomplete.feed;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.model.Token;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenChangeFeedTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(START);
+
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /** 模拟索引中的变更，按 (seq, id) 升序 */
+    private final List<TokenChange> index = new ArrayList<>();
+
+    private final List<TokenChange> delivered = new ArrayList<>();
+
+    private final AtomicBoolean unavailable = new AtomicBoolean();
+
+    private TokenChangeFeed feed() {
+        properties.getChangeFeed().setPageSize(2);
+        properties.getChangeFeed().setSettleLag(Duration.ofSeconds(2));
+        TokenChangeFeed feed = new TokenChangeFeed(properties, registry, this::fetch, clock::get);
+        feed.subscribe(delivered::addAll);
+        return feed;
+    }
+
+    private List<TokenChange> fetch(TokenChangeFeed.Position after, long upTo, int size) throws IOException {
+        if (unavailable.get()) {
+            throw new IOException("connection refused");
+        }
+        return index.stream()
+                .filter(change -> new TokenChangeFeed.Position(change.seq(), change.id()).compareTo(after) > 0)
+                .filter(change -> change.seq() <= upTo)
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 在当前时刻之前 agoMillis 写入的变更
+     */
+    private void write(String id, long agoMillis, boolean delete) {
+        Token token = Token.builder().id(id).name(id).symbol(id.toUpperCase()).build();
+        long seq = ChangeSequence.floor(clock.get() - agoMillis);
+        index.add(new TokenChange(delete ? TokenChange.Type.DELETE : TokenChange.Type.UPSERT, id, seq, token));
+    }
+
+    private List<String> deliveredIds() {
+        return delivered.stream().map(TokenChange::id).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testDeliversChangesInOrderAcrossPages() {
+        TokenChangeFeed feed = feed();
+        clock.addAndGet(10_000);
+        write("a", 5_000, false);
+        write("b", 4_000, false);
+        write("c", 4_000, false);
+        write("a", 3_000, true);
+        write("d", 2_500, false);
+
+        assertEquals(5, feed.pollOnce());
+        assertEquals(List.of("a", "b", "c", "a", "d"), deliveredIds());
+        assertTrue(delivered.get(3).isDelete());
+
+        // 没有新变更时不再投递
+        assertEquals(0, feed.pollOnce());
+        assertEquals(5, delivered.size());
+        assertEquals(4, registry.get("autocomplete.feed.changes").tag("type", "upsert").counter().count());
+        assertEquals(1, registry.get("autocomplete.feed.changes").tag("type", "delete").counter().count());
+    }
+
+    @Test
+    public void testSourceCarriesAllComparedFields() {
+        // 缺少地址时，每次只改权重的变更都会被当作改名，引擎重建后地址丢失
+        assertTrue(ElasticsearchChangeSource.SOURCE_FIELDS.containsAll(
+                List.of("id", "name", "symbol", "address", "chain", "category", "weight", "seq")));
+    }
+
+    @Test
+    public void testWaitsForSettleLag() {
+        TokenChangeFeed feed = feed();
+        clock.addAndGet(10_000);
+        write("a", 1_000, false);
+
+        // 写入时间还在settle-lag之内，可能尚未refresh可见
+        assertEquals(0, feed.pollOnce());
+        clock.addAndGet(1_500);
+        assertEquals(1, feed.pollOnce());
+        assertEquals(List.of("a"), deliveredIds());
+    }
+
+    @Test
+    public void testCapsChangesPerPoll() {
+        properties.getChangeFeed().setMaxChangesPerPoll(3);
+        TokenChangeFeed feed = feed();
+        clock.addAndGet(10_000);
+        for (int i = 0; i < 5; i++) {
+            write("t" + i, 5_000 - i, false);
+        }
+
+        assertEquals(3, feed.pollOnce());
+        assertEquals(2, feed.pollOnce());
+        assertEquals(List.of("t0", "t1", "t2", "t3", "t4"), deliveredIds());
+    }
+
+    @Test
+    public void testFailureKeepsCheckpoint() {
+        TokenChangeFeed feed = feed();
+        clock.addAndGet(10_000);
+        write("a", 5_000, false);
+        unavailable.set(true);
+
+        TokenChangeFeed.Position before = feed.checkpoint();
+        assertEquals(0, feed.pollOnce());
+        assertEquals(before, feed.checkpoint());
+        assertEquals(1, registry.get("autocomplete.feed.failures").counter().count());
+
+        unavailable.set(false);
+        assertEquals(1, feed.pollOnce());
+    }
+
+    @Test
+    public void testReplaySinceRedeliversAfterFullLoad() {
+        TokenChangeFeed feed = feed();
+        clock.addAndGet(10_000);
+        write("a", 5_000, false);
+        write("b", 3_000, false);
+        assertEquals(2, feed.pollOnce());
+
+        // 全量加载在2秒前开始，检查点退回到再早settle-lag的位置，之后的变更重新投递
+        feed.replaySince(clock.get() - 2_000);
+        assertEquals(1, feed.pollOnce());
+        assertEquals(List.of("a", "b", "b"), deliveredIds());
+
+        // 检查点已经更早时不前移
+        feed.replaySince(clock.get());
+        assertEquals(0, feed.pollOnce());
+    }
+
+    @Test
+    public void testSequenceIsMonotonicWithinMillisecond() {
+        ChangeSequence sequence = new ChangeSequence(clock::get);
+        long first = sequence.next();
+        long second = sequence.next();
+        assertEquals(ChangeSequence.floor(clock.get()), first);
+        assertEquals(first + 1, second);
+
+        clock.addAndGet(1);
+        assertEquals(ChangeSequence.floor(clock.get()), sequence.next());
+        assertEquals(clock.get(), ChangeSequence.toMillis(sequence.next()));
+    }
+}
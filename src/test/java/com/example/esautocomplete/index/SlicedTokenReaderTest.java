@@ -0,0 +1,87 @@
+package com.example.esautocomplete.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.model.Token;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlicedTokenReaderTest {
+
+    /**
+     * 每个切片 pages 页、每页 pageSize 条，用 search_after 中的页码翻页
+     */
+    private static SlicedTokenReader.PageFetcher pagedSource(int pages, int pageSize) {
+        return (slice, searchAfter) -> {
+            int page = searchAfter == null ? 0 : (int) searchAfter.get(0).longValue() + 1;
+            if (page >= pages) {
+                return new SlicedTokenReader.Page(List.of(), null);
+            }
+            List<Token> tokens = new ArrayList<>();
+            for (int i = 0; i < pageSize; i++) {
+                tokens.add(Token.builder().id(slice + "-" + page + "-" + i).build());
+            }
+            return new SlicedTokenReader.Page(tokens, List.of(FieldValue.of(page)));
+        };
+    }
+
+    @Test
+    public void testReadsAllSlicesThroughSmallQueue() {
+        Set<String> ids = new HashSet<>();
+        try (SlicedTokenReader reader = new SlicedTokenReader(3, 4, pagedSource(5, 10))) {
+            reader.forEachRemaining(token -> ids.add(token.getId()));
+            assertNull(reader.getFailure());
+        }
+        assertEquals(3 * 5 * 10, ids.size());
+    }
+
+    @Test
+    public void testStopsOnSliceFailure() {
+        SlicedTokenReader.PageFetcher healthy = pagedSource(1000, 10);
+        SlicedTokenReader.PageFetcher fetcher = (slice, searchAfter) -> {
+            if (slice == 1 && searchAfter != null) {
+                throw new IllegalStateException("pit expired");
+            }
+            return healthy.fetch(slice, searchAfter);
+        };
+
+        int read = 0;
+        try (SlicedTokenReader reader = new SlicedTokenReader(2, 8, fetcher)) {
+            while (reader.hasNext()) {
+                reader.next();
+                read++;
+            }
+            assertNotNull(reader.getFailure());
+            assertFalse(reader.hasNext());
+        }
+        assertTrue(read < 2 * 1000 * 10);
+    }
+
+    @Test
+    public void testBulkModeDisablesReplicasAndRefresh() throws Exception {
+        ObjectNode configured = (ObjectNode) new ObjectMapper()
+                .readTree("{\"index\":{\"number_of_shards\":1,\"number_of_replicas\":1}}");
+
+        ObjectNode bulk = TokenIndexManager.indexSettings(configured, true);
+        assertEquals("-1", bulk.path("index").path("refresh_interval").asText());
+        assertEquals("0", bulk.path("index").path("number_of_replicas").asText());
+        assertEquals(1, bulk.path("index").path("number_of_shards").asInt());
+
+        ObjectNode normal = TokenIndexManager.indexSettings(configured, false);
+        assertEquals(configured, normal);
+        assertEquals(1, configured.path("index").path("number_of_replicas").asInt());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.esautocomplete.index;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenIndexManagerTest {
+
+    private static TypeMapping mapping(String json) {
+        return TypeMapping.of(m -> m.withJson(new StringReader(json)));
+    }
+
+    @Test
+    public void testCurrentMappingHasInfixFields() throws Exception {
+        try (InputStream input = new ClassPathResource("es/token-mapping.json").getInputStream()) {
+            String mappings = new ObjectMapper().readTree(input).path("mappings").toString();
+            assertTrue(TokenIndexManager.hasInfixFields(mapping(mappings)));
+            assertTrue(TokenIndexManager.hasChainContexts(mapping(mappings)));
+            assertTrue(TokenIndexManager.hasAddressFields(mapping(mappings)));
+        }
+    }
+
+    @Test
+    public void testLegacyMappingNeedsMigration() {
+        // 旧映射只有keyword子字段，需要重建后才能使用中缀补全
+        String legacy = "{\"properties\":{"
+                + "\"name\":{\"type\":\"text\",\"fields\":{\"keyword\":{\"type\":\"keyword\"}}},"
+                + "\"symbol\":{\"type\":\"text\",\"fields\":{\"keyword\":{\"type\":\"keyword\"}}}}}";
+        assertFalse(TokenIndexManager.hasInfixFields(mapping(legacy)));
+    }
+
+    @Test
+    public void testCompletionWithoutContextsNeedsMigration() {
+        // 不带上下文的completion字段不能原地加上下文，需要重建
+        String legacy = "{\"properties\":{"
+                + "\"nameSuggest\":{\"type\":\"completion\"},"
+                + "\"symbolSuggest\":{\"type\":\"completion\",\"contexts\":"
+                + "[{\"name\":\"chain\",\"type\":\"category\",\"path\":\"chain\"}]}}}";
+        assertFalse(TokenIndexManager.hasChainContexts(mapping(legacy)));
+    }
+
+    @Test
+    public void testLegacyMappingWithoutAddressFields() {
+        // 动态映射出的address是text字段，没有前缀子字段
+        String legacy = "{\"properties\":{"
+                + "\"address\":{\"type\":\"text\",\"fields\":{\"keyword\":{\"type\":\"keyword\"}}}}}";
+        assertFalse(TokenIndexManager.hasAddressFields(mapping(legacy)));
+        assertFalse(TokenIndexManager.hasAddressFields(mapping("{\"properties\":{}}")));
+    }
+
+    @Test
+    public void testTombstonesSkipDocumentsRecreatedAfterDelete() {
+        // 2号删除后又以更大的序号重新写入，补写后不能再按墓碑删掉；3号删除后没有再写入
+        Map<String, Long> tombstones = Map.of("2", 100L, "3", 120L);
+        Map<String, Long> written = Map.of("1", 90L, "2", 110L);
+        assertEquals(List.of("3"), TokenIndexManager.deletedSince(tombstones, written));
+        assertEquals(List.of("2"), TokenIndexManager.deletedSince(Map.of("2", 130L), written));
+    }
+}
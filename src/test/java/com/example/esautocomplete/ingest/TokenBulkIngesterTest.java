@@ -0,0 +1,143 @@
+package com.example.esautocomplete.ingest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.IngestReport;
+import com.example.esautocomplete.model.Token;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TokenBulkIngesterTest {
+
+    private final ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+    private final TokenBulkIngester ingester = new TokenBulkIngester();
+
+    @BeforeEach
+    public void setUp() {
+        properties.getIngest().setChunkDocs(10);
+        properties.getIngest().setMaxInFlight(2);
+        properties.getIngest().setRetryBackoff(Duration.ofMillis(1));
+        ReflectionTestUtils.setField(ingester, "elasticsearchOperations", operations);
+        ReflectionTestUtils.setField(ingester, "properties", properties);
+    }
+
+    @Test
+    public void testRejectedItemsAreRetried() {
+        // 每个文档第一次写入时被拒绝（429），第二次成功
+        Set<String> rejectedOnce = ConcurrentHashMap.newKeySet();
+        AtomicInteger bulkCalls = new AtomicInteger();
+        when(operations.bulkIndex(anyList(), any(IndexCoordinates.class))).thenAnswer(invocation -> {
+            bulkCalls.incrementAndGet();
+            List<IndexQuery> queries = invocation.getArgument(0);
+            Map<String, BulkFailureException.FailureDetails> failed = queries.stream()
+                    .map(IndexQuery::getId)
+                    .filter(rejectedOnce::add)
+                    .collect(Collectors.toMap(id -> id, id -> new BulkFailureException.FailureDetails(429, "rejected")));
+            if (!failed.isEmpty()) {
+                throw new BulkFailureException("rejected", failed);
+            }
+            return Collections.emptyList();
+        });
+
+        List<Token> indexed = Collections.synchronizedList(new ArrayList<>());
+        IngestReport report = ingester.ingest(tokens(25).iterator(), token -> { }, IndexCoordinates.of("token"),
+                indexed::addAll);
+
+        assertEquals(25, report.getTotal());
+        assertEquals(25, report.getIndexed());
+        assertEquals(0, report.getFailed());
+        assertEquals(25, report.getRetried());
+        assertEquals(3, report.getChunks());
+        assertEquals(6, bulkCalls.get());
+        assertEquals(25, indexed.size());
+    }
+
+    @Test
+    public void testPermanentFailuresAreReported() {
+        when(operations.bulkIndex(anyList(), any(IndexCoordinates.class))).thenThrow(new BulkFailureException("bad",
+                Map.of("t3", new BulkFailureException.FailureDetails(400, "mapper_parsing_exception"))));
+
+        IngestReport report = ingester.ingest(tokens(5).iterator(), token -> { }, IndexCoordinates.of("token"), null);
+
+        assertEquals(4, report.getIndexed());
+        assertEquals(1, report.getFailed());
+        assertEquals("t3", report.getFailures().get(0).getId());
+        assertEquals(400, report.getFailures().get(0).getStatus());
+    }
+
+    @Test
+    public void testInterruptedIngestAccountsForEveryReadToken() throws Exception {
+        // 两个分块在途时阻塞，调用线程读满第三个分块后等待在途名额
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        when(operations.bulkIndex(anyList(), any(IndexCoordinates.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return Collections.emptyList();
+        });
+
+        AtomicReference<IngestReport> report = new AtomicReference<>();
+        Thread caller = new Thread(() -> report.set(ingester.ingest(tokens(50).iterator(), token -> { },
+                IndexCoordinates.of("token"), null)));
+        caller.start();
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        while (caller.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        caller.interrupt();
+        release.countDown();
+        caller.join(2000);
+
+        // 已提交的两个分块等到完成后计入成功，读取后未提交的分块计入失败
+        assertEquals(30, report.get().getTotal());
+        assertEquals(20, report.get().getIndexed());
+        assertEquals(10, report.get().getFailed());
+        assertEquals(2, report.get().getChunks());
+    }
+
+    @Test
+    public void testIngestsShareOneExecutor() {
+        when(operations.bulkIndex(anyList(), any(IndexCoordinates.class))).thenReturn(Collections.emptyList());
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 5; i++) {
+            ingester.ingest(tokens(25).iterator(), token -> { }, IndexCoordinates.of("token"),
+                    indexed -> threads.add(Thread.currentThread().getName()));
+        }
+        // 多次写入复用同一组工作线程，不会为每次调用创建新的线程池
+        assertTrue(threads.size() <= properties.getIngest().getMaxInFlight());
+        ingester.shutdown();
+    }
+
+    private static List<Token> tokens(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Token.builder().id("t" + i).name("Token " + i).symbol("T" + i).build())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.esautocomplete.metrics;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogTest {
+
+    @Test
+    public void testSamplesOnlyFastSuccessfulRequests() {
+        AutocompleteProperties.AccessLogSettings settings = new AutocompleteProperties.AccessLogSettings();
+        settings.setSampleRate(0);
+        settings.setSlowThreshold(Duration.ofMillis(100));
+        long fast = Duration.ofMillis(1).toNanos();
+        long slow = Duration.ofMillis(100).toNanos();
+
+        assertFalse(AccessLog.shouldLog(settings, fast, AccessLog.OK));
+        assertFalse(AccessLog.shouldLog(settings, fast, AccessLog.EMPTY));
+        assertFalse(AccessLog.shouldLog(settings, fast, AccessLog.NOT_MODIFIED));
+        assertTrue(AccessLog.shouldLog(settings, slow, AccessLog.OK));
+        assertTrue(AccessLog.shouldLog(settings, fast, AccessLog.ERROR));
+        assertTrue(AccessLog.shouldLog(settings, fast, AccessLog.TIMEOUT));
+
+        settings.setSampleRate(1);
+        assertTrue(AccessLog.shouldLog(settings, fast, AccessLog.OK));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.esautocomplete.metrics;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.TransportOptions;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InstrumentedTransportTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final SearchMetrics metrics = new SearchMetrics(registry);
+
+    private static final SearchResponse<Object> RESPONSE = SearchResponse.of(r -> r
+            .took(7)
+            .timedOut(false)
+            .shards(s -> s.total(1).successful(1).failed(0))
+            .hits(h -> h.hits(List.of())));
+
+    /**
+     * 同步请求返回固定响应或抛出指定异常，异步请求返回给定的future
+     */
+    private static ElasticsearchTransport stub(IOException failure, CompletableFuture<?> future) {
+        return new ElasticsearchTransport() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <RequestT, ResponseT, ErrorT> ResponseT performRequest(
+                    RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options)
+                    throws IOException {
+                if (failure != null) {
+                    throw failure;
+                }
+                return (ResponseT) RESPONSE;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(
+                    RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+                return (CompletableFuture<ResponseT>) future;
+            }
+
+            @Override
+            public JsonpMapper jsonpMapper() {
+                return new JacksonJsonpMapper();
+            }
+
+            @Override
+            public TransportOptions options() {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    public void testRecordsTookAndClientLatency() throws IOException {
+        InstrumentedTransport transport = new InstrumentedTransport(stub(null, null), metrics);
+
+        transport.performRequest(SearchRequest.of(s -> s.index("token")), SearchRequest._ENDPOINT, null);
+
+        Timer took = registry.get("autocomplete.es.took").tag("endpoint", "es/search").timer();
+        Timer latency = registry.get("autocomplete.es.latency").tag("endpoint", "es/search").timer();
+        assertEquals(1, took.count());
+        assertEquals(7, took.totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, latency.count());
+    }
+
+    @Test
+    public void testCountsFailuresByCause() {
+        InstrumentedTransport transport = new InstrumentedTransport(
+                stub(new ConnectException("Connection refused"), null), metrics);
+
+        assertThrows(IOException.class, () ->
+                transport.performRequest(SearchRequest.of(s -> s.index("token")), SearchRequest._ENDPOINT, null));
+        assertEquals(1, registry.counter("autocomplete.es.errors",
+                "endpoint", "es/search", "cause", SearchMetrics.CAUSE_CONNECTION).count());
+    }
+
+    @Test
+    public void testAsyncReturnsOriginalFutureSoCancelPropagates() {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        InstrumentedTransport transport = new InstrumentedTransport(stub(null, future), metrics);
+
+        CompletableFuture<?> returned = transport.performRequestAsync(
+                SearchRequest.of(s -> s.index("token")), SearchRequest._ENDPOINT, null);
+        assertSame(future, returned);
+
+        returned.cancel(true);
+        assertTrue(future.isCancelled());
+        assertTrue(registry.find("autocomplete.es.errors").counters().isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.esautocomplete.metrics;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SearchMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final SearchMetrics metrics = new SearchMetrics(registry);
+
+    private double empty(String operation, String cause) {
+        return registry.counter("autocomplete.empty", "operation", operation, "cause", cause).count();
+    }
+
+    @Test
+    public void testEmptyResultsAreLabeledByCause() {
+        metrics.blankQuery(SearchMetrics.SUGGEST);
+        metrics.fetched(SearchMetrics.SUGGEST, 0, 0);
+        metrics.fetched(SearchMetrics.SUGGEST, 10, 0);
+        metrics.fetched(SearchMetrics.SUGGEST, 10, 5);
+        metrics.failed(SearchMetrics.SUGGEST, new ConnectException("Connection refused"));
+
+        assertEquals(1, empty(SearchMetrics.SUGGEST, SearchMetrics.CAUSE_BLANK_QUERY));
+        assertEquals(1, empty(SearchMetrics.SUGGEST, SearchMetrics.CAUSE_NO_MATCH));
+        assertEquals(1, empty(SearchMetrics.SUGGEST, SearchMetrics.CAUSE_FILTERED));
+        assertEquals(1, empty(SearchMetrics.SUGGEST, SearchMetrics.CAUSE_ERROR));
+        assertEquals(1, registry.counter("autocomplete.errors",
+                "operation", SearchMetrics.SUGGEST, "cause", SearchMetrics.CAUSE_CONNECTION).count());
+
+        assertEquals(3, registry.summary("autocomplete.hits.fetched", "operation", SearchMetrics.SUGGEST).count());
+        assertEquals(20, registry.summary("autocomplete.hits.fetched", "operation", SearchMetrics.SUGGEST)
+                .totalAmount());
+        assertEquals(5, registry.summary("autocomplete.hits.returned", "operation", SearchMetrics.SUGGEST)
+                .totalAmount());
+    }
+
+    @Test
+    public void testCauseFollowsCauseChain() {
+        ElasticsearchException rejected = new ElasticsearchException("search",
+                ErrorResponse.of(e -> e.status(429).error(c -> c.type("es_rejected_execution_exception"))));
+        ElasticsearchException badRequest = new ElasticsearchException("search",
+                ErrorResponse.of(e -> e.status(400).error(c -> c.type("parsing_exception"))));
+
+        assertEquals(SearchMetrics.CAUSE_TIMEOUT,
+                SearchMetrics.cause(new CompletionException(new SocketTimeoutException("30,000 milliseconds"))));
+        assertEquals(SearchMetrics.CAUSE_CONNECTION,
+                SearchMetrics.cause(new DataAccessResourceFailureException("Connection refused")));
+        assertEquals(SearchMetrics.CAUSE_REJECTED, SearchMetrics.cause(new RuntimeException(rejected)));
+        assertEquals(SearchMetrics.CAUSE_ES_ERROR, SearchMetrics.cause(badRequest));
+        assertEquals(SearchMetrics.CAUSE_IO, SearchMetrics.cause(new IOException("broken pipe")));
+        assertEquals(SearchMetrics.CAUSE_INTERNAL, SearchMetrics.cause(new IllegalStateException()));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.esautocomplete.prewarm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.PrewarmReport;
+import com.example.esautocomplete.index.TokenIndexManager;
+import com.example.esautocomplete.metrics.SearchMetrics;
+import com.example.esautocomplete.querylog.QueryLogCollector;
+import com.example.esautocomplete.service.TokenService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StartupPrewarmerTest {
+
+    @TempDir
+    Path dir;
+
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+
+    private final TokenService tokenService = mock(TokenService.class);
+
+    private final TokenIndexManager tokenIndexManager = mock(TokenIndexManager.class);
+
+    private final QueryLogCollector queryLog = new QueryLogCollector(properties, new SimpleMeterRegistry());
+
+    private final StartupPrewarmer prewarmer = new StartupPrewarmer(tokenService, tokenIndexManager, queryLog,
+            properties);
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() {
+        file = dir.resolve("prewarm.txt");
+        properties.getPrewarm().setFile(file.toString());
+    }
+
+    @Test
+    public void testReplaysConfiguredAndFileEntries() throws IOException {
+        when(tokenIndexManager.warmCompletionFields()).thenReturn(3);
+        properties.getPrewarm().setPrefixes(List.of("bi", " bi ", "eth"));
+        properties.getPrewarm().setCorrections(List.of("bitcon"));
+        Files.write(file, List.of("# 注释", "", "sol", "correct\tetherum", "suggest\teth", "unknown\tx"),
+                StandardCharsets.UTF_8);
+
+        PrewarmReport report = prewarmer.prewarm();
+
+        assertTrue(report.isIndexWarmed());
+        assertEquals(3, report.getWarmedShards());
+        assertEquals(5, report.getEntries());
+        assertEquals(5, report.getWarmed());
+        assertEquals(0, report.getSkipped());
+        verify(tokenService).getSuggestions("bi", 5);
+        verify(tokenService).getSuggestions("eth", 5);
+        verify(tokenService).getSuggestions("sol", 5);
+        verify(tokenService).getCorrections("bitcon", 5);
+        verify(tokenService).getCorrections("etherum", 5);
+        assertEquals(report, prewarmer.lastReport());
+    }
+
+    @Test
+    public void testStopsAtTimeBudget() throws Exception {
+        when(tokenIndexManager.warmCompletionFields()).thenThrow(new IOException("connection refused"));
+        properties.getPrewarm().setPrefixes(List.of("a", "b", "c", "d"));
+        properties.getPrewarm().setConcurrency(1);
+        properties.getPrewarm().setTimeBudget(Duration.ofMillis(200));
+        CountDownLatch never = new CountDownLatch(1);
+        when(tokenService.getSuggestions(anyString(), anyInt())).thenAnswer(invocation -> {
+            never.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        long start = System.nanoTime();
+        PrewarmReport report = prewarmer.prewarm();
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertFalse(report.isIndexWarmed());
+        assertEquals(0, report.getWarmed());
+        assertEquals(4, report.getSkipped());
+    }
+
+    @Test
+    public void testRecordsHotEntriesOnShutdown() throws IOException {
+        Files.write(file, List.of("correct\tsolan", "bit"), StandardCharsets.UTF_8);
+        queryLog.record(SearchMetrics.SUGGEST, "Bit", 3);
+        queryLog.record(SearchMetrics.SUGGEST, "bit", 3);
+        queryLog.record(SearchMetrics.SUGGEST, "eth", 3);
+        queryLog.recordAcceptedCorrection("etherum", "Ethereum");
+
+        prewarmer.recordHotEntries();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(List.of("suggest\tbit", "suggest\teth", "correct\tetherum", "correct\tsolan"),
+                lines.subList(1, lines.size()));
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals(new StartupPrewarmer.Entry("suggest", "bit"), StartupPrewarmer.parse("bit"));
+        assertEquals(new StartupPrewarmer.Entry("correct", "etherum"), StartupPrewarmer.parse("CORRECT\tetherum "));
+        assertNull(StartupPrewarmer.parse("# suggest\tbit"));
+        assertNull(StartupPrewarmer.parse("phrase\tbit coin"));
+        assertNull(StartupPrewarmer.parse("suggest\t "));
+    }
+}
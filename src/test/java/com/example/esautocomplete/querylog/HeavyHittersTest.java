@@ -0,0 +1,68 @@
+package com.example.esautocomplete.querylog;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeavyHittersTest {
+
+    @Test
+    public void testSketchNeverUnderestimates() {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("q" + (i % 200), 1);
+        }
+        // 宽度远小于不同key的数量，冲突只会让估计值偏大
+        for (int i = 0; i < 200; i++) {
+            assertTrue(sketch.estimate("q" + i) >= 5);
+        }
+        assertEquals(0, new CountMinSketch(4, 64).estimate("q0"));
+    }
+
+    @Test
+    public void testKeepsHeavyHittersAmongLongTail() {
+        HeavyHitters hitters = new HeavyHitters(3, 4, 1024);
+        for (int i = 0; i < 2000; i++) {
+            hitters.add("tail" + i);
+            if (i % 4 == 0) {
+                hitters.add("btc");
+            }
+            if (i % 8 == 0) {
+                hitters.add("eth");
+            }
+            if (i % 16 == 0) {
+                hitters.add("sol");
+            }
+        }
+
+        List<Map.Entry<String, Long>> top = hitters.top(3);
+        assertEquals(List.of("btc", "eth", "sol"), top.stream().map(Map.Entry::getKey).toList());
+        assertTrue(top.get(0).getValue() >= 500);
+        assertEquals(2000 + 500 + 250 + 125, hitters.total());
+        assertEquals(2, hitters.top(2).size());
+    }
+
+    @Test
+    public void testHalveDecaysAndDropsZeroCounts() {
+        HeavyHitters hitters = new HeavyHitters(10, 4, 1024);
+        for (int i = 0; i < 8; i++) {
+            hitters.add("btc");
+        }
+        hitters.add("eth");
+
+        hitters.halve();
+        List<Map.Entry<String, Long>> top = hitters.top(10);
+        assertEquals(1, top.size());
+        assertEquals(Map.entry("btc", 4L), top.get(0));
+
+        // 衰减后新出现的查询可以追上
+        for (int i = 0; i < 5; i++) {
+            hitters.add("sol");
+        }
+        assertEquals("sol", hitters.top(1).get(0).getKey());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.esautocomplete.querylog;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.CorrectionCount;
+import com.example.esautocomplete.dto.QueryCount;
+import com.example.esautocomplete.dto.QueryLogReport;
+import com.example.esautocomplete.metrics.SearchMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryLogCollectorTest {
+
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+
+    /**
+     * 不启动统计线程，由测试调用 drain/report
+     */
+    private QueryLogCollector collector() {
+        return new QueryLogCollector(properties, registry, clock::get);
+    }
+
+    @Test
+    public void testRingBufferDeliversEveryEventFromConcurrentProducers() throws Exception {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(1 << 16);
+        int producers = 4;
+        int perProducer = 10_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    assertTrue(buffer.offer(base + i));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        boolean[] seen = new boolean[producers * perProducer];
+        int received = 0;
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (received < seen.length && System.nanoTime() < deadline) {
+            Integer value = buffer.poll();
+            if (value != null) {
+                assertFalse(seen[value]);
+                seen[value] = true;
+                received++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(seen.length, received);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testRingBufferRejectsWhenFull() {
+        MpscRingBuffer<String> buffer = new MpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer("e" + i));
+        }
+        assertFalse(buffer.offer("e4"));
+        assertEquals("e0", buffer.poll());
+        assertTrue(buffer.offer("e4"));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void testReportsPrefixesZeroResultsAndAcceptedCorrections() {
+        QueryLogCollector collector = collector();
+        for (int i = 0; i < 3; i++) {
+            collector.record(SearchMetrics.SUGGEST, " Bit ", 5);
+        }
+        collector.record(SearchMetrics.SUGGEST_OR_CORRECT, "eth", 2);
+        collector.record(SearchMetrics.SUGGEST, "etherum", 0);
+        collector.record(SearchMetrics.CORRECT, "etherum", 0);
+        // 有结果的纠错请求不计入任何统计
+        collector.record(SearchMetrics.CORRECT, "bitcon", 3);
+        collector.recordAcceptedCorrection("Etherum", "Ethereum");
+        collector.recordAcceptedCorrection("etherum ", "Ethereum");
+
+        QueryLogReport report = collector.report(10);
+        assertEquals(List.of(new QueryCount("bit", 3), new QueryCount("eth", 1), new QueryCount("etherum", 1)),
+                report.getTopPrefixes());
+        assertEquals(List.of(new QueryCount("etherum", 2)), report.getZeroResults());
+        assertEquals(List.of(new CorrectionCount("etherum", "Ethereum", 2)), report.getAcceptedCorrections());
+        assertEquals(8, report.getRecorded());
+        assertEquals(8, registry.get("autocomplete.querylog.recorded").functionCounter().count());
+    }
+
+    @Test
+    public void testDropsEventsWhenDrainFallsBehind() {
+        properties.getQueryLog().setBufferSize(4);
+        QueryLogCollector collector = collector();
+        for (int i = 0; i < 6; i++) {
+            collector.record(SearchMetrics.SUGGEST, "q" + i, 1);
+        }
+
+        QueryLogReport report = collector.report(10);
+        assertEquals(4, report.getRecorded());
+        assertEquals(2, report.getDropped());
+        assertEquals(2, registry.get("autocomplete.querylog.dropped").functionCounter().count());
+    }
+
+    @Test
+    public void testCountsDecayEveryHalfLife() {
+        properties.getQueryLog().setHalfLife(Duration.ofMinutes(10));
+        QueryLogCollector collector = collector();
+        for (int i = 0; i < 4; i++) {
+            collector.record(SearchMetrics.SUGGEST, "btc", 1);
+        }
+        collector.drain();
+
+        clock.addAndGet(Duration.ofMinutes(10).toMillis());
+        assertEquals(List.of(new QueryCount("btc", 2)), collector.report(10).getTopPrefixes());
+    }
+
+    @Test
+    public void testDisabledCollectorIgnoresEvents() {
+        properties.getQueryLog().setEnabled(false);
+        QueryLogCollector collector = collector();
+        collector.record(SearchMetrics.SUGGEST, "btc", 0);
+        collector.recordAcceptedCorrection("btcc", "BTC");
+
+        QueryLogReport report = collector.report(10);
+        assertFalse(report.isEnabled());
+        assertEquals(0, report.getRecorded());
+        assertTrue(report.getTopPrefixes().isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.esautocomplete.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private CircuitBreaker breaker() {
+        AutocompleteProperties.CircuitBreakerSettings settings = new AutocompleteProperties.CircuitBreakerSettings();
+        settings.setWindow(4);
+        settings.setMinimumCalls(4);
+        settings.setFailureRateThreshold(0.5);
+        settings.setOpenDuration(Duration.ofSeconds(10));
+        settings.setHalfOpenCalls(2);
+        return new CircuitBreaker(settings, clock::get);
+    }
+
+    private static void call(CircuitBreaker breaker, boolean success) {
+        assertTrue(breaker.tryAcquire());
+        if (success) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    public void testOpensWhenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = breaker();
+        call(breaker, false);
+        call(breaker, true);
+        call(breaker, false);
+        // 调用数不足minimum-calls时不熔断
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, breaker.rejectedCount());
+    }
+
+    @Test
+    public void testOldOutcomesSlideOutOfWindow() {
+        CircuitBreaker breaker = breaker();
+        call(breaker, false);
+        call(breaker, true);
+        call(breaker, true);
+        call(breaker, true);
+        // 最早的失败被挤出窗口，窗口内只剩一次失败
+        call(breaker, true);
+        call(breaker, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void testHalfOpenClosesAfterSuccessfulTrials() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, false);
+        }
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        // 半开状态只放行half-open-calls个试探调用
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        // 恢复后窗口清空，之前的失败不再计入
+        call(breaker, false);
+        call(breaker, false);
+        call(breaker, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void testHalfOpenFailureReopens() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, false);
+        }
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        call(breaker, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(2, breaker.openedCount());
+    }
+
+    @Test
+    public void testReleasedTrialFreesPermit() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            call(breaker, false);
+        }
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // 被取消的试探调用归还名额
+        breaker.release();
+        assertTrue(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.esautocomplete.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.metrics.SearchMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResilientSearchTest {
+
+    private final Scheduler scheduler = Schedulers.newBoundedElastic(8, 100, "resilient-search-test");
+
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    private ResilientSearch resilientSearch() {
+        return new ResilientSearch(properties, scheduler, registry);
+    }
+
+    private static String sleep(long millis, String value) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+        return value;
+    }
+
+    @Test
+    public void testDeadlineInterruptsSlowSearch() throws InterruptedException {
+        properties.getResilience().getDeadlines().setSuggest(Duration.ofMillis(50));
+        ResilientSearch resilientSearch = resilientSearch();
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> resilientSearch.call(SearchMetrics.SUGGEST, () -> {
+                    try {
+                        Thread.sleep(5_000);
+                    } catch (InterruptedException ex) {
+                        interrupted.countDown();
+                    }
+                    return "late";
+                }));
+
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(SearchMetrics.CAUSE_TIMEOUT, SearchMetrics.cause(e));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        // 超时后中断查询线程，不再继续占用连接
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+        assertEquals(1, registry.get("autocomplete.resilience.deadline.exceeded")
+                .tag("operation", SearchMetrics.SUGGEST).counter().count());
+    }
+
+    @Test
+    public void testHedgeAnswersWhenFirstAttemptStalls() {
+        AutocompleteProperties.Hedge hedge = properties.getResilience().getHedge();
+        hedge.setEnabled(true);
+        hedge.setMinSamples(5);
+        hedge.setMinDelay(Duration.ofMillis(20));
+        properties.getResilience().getDeadlines().setSuggest(Duration.ofSeconds(2));
+        ResilientSearch resilientSearch = resilientSearch();
+        for (int i = 0; i < 5; i++) {
+            assertEquals("fast", resilientSearch.call(SearchMetrics.SUGGEST, () -> "fast"));
+        }
+
+        // 第一个请求落在慢节点上，p95延迟之后发出的对冲请求先返回
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        String value = resilientSearch.call(SearchMetrics.SUGGEST,
+                () -> attempts.incrementAndGet() == 1 ? sleep(1_500, "slow") : "hedged");
+
+        assertEquals("hedged", value);
+        assertEquals(2, attempts.get());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1_000));
+        assertEquals(1, registry.get("autocomplete.resilience.hedges").counter().count());
+        assertEquals(1, registry.get("autocomplete.resilience.hedge.wins").counter().count());
+    }
+
+    @Test
+    public void testBreakerOpensAndShortCircuits() {
+        AutocompleteProperties.CircuitBreakerSettings settings = properties.getResilience().getCircuitBreaker();
+        settings.setWindow(4);
+        settings.setMinimumCalls(4);
+        ResilientSearch resilientSearch = resilientSearch();
+        IllegalStateException failure = new IllegalStateException("es unavailable");
+
+        for (int i = 0; i < 4; i++) {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> resilientSearch.call(SearchMetrics.CORRECT, () -> {
+                        throw failure;
+                    }));
+            assertEquals(failure, e);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, resilientSearch.circuitBreaker().state());
+
+        AtomicInteger calls = new AtomicInteger();
+        CircuitOpenException e = assertThrows(CircuitOpenException.class,
+                () -> resilientSearch.call(SearchMetrics.CORRECT, calls::incrementAndGet));
+        assertEquals(0, calls.get());
+        assertEquals(SearchMetrics.CAUSE_CIRCUIT_OPEN, SearchMetrics.cause(e));
+        assertEquals(1, registry.get("autocomplete.resilience.breaker.rejected").functionCounter().count());
+        assertEquals(1, registry.get("autocomplete.resilience.breaker.state").gauge().value());
+    }
+
+    @Test
+    public void testReactiveDeadline() {
+        properties.getResilience().getDeadlines().setCorrect(Duration.ofMillis(50));
+        ResilientSearch resilientSearch = resilientSearch();
+
+        Mono<String> search = resilientSearch.callReactive(SearchMetrics.CORRECT, Mono.never());
+        CompletionException e = assertThrows(CompletionException.class, () -> search.block(Duration.ofSeconds(2)));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+}
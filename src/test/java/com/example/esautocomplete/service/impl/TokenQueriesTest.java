@@ -0,0 +1,221 @@
+package com.example.esautocomplete.service.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.elasticsearch.client.elc.EntityAsMap;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.model.Token;
+
+import co.elastic.clients.elasticsearch.core.msearch.MultisearchBody;
+import co.elastic.clients.elasticsearch.core.search.CompletionContext;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggest;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenQueriesTest {
+
+    private static EntityAsMap source(String name, String symbol) {
+        EntityAsMap map = new EntityAsMap();
+        map.put("name", name);
+        map.put("symbol", symbol);
+        return map;
+    }
+
+    private static CompletionSuggestOption<EntityAsMap> option(String text, double score, EntityAsMap source) {
+        return CompletionSuggestOption.of(o -> o.text(text).score(score).source(source));
+    }
+
+    private static Suggestion<EntityAsMap> completion(List<CompletionSuggestOption<EntityAsMap>> options) {
+        CompletionSuggest<EntityAsMap> suggest =
+                CompletionSuggest.of(c -> c.text("bit").offset(0).length(3).options(options));
+        return Suggestion.of(s -> s.completion(suggest));
+    }
+
+    @Test
+    public void testRawCompletionSuggestionsMergedByScore() {
+        // name建议取源文档中的名称，symbol建议取符号，按得分合并去重
+        Map<String, List<Suggestion<EntityAsMap>>> suggest = Map.of(
+                TokenQueries.NAME_SUGGESTER, List.of(completion(List.of(
+                        option("bitcoin", 1.0, source("Bitcoin", "BTC")),
+                        option("bitcoin cash", 3.0, source("Bitcoin Cash", "BCH"))))),
+                TokenQueries.SYMBOL_SUGGESTER, List.of(completion(List.of(
+                        option("btc", 2.0, source("Bitcoin", "BTC"))))));
+
+        assertEquals(List.of("Bitcoin Cash", "BTC", "Bitcoin"), TokenQueries.extractCompletionSuggestions(suggest, 5));
+        assertEquals(List.of("Bitcoin Cash"), TokenQueries.extractCompletionSuggestions(suggest, 1));
+    }
+
+    @Test
+    public void testRawHitsForWildcardAndCorrection() {
+        List<Hit<EntityAsMap>> hits = List.of(
+                Hit.of(h -> h.index("token").id("1").source(source("Bitcoin", "BTC"))),
+                Hit.of(h -> h.index("token").id("2").source(source("Binance Coin", "BNB"))));
+
+        assertEquals(List.of("Bitcoin", "Binance Coin"),
+                TokenQueries.wildcardSuggestions(TokenQueries.rawContents(hits), "bi", 5));
+        assertEquals(List.of("Bitcoin", "BTC", "Binance Coin"),
+                TokenQueries.namesAndSymbols(TokenQueries.rawContents(hits), 3));
+    }
+
+    @Test
+    public void testMultisearchBodyKeepsQueryShape() {
+        NativeQuery completion = TokenQueries.completionSuggestQuery("bit", 5, new AutocompleteProperties.Suggest());
+        MultisearchBody completionBody = TokenQueries.toMultisearchBody(completion);
+        assertEquals(0, completionBody.size());
+        assertNotNull(completionBody.suggest());
+        assertEquals(List.of("name", "symbol"), completionBody.source().filter().includes());
+
+        MultisearchBody correctionBody = TokenQueries.toMultisearchBody(TokenQueries.correctionQuery("bitcon"));
+        assertNotNull(correctionBody.query());
+        assertNull(correctionBody.size());
+    }
+
+    @Test
+    public void testSuggestAndCorrectInOneSearch() {
+        // completion建议和纠错查询在同一个请求体中
+        NativeQuery query = TokenQueries.suggestAndCorrectQuery("bitcon", 5, new AutocompleteProperties.Suggest());
+        MultisearchBody body = TokenQueries.toMultisearchBody(query);
+        assertNotNull(body.suggest());
+        assertNotNull(body.query());
+        assertEquals(10, body.size());
+    }
+
+    @Test
+    public void testInfixSuggestionsKeepWordStartAndInfixMatches() {
+        List<Hit<EntityAsMap>> hits = List.of(
+                Hit.of(h -> h.index("token").id("1").source(source("Binance Coin", "BNB"))),
+                Hit.of(h -> h.index("token").id("2").source(source("USD Coin", "USDC"))),
+                Hit.of(h -> h.index("token").id("3").source(source("Bitcoin", "BTC"))),
+                Hit.of(h -> h.index("token").id("4").source(source("Curve DAO Token", "CRV"))));
+
+        // 词首、单词中间的中缀，符号中的 "usdc" 同样命中；三元组的假阳性（CRV）被排除
+        assertEquals(List.of("Binance Coin", "USD Coin", "Bitcoin"),
+                TokenQueries.infixSuggestions(TokenQueries.rawContents(hits), "coin", 5));
+        // 多个单词各自是某个单词的前缀即命中，不要求连续
+        assertEquals(List.of("Curve DAO Token"),
+                TokenQueries.infixSuggestions(TokenQueries.rawContents(hits), "curve tok", 5));
+        assertEquals(List.of("USD Coin", "USDC"),
+                TokenQueries.infixSuggestions(TokenQueries.rawContents(hits), "usd", 5));
+    }
+
+    @Test
+    public void testInfixQueryUsesSubfieldsAndScoreThenWeight() {
+        MultisearchBody body = TokenQueries.toMultisearchBody(TokenQueries.infixSuggestQuery("coin", 5));
+        assertEquals(4, body.query().bool().should().size());
+        assertEquals("name.prefix",
+                body.query().bool().should().get(0).constantScore().filter().match().field());
+        assertEquals(2, body.sort().size());
+        assertNotNull(body.sort().get(0).score());
+        assertEquals("weight", body.sort().get(1).field().field());
+    }
+
+    @Test
+    public void testChainScopedCompletionUsesContexts() {
+        NativeQuery query = TokenQueries.completionSuggestQuery("usd", 5, new AutocompleteProperties.Suggest(),
+                List.of("polygon", "ethereum"));
+        MultisearchBody body = TokenQueries.toMultisearchBody(query);
+
+        // 链在suggester的chain上下文内过滤，第一个链（用户当前所在的链）加权
+        List<CompletionContext> contexts = body.suggest().suggesters().get(TokenQueries.NAME_SUGGESTER)
+                .completion().contexts().get("chain");
+        assertEquals(2, contexts.size());
+        assertEquals("polygon", contexts.get(0).context().category());
+        assertEquals(2.0, contexts.get(0).boost());
+        assertEquals(1.0, contexts.get(1).boost());
+        assertNotNull(body.suggest().suggesters().get(TokenQueries.SYMBOL_SUGGESTER).completion().contexts());
+
+        // 不指定链时不带上下文
+        MultisearchBody unscoped = TokenQueries.toMultisearchBody(
+                TokenQueries.completionSuggestQuery("usd", 5, new AutocompleteProperties.Suggest()));
+        assertTrue(unscoped.suggest().suggesters().get(TokenQueries.NAME_SUGGESTER).completion().contexts().isEmpty());
+    }
+
+    @Test
+    public void testChainScopedWildcardFiltersOnChain() {
+        MultisearchBody body = TokenQueries.toMultisearchBody(
+                TokenQueries.wildcardSuggestQuery("usd", 5, List.of("solana")));
+        assertEquals(2, body.query().bool().must().get(0).bool().should().size());
+        assertEquals("chain", body.query().bool().filter().get(0).terms().field());
+        assertEquals("solana",
+                body.query().bool().filter().get(0).terms().terms().value().get(0).stringValue());
+    }
+
+    @Test
+    public void testAddressQueryUsesIndexPrefixesSubfield() {
+        MultisearchBody body = TokenQueries.toMultisearchBody(
+                TokenQueries.addressSuggestQuery("0xa0b8", 5, List.of("ethereum"), true));
+        assertEquals("address.prefix", body.query().bool().must().get(0).prefix().field());
+        assertEquals("0xa0b8", body.query().bool().must().get(0).prefix().value());
+        assertEquals("chain", body.query().bool().filter().get(0).terms().field());
+
+        // 索引还没有前缀子字段时在address字段本身上查询
+        MultisearchBody legacy = TokenQueries.toMultisearchBody(
+                TokenQueries.addressSuggestQuery("0xa0b8", 5, List.of(), false));
+        assertEquals("address", legacy.query().prefix().field());
+    }
+
+    @Test
+    public void testAddressSuggestionsPreferNames() {
+        List<Token> tokens = List.of(
+                Token.builder().name("USD Coin").symbol("USDC").build(),
+                Token.builder().symbol("USDC.e").build(),
+                Token.builder().name("USD Coin").symbol("USDC").build(),
+                Token.builder().build());
+        assertEquals(List.of("USD Coin", "USDC.e"), TokenQueries.addressSuggestions(tokens, 5));
+    }
+
+    @Test
+    public void testDuplicateHitsDoNotMakeResultComplete() {
+        // 同一Token部署在多条链上，去重后只剩两条，但命中数达到请求数，仍可能有未取回的匹配
+        Token usdc = Token.builder().name("USD Coin").symbol("USDC").build();
+        List<Token> tokens = Collections.nCopies(TokenQueries.suggestHits(5), usdc);
+        List<String> suggestions = TokenQueries.wildcardSuggestions(tokens, "usd", 5);
+        assertEquals(List.of("USD Coin", "USDC"), suggestions);
+        assertFalse(TokenQueries.hitResult(suggestions, tokens.size(), TokenQueries.suggestHits(5), 5).complete());
+        assertTrue(TokenQueries.hitResult(suggestions, 3, TokenQueries.suggestHits(5), 5).complete());
+
+        // 名称与符号相同的选项合并后少于size，但每个建议都返回了size个选项
+        EntityAsMap xrp = source("XRP", "XRP");
+        Map<String, List<Suggestion<EntityAsMap>>> suggest = Map.of(
+                TokenQueries.NAME_SUGGESTER, List.of(completion(List.of(option("xrp", 5, xrp), option("xrp", 4, xrp)))),
+                TokenQueries.SYMBOL_SUGGESTER, List.of(completion(List.of(option("xrp", 5, xrp)))));
+        List<String> merged = TokenQueries.extractCompletionSuggestions(suggest, 2);
+        assertEquals(List.of("XRP"), merged);
+        assertFalse(TokenQueries.completionResult(merged, suggest, 2).complete());
+        assertTrue(TokenQueries.completionResult(merged, suggest, 3).complete());
+    }
+
+    @Test
+    public void testWildcardNarrowingMatchesWildcardSuggestions() {
+        AutocompleteProperties properties = new AutocompleteProperties();
+        properties.getSuggest().setMode(AutocompleteProperties.SuggestMode.WILDCARD);
+        SuggestionCache cache = new SuggestionCache(properties);
+        List<Token> tokens = List.of(
+                Token.builder().name("Bitcoin").symbol("BTC").build(),
+                Token.builder().name("Wrapped Bitcoin").symbol("WBTC").build(),
+                Token.builder().name("Coinbase Wrapped BTC").symbol("cbBTC").build(),
+                Token.builder().name("Litecoin").symbol("LTC").build(),
+                Token.builder().name("Compound").symbol("COMP").build());
+
+        // 词中间的命中（Litecoin、WBTC）与直接查询ES一样保留
+        String[][] cases = {{"co", "coin"}, {"b", "btc"}, {"b", "bitc"}, {"c", "cb"}};
+        for (String[] pair : cases) {
+            List<String> complete = TokenQueries.wildcardSuggestions(tokens, pair[0], 20);
+            List<String> expected = TokenQueries.wildcardSuggestions(tokens, pair[1], 20);
+            assertEquals(expected, cache.narrow(pair[0], complete, pair[1]), pair[0] + " -> " + pair[1]);
+        }
+    }
+}
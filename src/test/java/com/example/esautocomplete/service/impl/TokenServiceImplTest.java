@@ -0,0 +1,203 @@
+package com.example.esautocomplete.service.impl;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.esautocomplete.cache.QueryCoalescer;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.SuggestResponse;
+import com.example.esautocomplete.dto.TaggedSuggestion;
+import com.example.esautocomplete.engine.SymSpellCorrectionEngine;
+import com.example.esautocomplete.engine.TriePrefixEngine;
+import com.example.esautocomplete.index.TokenIndexManager;
+import com.example.esautocomplete.metrics.SearchMetrics;
+import com.example.esautocomplete.model.Token;
+import com.example.esautocomplete.resilience.ResilientSearch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TokenServiceImplTest {
+
+    private static List<String> describe(List<TaggedSuggestion> tagged) {
+        return tagged.stream().map(t -> t.getOrigin() + ":" + t.getText()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testCorrectionsOnlyFillRemainingSlots() {
+        List<TaggedSuggestion> tagged = TokenServiceImpl.tagSuggestions(
+                List.of("Bitcoin"), List.of("Bitcoin", "Bitcoin Cash", "BCH"), 3);
+        assertEquals(List.of("suggest:Bitcoin", "correct:Bitcoin Cash", "correct:BCH"), describe(tagged));
+    }
+
+    @Test
+    public void testFullSuggestionsSkipCorrections() {
+        List<TaggedSuggestion> tagged = TokenServiceImpl.tagSuggestions(
+                List.of("Bitcoin", "BTC"), List.of("Bitcoin Cash"), 2);
+        assertEquals(List.of("suggest:Bitcoin", "suggest:BTC"), describe(tagged));
+    }
+
+    @Test
+    public void testMissReturnsCorrectionsOnly() {
+        List<TaggedSuggestion> tagged = TokenServiceImpl.tagSuggestions(List.of(), List.of("Bitcoin", "BTC"), 5);
+        assertEquals(List.of("correct:Bitcoin", "correct:BTC"), describe(tagged));
+    }
+
+    @Test
+    public void testPrepareTokenCarriesWeightIntoCompletions() {
+        Token token = Token.builder().name("Bitcoin").symbol("BTC").weight(-5).build();
+        new TokenServiceImpl().prepareToken(token);
+        assertEquals(0, token.getWeight());
+        assertEquals(0, token.getNameSuggest().getWeight());
+
+        Token weighted = Token.builder().name("Bitcoin").symbol("BTC").weight(1200).build();
+        new TokenServiceImpl().prepareToken(weighted);
+        assertEquals(1200, weighted.getNameSuggest().getWeight());
+        assertEquals(1200, weighted.getSymbolSuggest().getWeight());
+
+        Token unweighted = Token.builder().name("Bitcoin").symbol("BTC").build();
+        new TokenServiceImpl().prepareToken(unweighted);
+        assertNull(unweighted.getNameSuggest().getWeight());
+    }
+
+    /**
+     * ES不可用、本地引擎关闭但降级快照已加载的服务
+     */
+    private static TokenServiceImpl unavailableEsService(AutocompleteProperties properties, SimpleMeterRegistry registry) {
+        ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+        when(operations.search(any(Query.class), eq(Token.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        properties.getLocalEngine().setEnabled(false);
+        List<Token> snapshot = List.of(Token.builder().name("Bitcoin").symbol("BTC").build(),
+                Token.builder().name("Binance Coin").symbol("BNB").build());
+        TriePrefixEngine prefixEngine = new TriePrefixEngine();
+        prefixEngine.rebuild(snapshot);
+        SymSpellCorrectionEngine correctionEngine = new SymSpellCorrectionEngine();
+        ReflectionTestUtils.setField(correctionEngine, "properties", properties);
+        correctionEngine.rebuild(snapshot);
+
+        TokenServiceImpl service = new TokenServiceImpl();
+        ReflectionTestUtils.setField(service, "elasticsearchOperations", operations);
+        ReflectionTestUtils.setField(service, "prefixEngine", prefixEngine);
+        ReflectionTestUtils.setField(service, "correctionEngine", correctionEngine);
+        ReflectionTestUtils.setField(service, "properties", properties);
+        ReflectionTestUtils.setField(service, "suggestionCache", new SuggestionCache(properties));
+        ReflectionTestUtils.setField(service, "queryCoalescer", new QueryCoalescer(properties, registry));
+        ReflectionTestUtils.setField(service, "searchMetrics", new SearchMetrics(registry));
+        ReflectionTestUtils.setField(service, "resilientSearch",
+                new ResilientSearch(properties, Schedulers.boundedElastic(), registry));
+        return service;
+    }
+
+    @Test
+    public void testEsFailureAnswersFromDegradedSnapshot() {
+        AutocompleteProperties properties = new AutocompleteProperties();
+        properties.getCorrection().setEngine(AutocompleteProperties.CorrectionEngineType.ELASTICSEARCH);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenServiceImpl service = unavailableEsService(properties, registry);
+
+        SuggestResponse suggestions = service.getSuggestionsAsync("bi", 5).block();
+        assertTrue(suggestions.isDegraded());
+        assertEquals(List.of("Binance Coin", "Bitcoin"), suggestions.getSuggestions().stream().sorted().toList());
+
+        SuggestResponse corrections = service.getCorrectionsAsync("bitcoim", 5).block();
+        assertTrue(corrections.isDegraded());
+        assertEquals("Bitcoin", corrections.getSuggestions().get(0));
+        assertEquals(1, registry.get("autocomplete.degraded").tag("operation", SearchMetrics.SUGGEST)
+                .tag("cause", SearchMetrics.CAUSE_CONNECTION).counter().count());
+    }
+
+    @Test
+    public void testEsFailureWithoutFallbackReturnsEmpty() {
+        AutocompleteProperties properties = new AutocompleteProperties();
+        properties.getResilience().setDegradedFallback(false);
+        TokenServiceImpl service = unavailableEsService(properties, new SimpleMeterRegistry());
+
+        SuggestResponse suggestions = service.getSuggestionsAsync("bi", 5).block();
+        assertFalse(suggestions.isDegraded());
+        assertTrue(suggestions.getSuggestions().isEmpty());
+    }
+
+    @Test
+    public void testChainScopedSuggestionsSkipLocalEngineAndDegradedSnapshot() {
+        AutocompleteProperties properties = new AutocompleteProperties();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenServiceImpl service = unavailableEsService(properties, registry);
+        ReflectionTestUtils.setField(service, "tokenIndexManager", mock(TokenIndexManager.class));
+        properties.getLocalEngine().setEnabled(true);
+
+        // 本地引擎不区分链，不能回答按链过滤的查询，ES不可用时也不用快照降级
+        SuggestResponse scoped = service.getSuggestionsAsync("bi", 5, List.of(" Ethereum ")).block();
+        assertFalse(scoped.isDegraded());
+        assertTrue(scoped.getSuggestions().isEmpty());
+
+        // 不指定链时仍由本地引擎回答
+        assertEquals(2, service.getSuggestionsAsync("bi", 5, null).block().getSuggestions().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testQueryIsNormalizedOnceForEsAndCache() {
+        AutocompleteProperties properties = new AutocompleteProperties();
+        properties.getSuggest().setMode(AutocompleteProperties.SuggestMode.WILDCARD);
+        TokenServiceImpl service = unavailableEsService(properties, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "tokenIndexManager", mock(TokenIndexManager.class));
+        ElasticsearchOperations operations =
+                (ElasticsearchOperations) ReflectionTestUtils.getField(service, "elasticsearchOperations");
+        SearchHits<Token> hits = mock(SearchHits.class);
+        when(hits.getSearchHits()).thenReturn(List.of());
+        doReturn(hits).when(operations).search(any(Query.class), eq(Token.class));
+
+        assertTrue(service.getSuggestions(" BTC ", 5).isEmpty());
+        assertTrue(service.getSuggestions("btc", 5).isEmpty());
+
+        // 只差首尾空白和大小写的输入发给ES的是同一个字符串，第二次由同一个缓存条目回答
+        ArgumentCaptor<Query> sent = ArgumentCaptor.forClass(Query.class);
+        verify(operations).search(sent.capture(), eq(Token.class));
+        NativeQuery query = (NativeQuery) sent.getValue();
+        assertEquals("btc*", query.getQuery().bool().should().get(0).wildcard().value());
+    }
+
+    @Test
+    public void testPrepareTokenNormalizesContexts() {
+        Token token = Token.builder().name("USD Coin").symbol("USDC").chain(" Polygon ").category("").build();
+        new TokenServiceImpl().prepareToken(token);
+        assertEquals("polygon", token.getChain());
+        assertNull(token.getCategory());
+    }
+
+    @Test
+    public void testPrepareTokenLowercasesEvmAddresses() {
+        Token token = Token.builder().name("USD Coin").symbol("USDC")
+                .address(" 0xA0b86991c6218b36c1d19D4a2e9Eb0cE3606eB48 ").build();
+        new TokenServiceImpl().prepareToken(token);
+        assertEquals("0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48", token.getAddress());
+
+        // 非EVM地址区分大小写，只去首尾空白
+        Token solana = Token.builder().name("USD Coin").symbol("USDC")
+                .address("EPjFWdd5AufqSSqeM2qN1xzybapC8G4wEGGkZwyTDt1v ").build();
+        new TokenServiceImpl().prepareToken(solana);
+        assertEquals("EPjFWdd5AufqSSqeM2qN1xzybapC8G4wEGGkZwyTDt1v", solana.getAddress());
+    }
+}
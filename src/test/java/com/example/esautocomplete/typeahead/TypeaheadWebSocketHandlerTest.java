@@ -0,0 +1,213 @@
+package com.example.esautocomplete.typeahead;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.example.esautocomplete.cache.IndexGeneration;
+import com.example.esautocomplete.cache.SuggestionCache;
+import com.example.esautocomplete.config.AutocompleteProperties;
+import com.example.esautocomplete.dto.SuggestResponse;
+import com.example.esautocomplete.dto.TypeaheadResponse;
+import com.example.esautocomplete.metrics.AccessLog;
+import com.example.esautocomplete.metrics.SearchMetrics;
+import com.example.esautocomplete.querylog.QueryLogCollector;
+import com.example.esautocomplete.service.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TypeaheadWebSocketHandlerTest {
+
+    private final Scheduler scheduler = Schedulers.newBoundedElastic(4, 100, "typeahead-test");
+
+    private final AutocompleteProperties properties = new AutocompleteProperties();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final TokenService tokenService = mock(TokenService.class);
+
+    private final IndexGeneration indexGeneration = new IndexGeneration();
+
+    private final BlockingQueue<TypeaheadResponse> pushed = new LinkedBlockingQueue<>();
+
+    private TypeaheadWebSocketHandler handler;
+
+    private WebSocketSession session;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        AccessLog accessLog = new AccessLog();
+        ReflectionTestUtils.setField(accessLog, "properties", properties);
+        handler = new TypeaheadWebSocketHandler(tokenService, new SuggestionCache(properties), indexGeneration,
+                properties, objectMapper, scheduler, new SearchMetrics(registry), accessLog,
+                new QueryLogCollector(properties, registry), registry);
+
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAttributes()).thenReturn(new HashMap<>());
+        doAnswer(invocation -> {
+            TextMessage message = invocation.getArgument(0);
+            pushed.add(objectMapper.readValue(message.getPayload(), TypeaheadResponse.class));
+            return null;
+        }).when(session).sendMessage(any());
+        handler.afterConnectionEstablished(session);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+        scheduler.dispose();
+    }
+
+    private void input(long seq, String query) throws Exception {
+        handler.handleTextMessage(session, new TextMessage("{\"seq\":" + seq + ",\"query\":\"" + query + "\"}"));
+    }
+
+    private static Mono<SuggestResponse> answer(String... suggestions) {
+        return Mono.just(SuggestResponse.builder().suggestions(List.of(suggestions)).build());
+    }
+
+    private static Mono<SuggestResponse> completeAnswer(String... suggestions) {
+        return Mono.just(SuggestResponse.builder().suggestions(List.of(suggestions)).complete(true).build());
+    }
+
+    @Test
+    public void testNewInputCancelsInFlightQuery() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(tokenService.getSuggestionsAsync("bi", 5)).thenReturn(Mono.<SuggestResponse>never()
+                .doOnSubscribe(s -> started.countDown())
+                .doOnCancel(cancelled::countDown));
+        when(tokenService.getSuggestionsAsync("bit", 5))
+                .thenReturn(answer("Bitcoin", "Bitcoin Cash", "BitTorrent", "Bitget Token", "Bittensor"));
+
+        input(1, "bi");
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        input(2, "bit");
+
+        assertTrue(cancelled.await(2, TimeUnit.SECONDS));
+        TypeaheadResponse response = pushed.poll(2, TimeUnit.SECONDS);
+        assertEquals(2, response.getSeq());
+        assertEquals(5, response.getSuggestions().size());
+        // 被取代的输入没有任何推送
+        assertNull(pushed.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, registry.get("autocomplete.typeahead.cancelled").counter().count());
+    }
+
+    @Test
+    public void testExtendingCompleteResultNarrowsLocally() throws Exception {
+        when(tokenService.getSuggestionsAsync("b", 5)).thenReturn(completeAnswer("Bitcoin", "BNB", "Binance USD"));
+
+        input(1, "b");
+        assertEquals(3, pushed.poll(2, TimeUnit.SECONDS).getSuggestions().size());
+
+        input(2, "bi");
+        TypeaheadResponse response = pushed.poll(2, TimeUnit.SECONDS);
+        assertEquals(2, response.getSeq());
+        assertTrue(response.isNarrowed());
+        assertEquals(List.of("Bitcoin", "Binance USD"), response.getSuggestions());
+
+        input(3, "bin");
+        assertEquals(List.of("Binance USD"), pushed.poll(2, TimeUnit.SECONDS).getSuggestions());
+        verify(tokenService, times(1)).getSuggestionsAsync(anyString(), anyInt());
+        assertEquals(2, registry.get("autocomplete.typeahead.narrowed").counter().count());
+    }
+
+    @Test
+    public void testWriteDiscardsCompleteResult() throws Exception {
+        when(tokenService.getSuggestionsAsync("b", 5)).thenReturn(completeAnswer("Bitcoin", "BNB"));
+        when(tokenService.getSuggestionsAsync("bi", 5)).thenReturn(completeAnswer("Bitcoin", "Bitget Token"));
+
+        input(1, "b");
+        assertEquals(2, pushed.poll(2, TimeUnit.SECONDS).getSuggestions().size());
+
+        // 其他请求写入了新Token，打开的连接不再用之前的完整结果收窄
+        indexGeneration.advance();
+        input(2, "bi");
+        TypeaheadResponse response = pushed.poll(2, TimeUnit.SECONDS);
+        assertFalse(response.isNarrowed());
+        assertEquals(List.of("Bitcoin", "Bitget Token"), response.getSuggestions());
+
+        // 新结果在新代数下取得，可以继续收窄
+        input(3, "bitg");
+        response = pushed.poll(2, TimeUnit.SECONDS);
+        assertTrue(response.isNarrowed());
+        assertEquals(List.of("Bitget Token"), response.getSuggestions());
+    }
+
+    @Test
+    public void testDegradedResultIsNotNarrowed() throws Exception {
+        when(tokenService.getSuggestionsAsync("b", 5)).thenReturn(Mono.just(SuggestResponse.builder()
+                .suggestions(List.of("Bitcoin"))
+                .degraded(true)
+                .build()));
+        when(tokenService.getSuggestionsAsync("bi", 5)).thenReturn(answer("Bitcoin", "Binance USD"));
+
+        input(1, "b");
+        assertTrue(pushed.poll(2, TimeUnit.SECONDS).isDegraded());
+        input(2, "bi");
+        TypeaheadResponse response = pushed.poll(2, TimeUnit.SECONDS);
+        assertFalse(response.isNarrowed());
+        assertEquals(List.of("Bitcoin", "Binance USD"), response.getSuggestions());
+    }
+
+    @Test
+    public void testShortResultNotMarkedCompleteIsNotNarrowed() throws Exception {
+        // 条数少于size但查询方没有确认完整（如重复命中被去重），仍然发起查询
+        when(tokenService.getSuggestionsAsync("us", 5)).thenReturn(answer("USD Coin", "USDC"));
+        when(tokenService.getSuggestionsAsync("usdt", 5)).thenReturn(answer("Tether USDt"));
+
+        input(1, "us");
+        assertEquals(2, pushed.poll(2, TimeUnit.SECONDS).getSuggestions().size());
+        input(2, "usdt");
+        TypeaheadResponse response = pushed.poll(2, TimeUnit.SECONDS);
+        assertFalse(response.isNarrowed());
+        assertEquals(List.of("Tether USDt"), response.getSuggestions());
+    }
+
+    @Test
+    public void testOutOfOrderInputIsIgnored() throws Exception {
+        when(tokenService.getSuggestionsAsync("bitc", 5)).thenReturn(answer("Bitcoin", "Bitcoin Cash",
+                "Bitcoin SV", "Wrapped Bitcoin", "Bitcoin Gold"));
+
+        input(5, "bitc");
+        input(4, "bit");
+
+        assertEquals(5, pushed.poll(2, TimeUnit.SECONDS).getSeq());
+        assertNull(pushed.poll(100, TimeUnit.MILLISECONDS));
+        verify(tokenService, never()).getSuggestionsAsync("bit", 5);
+        assertEquals(1, registry.get("autocomplete.typeahead.stale").counter().count());
+    }
+}